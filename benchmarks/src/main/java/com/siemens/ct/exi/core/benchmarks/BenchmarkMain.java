@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2007-2018 Siemens AG
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * 
+ */
+
+package com.siemens.ct.exi.core.benchmarks;
+
+import java.io.IOException;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.ProfilerConfig;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the JMH benchmarks with the usual JMH command line options. The GC
+ * profiler is always enabled so that each result reports
+ * <code>gc.alloc.rate.norm</code> (bytes allocated per operation).
+ * 
+ * @author Daniel.Peintner.EXT@siemens.com
+ * @author Richard.Kuntschke@siemens.com
+ * 
+ */
+
+public class BenchmarkMain {
+
+	public static void main(String[] args) throws RunnerException,
+			CommandLineOptionException, IOException {
+		CommandLineOptions cmdOptions = new CommandLineOptions(args);
+		if (cmdOptions.shouldHelp() || cmdOptions.shouldList()
+				|| cmdOptions.shouldListProfilers()
+				|| cmdOptions.shouldListResultFormats()
+				|| cmdOptions.shouldListWithParams()) {
+			// informational options only
+			org.openjdk.jmh.Main.main(args);
+			return;
+		}
+		OptionsBuilder builder = new OptionsBuilder();
+		builder.parent(cmdOptions);
+		boolean gc = false;
+		for (ProfilerConfig pc : cmdOptions.getProfilers()) {
+			gc |= "gc".equals(pc.getKlass())
+					|| GCProfiler.class.getName().equals(pc.getKlass());
+		}
+		if (!gc) {
+			builder.addProfiler(GCProfiler.class);
+		}
+		Options options = builder.build();
+		new Runner(options).run();
+	}
+}
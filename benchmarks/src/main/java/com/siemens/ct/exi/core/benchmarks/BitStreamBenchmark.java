@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2007-2018 Siemens AG
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * 
+ */
+
+package com.siemens.ct.exi.core.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.siemens.ct.exi.core.io.BitInputStream;
+import com.siemens.ct.exi.core.io.BitOutputStream;
+
+/**
+ * Reads and writes n-bit values with {@link BitInputStream} and
+ * {@link BitOutputStream}. Scores are per value.
+ * 
+ * @author Daniel.Peintner.EXT@siemens.com
+ * @author Richard.Kuntschke@siemens.com
+ * 
+ */
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BitStreamBenchmark {
+
+	static final int VALUES = 4096;
+
+	@Param({ "1", "3", "8", "13", "32" })
+	public int bits;
+
+	int[] values;
+	ByteArrayOutputStream os;
+	ByteArrayInputStream is;
+	BitInputStream bis;
+
+	@Setup
+	public void setup() throws IOException {
+		Random random = new Random(SyntheticDocuments.SEED);
+		values = new int[VALUES];
+		for (int i = 0; i < VALUES; i++) {
+			values[i] = bits == 32 ? random.nextInt() : random
+					.nextInt(1 << bits);
+		}
+		os = new ByteArrayOutputStream(VALUES * 4 + 1);
+		writeBits();
+		is = new ByteArrayInputStream(os.toByteArray());
+		bis = new BitInputStream(is);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(VALUES)
+	public int writeBits() throws IOException {
+		os.reset();
+		BitOutputStream bos = new BitOutputStream(os);
+		for (int i = 0; i < VALUES; i++) {
+			bos.writeBits(values[i], bits);
+		}
+		bos.align();
+		return bos.getLength();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(VALUES)
+	public int readBits() throws IOException {
+		is.reset();
+		bis.setInputStream(is);
+		int r = 0;
+		for (int i = 0; i < VALUES; i++) {
+			r ^= bis.readBits(bits);
+		}
+		return r;
+	}
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2007-2018 Siemens AG
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * 
+ */
+
+package com.siemens.ct.exi.core.benchmarks;
+
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.siemens.ct.exi.core.EXIEventVisitor;
+import com.siemens.ct.exi.core.context.QNameContext;
+import com.siemens.ct.exi.core.values.Value;
+
+/**
+ * Visitor that hands all decoded qnames and values to a JMH blackhole.
+ * 
+ * @author Daniel.Peintner.EXT@siemens.com
+ * @author Richard.Kuntschke@siemens.com
+ * 
+ */
+
+public class BlackholeVisitor implements EXIEventVisitor {
+
+	protected Blackhole bh;
+
+	public void setBlackhole(Blackhole bh) {
+		this.bh = bh;
+	}
+
+	public int startElement(QNameContext qnc, String prefix) {
+		bh.consume(qnc);
+		return CONTINUE;
+	}
+
+	public int endElement(QNameContext qnc) {
+		bh.consume(qnc);
+		return CONTINUE;
+	}
+
+	public int attribute(QNameContext qnc, String prefix, Value value) {
+		bh.consume(qnc);
+		bh.consume(value);
+		return CONTINUE;
+	}
+
+	public int characters(Value value) {
+		bh.consume(value);
+		return CONTINUE;
+	}
+}
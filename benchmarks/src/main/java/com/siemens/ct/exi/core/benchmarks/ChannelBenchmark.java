@@ -0,0 +1,215 @@
+/*
+ * Copyright (c) 2007-2018 Siemens AG
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * 
+ */
+
+package com.siemens.ct.exi.core.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.siemens.ct.exi.core.io.channel.BitDecoderChannel;
+import com.siemens.ct.exi.core.io.channel.BitEncoderChannel;
+import com.siemens.ct.exi.core.io.channel.ByteDecoderChannel;
+import com.siemens.ct.exi.core.io.channel.ByteEncoderChannel;
+import com.siemens.ct.exi.core.io.channel.DecoderChannel;
+import com.siemens.ct.exi.core.io.channel.EncoderChannel;
+import com.siemens.ct.exi.core.types.DateTimeType;
+import com.siemens.ct.exi.core.values.DateTimeValue;
+import com.siemens.ct.exi.core.values.FloatValue;
+
+/**
+ * Unsigned integer (varint), string, float and dateTime codecs of the bit-
+ * and byte-aligned channels. Scores are per value.
+ * 
+ * @author Daniel.Peintner.EXT@siemens.com
+ * @author Richard.Kuntschke@siemens.com
+ * 
+ */
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChannelBenchmark {
+
+	static final int VALUES = 1024;
+
+	@Param({ "BIT", "BYTE" })
+	public String channel;
+
+	int[] unsignedIntegers;
+	String[] strings;
+	FloatValue[] floats;
+	DateTimeValue[] dateTimes;
+
+	ByteArrayOutputStream os;
+	ByteArrayInputStream isUnsignedIntegers;
+	ByteArrayInputStream isStrings;
+	ByteArrayInputStream isFloats;
+	ByteArrayInputStream isDateTimes;
+
+	@Setup
+	public void setup() throws IOException {
+		Random random = new Random(SyntheticDocuments.SEED);
+		unsignedIntegers = new int[VALUES];
+		strings = new String[VALUES];
+		floats = new FloatValue[VALUES];
+		dateTimes = new DateTimeValue[VALUES];
+		for (int i = 0; i < VALUES; i++) {
+			// mostly small values, some multi-byte
+			unsignedIntegers[i] = random.nextInt(8) == 0 ? random
+					.nextInt(1 << 24) : random.nextInt(128);
+			strings[i] = "value " + random.nextInt(100000)
+					+ (i % 16 == 0 ? " ä€" : "");
+			floats[i] = FloatValue.parse(random.nextInt(200000) / 100.0);
+			dateTimes[i] = DateTimeValue.parse(
+					String.format("20%02d-%02d-%02dT%02d:%02d:%02dZ",
+							random.nextInt(30), 1 + random.nextInt(12),
+							1 + random.nextInt(28), random.nextInt(24),
+							random.nextInt(60), random.nextInt(60)),
+					DateTimeType.dateTime);
+		}
+
+		os = new ByteArrayOutputStream(VALUES * 32);
+		encodeUnsignedInteger();
+		isUnsignedIntegers = new ByteArrayInputStream(os.toByteArray());
+		encodeString();
+		isStrings = new ByteArrayInputStream(os.toByteArray());
+		encodeFloat();
+		isFloats = new ByteArrayInputStream(os.toByteArray());
+		encodeDateTime();
+		isDateTimes = new ByteArrayInputStream(os.toByteArray());
+	}
+
+	EncoderChannel newEncoderChannel() {
+		os.reset();
+		return "BIT".equals(channel) ? new BitEncoderChannel(os)
+				: new ByteEncoderChannel(os);
+	}
+
+	DecoderChannel newDecoderChannel(ByteArrayInputStream is) {
+		is.reset();
+		return "BIT".equals(channel) ? new BitDecoderChannel(is)
+				: new ByteDecoderChannel(is);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(VALUES)
+	public int encodeUnsignedInteger() throws IOException {
+		EncoderChannel ec = newEncoderChannel();
+		for (int i = 0; i < VALUES; i++) {
+			ec.encodeUnsignedInteger(unsignedIntegers[i]);
+		}
+		ec.flush();
+		return ec.getLength();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(VALUES)
+	public int decodeUnsignedInteger() throws IOException {
+		DecoderChannel dc = newDecoderChannel(isUnsignedIntegers);
+		int r = 0;
+		for (int i = 0; i < VALUES; i++) {
+			r ^= dc.decodeUnsignedInteger();
+		}
+		return r;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(VALUES)
+	public int encodeString() throws IOException {
+		EncoderChannel ec = newEncoderChannel();
+		for (int i = 0; i < VALUES; i++) {
+			ec.encodeString(strings[i]);
+		}
+		ec.flush();
+		return ec.getLength();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(VALUES)
+	public void decodeString(Blackhole bh) throws IOException {
+		DecoderChannel dc = newDecoderChannel(isStrings);
+		for (int i = 0; i < VALUES; i++) {
+			bh.consume(dc.decodeString());
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(VALUES)
+	public int encodeFloat() throws IOException {
+		EncoderChannel ec = newEncoderChannel();
+		for (int i = 0; i < VALUES; i++) {
+			ec.encodeFloat(floats[i]);
+		}
+		ec.flush();
+		return ec.getLength();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(VALUES)
+	public void decodeFloat(Blackhole bh) throws IOException {
+		DecoderChannel dc = newDecoderChannel(isFloats);
+		for (int i = 0; i < VALUES; i++) {
+			bh.consume(dc.decodeFloatValue());
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(VALUES)
+	public int encodeDateTime() throws IOException {
+		EncoderChannel ec = newEncoderChannel();
+		for (int i = 0; i < VALUES; i++) {
+			ec.encodeDateTime(dateTimes[i]);
+		}
+		ec.flush();
+		return ec.getLength();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(VALUES)
+	public void decodeDateTime(Blackhole bh) throws IOException {
+		DecoderChannel dc = newDecoderChannel(isDateTimes);
+		for (int i = 0; i < VALUES; i++) {
+			bh.consume(dc.decodeDateTimeValue(DateTimeType.dateTime));
+		}
+	}
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2007-2018 Siemens AG
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * 
+ */
+
+package com.siemens.ct.exi.core.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.siemens.ct.exi.core.CodingMode;
+import com.siemens.ct.exi.core.EXIBodyDecoder;
+import com.siemens.ct.exi.core.EXIBodyEncoder;
+import com.siemens.ct.exi.core.EXIFactory;
+import com.siemens.ct.exi.core.exceptions.EXIException;
+
+/**
+ * End-to-end body encoding and decoding of {@link SyntheticDocuments} in all
+ * coding modes, schema-less and schema-informed.
+ * 
+ * @author Daniel.Peintner.EXT@siemens.com
+ * @author Richard.Kuntschke@siemens.com
+ * 
+ */
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CodingBenchmark {
+
+	@Param({ "BIT_PACKED", "BYTE_PACKED", "PRE_COMPRESSION", "COMPRESSION" })
+	public CodingMode codingMode;
+
+	@Param({ "false", "true" })
+	public boolean schemaInformed;
+
+	@Param({ "1000" })
+	public int records;
+
+	@Param({ "4" })
+	public int fields;
+
+	@Param({ "64" })
+	public int distinctNames;
+
+	SyntheticDocuments document;
+	EXIBodyEncoder encoder;
+	EXIBodyDecoder decoder;
+	ByteArrayOutputStream os;
+	ByteArrayInputStream is;
+	final BlackholeVisitor visitor = new BlackholeVisitor();
+
+	@Setup
+	public void setup() throws EXIException, IOException {
+		EXIFactory factory = SyntheticDocuments.createFactory(codingMode,
+				schemaInformed);
+		document = new SyntheticDocuments(records, fields, distinctNames);
+
+		encoder = factory.createEXIBodyEncoder();
+		os = new ByteArrayOutputStream(records * (16 + fields * 8));
+		document.encode(encoder, os);
+		is = new ByteArrayInputStream(os.toByteArray());
+
+		decoder = factory.createEXIBodyDecoder();
+	}
+
+	@Benchmark
+	public int encode() throws EXIException, IOException {
+		os.reset();
+		document.encode(encoder, os);
+		return os.size();
+	}
+
+	@Benchmark
+	public boolean decode(Blackhole bh) throws EXIException, IOException {
+		is.reset();
+		decoder.setInputStream(is);
+		visitor.setBlackhole(bh);
+		return decoder.decode(visitor);
+	}
+}
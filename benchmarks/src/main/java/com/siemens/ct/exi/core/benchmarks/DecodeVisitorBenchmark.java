@@ -0,0 +1,161 @@
+/*
+ * Copyright (c) 2007-2018 Siemens AG
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * 
+ */
+
+package com.siemens.ct.exi.core.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.siemens.ct.exi.core.CodingMode;
+import com.siemens.ct.exi.core.EXIBodyDecoder;
+import com.siemens.ct.exi.core.EXIBodyEncoder;
+import com.siemens.ct.exi.core.EXIFactory;
+import com.siemens.ct.exi.core.exceptions.EXIException;
+import com.siemens.ct.exi.core.grammars.event.EventType;
+import com.siemens.ct.exi.core.helpers.DefaultEXIFactory;
+import com.siemens.ct.exi.core.values.StringValue;
+
+/**
+ * Compares the pull loop (<code>next()</code> plus <code>decodeXXX()</code>)
+ * with the push loop <code>decode(EXIEventVisitor)</code> on the same
+ * synthetic document.
+ * 
+ * @author Daniel.Peintner.EXT@siemens.com
+ * @author Richard.Kuntschke@siemens.com
+ * 
+ */
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DecodeVisitorBenchmark {
+
+	@Param({ "BIT_PACKED", "BYTE_PACKED", "COMPRESSION" })
+	public CodingMode codingMode;
+
+	@Param({ "1000" })
+	public int records;
+
+	byte[] exi;
+	EXIBodyDecoder decoder;
+
+	final BlackholeVisitor visitor = new BlackholeVisitor();
+
+	@Setup
+	public void setup() throws EXIException, IOException {
+		EXIFactory factory = DefaultEXIFactory.newInstance();
+		factory.setCodingMode(codingMode);
+
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		EXIBodyEncoder encoder = factory.createEXIBodyEncoder();
+		encoder.setOutputStream(baos);
+		encoder.encodeStartDocument();
+		encoder.encodeStartElement("urn:bench", "records", null);
+		for (int i = 0; i < records; i++) {
+			encoder.encodeStartElement("urn:bench", "record", null);
+			encoder.encodeAttribute("", "id", null, new StringValue(
+					Integer.toString(i)));
+			encoder.encodeStartElement("urn:bench", "name", null);
+			encoder.encodeCharacters(new StringValue("name " + (i % 97)));
+			encoder.encodeEndElement();
+			encoder.encodeStartElement("urn:bench", "value", null);
+			encoder.encodeCharacters(new StringValue(Integer.toString(i * 31)));
+			encoder.encodeEndElement();
+			encoder.encodeEndElement();
+		}
+		encoder.encodeEndElement();
+		encoder.encodeEndDocument();
+		encoder.flush();
+		exi = baos.toByteArray();
+
+		decoder = factory.createEXIBodyDecoder();
+	}
+
+	@Benchmark
+	public void pull(Blackhole bh) throws EXIException, IOException {
+		decoder.setInputStream(new ByteArrayInputStream(exi));
+		EventType et;
+		while ((et = decoder.next()) != null) {
+			switch (et) {
+			case START_DOCUMENT:
+				decoder.decodeStartDocument();
+				break;
+			case END_DOCUMENT:
+				decoder.decodeEndDocument();
+				break;
+			case START_ELEMENT:
+			case START_ELEMENT_NS:
+			case START_ELEMENT_GENERIC:
+			case START_ELEMENT_GENERIC_UNDECLARED:
+				bh.consume(decoder.decodeStartElement());
+				bh.consume(decoder.getElementPrefix());
+				break;
+			case END_ELEMENT:
+			case END_ELEMENT_UNDECLARED:
+				bh.consume(decoder.decodeEndElement());
+				break;
+			case ATTRIBUTE:
+			case ATTRIBUTE_NS:
+			case ATTRIBUTE_GENERIC:
+			case ATTRIBUTE_GENERIC_UNDECLARED:
+			case ATTRIBUTE_INVALID_VALUE:
+			case ATTRIBUTE_ANY_INVALID_VALUE:
+				bh.consume(decoder.decodeAttribute());
+				bh.consume(decoder.getAttributeValue());
+				break;
+			case CHARACTERS:
+			case CHARACTERS_GENERIC:
+			case CHARACTERS_GENERIC_UNDECLARED:
+				bh.consume(decoder.decodeCharacters());
+				break;
+			default:
+				throw new EXIException("Unexpected event " + et);
+			}
+		}
+	}
+
+	@Benchmark
+	public boolean push(Blackhole bh) throws EXIException, IOException {
+		decoder.setInputStream(new ByteArrayInputStream(exi));
+		visitor.setBlackhole(bh);
+		return decoder.decode(visitor);
+	}
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2007-2018 Siemens AG
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * 
+ */
+
+package com.siemens.ct.exi.core.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.namespace.QName;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.siemens.ct.exi.core.FidelityOptions;
+import com.siemens.ct.exi.core.context.QNameContext;
+import com.siemens.ct.exi.core.grammars.GrammarAutomaton;
+import com.siemens.ct.exi.core.grammars.SchemaInformedGrammars;
+import com.siemens.ct.exi.core.grammars.event.Attribute;
+import com.siemens.ct.exi.core.grammars.event.EventType;
+import com.siemens.ct.exi.core.grammars.event.StartElement;
+import com.siemens.ct.exi.core.grammars.grammar.BuiltInStartTag;
+import com.siemens.ct.exi.core.grammars.grammar.Grammar;
+
+/**
+ * Production lookup by qname, event type and event code in learned built-in
+ * grammars, schema-informed grammars and the compiled grammar automaton.
+ * 
+ * @author Daniel.Peintner.EXT@siemens.com
+ * @author Richard.Kuntschke@siemens.com
+ * 
+ */
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GrammarBenchmark {
+
+	/* number of learned SE and AT productions of the built-in grammar */
+	@Param({ "4", "32" })
+	public int learned;
+
+	BuiltInStartTag builtIn;
+	String[] localNames;
+	int next;
+
+	Grammar rootStart;
+	Grammar recordStart;
+	GrammarAutomaton automaton;
+	int rootState;
+
+	@Setup
+	public void setup() {
+		builtIn = new BuiltInStartTag();
+		localNames = new String[learned];
+		for (int i = 0; i < learned; i++) {
+			localNames[i] = "e" + i;
+			QNameContext qnc = new QNameContext(0, i, new QName("",
+					localNames[i]));
+			builtIn.learnStartElement(new StartElement(qnc));
+			builtIn.learnAttribute(new Attribute(qnc));
+		}
+		builtIn.learnEndElement();
+
+		SchemaInformedGrammars grammars = SyntheticDocuments.createGrammars();
+		QNameContext qncRoot = grammars.getGrammarContext()
+				.getGrammarUriContext(0)
+				.getQNameContext(SyntheticDocuments.ROOT.getLocalPart());
+		rootStart = qncRoot.getGlobalStartElement().getGrammar();
+		recordStart = ((StartElement) rootStart.getStartElementProduction("",
+				SyntheticDocuments.RECORD.getLocalPart()).getEvent())
+				.getGrammar();
+
+		automaton = GrammarAutomaton.compile(grammars,
+				FidelityOptions.createDefault());
+		rootState = automaton.getState(rootStart);
+	}
+
+	String nextLocalName() {
+		if (++next == localNames.length) {
+			next = 0;
+		}
+		return localNames[next];
+	}
+
+	@Benchmark
+	public void builtInStartElement(Blackhole bh) {
+		bh.consume(builtIn.getStartElementProduction("", nextLocalName()));
+	}
+
+	@Benchmark
+	public void builtInAttribute(Blackhole bh) {
+		bh.consume(builtIn.getAttributeProduction("", nextLocalName()));
+	}
+
+	@Benchmark
+	public void builtInEventCode(Blackhole bh) {
+		bh.consume(builtIn.getProduction(next = (next + 1)
+				% builtIn.getNumberOfEvents()));
+	}
+
+	@Benchmark
+	public void builtInEndElement(Blackhole bh) {
+		bh.consume(builtIn.getProduction(EventType.END_ELEMENT));
+	}
+
+	@Benchmark
+	public void schemaInformedStartElement(Blackhole bh) {
+		bh.consume(rootStart.getStartElementProduction("",
+				SyntheticDocuments.RECORD.getLocalPart()));
+	}
+
+	@Benchmark
+	public void schemaInformedAttribute(Blackhole bh) {
+		bh.consume(recordStart.getAttributeProduction("",
+				SyntheticDocuments.ID.getLocalPart()));
+	}
+
+	@Benchmark
+	public void schemaInformedEndElement(Blackhole bh) {
+		bh.consume(rootStart.getProduction(EventType.END_ELEMENT));
+	}
+
+	@Benchmark
+	public int automatonStartElement() {
+		return automaton.getStartElementEventCode(rootState, "",
+				SyntheticDocuments.RECORD.getLocalPart());
+	}
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright (c) 2007-2018 Siemens AG
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * 
+ */
+
+package com.siemens.ct.exi.core.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.namespace.QName;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.siemens.ct.exi.core.context.QNameContext;
+import com.siemens.ct.exi.core.datatype.strings.StringDecoderImpl;
+import com.siemens.ct.exi.core.datatype.strings.StringEncoderImpl;
+import com.siemens.ct.exi.core.io.channel.BitDecoderChannel;
+import com.siemens.ct.exi.core.io.channel.BitEncoderChannel;
+import com.siemens.ct.exi.core.io.channel.EncoderChannel;
+
+/**
+ * Miss and (local and global) hit paths of {@link StringEncoderImpl} and
+ * {@link StringDecoderImpl}. Scores are per value.
+ * 
+ * @author Daniel.Peintner.EXT@siemens.com
+ * @author Richard.Kuntschke@siemens.com
+ * 
+ */
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StringTableBenchmark {
+
+	static final int VALUES = 1024;
+
+	final QNameContext qncA = new QNameContext(0, 0, new QName("", "a"));
+	final QNameContext qncB = new QNameContext(0, 1, new QName("", "b"));
+
+	String[] values;
+	char[][] chars;
+
+	StringEncoderImpl missEncoder;
+	StringEncoderImpl hitEncoder;
+	StringDecoderImpl missDecoder;
+	StringDecoderImpl hitDecoder;
+
+	ByteArrayOutputStream os;
+	ByteArrayInputStream isMiss;
+	ByteArrayInputStream isHit;
+
+	@Setup
+	public void setup() throws IOException {
+		values = new String[VALUES];
+		chars = new char[VALUES][];
+		for (int i = 0; i < VALUES; i++) {
+			values[i] = "string value " + i;
+			chars[i] = values[i].toCharArray();
+		}
+		os = new ByteArrayOutputStream(VALUES * 32);
+
+		missEncoder = new StringEncoderImpl(true);
+		encodeMiss();
+		isMiss = new ByteArrayInputStream(os.toByteArray());
+
+		hitEncoder = new StringEncoderImpl(true);
+		EncoderChannel ec = new BitEncoderChannel(new ByteArrayOutputStream());
+		for (int i = 0; i < VALUES; i++) {
+			hitEncoder.writeValue(qncA, ec, values[i]);
+		}
+		encodeHit();
+		isHit = new ByteArrayInputStream(os.toByteArray());
+
+		missDecoder = new StringDecoderImpl(true);
+		hitDecoder = new StringDecoderImpl(true);
+		isMiss.reset();
+		BitDecoderChannel dc = new BitDecoderChannel(isMiss);
+		for (int i = 0; i < VALUES; i++) {
+			hitDecoder.readValue(qncA, dc);
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(VALUES)
+	public int encodeMiss() throws IOException {
+		os.reset();
+		missEncoder.clear();
+		EncoderChannel ec = new BitEncoderChannel(os);
+		for (int i = 0; i < VALUES; i++) {
+			missEncoder.writeValue(qncA, ec, values[i]);
+		}
+		ec.flush();
+		return ec.getLength();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(VALUES)
+	public int encodeMissSlice() throws IOException {
+		os.reset();
+		missEncoder.clear();
+		EncoderChannel ec = new BitEncoderChannel(os);
+		for (int i = 0; i < VALUES; i++) {
+			missEncoder.writeValue(qncA, ec, chars[i], 0, chars[i].length);
+		}
+		ec.flush();
+		return ec.getLength();
+	}
+
+	/*
+	 * alternating local (a) and global (b) hits
+	 */
+	@Benchmark
+	@OperationsPerInvocation(VALUES)
+	public int encodeHit() throws IOException {
+		os.reset();
+		EncoderChannel ec = new BitEncoderChannel(os);
+		for (int i = 0; i < VALUES; i++) {
+			hitEncoder.writeValue((i & 1) == 0 ? qncA : qncB, ec, values[i]);
+		}
+		ec.flush();
+		return ec.getLength();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(VALUES)
+	public int encodeHitSlice() throws IOException {
+		os.reset();
+		EncoderChannel ec = new BitEncoderChannel(os);
+		for (int i = 0; i < VALUES; i++) {
+			hitEncoder.writeValue((i & 1) == 0 ? qncA : qncB, ec, chars[i],
+					0, chars[i].length);
+		}
+		ec.flush();
+		return ec.getLength();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(VALUES)
+	public void decodeMiss(Blackhole bh) throws IOException {
+		isMiss.reset();
+		missDecoder.clear();
+		BitDecoderChannel dc = new BitDecoderChannel(isMiss);
+		for (int i = 0; i < VALUES; i++) {
+			bh.consume(missDecoder.readValue(qncA, dc));
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(VALUES)
+	public void decodeHit(Blackhole bh) throws IOException {
+		isHit.reset();
+		BitDecoderChannel dc = new BitDecoderChannel(isHit);
+		for (int i = 0; i < VALUES; i++) {
+			bh.consume(hitDecoder.readValue((i & 1) == 0 ? qncA : qncB, dc));
+		}
+	}
+}
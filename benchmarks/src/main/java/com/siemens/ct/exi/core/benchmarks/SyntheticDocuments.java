@@ -0,0 +1,313 @@
+/*
+ * Copyright (c) 2007-2018 Siemens AG
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * 
+ */
+
+package com.siemens.ct.exi.core.benchmarks;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Random;
+
+import javax.xml.namespace.QName;
+
+import com.siemens.ct.exi.core.CodingMode;
+import com.siemens.ct.exi.core.Constants;
+import com.siemens.ct.exi.core.EXIBodyEncoder;
+import com.siemens.ct.exi.core.EXIFactory;
+import com.siemens.ct.exi.core.context.GrammarContext;
+import com.siemens.ct.exi.core.context.GrammarUriContext;
+import com.siemens.ct.exi.core.context.QNameContext;
+import com.siemens.ct.exi.core.datatype.Datatype;
+import com.siemens.ct.exi.core.datatype.IntegerDatatype;
+import com.siemens.ct.exi.core.datatype.StringDatatype;
+import com.siemens.ct.exi.core.exceptions.EXIException;
+import com.siemens.ct.exi.core.grammars.SchemaInformedGrammars;
+import com.siemens.ct.exi.core.grammars.event.Attribute;
+import com.siemens.ct.exi.core.grammars.event.Characters;
+import com.siemens.ct.exi.core.grammars.event.EndDocument;
+import com.siemens.ct.exi.core.grammars.event.EndElement;
+import com.siemens.ct.exi.core.grammars.event.StartDocument;
+import com.siemens.ct.exi.core.grammars.event.StartElement;
+import com.siemens.ct.exi.core.grammars.event.StartElementGeneric;
+import com.siemens.ct.exi.core.grammars.grammar.DocEnd;
+import com.siemens.ct.exi.core.grammars.grammar.Document;
+import com.siemens.ct.exi.core.grammars.grammar.Fragment;
+import com.siemens.ct.exi.core.grammars.grammar.SchemaInformedDocContent;
+import com.siemens.ct.exi.core.grammars.grammar.SchemaInformedElement;
+import com.siemens.ct.exi.core.grammars.grammar.SchemaInformedFirstStartTag;
+import com.siemens.ct.exi.core.grammars.grammar.SchemaInformedFragmentContent;
+import com.siemens.ct.exi.core.grammars.grammar.SchemaInformedStartTag;
+import com.siemens.ct.exi.core.helpers.DefaultEXIFactory;
+import com.siemens.ct.exi.core.values.StringValue;
+
+/**
+ * Deterministic synthetic documents and a matching programmatically built
+ * schema-informed grammar.
+ * 
+ * <pre>
+ * &lt;root&gt;
+ *   &lt;record id="r0" kind="k0"&gt;
+ *     &lt;name&gt;name 0&lt;/name&gt;
+ *     &lt;field&gt;123&lt;/field&gt; (fields times)
+ *   &lt;/record&gt; (records times)
+ * &lt;/root&gt;
+ * </pre>
+ * 
+ * The shape is controlled by the number of records, fields per record and
+ * distinct name values (string table hit ratio). Values are created up-front
+ * with a fixed seed so that repeated runs encode the very same bytes and the
+ * benchmark driver does not allocate while encoding.
+ * 
+ * @author Daniel.Peintner.EXT@siemens.com
+ * @author Richard.Kuntschke@siemens.com
+ * 
+ */
+
+public class SyntheticDocuments {
+
+	public static final long SEED = 20180101L;
+
+	public static final QName ROOT = new QName("", "root");
+	public static final QName RECORD = new QName("", "record");
+	public static final QName ID = new QName("", "id");
+	public static final QName KIND = new QName("", "kind");
+	public static final QName NAME = new QName("", "name");
+	public static final QName FIELD = new QName("", "field");
+
+	public static final int KINDS = 8;
+
+	final int records;
+	final int fields;
+
+	final StringValue[] ids;
+	final StringValue[] kinds;
+	final StringValue[] names;
+	final StringValue[] fieldValues;
+
+	/**
+	 * Creates document content.
+	 * 
+	 * @param records
+	 *            number of record elements
+	 * @param fields
+	 *            number of field elements per record
+	 * @param distinctNames
+	 *            number of distinct name values
+	 */
+	public SyntheticDocuments(int records, int fields, int distinctNames) {
+		this.records = records;
+		this.fields = fields;
+		Random random = new Random(SEED);
+
+		ids = new StringValue[records];
+		names = new StringValue[records];
+		for (int i = 0; i < records; i++) {
+			ids[i] = new StringValue("r" + i);
+			names[i] = new StringValue("name "
+					+ random.nextInt(Math.max(1, distinctNames)));
+		}
+		kinds = new StringValue[KINDS];
+		for (int i = 0; i < KINDS; i++) {
+			kinds[i] = new StringValue("k" + i);
+		}
+		fieldValues = new StringValue[records * fields];
+		for (int i = 0; i < fieldValues.length; i++) {
+			fieldValues[i] = new StringValue(Integer.toString(random
+					.nextInt(100000)));
+		}
+		// pre-compute character arrays (lazily created otherwise)
+		for (StringValue[] svs : new StringValue[][] { ids, kinds, names,
+				fieldValues }) {
+			for (StringValue sv : svs) {
+				sv.getCharacters();
+			}
+		}
+	}
+
+	public int getRecords() {
+		return records;
+	}
+
+	public void encode(EXIBodyEncoder encoder, OutputStream os)
+			throws EXIException, IOException {
+		encoder.setOutputStream(os);
+		encoder.encodeStartDocument();
+		encoder.encodeStartElement(ROOT.getNamespaceURI(),
+				ROOT.getLocalPart(), null);
+		int f = 0;
+		for (int i = 0; i < records; i++) {
+			encoder.encodeStartElement(RECORD.getNamespaceURI(),
+					RECORD.getLocalPart(), null);
+			encoder.encodeAttribute(ID.getNamespaceURI(), ID.getLocalPart(),
+					null, ids[i]);
+			encoder.encodeAttribute(KIND.getNamespaceURI(),
+					KIND.getLocalPart(), null, kinds[i % KINDS]);
+			encoder.encodeStartElement(NAME.getNamespaceURI(),
+					NAME.getLocalPart(), null);
+			encoder.encodeCharacters(names[i]);
+			encoder.encodeEndElement();
+			for (int k = 0; k < fields; k++) {
+				encoder.encodeStartElement(FIELD.getNamespaceURI(),
+						FIELD.getLocalPart(), null);
+				encoder.encodeCharacters(fieldValues[f++]);
+				encoder.encodeEndElement();
+			}
+			encoder.encodeEndElement();
+		}
+		encoder.encodeEndElement();
+		encoder.encodeEndDocument();
+		encoder.flush();
+	}
+
+	/**
+	 * Creates an EXI factory.
+	 * 
+	 * @param codingMode
+	 *            coding mode
+	 * @param schemaInformed
+	 *            whether to use {@link #createGrammars()}
+	 * @return factory
+	 */
+	public static EXIFactory createFactory(CodingMode codingMode,
+			boolean schemaInformed) {
+		EXIFactory factory = DefaultEXIFactory.newInstance();
+		factory.setCodingMode(codingMode);
+		if (schemaInformed) {
+			factory.setGrammars(createGrammars());
+		}
+		return factory;
+	}
+
+	/**
+	 * Schema-informed grammars for
+	 * 
+	 * <pre>
+	 * root := record*
+	 * record := @id(string), @kind(string), name(string), field(integer)*
+	 * </pre>
+	 * 
+	 * @return grammars
+	 */
+	public static SchemaInformedGrammars createGrammars() {
+		// "" namespace (sorted local-names)
+		QNameContext qncField = new QNameContext(0, 0, FIELD);
+		QNameContext qncId = new QNameContext(0, 1, ID);
+		QNameContext qncKind = new QNameContext(0, 2, KIND);
+		QNameContext qncName = new QNameContext(0, 3, NAME);
+		QNameContext qncRecord = new QNameContext(0, 4, RECORD);
+		QNameContext qncRoot = new QNameContext(0, 5, ROOT);
+		GrammarUriContext guc0 = new GrammarUriContext(0,
+				Constants.EMPTY_STRING, new QNameContext[] { qncField, qncId,
+						qncKind, qncName, qncRecord, qncRoot },
+				Constants.PREFIXES_EMPTY);
+		GrammarUriContext guc1 = new GrammarUriContext(1,
+				Constants.XML_NS_URI, createQNames(1, Constants.XML_NS_URI,
+						Constants.LOCAL_NAMES_XML), Constants.PREFIXES_XML);
+		GrammarUriContext guc2 = new GrammarUriContext(2,
+				Constants.XML_SCHEMA_INSTANCE_NS_URI, createQNames(2,
+						Constants.XML_SCHEMA_INSTANCE_NS_URI,
+						Constants.LOCAL_NAMES_XSI), Constants.PREFIXES_XSI);
+		QNameContext[] xsd = createQNames(3, Constants.XML_SCHEMA_NS_URI,
+				new String[] { "integer", "string" });
+		GrammarUriContext guc3 = new GrammarUriContext(3,
+				Constants.XML_SCHEMA_NS_URI, xsd);
+		GrammarContext gc = new GrammarContext(new GrammarUriContext[] {
+				guc0, guc1, guc2, guc3 }, 6 + Constants.LOCAL_NAMES_XML.length
+				+ Constants.LOCAL_NAMES_XSI.length + xsd.length);
+
+		Datatype dtInteger = new IntegerDatatype(xsd[0]);
+		Datatype dtString = new StringDatatype(xsd[1]);
+
+		// field, name
+		StartElement seField = new StartElement(qncField,
+				createSimpleContent(dtInteger));
+		StartElement seName = new StartElement(qncName,
+				createSimpleContent(dtString));
+
+		// record
+		SchemaInformedElement recordFields = new SchemaInformedElement();
+		recordFields.addProduction(seField, recordFields);
+		recordFields.addTerminalProduction(new EndElement());
+		SchemaInformedElement recordContent = new SchemaInformedElement();
+		recordContent.addProduction(seName, recordFields);
+		SchemaInformedStartTag recordKind = new SchemaInformedStartTag(
+				recordContent);
+		recordKind.addProduction(new Attribute(qncKind, dtString),
+				recordContent);
+		SchemaInformedFirstStartTag recordStart = new SchemaInformedFirstStartTag(
+				recordContent);
+		recordStart.addProduction(new Attribute(qncId, dtString), recordKind);
+
+		// root
+		SchemaInformedElement rootContent = new SchemaInformedElement();
+		StartElement seRecord = new StartElement(qncRecord, recordStart);
+		rootContent.addProduction(seRecord, rootContent);
+		rootContent.addTerminalProduction(new EndElement());
+		SchemaInformedFirstStartTag rootStart = new SchemaInformedFirstStartTag(
+				rootContent);
+		rootStart.addProduction(seRecord, rootContent);
+		rootStart.addTerminalProduction(new EndElement());
+		StartElement seRoot = new StartElement(qncRoot, rootStart);
+		qncRoot.setGlobalStartElement(seRoot);
+
+		// document
+		DocEnd docEnd = new DocEnd("DocEnd");
+		docEnd.addTerminalProduction(new EndDocument());
+		SchemaInformedDocContent docContent = new SchemaInformedDocContent(
+				"DocContent");
+		docContent.addProduction(seRoot, docEnd);
+		docContent.addProduction(new StartElementGeneric(), docEnd);
+		Document document = new Document("Document");
+		document.addProduction(new StartDocument(), docContent);
+
+		// fragment
+		SchemaInformedFragmentContent fragmentContent = new SchemaInformedFragmentContent(
+				"FragmentContent");
+		fragmentContent.addProduction(seRoot, fragmentContent);
+		fragmentContent.addProduction(new StartElementGeneric(),
+				fragmentContent);
+		fragmentContent.addTerminalProduction(new EndDocument());
+		Fragment fragment = new Fragment("Fragment");
+		fragment.addProduction(new StartDocument(), fragmentContent);
+
+		return new SchemaInformedGrammars(gc, document, fragment, null);
+	}
+
+	static SchemaInformedFirstStartTag createSimpleContent(Datatype dt) {
+		SchemaInformedElement end = new SchemaInformedElement();
+		end.addTerminalProduction(new EndElement());
+		SchemaInformedFirstStartTag start = new SchemaInformedFirstStartTag(
+				end);
+		start.addProduction(new Characters(dt), end);
+		return start;
+	}
+
+	static QNameContext[] createQNames(int namespaceUriID, String uri,
+			String[] localNames) {
+		QNameContext[] qncs = new QNameContext[localNames.length];
+		for (int i = 0; i < localNames.length; i++) {
+			qncs[i] = new QNameContext(namespaceUriID, i, new QName(uri,
+					localNames[i]));
+		}
+		return qncs;
+	}
+}
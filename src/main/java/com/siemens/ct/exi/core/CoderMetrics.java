@@ -0,0 +1,180 @@
+/*
+ * Copyright (c) 2007-2018 Siemens AG
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * 
+ */
+
+package com.siemens.ct.exi.core;
+
+import com.siemens.ct.exi.core.grammars.event.EventType;
+import com.siemens.ct.exi.core.types.BuiltInType;
+
+/**
+ * Optional instrumentation of EXI body coders, string tables and stream
+ * coders. Register an implementation with
+ * {@link EXIFactory#setCoderMetrics(CoderMetrics)} before creating coders.
+ * 
+ * <p>
+ * All methods do nothing by default. Without registered metrics (the
+ * default) coders skip the notifications altogether. Notifications are
+ * issued by the coding thread; implementations shared by several coders need
+ * to be thread-safe.
+ * </p>
+ * 
+ * @author Daniel.Peintner.EXT@siemens.com
+ * @author Richard.Kuntschke@siemens.com
+ * 
+ */
+
+public interface CoderMetrics {
+
+	/** Byte counts reported for a stream */
+	public enum Channel {
+		/** EXI header (including cookie and options) */
+		HEADER,
+		/** entire body of non-compressed streams */
+		BODY,
+		/** structure channel of (pre-)compressed streams */
+		STRUCTURE,
+		/** one value channel of (pre-)compressed streams */
+		VALUE,
+		/** deflated output of compressed streams */
+		COMPRESSED
+	}
+
+	/** Timed coding phases */
+	public enum Phase {
+		/** header coding */
+		HEADER,
+		/**
+		 * body events from SD up to ED excluding compression (pull decoders
+		 * include the time spent by the application between events)
+		 */
+		STRUCTURE,
+		/** channel multiplexing and (de-)compression */
+		COMPRESSION
+	}
+
+	/**
+	 * Start of a stream body (SD).
+	 * 
+	 * @param encoding
+	 *            true for encoders, false for decoders
+	 */
+	public default void startStream(boolean encoding) {
+	}
+
+	/**
+	 * End of a stream body (ED).
+	 * 
+	 * @param encoding
+	 *            true for encoders, false for decoders
+	 */
+	public default void endStream(boolean encoding) {
+	}
+
+	/**
+	 * Event code written or read.
+	 * 
+	 * @param eventType
+	 *            event type
+	 * @param level
+	 *            event code level (1, 2 or 3)
+	 */
+	public default void event(EventType eventType, int level) {
+	}
+
+	/**
+	 * Typed value (encoder only).
+	 * 
+	 * @param builtInType
+	 *            EXI built-in type
+	 * @param valid
+	 *            false if the value did not match and is encoded as string
+	 */
+	public default void value(BuiltInType builtInType, boolean valid) {
+	}
+
+	/**
+	 * String table hit.
+	 * 
+	 * @param local
+	 *            true for a local value hit, false for a global value hit
+	 */
+	public default void stringHit(boolean local) {
+	}
+
+	/**
+	 * String table miss, the value is written as string literal.
+	 * 
+	 * @param characters
+	 *            number of characters (code points) of the literal
+	 */
+	public default void stringMiss(int characters) {
+	}
+
+	/**
+	 * Production learned by a built-in grammar.
+	 * 
+	 * @param eventType
+	 *            learned event type (SE, AT, EE or CH)
+	 */
+	public default void learnedProduction(EventType eventType) {
+	}
+
+	/**
+	 * New built-in element grammar created for an undeclared element.
+	 */
+	public default void builtInElementGrammar() {
+	}
+
+	/**
+	 * EXI profile limit (maxBuiltInElementGrammars or maxBuiltInProductions)
+	 * reached while encoding.
+	 * 
+	 * @param ghostProduction
+	 *            true if a ghost production is used, false if an xsi:type
+	 *            cast is inserted
+	 */
+	public default void profileLimitReached(boolean ghostProduction) {
+	}
+
+	/**
+	 * Bytes written for a channel.
+	 * 
+	 * @param channel
+	 *            channel
+	 * @param bytes
+	 *            number of bytes
+	 */
+	public default void bytes(Channel channel, long bytes) {
+	}
+
+	/**
+	 * Time spent in a coding phase.
+	 * 
+	 * @param phase
+	 *            phase
+	 * @param nanos
+	 *            elapsed time in nanoseconds
+	 */
+	public default void time(Phase phase, long nanos) {
+	}
+}
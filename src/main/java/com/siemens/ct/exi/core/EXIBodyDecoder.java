@@ -197,6 +197,194 @@ public interface EXIBodyDecoder {
 	 */
 	public QNameContext decodeEndElement() throws EXIException, IOException;
 
+	/**
+	 * Skips the remaining content of the current element, i.e., the element
+	 * whose start element was decoded last, including its end element.
+	 * Grammars and string tables are updated as usual but values are not
+	 * necessarily materialized.
+	 * 
+	 * @throws EXIException
+	 *             EXI exception
+	 * @throws IOException
+	 *             IO exception
+	 */
+	public default void skipElement() throws EXIException, IOException {
+		// current element is open
+		int depth = 1;
+
+		while (depth > 0) {
+			EventType et = next();
+			if (et == null) {
+				throw new EXIException(
+						"Premature end of stream while skipping element");
+			}
+			switch (et) {
+			case START_ELEMENT:
+			case START_ELEMENT_NS:
+			case START_ELEMENT_GENERIC:
+			case START_ELEMENT_GENERIC_UNDECLARED:
+				decodeStartElement();
+				depth++;
+				break;
+			case END_ELEMENT:
+			case END_ELEMENT_UNDECLARED:
+				decodeEndElement();
+				depth--;
+				break;
+			case ATTRIBUTE:
+			case ATTRIBUTE_NS:
+			case ATTRIBUTE_GENERIC:
+			case ATTRIBUTE_INVALID_VALUE:
+			case ATTRIBUTE_ANY_INVALID_VALUE:
+			case ATTRIBUTE_GENERIC_UNDECLARED:
+				decodeAttribute();
+				break;
+			case ATTRIBUTE_XSI_TYPE:
+				decodeAttributeXsiType();
+				break;
+			case ATTRIBUTE_XSI_NIL:
+				decodeAttributeXsiNil();
+				break;
+			case CHARACTERS:
+			case CHARACTERS_GENERIC:
+			case CHARACTERS_GENERIC_UNDECLARED:
+				decodeCharacters();
+				break;
+			case NAMESPACE_DECLARATION:
+				decodeNamespaceDeclaration();
+				break;
+			case SELF_CONTAINED:
+				// Note: fragment EE replaces the one of the SC element
+				decodeStartSelfContainedFragment();
+				break;
+			case DOC_TYPE:
+				decodeDocType();
+				break;
+			case ENTITY_REFERENCE:
+				decodeEntityReference();
+				break;
+			case COMMENT:
+				decodeComment();
+				break;
+			case PROCESSING_INSTRUCTION:
+				decodeProcessingInstruction();
+				break;
+			default:
+				throw new EXIException("Unexpected event " + et
+						+ " while skipping element");
+			}
+		}
+	}
+
+	/**
+	 * Decodes the remaining events and pushes them to the given visitor,
+	 * instead of pulling each event with <code>next()</code> and the matching
+	 * <code>decodeXXX()</code> method. Decoding ends with END_DOCUMENT or when
+	 * the visitor returns {@link EXIEventVisitor#STOP}.
+	 * 
+	 * <p>
+	 * The default implementation reports start elements right away, i.e.,
+	 * before their namespace declarations (the prefix may not be known yet).
+	 * </p>
+	 * 
+	 * @param visitor
+	 *            event visitor
+	 * @return true if END_DOCUMENT was reached, false if the visitor stopped
+	 * 
+	 * @throws EXIException
+	 *             EXI exception
+	 * @throws IOException
+	 *             IO exception
+	 */
+	public default boolean decode(EXIEventVisitor visitor)
+			throws EXIException, IOException {
+		// open elements
+		int depth = 0;
+
+		EventType et;
+		while ((et = next()) != null) {
+			int r = EXIEventVisitor.CONTINUE;
+			switch (et) {
+			case START_DOCUMENT:
+				decodeStartDocument();
+				r = visitor.startDocument();
+				break;
+			case END_DOCUMENT:
+				decodeEndDocument();
+				visitor.endDocument();
+				return true;
+			case START_ELEMENT:
+			case START_ELEMENT_NS:
+			case START_ELEMENT_GENERIC:
+			case START_ELEMENT_GENERIC_UNDECLARED:
+				QNameContext se = decodeStartElement();
+				depth++;
+				r = visitor.startElement(se, getElementPrefix());
+				break;
+			case END_ELEMENT:
+			case END_ELEMENT_UNDECLARED:
+				QNameContext ee = decodeEndElement();
+				depth--;
+				r = visitor.endElement(ee);
+				break;
+			case ATTRIBUTE:
+			case ATTRIBUTE_NS:
+			case ATTRIBUTE_GENERIC:
+			case ATTRIBUTE_INVALID_VALUE:
+			case ATTRIBUTE_ANY_INVALID_VALUE:
+			case ATTRIBUTE_GENERIC_UNDECLARED:
+				QNameContext at = decodeAttribute();
+				r = visitor.attribute(at, getAttributePrefix(),
+						getAttributeValue());
+				break;
+			case ATTRIBUTE_XSI_TYPE:
+				QNameContext xsiType = decodeAttributeXsiType();
+				r = visitor.attribute(xsiType, getAttributePrefix(),
+						getAttributeValue());
+				break;
+			case ATTRIBUTE_XSI_NIL:
+				QNameContext xsiNil = decodeAttributeXsiNil();
+				r = visitor.attribute(xsiNil, getAttributePrefix(),
+						getAttributeValue());
+				break;
+			case CHARACTERS:
+			case CHARACTERS_GENERIC:
+			case CHARACTERS_GENERIC_UNDECLARED:
+				r = visitor.characters(decodeCharacters());
+				break;
+			case NAMESPACE_DECLARATION:
+				visitor.namespaceDeclaration(decodeNamespaceDeclaration());
+				break;
+			case SELF_CONTAINED:
+				decodeStartSelfContainedFragment();
+				break;
+			case DOC_TYPE:
+				r = visitor.docType(decodeDocType());
+				break;
+			case ENTITY_REFERENCE:
+				r = visitor.entityReference(decodeEntityReference());
+				break;
+			case COMMENT:
+				r = visitor.comment(decodeComment());
+				break;
+			case PROCESSING_INSTRUCTION:
+				r = visitor.processingInstruction(decodeProcessingInstruction());
+				break;
+			default:
+				throw new EXIException("Unexpected event " + et);
+			}
+
+			if (r == EXIEventVisitor.STOP) {
+				return false;
+			} else if (r == EXIEventVisitor.SKIP_SUBTREE && depth > 0) {
+				// rest of the current element
+				skipElement();
+				depth--;
+			}
+		}
+		return true;
+	}
+
 	/**
 	 * Parses xsi:nil attribute
 	 * 
@@ -276,7 +464,9 @@ public interface EXIBodyDecoder {
 			throws EXIException, IOException;
 
 	/**
-	 * Prefix declarations for current context (element)
+	 * Prefix declarations for current context (element). The list is owned
+	 * by the decoder and re-used, it is valid until the next start element
+	 * is decoded. Callers that keep the declarations need to copy them.
 	 * 
 	 * @return list or null if no mappings are available
 	 */
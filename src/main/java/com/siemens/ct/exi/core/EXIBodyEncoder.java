@@ -32,6 +32,7 @@ import com.siemens.ct.exi.core.attributes.AttributeList;
 import com.siemens.ct.exi.core.exceptions.EXIException;
 import com.siemens.ct.exi.core.exceptions.ErrorHandler;
 import com.siemens.ct.exi.core.io.channel.EncoderChannel;
+import com.siemens.ct.exi.core.values.StringValue;
 import com.siemens.ct.exi.core.values.Value;
 
 /**
@@ -258,6 +259,33 @@ public interface EXIBodyEncoder {
 	 */
 	public void encodeCharacters(Value chars) throws EXIException, IOException;
 
+	/**
+	 * Supplies a chunk of characters, e.g. from a SAX
+	 * <code>characters</code> callback. Adjacent chunks are collected in one
+	 * re-used buffer, the array may be modified after the call returns.
+	 * 
+	 * <p>
+	 * The default implementation encodes each chunk as a string value of its
+	 * own.
+	 * </p>
+	 * 
+	 * @param ch
+	 *            characters
+	 * @param start
+	 *            start position in array
+	 * @param length
+	 *            number of characters to use from the array
+	 * 
+	 * @throws EXIException
+	 *             EXI exception
+	 * @throws IOException
+	 *             IO exception
+	 */
+	public default void encodeCharacters(char[] ch, int start, int length)
+			throws EXIException, IOException {
+		encodeCharacters(new StringValue(new String(ch, start, length)));
+	}
+
 	/**
 	 * Supplies content items to represent a DOCTYPE definition
 	 * 
@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2007-2018 Siemens AG
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * 
+ */
+
+package com.siemens.ct.exi.core;
+
+import com.siemens.ct.exi.core.container.DocType;
+import com.siemens.ct.exi.core.container.NamespaceDeclaration;
+import com.siemens.ct.exi.core.container.ProcessingInstruction;
+import com.siemens.ct.exi.core.context.QNameContext;
+import com.siemens.ct.exi.core.exceptions.EXIException;
+import com.siemens.ct.exi.core.values.Value;
+
+/**
+ * Receives the events of an EXI body pushed by
+ * {@link EXIBodyDecoder#decode(EXIEventVisitor)}.
+ * 
+ * <p>
+ * Event methods return {@link #CONTINUE}, {@link #SKIP_SUBTREE} or
+ * {@link #STOP}. Skipping ignores the remaining content of the current element
+ * (for {@link #startElement(QNameContext, String)} the element just started)
+ * up to and including its end element, no events are reported for it. Outside
+ * of elements and for end elements skipping is the same as continuing. Stop
+ * returns from <code>decode</code> immediately, a subsequent call resumes
+ * with the next event.
+ * </p>
+ * 
+ * <p>
+ * Namespace declarations of an element are reported before its start
+ * element so that the element prefix is known (see
+ * {@link EXIBodyDecoder#getElementPrefix()}). Values and containers may be
+ * re-used by the decoder and are valid during the callback only.
+ * </p>
+ * 
+ * @author Daniel.Peintner.EXT@siemens.com
+ * @author Richard.Kuntschke@siemens.com
+ * 
+ */
+
+public interface EXIEventVisitor {
+
+	public static final int CONTINUE = 0;
+	public static final int SKIP_SUBTREE = 1;
+	public static final int STOP = 2;
+
+	public default int startDocument() throws EXIException {
+		return CONTINUE;
+	}
+
+	public default void endDocument() throws EXIException {
+	}
+
+	/**
+	 * Start element.
+	 * 
+	 * @param qnc
+	 *            element qname
+	 * @param prefix
+	 *            element prefix, may be null
+	 * @return visit result
+	 * @throws EXIException
+	 *             EXI exception
+	 */
+	public default int startElement(QNameContext qnc, String prefix)
+			throws EXIException {
+		return CONTINUE;
+	}
+
+	public default int endElement(QNameContext qnc) throws EXIException {
+		return CONTINUE;
+	}
+
+	public default void namespaceDeclaration(NamespaceDeclaration nsDecl)
+			throws EXIException {
+	}
+
+	/**
+	 * Attribute including xsi:type and xsi:nil.
+	 * 
+	 * @param qnc
+	 *            attribute qname
+	 * @param prefix
+	 *            attribute prefix, may be null
+	 * @param value
+	 *            typed value
+	 * @return visit result
+	 * @throws EXIException
+	 *             EXI exception
+	 */
+	public default int attribute(QNameContext qnc, String prefix, Value value)
+			throws EXIException {
+		return CONTINUE;
+	}
+
+	public default int characters(Value value) throws EXIException {
+		return CONTINUE;
+	}
+
+	public default int comment(char[] chars) throws EXIException {
+		return CONTINUE;
+	}
+
+	public default int processingInstruction(ProcessingInstruction pi)
+			throws EXIException {
+		return CONTINUE;
+	}
+
+	public default int docType(DocType docType) throws EXIException {
+		return CONTINUE;
+	}
+
+	public default int entityReference(char[] name) throws EXIException {
+		return CONTINUE;
+	}
+}
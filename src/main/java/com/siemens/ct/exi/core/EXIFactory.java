@@ -309,6 +309,16 @@ public interface EXIFactory extends Cloneable {
 	public void setSelfContainedElements(QName[] scElements,
 			SelfContainedHandler scHandler);
 
+	/**
+	 * Returns the selfContained elements.
+	 * 
+	 * @return selfContained elements or null
+	 */
+	public default QName[] getSelfContainedElements() {
+		// no selfContained elements known by default
+		return null;
+	}
+
 	/**
 	 * Returns boolean value telling whether a certain element is encoded as
 	 * selfContained fragment.
@@ -444,6 +454,26 @@ public interface EXIFactory extends Cloneable {
 	 */
 	public boolean isUsingNonEvolvingGrammars();
 
+	/**
+	 * Sets the metrics that coders created afterwards report into. Metrics are
+	 * not part of the EXI options.
+	 * 
+	 * @param metrics
+	 *            coder metrics or null (default, no metrics)
+	 */
+	public default void setCoderMetrics(CoderMetrics metrics) {
+		// metrics not supported by default
+	}
+
+	/**
+	 * Returns the coder metrics.
+	 * 
+	 * @return coder metrics or null
+	 */
+	public default CoderMetrics getCoderMetrics() {
+		return null;
+	}
+
 	/**
 	 * Returns an <code>EXIBodyEncoder</code>
 	 * 
@@ -80,6 +80,9 @@ public class FidelityOptions {
 	protected boolean isLexicalValue = false;
 	protected boolean isSC = false;
 
+	/* modification counter */
+	protected int version = 0;
+
 	protected FidelityOptions() {
 		options = new HashSet<String>();
 	}
@@ -152,6 +155,7 @@ public class FidelityOptions {
 	 */
 	public void setFidelity(String key, boolean decision)
 			throws UnsupportedOption {
+		version++;
 		if (key.equals(FEATURE_STRICT)) {
 			if (decision) {
 				// no other features allowed
@@ -262,6 +266,16 @@ public class FidelityOptions {
 		return isStrict;
 	}
 
+	/**
+	 * Returns a counter that changes whenever an option is set, e.g., to
+	 * detect stale values derived from these options.
+	 * 
+	 * @return modification counter
+	 */
+	public final int getVersion() {
+		return version;
+	}
+
 	@Override
 	public boolean equals(Object o) {
 		if (o instanceof FidelityOptions) {
@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2007-2018 Siemens AG
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * 
+ */
+
+package com.siemens.ct.exi.core;
+
+import java.io.IOException;
+
+import com.siemens.ct.exi.core.exceptions.EXIException;
+
+/**
+ * Consumer of self-contained fragments that are decoded in parallel.
+ * 
+ * <p>
+ * {@link #decodeFragment(int, EXIBodyDecoder)} is called on a worker thread and
+ * turns the events of one fragment into a result (e.g., an object or a list of
+ * events). {@link #fragment(int, Object)} is called on the thread that started
+ * decoding, one fragment at a time.
+ * </p>
+ * 
+ * @param <T>
+ *            result type of a decoded fragment
+ * 
+ * @author Daniel.Peintner.EXT@siemens.com
+ * @author Richard.Kuntschke@siemens.com
+ * 
+ */
+
+public interface SelfContainedFragmentConsumer<T> {
+
+	/**
+	 * Decodes the events of a fragment. The decoder is positioned before the
+	 * SD event and must not be used after returning.
+	 * 
+	 * @param ordinal
+	 *            SC fragment ordinal
+	 * @param decoder
+	 *            fragment decoder
+	 * @return decoded fragment
+	 * @throws EXIException
+	 *             EXI exception
+	 * @throws IOException
+	 *             IO exception
+	 */
+	public T decodeFragment(int ordinal, EXIBodyDecoder decoder)
+			throws EXIException, IOException;
+
+	/**
+	 * Delivers a decoded fragment.
+	 * 
+	 * @param ordinal
+	 *            SC fragment ordinal
+	 * @param fragment
+	 *            decoded fragment
+	 * @throws EXIException
+	 *             EXI exception
+	 */
+	public void fragment(int ordinal, T fragment) throws EXIException;
+}
@@ -53,4 +53,23 @@ public interface SelfContainedHandler {
 	public void scElement(String uri, String localName, EncoderChannel channel)
 			throws EXIException;
 
+	/**
+	 * Receive notification of the end of a SC element. The channel is already
+	 * aligned to the byte boundary that terminates the SC fragment.
+	 * 
+	 * @param uri
+	 *            namespaceURI of of SC element
+	 * @param localName
+	 *            local-name of SC element
+	 * @param channel
+	 *            encoder channel
+	 * 
+	 * @throws EXIException
+	 *             EXI exception
+	 */
+	public default void scElementEnd(String uri, String localName,
+			EncoderChannel channel) throws EXIException {
+		// no notification by default
+	}
+
 }
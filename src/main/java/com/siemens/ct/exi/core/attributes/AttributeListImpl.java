@@ -24,6 +24,7 @@
 package com.siemens.ct.exi.core.attributes;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import javax.xml.namespace.QName;
@@ -35,6 +36,14 @@ import com.siemens.ct.exi.core.FidelityOptions;
 import com.siemens.ct.exi.core.container.NamespaceDeclaration;
 
 /**
+ * Attribute list that keeps attributes in reusable arrays.
+ * 
+ * <p>
+ * For schema-informed and canonical streams the EXI order is computed lazily
+ * as a permutation of the input order. Permutations are cached per attribute
+ * set (qnames in input order) so that recurring elements with the same
+ * attributes in the same order are ordered in linear time.
+ * </p>
  * 
  * @author Daniel.Peintner.EXT@siemens.com
  * @author Richard.Kuntschke@siemens.com
@@ -45,6 +54,9 @@ public class AttributeListImpl implements AttributeList {
 	public static final int XMLNS_PFX_START = Constants.XML_NS_ATTRIBUTE
 			.length() + 1;
 
+	/* number of cached ordering plans, power of two */
+	public static final int ORDERING_PLANS = 64;
+
 	// options
 	final protected boolean isSchemaInformed;
 	final protected boolean isCanonical;
@@ -61,11 +73,21 @@ public class AttributeListImpl implements AttributeList {
 	protected String xsiNil;
 	protected String xsiNilPrefix;
 
-	// attributes
-	final protected List<String> attributeURI;
-	final protected List<String> attributeLocalName;
-	final protected List<String> attributeValue;
-	final protected List<String> attributePrefix;
+	// attributes (input order)
+	protected int numberOfAttributes;
+	protected String[] attributeURI;
+	protected String[] attributeLocalName;
+	protected String[] attributeValue;
+	protected String[] attributePrefix;
+
+	// EXI order, index into input order
+	protected int[] attributeOrder;
+	protected boolean attributesOrdered;
+	// hash of attribute qnames in input order
+	protected int attributesSignature;
+
+	// cached orderings, direct-mapped by signature
+	final protected OrderingPlan[] orderingPlans;
 
 	// NS, prefix mappings
 	protected List<NamespaceDeclaration> nsDecls;
@@ -81,10 +103,13 @@ public class AttributeListImpl implements AttributeList {
 				FidelityOptions.FEATURE_PREFIX);
 
 		// attributes
-		attributeURI = new ArrayList<String>();
-		attributeLocalName = new ArrayList<String>();
-		attributeValue = new ArrayList<String>();
-		attributePrefix = new ArrayList<String>();
+		attributeURI = new String[8];
+		attributeLocalName = new String[8];
+		attributeValue = new String[8];
+		attributePrefix = new String[8];
+		attributeOrder = new int[8];
+		orderingPlans = new OrderingPlan[ORDERING_PLANS];
+		attributesOrdered = true;
 		// prefix to NS mappings
 		nsDecls = new ArrayList<NamespaceDeclaration>();
 	}
@@ -93,10 +118,10 @@ public class AttributeListImpl implements AttributeList {
 		hasXsiType = false;
 		hasXsiNil = false;
 
-		attributeURI.clear();
-		attributeLocalName.clear();
-		attributeValue.clear();
-		attributePrefix.clear();
+		// Note: stale references are overwritten by the next element
+		numberOfAttributes = 0;
+		attributesOrdered = true;
+		attributesSignature = 0;
 
 		xsiTypeRaw = null;
 
@@ -137,23 +162,34 @@ public class AttributeListImpl implements AttributeList {
 	 * Attributes
 	 */
 	public int getNumberOfAttributes() {
-		return attributeURI.size();
+		return numberOfAttributes;
 	}
 
 	public String getAttributeURI(int index) {
-		return attributeURI.get(index);
+		return attributeURI[getAttributeIndex(index)];
 	}
 
 	public String getAttributeLocalName(int index) {
-		return attributeLocalName.get(index);
+		return attributeLocalName[getAttributeIndex(index)];
 	}
 
 	public String getAttributeValue(int index) {
-		return attributeValue.get(index);
+		return attributeValue[getAttributeIndex(index)];
 	}
 
 	public String getAttributePrefix(int index) {
-		return attributePrefix.get(index);
+		return attributePrefix[getAttributeIndex(index)];
+	}
+
+	protected final int getAttributeIndex(int index) {
+		if (index < 0 || index >= numberOfAttributes) {
+			throw new IndexOutOfBoundsException("Attribute " + index
+					+ " out of " + numberOfAttributes);
+		}
+		if (!attributesOrdered) {
+			orderAttributes();
+		}
+		return attributeOrder[index];
 	}
 
 	private void setXsiType(String rawType, String xsiPrefix) {
@@ -272,34 +308,71 @@ public class AttributeListImpl implements AttributeList {
 
 	protected void insertAttribute(String uri, String localName, String pfx,
 			String value) {
-		if (this.isSchemaInformed || this.isCanonical) {
-			// sorted attributes
-			int i = this.getNumberOfAttributes();
-
-			// greater ?
-			while (i > 0 && isGreaterAttribute(i - 1, uri, localName)) {
-				// move right
-				i--;
-			}
+		int n = numberOfAttributes;
+		if (n == attributeURI.length) {
+			int newLength = n << 1;
+			attributeURI = Arrays.copyOf(attributeURI, newLength);
+			attributeLocalName = Arrays.copyOf(attributeLocalName, newLength);
+			attributeValue = Arrays.copyOf(attributeValue, newLength);
+			attributePrefix = Arrays.copyOf(attributePrefix, newLength);
+			attributeOrder = Arrays.copyOf(attributeOrder, newLength);
+		}
+		attributeURI[n] = uri;
+		attributeLocalName[n] = localName;
+		attributePrefix[n] = pfx;
+		attributeValue[n] = value;
+		numberOfAttributes++;
 
-			// update position i
-			attributeURI.add(i, uri);
-			attributeLocalName.add(i, localName);
-			attributePrefix.add(i, pfx);
-			attributeValue.add(i, value);
+		if (this.isSchemaInformed || this.isCanonical) {
+			// sorted attributes, see orderAttributes()
+			attributesSignature = (31 * attributesSignature + uri.hashCode())
+					* 31 + localName.hashCode();
+			attributesOrdered = false;
 		} else {
 			// attribute order does not matter
-			attributeURI.add(uri);
-			attributeLocalName.add(localName);
-			attributePrefix.add(pfx);
-			attributeValue.add(value);
+			attributeOrder[n] = n;
+		}
+	}
+
+	/*
+	 * When schemas are used, attribute events occur in lexical order sorted
+	 * first by qname localName then by qname uri.
+	 */
+	protected void orderAttributes() {
+		final int n = numberOfAttributes;
+		OrderingPlan plan = orderingPlans[attributesSignature
+				& (ORDERING_PLANS - 1)];
+		if (plan != null && plan.matches(this)) {
+			System.arraycopy(plan.order, 0, attributeOrder, 0, n);
+		} else {
+			// insertion sort (stable)
+			for (int i = 0; i < n; i++) {
+				int k = i;
+				// greater ?
+				while (k > 0
+						&& isGreaterAttribute(attributeOrder[k - 1],
+								attributeURI[i], attributeLocalName[i])) {
+					// move right
+					attributeOrder[k] = attributeOrder[k - 1];
+					k--;
+				}
+				attributeOrder[k] = i;
+			}
+			if (n > 1) {
+				orderingPlans[attributesSignature & (ORDERING_PLANS - 1)] = new OrderingPlan(
+						this);
+			}
 		}
+		attributesOrdered = true;
 	}
 
+	/**
+	 * Compares the attribute at the given index of the input order.
+	 */
 	protected final boolean isGreaterAttribute(int attributeIndex, String uri,
 			String localName) {
 
-		int compLocalName = getAttributeLocalName(attributeIndex).compareTo(
+		int compLocalName = attributeLocalName[attributeIndex].compareTo(
 				localName);
 
 		if (compLocalName > 0) {
@@ -310,7 +383,7 @@ public class AttributeListImpl implements AttributeList {
 			return false;
 		} else {
 			// localName's are equal
-			return (getAttributeURI(attributeIndex).compareTo(uri) > 0);
+			return (attributeURI[attributeIndex].compareTo(uri) > 0);
 		}
 	}
 
@@ -328,4 +401,39 @@ public class AttributeListImpl implements AttributeList {
 		}
 	}
 
+	/*
+	 * EXI order of a given attribute set in a given input order
+	 */
+	static final class OrderingPlan {
+		final int signature;
+		final String[] uris;
+		final String[] localNames;
+		final int[] order;
+
+		OrderingPlan(AttributeListImpl al) {
+			int n = al.numberOfAttributes;
+			signature = al.attributesSignature;
+			uris = Arrays.copyOf(al.attributeURI, n);
+			localNames = Arrays.copyOf(al.attributeLocalName, n);
+			order = Arrays.copyOf(al.attributeOrder, n);
+		}
+
+		boolean matches(AttributeListImpl al) {
+			if (signature != al.attributesSignature
+					|| order.length != al.numberOfAttributes) {
+				return false;
+			}
+			for (int i = 0; i < order.length; i++) {
+				// Note: names are mostly identical (interned) instances
+				if ((uris[i] != al.attributeURI[i] && !uris[i]
+						.equals(al.attributeURI[i]))
+						|| (localNames[i] != al.attributeLocalName[i] && !localNames[i]
+								.equals(al.attributeLocalName[i]))) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+
 }
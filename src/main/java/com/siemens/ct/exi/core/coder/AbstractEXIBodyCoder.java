@@ -25,12 +25,14 @@ package com.siemens.ct.exi.core.coder;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 import javax.xml.namespace.QName;
 
+import com.siemens.ct.exi.core.CoderMetrics;
 import com.siemens.ct.exi.core.Constants;
 import com.siemens.ct.exi.core.EXIFactory;
 import com.siemens.ct.exi.core.FidelityOptions;
@@ -38,6 +40,7 @@ import com.siemens.ct.exi.core.container.NamespaceDeclaration;
 import com.siemens.ct.exi.core.context.GrammarContext;
 import com.siemens.ct.exi.core.context.GrammarUriContext;
 import com.siemens.ct.exi.core.context.QNameContext;
+import com.siemens.ct.exi.core.context.ScopedNamespaceContext;
 import com.siemens.ct.exi.core.datatype.BooleanDatatype;
 import com.siemens.ct.exi.core.exceptions.EXIException;
 import com.siemens.ct.exi.core.exceptions.ErrorHandler;
@@ -48,9 +51,11 @@ import com.siemens.ct.exi.core.grammars.event.Event;
 import com.siemens.ct.exi.core.grammars.event.EventType;
 import com.siemens.ct.exi.core.grammars.event.StartElement;
 import com.siemens.ct.exi.core.grammars.grammar.BuiltInStartTag;
+import com.siemens.ct.exi.core.grammars.grammar.EventCodeLayout;
 import com.siemens.ct.exi.core.grammars.grammar.Grammar;
 import com.siemens.ct.exi.core.grammars.production.Production;
 import com.siemens.ct.exi.core.helpers.DefaultErrorHandler;
+import com.siemens.ct.exi.core.util.StringIndex;
 import com.siemens.ct.exi.core.util.xml.QNameUtilities;
 
 /**
@@ -69,6 +74,8 @@ public abstract class AbstractEXIBodyCoder {
 	protected final Grammars grammar;
 	protected final GrammarContext grammarContext;
 	protected final FidelityOptions fidelityOptions;
+	// feature mask for memoized event-code layouts
+	protected final int fidelityFeatures;
 	protected final boolean preservePrefix;
 	protected final boolean preserveLexicalValues;
 
@@ -84,12 +91,22 @@ public abstract class AbstractEXIBodyCoder {
 	protected ElementContext[] elementContextStack;
 	protected int elementContextStackIndex;
 	public static final int INITIAL_STACK_SIZE = 16;
+	// stack frames are re-used unless coders keep popped contexts around
+	protected boolean recycleElementContexts;
+
+	// prefix bindings of open elements
+	protected final ScopedNamespaceContext namespaceContext;
+	// decoders report declarations per element
+	protected boolean recordNamespaceDeclarations;
 
 	// runtime global elements
 	protected Map<QNameContext, StartElement> runtimeGlobalElements;
 
 	// runtime uris & names et cetera
 	List<RuntimeUriContext> runtimeUris;
+	// uri lookup (grammar uris are fixed, runtime uris reset for each run)
+	protected final StringIndex grammarUriIDs;
+	protected final StringIndex runtimeUriIDs;
 
 	// Xsi qname contexts
 	protected QNameContext xsiTypeContext;
@@ -104,6 +121,22 @@ public abstract class AbstractEXIBodyCoder {
 	protected final int maxBuiltInProductions;
 	protected int learnedProductions;
 
+	/**
+	 * Session mode (not part of the EXI specification): runtime tables
+	 * survive subsequent runs until a reset is requested
+	 */
+	protected boolean sessionMode;
+	protected boolean sessionResetPending;
+	// set by initForEachRun, false if the previous runtime state was kept
+	protected boolean runtimeStateCleared;
+
+	/** Metrics, null if not collected */
+	protected final CoderMetrics metrics;
+	// start of current body and time not spent on structure (nanoTime),
+	// metrics only
+	protected long metricsStart;
+	protected long metricsExcludedNanos;
+
 	public AbstractEXIBodyCoder(EXIFactory exiFactory) throws EXIException {
 		this.exiFactory = exiFactory;
 
@@ -112,6 +145,8 @@ public abstract class AbstractEXIBodyCoder {
 		this.nextUriID = this.gUris = grammarContext
 				.getNumberOfGrammarUriContexts();
 		this.fidelityOptions = exiFactory.getFidelityOptions();
+		this.fidelityFeatures = EventCodeLayout.getFeatures(fidelityOptions);
+		this.metrics = exiFactory.getCoderMetrics();
 
 		// preserve prefixes
 		preservePrefix = fidelityOptions
@@ -126,11 +161,16 @@ public abstract class AbstractEXIBodyCoder {
 		// init once (runtime lists et cetera)
 		runtimeGlobalElements = new HashMap<QNameContext, StartElement>();
 		runtimeUris = new ArrayList<RuntimeUriContext>();
+		grammarUriIDs = new StringIndex(this.gUris);
+		runtimeUriIDs = new StringIndex();
 		for (int i = 0; i < this.gUris; i++) {
-			this.runtimeUris.add(new RuntimeUriContext(this.grammarContext
-					.getGrammarUriContext(i)));
+			GrammarUriContext guc = this.grammarContext.getGrammarUriContext(i);
+			this.runtimeUris.add(new RuntimeUriContext(guc));
+			grammarUriIDs.put(guc.getNamespaceUri(), i);
 		}
 		elementContextStack = new ElementContext[INITIAL_STACK_SIZE];
+		recycleElementContexts = true;
+		namespaceContext = new ScopedNamespaceContext();
 
 		// Boolean datatype
 		booleanDatatype = new BooleanDatatype(null);
@@ -201,6 +241,9 @@ public abstract class AbstractEXIBodyCoder {
 					se.setGrammar(sig.getSchemaInformedElementFragmentGrammar());
 				} else {
 					se.setGrammar(new BuiltInStartTag());
+					if (metrics != null) {
+						metrics.builtInElementGrammar();
+					}
 				}
 				runtimeGlobalElements.put(qnc, se);
 			}
@@ -232,14 +275,20 @@ public abstract class AbstractEXIBodyCoder {
 	// re-init (rule stack etc)
 	protected void initForEachRun() throws EXIException, IOException {
 
-		// clear runtime data
-		this.runtimeGlobalElements.clear();
-		for (int i = 0; i < nextUriID; i++) {
-			this.runtimeUris.get(i).clear();
-		}
+		runtimeStateCleared = !sessionMode || sessionResetPending;
+		if (runtimeStateCleared) {
+			// clear runtime data
+			this.runtimeGlobalElements.clear();
+			for (int i = 0; i < nextUriID; i++) {
+				this.runtimeUris.get(i).clear();
+			}
+			runtimeUriIDs.clear();
 
-		// re-set schema-informed grammar IDs
-		nextUriID = this.gUris;
+			// re-set schema-informed grammar IDs
+			nextUriID = this.gUris;
+			sessionResetPending = false;
+		}
+		namespaceContext.clear();
 
 		// possible document/fragment grammar
 		Grammar startRule = exiFactory.isFragment() ? grammar
@@ -247,52 +296,82 @@ public abstract class AbstractEXIBodyCoder {
 
 		// (core) context
 		elementContextStackIndex = 0;
-		elementContextStack[elementContextStackIndex] = elementContext = new ElementContext(
-				null, startRule);
+		elementContext = newElementContext(null, startRule);
+	}
+
+	/**
+	 * Enables or disables session mode. In session mode string tables, runtime
+	 * URI/QName/prefix tables and learned built-in grammars are kept from one
+	 * stream to the next until {@link #resetSession()} is called. Streams coded
+	 * that way can only be decoded by a decoder in the very same state, see
+	 * <code>EXISessionEncoder</code> and <code>EXISessionDecoder</code>.
+	 * 
+	 * @param sessionMode
+	 *            keep runtime state across streams
+	 */
+	protected void setSessionMode(boolean sessionMode) {
+		this.sessionMode = sessionMode;
+		this.sessionResetPending = true;
+	}
+
+	/**
+	 * Drops all runtime state at the beginning of the next stream.
+	 */
+	protected void resetSession() {
+		this.sessionResetPending = true;
+	}
+
+	/**
+	 * Returns the number of runtime entries (URIs, QNames, prefixes and
+	 * learned global elements) added beyond the grammar. Encoder and decoder
+	 * report the same number for the same sequence of streams.
+	 * 
+	 * @return number of runtime entries
+	 */
+	protected int getRuntimeStateSize() {
+		int size = runtimeGlobalElements.size() + (nextUriID - gUris);
+		for (int i = 0; i < nextUriID; i++) {
+			RuntimeUriContext ruc = runtimeUris.get(i);
+			if (ruc.qnames != null) {
+				size += ruc.qnames.size();
+			}
+			if (ruc.prefixes != null) {
+				size += ruc.prefixes.size();
+			}
+		}
+		return size;
 	}
 
 	protected final void declarePrefix(String pfx, String uri) {
-		declarePrefix(new NamespaceDeclaration(uri, pfx));
+		if (recordNamespaceDeclarations) {
+			declarePrefix(new NamespaceDeclaration(uri, pfx));
+		} else {
+			namespaceContext.declarePrefix(pfx, uri);
+		}
 	}
 
 	protected final void declarePrefix(NamespaceDeclaration nsDecl) {
-		if (elementContext.nsDeclarations == null) {
-			elementContext.nsDeclarations = new ArrayList<NamespaceDeclaration>();
+		if (recordNamespaceDeclarations) {
+			if (elementContext.nsDeclarations == null) {
+				elementContext.nsDeclarations = elementContext
+						.recycledNsDeclarations();
+			}
+			assert (!elementContext.nsDeclarations.contains(nsDecl));
+			elementContext.nsDeclarations.add(nsDecl);
 		}
-		assert (!elementContext.nsDeclarations.contains(nsDecl));
-		elementContext.nsDeclarations.add(nsDecl);
+		namespaceContext.declarePrefix(nsDecl.prefix, nsDecl.namespaceURI);
 	}
 
 	protected final String getURI(String prefix) {
-		// check all stack items except last one (in reverse order)
-		for (int i = elementContextStackIndex; i > 0; i--) {
-			ElementContext ec = elementContextStack[i];
-			if (ec.nsDeclarations != null) {
-				for (int k = 0; k < ec.nsDeclarations.size(); k++) {
-					NamespaceDeclaration ns = ec.nsDeclarations.get(k);
-					if (ns.prefix.equals(prefix)) {
-						return ns.namespaceURI;
-					}
-				}
-			}
+		String uri = namespaceContext.getURI(prefix);
+		if (uri == null && prefix.length() == 0) {
+			uri = Constants.XML_NULL_NS_URI;
 		}
-		return prefix.length() == 0 ? Constants.XML_NULL_NS_URI : null;
+		return uri;
 	}
 
 	protected final String getPrefix(String uri) {
-		// check all stack items except first one
-		for (int i = 1; i <= elementContextStackIndex; i++) {
-			ElementContext ec = elementContextStack[i];
-			if (ec.nsDeclarations != null) {
-				for (int k = 0; k < ec.nsDeclarations.size(); k++) {
-					NamespaceDeclaration ns = ec.nsDeclarations.get(k);
-					if (ns.namespaceURI.equals(uri)) {
-						return ns.prefix;
-					}
-				}
-			}
-		}
-		return null;
+		return namespaceContext.getPrefix(uri);
 	}
 
 	protected void pushElement(Grammar updContextGrammar, StartElement se) {
@@ -307,17 +386,34 @@ public abstract class AbstractEXIBodyCoder {
 			elementContextStack = elementContextStackNew;
 		}
 
-		// create new stack item & push it
-		elementContextStack[elementContextStackIndex] = elementContext = new ElementContext(
-				se.getQNameContext(), se.getGrammar());
+		// create (or re-use) stack item & push it
+		elementContext = newElementContext(se.getQNameContext(),
+				se.getGrammar());
+		namespaceContext.pushScope();
+	}
+
+	private ElementContext newElementContext(QNameContext qnc, Grammar gr) {
+		ElementContext ec = elementContextStack[elementContextStackIndex];
+		if (ec == null || !recycleElementContexts) {
+			ec = new ElementContext(qnc, gr);
+			elementContextStack[elementContextStackIndex] = ec;
+		} else {
+			ec.reset(qnc, gr);
+		}
+		return ec;
 	}
 
 	protected final ElementContext popElement() {
 		assert (this.elementContextStackIndex > 0);
 		// pop element from stack
+		// Note: a recycled frame stays valid until the next push
 		ElementContext poppedEC = elementContextStack[elementContextStackIndex];
-		elementContextStack[elementContextStackIndex--] = null;
+		if (!recycleElementContexts) {
+			elementContextStack[elementContextStackIndex] = null;
+		}
+		elementContextStackIndex--;
 		elementContext = elementContextStack[elementContextStackIndex];
+		namespaceContext.popScope();
 
 		return poppedEC;
 	}
@@ -335,6 +431,7 @@ public abstract class AbstractEXIBodyCoder {
 			ruc = new RuntimeUriContext(uriID, uri);
 			this.runtimeUris.add(ruc);
 		}
+		runtimeUriIDs.put(uri, uriID);
 
 		return ruc;
 	}
@@ -344,14 +441,14 @@ public abstract class AbstractEXIBodyCoder {
 	}
 
 	public RuntimeUriContext getUri(String namespaceUri) {
-		for (int i = 0; i < nextUriID && i < runtimeUris.size(); i++) {
-			RuntimeUriContext ruc = runtimeUris.get(i);
-			if (ruc.namespaceUri.equals(namespaceUri)) {
-				return ruc;
+		int uriID = grammarUriIDs.get(namespaceUri);
+		if (uriID == Constants.NOT_FOUND) {
+			uriID = runtimeUriIDs.get(namespaceUri);
+			if (uriID == Constants.NOT_FOUND) {
+				return null;
 			}
 		}
-
-		return null;
+		return runtimeUris.get(uriID);
 	}
 
 	public RuntimeUriContext getUri(int namespaceUriID) {
@@ -375,19 +472,44 @@ public abstract class AbstractEXIBodyCoder {
 		Grammar gr; // may be modified while coding
 		List<NamespaceDeclaration> nsDeclarations; // prefix declarations
 		private Boolean isXmlSpacePreserve;
+		// declaration list kept for re-use
+		private List<NamespaceDeclaration> nsDeclarationsList;
 
-		public final QNameContext qnameContext;
+		// assigned by constructor and reset (re-used frame) only
+		private QNameContext qnameContext;
 
 		public ElementContext(QNameContext qnameContext, Grammar gr) {
 			this.qnameContext = qnameContext;
 			this.gr = gr;
 		}
 
+		public QNameContext getQNameContext() {
+			return qnameContext;
+		}
+
+		void reset(QNameContext qnameContext, Grammar gr) {
+			this.qnameContext = qnameContext;
+			this.gr = gr;
+			this.prefix = null;
+			this.sqname = null;
+			this.nsDeclarations = null;
+			this.isXmlSpacePreserve = null;
+		}
+
+		List<NamespaceDeclaration> recycledNsDeclarations() {
+			if (nsDeclarationsList == null) {
+				nsDeclarationsList = new ArrayList<NamespaceDeclaration>();
+			} else {
+				nsDeclarationsList.clear();
+			}
+			return nsDeclarationsList;
+		}
+
 		String getQNameAsString() {
 			if (sqname == null) {
 				if (preservePrefix) {
-					sqname = QNameUtilities.getQualifiedName(
-							qnameContext.getLocalName(), getPrefix());
+					sqname = getUri(qnameContext.getNamespaceUriID())
+							.getQualifiedName(qnameContext, getPrefix());
 				} else {
 					sqname = qnameContext.getDefaultQNameAsString();
 				}
@@ -421,6 +543,12 @@ public abstract class AbstractEXIBodyCoder {
 
 		List<QNameContext> qnames;
 		List<String> prefixes;
+		// runtime local-name and prefix lookup
+		StringIndex qnameIDs;
+		StringIndex prefixIDs;
+		// prefixed names (and their prefix) per local-name ID
+		private String[] qualifiedNames;
+		private String[] qualifiedNamePrefixes;
 
 		public RuntimeUriContext(int namespaceUriID, String namespaceUri) {
 			this(null, namespaceUriID, namespaceUri);
@@ -444,12 +572,48 @@ public abstract class AbstractEXIBodyCoder {
 			// Note: re-use existing lists for subsequent runs
 			if (qnames != null && qnames.size() > 0) {
 				qnames.clear();
+				qnameIDs.clear();
 			}
 			if (preservePrefix && prefixes != null && prefixes.size() > 0) {
 				prefixes.clear();
+				prefixIDs.clear();
+			}
+			if (qualifiedNames != null) {
+				// local-name IDs are assigned anew
+				Arrays.fill(qualifiedNames, null);
+				Arrays.fill(qualifiedNamePrefixes, null);
 			}
 		}
 
+		/*
+		 * Prefixed name of the element, the name of the last prefix used with
+		 * a local-name is kept so that repeated names are not concatenated
+		 * again
+		 */
+		String getQualifiedName(QNameContext qnc, String prefix) {
+			if (prefix == null || prefix.length() == 0) {
+				return qnc.getLocalName();
+			}
+			int id = qnc.getLocalNameID();
+			if (qualifiedNames == null || id >= qualifiedNames.length) {
+				int length = Math.max(id + 1, qualifiedNames == null ? 8
+						: 2 * qualifiedNames.length);
+				qualifiedNames = qualifiedNames == null ? new String[length]
+						: Arrays.copyOf(qualifiedNames, length);
+				qualifiedNamePrefixes = qualifiedNamePrefixes == null
+						? new String[length]
+						: Arrays.copyOf(qualifiedNamePrefixes, length);
+			}
+			String sqname = qualifiedNames[id];
+			if (sqname == null || !prefix.equals(qualifiedNamePrefixes[id])) {
+				sqname = QNameUtilities.getQualifiedName(qnc.getLocalName(),
+						prefix);
+				qualifiedNames[id] = sqname;
+				qualifiedNamePrefixes[id] = prefix;
+			}
+			return sqname;
+		}
+
 		public QNameContext getQNameContext(String localName) {
 			QNameContext qnc = null;
 			if (guc != null) {
@@ -458,14 +622,10 @@ public abstract class AbstractEXIBodyCoder {
 			if (qnc == null) {
 				// check runtime qnames
 				if (qnames != null && qnames.size() != 0) {
-					// Idea: recent entries more likely?
-					for (int i = qnames.size() - 1; i >= 0; i--) {
-						qnc = qnames.get(i);
-						if (qnc.getLocalName().equals(localName)) {
-							return qnc;
-						}
+					int id = qnameIDs.get(localName);
+					if (id != Constants.NOT_FOUND) {
+						qnc = qnames.get(id);
 					}
-					qnc = null; // none found
 				}
 
 			}
@@ -504,11 +664,13 @@ public abstract class AbstractEXIBodyCoder {
 		protected QNameContext addQNameContext(String localName) {
 			if (qnames == null) {
 				qnames = new ArrayList<QNameContext>();
+				qnameIDs = new StringIndex();
 			}
 			int localNameID = getNumberOfQNames();
 			QName qName = new QName(namespaceUri, localName);
 			QNameContext qnc = new QNameContext(namespaceUriID, localNameID,
 					qName);
+			qnameIDs.put(localName, qnames.size());
 			qnames.add(qnc);
 
 			return qnc;
@@ -533,6 +695,11 @@ public abstract class AbstractEXIBodyCoder {
 
 			if (prefixes == null) {
 				prefixes = new ArrayList<String>();
+				prefixIDs = new StringIndex();
+			}
+			// first entry wins
+			if (prefixIDs.get(prefix) == Constants.NOT_FOUND) {
+				prefixIDs.put(prefix, prefixes.size());
 			}
 			prefixes.add(prefix);
 		}
@@ -548,10 +715,9 @@ public abstract class AbstractEXIBodyCoder {
 			}
 			if (id == Constants.NOT_FOUND) {
 				if (prefixes != null && prefixes.size() != 0) {
-					for (int i = 0; i < prefixes.size(); i++) {
-						if (prefixes.get(i).equals(prefix)) {
-							return i + sub;
-						}
+					int i = prefixIDs.get(prefix);
+					if (i != Constants.NOT_FOUND) {
+						return i + sub;
 					}
 				}
 			}
@@ -26,8 +26,10 @@ package com.siemens.ct.exi.core.coder;
 import java.io.IOException;
 import java.util.Iterator;
 
+import com.siemens.ct.exi.core.CoderMetrics;
 import com.siemens.ct.exi.core.Constants;
 import com.siemens.ct.exi.core.EXIBodyDecoder;
+import com.siemens.ct.exi.core.EXIEventVisitor;
 import com.siemens.ct.exi.core.EXIFactory;
 import com.siemens.ct.exi.core.container.DocType;
 import com.siemens.ct.exi.core.container.NamespaceDeclaration;
@@ -45,12 +47,14 @@ import com.siemens.ct.exi.core.grammars.event.Event;
 import com.siemens.ct.exi.core.grammars.event.EventType;
 import com.siemens.ct.exi.core.grammars.event.StartElement;
 import com.siemens.ct.exi.core.grammars.event.StartElementNS;
+import com.siemens.ct.exi.core.grammars.grammar.EventCodeLayout;
 import com.siemens.ct.exi.core.grammars.grammar.Grammar;
 import com.siemens.ct.exi.core.grammars.grammar.GrammarType;
 import com.siemens.ct.exi.core.grammars.grammar.SchemaInformedFirstStartTagGrammar;
 import com.siemens.ct.exi.core.grammars.grammar.SchemaInformedGrammar;
 import com.siemens.ct.exi.core.grammars.production.Production;
 import com.siemens.ct.exi.core.io.channel.DecoderChannel;
+import com.siemens.ct.exi.core.jfr.EXIFlightRecorder;
 import com.siemens.ct.exi.core.types.BuiltIn;
 import com.siemens.ct.exi.core.types.TypeDecoder;
 import com.siemens.ct.exi.core.util.MethodsBag;
@@ -73,10 +77,15 @@ public abstract class AbstractEXIBodyDecoder extends AbstractEXIBodyCoder
 	protected Event nextEvent;
 	protected Grammar nextGrammar;
 	protected EventType nextEventType;
+	// event type read but not pushed to a visitor yet (stop)
+	protected EventType pendingVisitEventType;
 
 	// decoder stream
 	protected DecoderChannel channel;
 
+	// flight recorder document event (if recording)
+	protected Object flightDocument;
+
 	// namespaces/prefixes
 	protected final int numberOfUriContexts;
 
@@ -100,6 +109,9 @@ public abstract class AbstractEXIBodyDecoder extends AbstractEXIBodyCoder
 
 		numberOfUriContexts = this.grammar.getGrammarContext()
 				.getNumberOfGrammarUriContexts();
+
+		// getDeclaredPrefixDeclarations()
+		recordNamespaceDeclarations = true;
 	}
 
 	@Override
@@ -121,12 +133,22 @@ public abstract class AbstractEXIBodyDecoder extends AbstractEXIBodyCoder
 	protected void initForEachRun() throws EXIException, IOException {
 		super.initForEachRun();
 
-		stringDecoder.clear();
-		if (this.exiFactory.getSharedStrings() != null) {
-			stringDecoder.setSharedStrings(this.exiFactory.getSharedStrings());
+		pendingVisitEventType = null;
+		if (runtimeStateCleared) {
+			stringDecoder.clear();
+			if (this.exiFactory.getSharedStrings() != null) {
+				stringDecoder.setSharedStrings(this.exiFactory
+						.getSharedStrings());
+			}
 		}
 	}
 
+	@Override
+	protected int getRuntimeStateSize() {
+		// plus global string table entries
+		return super.getRuntimeStateSize() + stringDecoder.getValueContainerSize();
+	}
+
 	protected QNameContext decodeQName(DecoderChannel channel)
 			throws IOException {
 		// decode uri & local-name
@@ -238,13 +260,14 @@ public abstract class AbstractEXIBodyDecoder extends AbstractEXIBodyCoder
 		return prefix;
 	}
 
-	protected final EventType decodeEventCode() throws EXIException,
+	protected EventType decodeEventCode() throws EXIException,
 			IOException {
 		// 1st level
 		final Grammar currentGrammar = getCurrentGrammar();
-		int codeLength = fidelityOptions
-				.get1stLevelEventCodeLength(currentGrammar);
-		int ec = channel.decodeNBitUnsignedInteger(codeLength);
+		final EventCodeLayout layout = currentGrammar
+				.getEventCodeLayout(fidelityOptions, fidelityFeatures);
+		int ec = channel.decodeNBitUnsignedInteger(layout
+				.get1stLevelEventCodeLength());
 
 		assert (ec >= 0);
 
@@ -254,6 +277,9 @@ public abstract class AbstractEXIBodyDecoder extends AbstractEXIBodyCoder
 			nextEvent = ei.getEvent();
 			nextGrammar = ei.getNextGrammar();
 			nextEventType = nextEvent.getEventType();
+			if (metrics != null) {
+				metrics.event(nextEventType, 1);
+			}
 		} else {
 			// 2nd level ?
 			int ec2 = decode2ndLevelEventCode();
@@ -261,14 +287,19 @@ public abstract class AbstractEXIBodyDecoder extends AbstractEXIBodyCoder
 			if (ec2 == Constants.NOT_FOUND) {
 				// 3rd level
 				int ec3 = decode3rdLevelEventCode();
-				nextEventType = fidelityOptions.get3rdLevelEventType(ec3);
+				nextEventType = layout.get3rdLevelEventType(ec3);
+				if (metrics != null) {
+					metrics.event(nextEventType, 3);
+				}
 
 				// un-set event
 				nextEvent = null;
 				nextGrammar = null;
 			} else {
-				nextEventType = fidelityOptions.get2ndLevelEventType(ec2,
-						currentGrammar);
+				nextEventType = layout.get2ndLevelEventType(ec2);
+				if (metrics != null) {
+					metrics.event(nextEventType, 2);
+				}
 
 				if (nextEventType == EventType.ATTRIBUTE_INVALID_VALUE) {
 					updateInvalidValueAttribute(ec);
@@ -327,13 +358,13 @@ public abstract class AbstractEXIBodyDecoder extends AbstractEXIBodyCoder
 	}
 
 	protected int decode2ndLevelEventCode() throws EXIException, IOException {
-		final Grammar currentGrammar = getCurrentGrammar();
-		// int ch2 = currentGrammar.get2ndLevelCharacteristics(fidelityOptions);
-		int ch2 = fidelityOptions.get2ndLevelCharacteristics(currentGrammar);
-		int level2 = channel.decodeNBitUnsignedInteger(MethodsBag
-				.getCodingLength(ch2));
+		final EventCodeLayout layout = getCurrentGrammar().getEventCodeLayout(
+				fidelityOptions, fidelityFeatures);
+		int ch2 = layout.get2ndLevelCharacteristics();
+		int level2 = channel.decodeNBitUnsignedInteger(layout
+				.get2ndLevelEventCodeLength());
 
-		int ch3 = fidelityOptions.get3rdLevelCharacteristics();
+		int ch3 = layout.get3rdLevelCharacteristics();
 
 		if (ch3 > 0) {
 			return (level2 < (ch2 - 1) ? level2 : Constants.NOT_FOUND);
@@ -343,19 +374,32 @@ public abstract class AbstractEXIBodyDecoder extends AbstractEXIBodyCoder
 	}
 
 	protected int decode3rdLevelEventCode() throws EXIException, IOException {
-		int ch3 = fidelityOptions.get3rdLevelCharacteristics();
-
-		return channel.decodeNBitUnsignedInteger(MethodsBag
-				.getCodingLength(ch3));
+		return channel.decodeNBitUnsignedInteger(getCurrentGrammar()
+				.getEventCodeLayout(fidelityOptions, fidelityFeatures)
+				.get3rdLevelEventCodeLength());
 	}
 
 	protected final void decodeStartDocumentStructure() throws EXIException {
+		flightDocument = EXIFlightRecorder.beginDocument();
+		if (metrics != null) {
+			metrics.startStream(false);
+			metricsExcludedNanos = 0L;
+			metricsStart = System.nanoTime();
+		}
 		// update current rule
 		updateCurrentRule(getCurrentGrammar().getProduction(0).getNextGrammar());
 	}
 
 	protected final void decodeEndDocumentStructure() throws EXIException,
 			IOException {
+		if (metrics != null) {
+			metrics.time(CoderMetrics.Phase.STRUCTURE, System.nanoTime()
+					- metricsStart - metricsExcludedNanos);
+			metrics.endStream(false);
+		}
+		EXIFlightRecorder.endDocument(flightDocument, false,
+				exiFactory.getCodingMode(), -1L);
+		flightDocument = null;
 		// Debug check for EXI profile stream consistency ?
 		if (this.limitGrammarLearning) {
 			if (this.maxBuiltInElementGrammars != -1) {
@@ -488,6 +532,9 @@ public abstract class AbstractEXIBodyDecoder extends AbstractEXIBodyCoder
 
 		// learn start-element, necessary for FragmentContent grammar
 		getCurrentGrammar().learnStartElement(nextSE);
+		if (metrics != null) {
+			metrics.learnedProduction(EventType.START_ELEMENT);
+		}
 		// push element
 		pushElement(nextGrammar.getElementContentGrammar(), nextSE);
 
@@ -509,6 +556,9 @@ public abstract class AbstractEXIBodyDecoder extends AbstractEXIBodyCoder
 		// learn start-element ?
 		final Grammar currentGrammar = getCurrentGrammar();
 		currentGrammar.learnStartElement(nextSE);
+		if (metrics != null) {
+			metrics.learnedProduction(EventType.START_ELEMENT);
+		}
 
 		// push element
 		pushElement(currentGrammar.getElementContentGrammar(), nextSE);
@@ -528,6 +578,9 @@ public abstract class AbstractEXIBodyDecoder extends AbstractEXIBodyCoder
 			throws EXIException, IOException {
 		// learn end-element event ?
 		getCurrentGrammar().learnEndElement();
+		if (metrics != null) {
+			metrics.learnedProduction(EventType.END_ELEMENT);
+		}
 		// pop element
 		return popElement();
 	}
@@ -722,6 +775,9 @@ public abstract class AbstractEXIBodyDecoder extends AbstractEXIBodyCoder
 		decodeAttributeGenericStructureOnly();
 		getCurrentGrammar()
 				.learnAttribute(new Attribute(attributeQNameContext));
+		if (metrics != null) {
+			metrics.learnedProduction(EventType.ATTRIBUTE);
+		}
 	}
 
 	private final void decodeAttributeGenericStructureOnly()
@@ -752,6 +808,9 @@ public abstract class AbstractEXIBodyDecoder extends AbstractEXIBodyCoder
 		// learn character event ?
 		final Grammar currentGrammar = getCurrentGrammar();
 		currentGrammar.learnCharacters();
+		if (metrics != null) {
+			metrics.learnedProduction(EventType.CHARACTERS);
+		}
 		// update current rule
 		updateCurrentRule(currentGrammar.getElementContentGrammar());
 	}
@@ -817,4 +876,163 @@ public abstract class AbstractEXIBodyDecoder extends AbstractEXIBodyCoder
 		throw new RuntimeException("[EXI] SelfContained");
 	}
 
+	public boolean decode(EXIEventVisitor visitor) throws EXIException,
+			IOException {
+		return decodeEvents(visitor);
+	}
+
+	/**
+	 * Pushes events to the visitor by means of the pull methods
+	 * <code>next()</code> and <code>decodeXXX()</code>.
+	 * 
+	 * @param visitor
+	 *            event visitor
+	 * @return true if END_DOCUMENT was reached, false if the visitor stopped
+	 * @throws EXIException
+	 *             EXI exception
+	 * @throws IOException
+	 *             IO exception
+	 */
+	protected final boolean decodeEvents(EXIEventVisitor visitor)
+			throws EXIException, IOException {
+		// start element waiting for its NS events
+		QNameContext pendingElement = null;
+		// > 0 while skipping
+		int skipDepth = 0;
+
+		while (true) {
+			EventType et;
+			if (pendingVisitEventType != null) {
+				et = pendingVisitEventType;
+				pendingVisitEventType = null;
+			} else {
+				et = next();
+				if (et == null) {
+					return true;
+				}
+			}
+
+			int r = EXIEventVisitor.CONTINUE;
+			if (pendingElement != null
+					&& et != EventType.NAMESPACE_DECLARATION) {
+				r = visitor.startElement(pendingElement, getElementPrefix());
+				pendingElement = null;
+				if (r == EXIEventVisitor.STOP) {
+					pendingVisitEventType = et;
+					return false;
+				} else if (r == EXIEventVisitor.SKIP_SUBTREE) {
+					skipDepth = 1;
+				}
+				r = EXIEventVisitor.CONTINUE;
+			}
+
+			switch (et) {
+			case START_DOCUMENT:
+				decodeStartDocument();
+				r = visitor.startDocument();
+				break;
+			case END_DOCUMENT:
+				decodeEndDocument();
+				visitor.endDocument();
+				return true;
+			case START_ELEMENT:
+			case START_ELEMENT_NS:
+			case START_ELEMENT_GENERIC:
+			case START_ELEMENT_GENERIC_UNDECLARED:
+				QNameContext se = decodeStartElement();
+				if (skipDepth > 0) {
+					skipDepth++;
+				} else {
+					pendingElement = se;
+				}
+				break;
+			case END_ELEMENT:
+			case END_ELEMENT_UNDECLARED:
+				QNameContext ee = decodeEndElement();
+				if (skipDepth > 0) {
+					skipDepth--;
+				} else if (visitor.endElement(ee) == EXIEventVisitor.STOP) {
+					return false;
+				}
+				break;
+			case ATTRIBUTE:
+			case ATTRIBUTE_NS:
+			case ATTRIBUTE_GENERIC:
+			case ATTRIBUTE_INVALID_VALUE:
+			case ATTRIBUTE_ANY_INVALID_VALUE:
+			case ATTRIBUTE_GENERIC_UNDECLARED:
+				QNameContext at = decodeAttribute();
+				if (skipDepth == 0) {
+					r = visitor.attribute(at, getAttributePrefix(),
+							getAttributeValue());
+				}
+				break;
+			case ATTRIBUTE_XSI_TYPE:
+				QNameContext xsiType = decodeAttributeXsiType();
+				if (skipDepth == 0) {
+					r = visitor.attribute(xsiType, getAttributePrefix(),
+							getAttributeValue());
+				}
+				break;
+			case ATTRIBUTE_XSI_NIL:
+				QNameContext xsiNil = decodeAttributeXsiNil();
+				if (skipDepth == 0) {
+					r = visitor.attribute(xsiNil, getAttributePrefix(),
+							getAttributeValue());
+				}
+				break;
+			case CHARACTERS:
+			case CHARACTERS_GENERIC:
+			case CHARACTERS_GENERIC_UNDECLARED:
+				Value ch = decodeCharacters();
+				if (skipDepth == 0) {
+					r = visitor.characters(ch);
+				}
+				break;
+			case NAMESPACE_DECLARATION:
+				NamespaceDeclaration nsDecl = decodeNamespaceDeclaration();
+				if (skipDepth == 0) {
+					visitor.namespaceDeclaration(nsDecl);
+				}
+				break;
+			case SELF_CONTAINED:
+				decodeStartSelfContainedFragment();
+				break;
+			case DOC_TYPE:
+				DocType docType = decodeDocType();
+				if (skipDepth == 0) {
+					r = visitor.docType(docType);
+				}
+				break;
+			case ENTITY_REFERENCE:
+				char[] er = decodeEntityReference();
+				if (skipDepth == 0) {
+					r = visitor.entityReference(er);
+				}
+				break;
+			case COMMENT:
+				char[] cm = decodeComment();
+				if (skipDepth == 0) {
+					r = visitor.comment(cm);
+				}
+				break;
+			case PROCESSING_INSTRUCTION:
+				ProcessingInstruction pi = decodeProcessingInstruction();
+				if (skipDepth == 0) {
+					r = visitor.processingInstruction(pi);
+				}
+				break;
+			default:
+				throw new EXIException("Unexpected event " + et);
+			}
+
+			if (r == EXIEventVisitor.STOP) {
+				return false;
+			} else if (r == EXIEventVisitor.SKIP_SUBTREE
+					&& getElementContext().getQNameContext() != null) {
+				skipDepth = 1;
+			}
+		}
+	}
+
 }
@@ -25,10 +25,12 @@ package com.siemens.ct.exi.core.coder;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import javax.xml.namespace.QName;
 
+import com.siemens.ct.exi.core.CoderMetrics;
 import com.siemens.ct.exi.core.Constants;
 import com.siemens.ct.exi.core.EXIBodyEncoder;
 import com.siemens.ct.exi.core.EXIFactory;
@@ -49,18 +51,22 @@ import com.siemens.ct.exi.core.grammars.event.DatatypeEvent;
 import com.siemens.ct.exi.core.grammars.event.EventType;
 import com.siemens.ct.exi.core.grammars.event.StartElement;
 import com.siemens.ct.exi.core.grammars.event.StartElementNS;
+import com.siemens.ct.exi.core.grammars.grammar.EventCodeLayout;
 import com.siemens.ct.exi.core.grammars.grammar.Grammar;
 import com.siemens.ct.exi.core.grammars.grammar.GrammarType;
 import com.siemens.ct.exi.core.grammars.grammar.SchemaInformedFirstStartTagGrammar;
 import com.siemens.ct.exi.core.grammars.grammar.SchemaInformedGrammar;
 import com.siemens.ct.exi.core.grammars.production.Production;
 import com.siemens.ct.exi.core.io.channel.EncoderChannel;
+import com.siemens.ct.exi.core.jfr.EXIFlightRecorder;
 import com.siemens.ct.exi.core.types.BuiltIn;
 import com.siemens.ct.exi.core.types.TypeEncoder;
 import com.siemens.ct.exi.core.util.MethodsBag;
 import com.siemens.ct.exi.core.util.xml.QNameUtilities;
 import com.siemens.ct.exi.core.values.BooleanValue;
+import com.siemens.ct.exi.core.values.CharSliceValue;
 import com.siemens.ct.exi.core.values.QNameValue;
+import com.siemens.ct.exi.core.values.ReusableStringValue;
 import com.siemens.ct.exi.core.values.StringValue;
 import com.siemens.ct.exi.core.values.Value;
 import com.siemens.ct.exi.core.values.ValueType;
@@ -86,6 +92,12 @@ public abstract class AbstractEXIBodyEncoder extends AbstractEXIBodyCoder
 	/** Output Channel */
 	protected EncoderChannel channel;
 
+	/** Channel length at start of body (-1 if reported) */
+	protected int bodyStartLength = -1;
+
+	/** Flight recorder document event (if recording) */
+	protected Object flightDocument;
+
 	/** Type Encoder */
 	protected final TypeEncoder typeEncoder;
 
@@ -121,16 +133,27 @@ public abstract class AbstractEXIBodyEncoder extends AbstractEXIBodyCoder
 	public void initForEachRun() throws EXIException, IOException {
 		super.initForEachRun();
 
-		learnedProductions = 0;
-		stringEncoder.clear();
-		if (this.exiFactory.getSharedStrings() != null) {
-			stringEncoder.setSharedStrings(this.exiFactory.getSharedStrings());
+		if (runtimeStateCleared) {
+			learnedProductions = 0;
+			stringEncoder.clear();
+			if (this.exiFactory.getSharedStrings() != null) {
+				stringEncoder.setSharedStrings(this.exiFactory
+						.getSharedStrings());
+			}
 		}
 
 		bChars.clear();
+		pendingChunks = false;
+		cbufferLength = 0;
 		isXmlSpacePreserve = false;
 	}
 
+	@Override
+	protected int getRuntimeStateSize() {
+		// plus global string table entries
+		return super.getRuntimeStateSize() + stringEncoder.getValueContainerSize();
+	}
+
 	protected QNameContext encodeQName(String namespaceUri, String localName,
 			EncoderChannel channel) throws IOException {
 		// uri
@@ -258,6 +281,16 @@ public abstract class AbstractEXIBodyEncoder extends AbstractEXIBodyCoder
 	 */
 	public void flush() throws IOException {
 		channel.flush();
+		if (bodyStartLength >= 0) {
+			long bytes = channel.getLength() - bodyStartLength;
+			bodyStartLength = -1;
+			if (metrics != null) {
+				metrics.bytes(CoderMetrics.Channel.BODY, bytes);
+			}
+			EXIFlightRecorder.endDocument(flightDocument, true,
+					exiFactory.getCodingMode(), bytes);
+			flightDocument = null;
+		}
 	}
 
 	/*
@@ -270,55 +303,115 @@ public abstract class AbstractEXIBodyEncoder extends AbstractEXIBodyCoder
 	}
 
 	protected boolean isTypeValid(Datatype datatype, Value value) {
-		return typeEncoder.isValid(datatype, value);
+		boolean valid = typeEncoder.isValid(datatype, value);
+		if (metrics != null) {
+			metrics.value(datatype.getBuiltInType(), valid);
+		}
+		return valid;
 	}
 
 	protected abstract void writeValue(QNameContext valueContext)
 			throws IOException;
 
+	/*
+	 * Productions (common cases)
+	 */
+
+	protected Production getProduction(Grammar grammar, EventType eventType) {
+		return grammar.getProduction(eventType);
+	}
+
+	protected Production getStartElementProduction(Grammar grammar,
+			String namespaceURI, String localName) {
+		return grammar.getStartElementProduction(namespaceURI, localName);
+	}
+
+	protected Production getAttributeProduction(Grammar grammar,
+			String namespaceURI, String localName) {
+		return grammar.getAttributeProduction(namespaceURI, localName);
+	}
+
 	/*
 	 * Event-Codes
 	 */
 
+	protected final int get2ndLevelEventCode(EventType eventType,
+			Grammar grammar) {
+		return grammar.getEventCodeLayout(fidelityOptions, fidelityFeatures)
+				.get2ndLevelEventCode(eventType);
+	}
+
 	protected void encode1stLevelEventCode(int pos) throws IOException {
-		int codeLength = fidelityOptions
-				.get1stLevelEventCodeLength(getCurrentGrammar());
+		int codeLength = getCurrentGrammar().getEventCodeLayout(
+				fidelityOptions, fidelityFeatures).get1stLevelEventCodeLength();
 		if (codeLength > 0) {
 			channel.encodeNBitUnsignedInteger(pos, codeLength);
 		}
+		if (metrics != null) {
+			eventCodeMetrics(1, pos);
+		}
+	}
+
+	// Note: reports the event type of the event-code in the current grammar
+	protected final void eventCodeMetrics(int level, int pos) {
+		final Grammar currentGrammar = getCurrentGrammar();
+		EventType eventType;
+		switch (level) {
+		case 1:
+			eventType = currentGrammar.getProduction(pos).getEvent()
+					.getEventType();
+			break;
+		case 2:
+			eventType = currentGrammar.getEventCodeLayout(fidelityOptions,
+					fidelityFeatures).get2ndLevelEventType(pos);
+			break;
+		default:
+			eventType = currentGrammar.getEventCodeLayout(fidelityOptions,
+					fidelityFeatures).get3rdLevelEventType(pos);
+			break;
+		}
+		metrics.event(eventType, level);
 	}
 
 	protected void encode2ndLevelEventCode(int pos) throws IOException {
 		// 1st level
 		final Grammar currentGrammar = getCurrentGrammar();
+		final EventCodeLayout layout = currentGrammar
+				.getEventCodeLayout(fidelityOptions, fidelityFeatures);
 		channel.encodeNBitUnsignedInteger(currentGrammar.getNumberOfEvents(),
-				fidelityOptions.get1stLevelEventCodeLength(currentGrammar));
+				layout.get1stLevelEventCodeLength());
 
 		// 2nd level
-		// int ch2 = currentGrammar.get2ndLevelCharacteristics(fidelityOptions);
-		int ch2 = fidelityOptions.get2ndLevelCharacteristics(currentGrammar);
-		assert (pos < ch2);
+		assert (pos < layout.get2ndLevelCharacteristics());
 
-		channel.encodeNBitUnsignedInteger(pos, MethodsBag.getCodingLength(ch2));
+		channel.encodeNBitUnsignedInteger(pos,
+				layout.get2ndLevelEventCodeLength());
+		if (metrics != null) {
+			eventCodeMetrics(2, pos);
+		}
 	}
 
 	protected void encode3rdLevelEventCode(int pos) throws IOException {
 		// 1st level
 		final Grammar currentGrammar = getCurrentGrammar();
+		final EventCodeLayout layout = currentGrammar
+				.getEventCodeLayout(fidelityOptions, fidelityFeatures);
 		channel.encodeNBitUnsignedInteger(currentGrammar.getNumberOfEvents(),
-				fidelityOptions.get1stLevelEventCodeLength(currentGrammar));
+				layout.get1stLevelEventCodeLength());
 
 		// 2nd level
-		// int ch2 = currentGrammar.get2ndLevelCharacteristics(fidelityOptions);
-		int ch2 = fidelityOptions.get2ndLevelCharacteristics(currentGrammar);
+		int ch2 = layout.get2ndLevelCharacteristics();
 		int ec2 = ch2 > 0 ? ch2 - 1 : 0; // any 2nd level events
-		channel.encodeNBitUnsignedInteger(ec2, MethodsBag.getCodingLength(ch2));
+		channel.encodeNBitUnsignedInteger(ec2,
+				layout.get2ndLevelEventCodeLength());
 
 		// 3rd level
-		int ch3 = fidelityOptions.get3rdLevelCharacteristics();
-
-		assert (pos < ch3);
-		channel.encodeNBitUnsignedInteger(pos, MethodsBag.getCodingLength(ch3));
+		assert (pos < layout.get3rdLevelCharacteristics());
+		channel.encodeNBitUnsignedInteger(pos,
+				layout.get3rdLevelEventCodeLength());
+		if (metrics != null) {
+			eventCodeMetrics(3, pos);
+		}
 	}
 
 	public void encodeStartDocument() throws EXIException, IOException {
@@ -328,6 +421,14 @@ public abstract class AbstractEXIBodyEncoder extends AbstractEXIBodyCoder
 		}
 		initForEachRun();
 
+		bodyStartLength = channel.getLength();
+		flightDocument = EXIFlightRecorder.beginDocument();
+		if (metrics != null) {
+			metrics.startStream(true);
+			metricsExcludedNanos = 0L;
+			metricsStart = System.nanoTime();
+		}
+
 		Production ei = getCurrentGrammar().getProduction(
 				EventType.START_DOCUMENT);
 
@@ -336,6 +437,9 @@ public abstract class AbstractEXIBodyEncoder extends AbstractEXIBodyCoder
 		if (ei == null) {
 			throw new EXIException("No EXI Event found for startDocument");
 		}
+		if (metrics != null) {
+			metrics.event(EventType.START_DOCUMENT, 1);
+		}
 
 		// update current rule
 		updateCurrentRule(ei.getNextGrammar());
@@ -356,6 +460,12 @@ public abstract class AbstractEXIBodyEncoder extends AbstractEXIBodyCoder
 			throw new EXIException("No EXI Event found for endDocument");
 		}
 
+		if (metrics != null) {
+			metrics.time(CoderMetrics.Phase.STRUCTURE, System.nanoTime()
+					- metricsStart - metricsExcludedNanos);
+			metrics.endStream(true);
+		}
+
 		lastEvent = EventType.END_DOCUMENT;
 	}
 
@@ -377,7 +487,7 @@ public abstract class AbstractEXIBodyEncoder extends AbstractEXIBodyCoder
 		StartElement nextSE;
 
 		Grammar currentGrammar = getCurrentGrammar();
-		if ((ei = currentGrammar.getStartElementProduction(uri, localName)) != null) {
+		if ((ei = getStartElementProduction(currentGrammar, uri, localName)) != null) {
 			assert (ei.getEvent().isEventType(EventType.START_ELEMENT));
 			// encode 1st level EventCode
 			encode1stLevelEventCode(ei.getEventCode());
@@ -421,7 +531,7 @@ public abstract class AbstractEXIBodyEncoder extends AbstractEXIBodyCoder
 				updContextRule = ei.getNextGrammar();
 			} else {
 				// Undeclared SE(*) can be found on 2nd level
-				int ecSEundeclared = fidelityOptions.get2ndLevelEventCode(
+				int ecSEundeclared = get2ndLevelEventCode(
 						EventType.START_ELEMENT_GENERIC_UNDECLARED,
 						currentGrammar);
 
@@ -467,6 +577,9 @@ public abstract class AbstractEXIBodyEncoder extends AbstractEXIBodyCoder
 			// SE_Undecl(*) because of FragmentContent!)
 			currentGrammar.learnStartElement(nextSE);
 			this.productionLearningCounting(currentGrammar);
+			if (metrics != null) {
+				metrics.learnedProduction(EventType.START_ELEMENT);
+			}
 		}
 
 		// push element
@@ -541,6 +654,11 @@ public abstract class AbstractEXIBodyEncoder extends AbstractEXIBodyCoder
 
 		}
 
+		if (metrics != null && retVal != ProfileDisablingMechanism.NONE) {
+			metrics.profileLimitReached(
+					retVal == ProfileDisablingMechanism.GHOST_PRODUCTION);
+		}
+
 		return retVal;
 	}
 
@@ -573,7 +691,7 @@ public abstract class AbstractEXIBodyEncoder extends AbstractEXIBodyCoder
 
 			// event code
 			final Grammar currentGrammar = getCurrentGrammar();
-			int ec2 = fidelityOptions.get2ndLevelEventCode(
+			int ec2 = get2ndLevelEventCode(
 					EventType.NAMESPACE_DECLARATION, currentGrammar);
 			assert (fidelityOptions.get2ndLevelEventType(ec2, currentGrammar) == EventType.NAMESPACE_DECLARATION);
 			encode2ndLevelEventCode(ec2);
@@ -600,14 +718,14 @@ public abstract class AbstractEXIBodyEncoder extends AbstractEXIBodyCoder
 		checkPendingCharacters(EventType.END_ELEMENT);
 
 		Grammar currentGrammar = getCurrentGrammar();
-		Production ei = currentGrammar.getProduction(EventType.END_ELEMENT);
+		Production ei = getProduction(currentGrammar, EventType.END_ELEMENT);
 
 		if (ei != null) {
 			// encode EventCode (common case)
 			encode1stLevelEventCode(ei.getEventCode());
 		} else {
 			// Undeclared EE can be found on 2nd level
-			int ecEEundeclared = fidelityOptions.get2ndLevelEventCode(
+			int ecEEundeclared = get2ndLevelEventCode(
 					EventType.END_ELEMENT_UNDECLARED, currentGrammar);
 
 			if (ecEEundeclared == Constants.NOT_FOUND) {
@@ -642,6 +760,9 @@ public abstract class AbstractEXIBodyEncoder extends AbstractEXIBodyCoder
 					// learn end-element event ?
 					currentGrammar.learnEndElement();
 					this.productionLearningCounting(currentGrammar);
+					if (metrics != null) {
+						metrics.learnedProduction(EventType.END_ELEMENT);
+					}
 					break;
 				}
 			}
@@ -668,6 +789,9 @@ public abstract class AbstractEXIBodyEncoder extends AbstractEXIBodyCoder
 		lastEvent = EventType.END_ELEMENT;
 	}
 
+	// re-used for attribute list values
+	private final ReusableStringValue attributeValue = new ReusableStringValue();
+
 	public void encodeAttributeList(AttributeList attributes)
 			throws EXIException, IOException {
 		// 1. NS
@@ -690,10 +814,10 @@ public abstract class AbstractEXIBodyEncoder extends AbstractEXIBodyCoder
 
 		// 4. Remaining Attributes
 		for (int i = 0; i < attributes.getNumberOfAttributes(); i++) {
+			attributeValue.setValue(attributes.getAttributeValue(i));
 			encodeAttribute(attributes.getAttributeURI(i),
 					attributes.getAttributeLocalName(i),
-					attributes.getAttributePrefix(i), new StringValue(
-							attributes.getAttributeValue(i)));
+					attributes.getAttributePrefix(i), attributeValue);
 		}
 	}
 
@@ -744,7 +868,7 @@ public abstract class AbstractEXIBodyEncoder extends AbstractEXIBodyCoder
 
 		final Grammar currentGrammar = getCurrentGrammar();
 
-		int ec2 = fidelityOptions.get2ndLevelEventCode(
+		int ec2 = get2ndLevelEventCode(
 				EventType.ATTRIBUTE_XSI_TYPE, currentGrammar);
 
 		if (ec2 != Constants.NOT_FOUND) {
@@ -785,7 +909,7 @@ public abstract class AbstractEXIBodyEncoder extends AbstractEXIBodyCoder
 				if (ei != null) {
 					encode1stLevelEventCode(ei.getEventCode());
 				} else {
-					ec2 = fidelityOptions.get2ndLevelEventCode(
+					ec2 = get2ndLevelEventCode(
 							EventType.ATTRIBUTE_GENERIC_UNDECLARED,
 							currentGrammar);
 					if (ec2 != Constants.NOT_FOUND) {
@@ -809,6 +933,9 @@ public abstract class AbstractEXIBodyEncoder extends AbstractEXIBodyCoder
 							}
 						}
 						currentGrammar.learnAttribute(new Attribute(qncType));
+						if (metrics != null) {
+							metrics.learnedProduction(EventType.ATTRIBUTE);
+						}
 					} else {
 						throw new EXIException("TypeCast " + type
 								+ " not encodable!");
@@ -894,7 +1021,7 @@ public abstract class AbstractEXIBodyEncoder extends AbstractEXIBodyCoder
 				}
 
 				// schema-valid boolean
-				int ec2 = fidelityOptions.get2ndLevelEventCode(
+				int ec2 = get2ndLevelEventCode(
 						EventType.ATTRIBUTE_XSI_NIL, siCurrentRule);
 
 				if (ec2 != Constants.NOT_FOUND) {
@@ -991,7 +1118,7 @@ public abstract class AbstractEXIBodyEncoder extends AbstractEXIBodyCoder
 			throws IOException {
 		final Grammar currentGrammar = getCurrentGrammar();
 		// schema-invalid AT
-		int ec2ATdeviated = fidelityOptions.get2ndLevelEventCode(
+		int ec2ATdeviated = get2ndLevelEventCode(
 				EventType.ATTRIBUTE_INVALID_VALUE, currentGrammar);
 		encode2ndLevelEventCode(ec2ATdeviated);
 		// encode 3rd level event-code
@@ -1016,7 +1143,7 @@ public abstract class AbstractEXIBodyEncoder extends AbstractEXIBodyCoder
 		Grammar next;
 
 		Grammar currentGrammar = getCurrentGrammar();
-		if ((ei = currentGrammar.getAttributeProduction(uri, localName)) != null) {
+		if ((ei = getAttributeProduction(currentGrammar, uri, localName)) != null) {
 			// declared AT(uri:localName)
 			Attribute at = (Attribute) (ei.getEvent());
 			qnc = at.getQNameContext();
@@ -1163,7 +1290,7 @@ public abstract class AbstractEXIBodyEncoder extends AbstractEXIBodyCoder
 
 	private void encodeAttributeEventCodeUndeclared(Grammar currentGrammar,
 			String localName) throws IOException, EXIException {
-		int ecATundeclared = fidelityOptions.get2ndLevelEventCode(
+		int ecATundeclared = get2ndLevelEventCode(
 				EventType.ATTRIBUTE_GENERIC_UNDECLARED, currentGrammar);
 
 		if (ecATundeclared == Constants.NOT_FOUND) {
@@ -1208,6 +1335,9 @@ public abstract class AbstractEXIBodyEncoder extends AbstractEXIBodyCoder
 		// learn attribute event
 		currentGrammar.learnAttribute(new Attribute(qnc));
 		this.productionLearningCounting(currentGrammar);
+		if (metrics != null) {
+			metrics.learnedProduction(EventType.ATTRIBUTE);
+		}
 
 		return qnc;
 	}
@@ -1466,17 +1596,27 @@ public abstract class AbstractEXIBodyEncoder extends AbstractEXIBodyCoder
 		return newLen;
 	}
 
-	/** character buffer for CH trimming, replacing, collapsing */
-	private char[] cbuffer;
+	/** character buffer for CH chunks, trimming, replacing, collapsing */
+	private char[] cbuffer = new char[64];
+	// pending characters are chunks in cbuffer (instead of bChars values)
+	private boolean pendingChunks;
+	private int cbufferLength;
+	// re-used value for cbuffer content
+	private final CharSliceValue cbufferValue = new CharSliceValue();
+
+	private void ensureCBufferCapacity(int capacity) {
+		if (cbuffer.length < capacity) {
+			cbuffer = Arrays.copyOf(cbuffer,
+					Math.max(capacity, cbuffer.length << 1));
+		}
+	}
 
 	private int modeValuesToCBuffer() {
 		int len = 0;
 		for (int i = 0; i < bChars.size(); i++) {
 			len += bChars.get(i).getCharactersLength();
 		}
-		if (cbuffer == null || cbuffer.length < len) {
-			cbuffer = new char[len];
-		}
+		ensureCBufferCapacity(len);
 		int pos = 0;
 		for (int i = 0; i < bChars.size(); i++) {
 			Value v = bChars.get(i);
@@ -1489,91 +1629,121 @@ public abstract class AbstractEXIBodyEncoder extends AbstractEXIBodyCoder
 
 	protected void checkPendingCharacters(EventType nextEvent)
 			throws EXIException, IOException {
-		final int numberOfValues = bChars.size();
-		if (numberOfValues > 0) {
-			if (numberOfValues == 1
-					&& bChars.get(0).getValueType() != ValueType.STRING) {
-				// typed data uses its own whitespace rules
-				encodeCharactersForce(bChars.get(0));
+		if (pendingChunks) {
+			pendingChunks = false;
+			int len = cbufferLength;
+			cbufferLength = 0;
+			encodeCBuffer(nextEvent, len);
+		} else {
+			final int numberOfValues = bChars.size();
+			if (numberOfValues > 0) {
+				if (numberOfValues == 1
+						&& (bChars.get(0).getValueType() != ValueType.STRING || isPreserveCharacters())) {
+					// typed data uses its own whitespace rules, preserved
+					// data is encoded as is
+					encodeCharactersForce(bChars.get(0));
+				} else {
+					// else: string or multiple typed values
+					encodeCBuffer(nextEvent, modeValuesToCBuffer());
+				}
+				bChars.clear();
+			}
+		}
+	}
+
+	private boolean isPreserveCharacters() {
+		return preserveLexicalValues || this.isXmlSpacePreserve
+				|| getDatatypeWhiteSpace() == WhiteSpace.preserve;
+	}
+
+	/*
+	 * Encodes the first len characters of cbuffer. Whitespace is processed in
+	 * place and no String is created unless the string table misses.
+	 */
+	private void encodeCBuffer(EventType nextEvent, int len)
+			throws EXIException, IOException {
+		WhiteSpace ws = getDatatypeWhiteSpace();
+		// Don't we want to prune insignificant whitespace characters
+		if (!(preserveLexicalValues || this.isXmlSpacePreserve || ws == WhiteSpace.preserve)) {
+			if (ws == WhiteSpace.replace) {
+				// replace
+				// All occurrences of #x9 (tab), #xA (line feed) and #xD
+				// (carriage return) are replaced with #x20 (space)
+				replace(cbuffer, len);
+			} else if (ws == WhiteSpace.collapse) {
+				// collapse
+				// After the processing implied by replace, contiguous
+				// sequences of #x20's are collapsed to a single #x20,
+				// and leading and trailing #x20's are removed.
+				replace(cbuffer, len);
+				len = collapse(cbuffer, len);
 			} else {
-				// else: string or multiple typed values
-				WhiteSpace ws = getDatatypeWhiteSpace();
-				// Don't we want to prune insignificant whitespace characters
-				if (!(preserveLexicalValues || this.isXmlSpacePreserve || ws == WhiteSpace.preserve)) {
-					int len = modeValuesToCBuffer();
-					if (ws == WhiteSpace.replace) {
-						// replace
-						// All occurrences of #x9 (tab), #xA (line feed) and #xD
-						// (carriage return) are replaced with #x20 (space)
-						replace(cbuffer, len);
-					} else if (ws == WhiteSpace.collapse) {
-						// collapse
-						// After the processing implied by replace, contiguous
-						// sequences of #x20's are collapsed to a single #x20,
-						// and leading and trailing #x20's are removed.
-						replace(cbuffer, len);
-						len = collapse(cbuffer, len);
-					} else {
-						// schema-less, no datatype
-						// https://lists.w3.org/Archives/Public/public-exi/2015Oct/0008.html
-						// If it is schema-less:
-						// - Simple data (data between s+e) are all preserved.
-						// - For complex data (data between s+s, e+s, e+e), it
-						// is same as schema-informed case.
-						if ((this.lastEvent == EventType.START_ELEMENT
-								|| this.lastEvent == EventType.ATTRIBUTE
-								|| this.lastEvent == EventType.ATTRIBUTE_XSI_NIL
-								|| this.lastEvent == EventType.ATTRIBUTE_XSI_TYPE || this.lastEvent == EventType.NAMESPACE_DECLARATION)
-								&& (nextEvent == EventType.END_ELEMENT
-										|| nextEvent == EventType.COMMENT
-										|| nextEvent == EventType.PROCESSING_INSTRUCTION || nextEvent == EventType.DOC_TYPE)) {
-							// simple data --> preserve
-						} else {
-							// For complex data (data between s+s, e+s, e+e),
-							// whitespaces nodes (i.e.
-							// strings that consist solely of whitespaces) are
-							// removed
-							if (isSolelyWS(cbuffer, len)) {
-								len = 0;
-							}
-							// trim?
-							// len = trimWS(cbuffer, len);
-						}
-					}
-					if (len == 0) {
-						// --> omit empty string
-					} else {
-						StringValue sv = new StringValue(new String(cbuffer, 0,
-								len));
-						encodeCharactersForce(sv);
-					}
+				// schema-less, no datatype
+				// https://lists.w3.org/Archives/Public/public-exi/2015Oct/0008.html
+				// If it is schema-less:
+				// - Simple data (data between s+e) are all preserved.
+				// - For complex data (data between s+s, e+s, e+e), it
+				// is same as schema-informed case.
+				if ((this.lastEvent == EventType.START_ELEMENT
+						|| this.lastEvent == EventType.ATTRIBUTE
+						|| this.lastEvent == EventType.ATTRIBUTE_XSI_NIL
+						|| this.lastEvent == EventType.ATTRIBUTE_XSI_TYPE || this.lastEvent == EventType.NAMESPACE_DECLARATION)
+						&& (nextEvent == EventType.END_ELEMENT
+								|| nextEvent == EventType.COMMENT
+								|| nextEvent == EventType.PROCESSING_INSTRUCTION || nextEvent == EventType.DOC_TYPE)) {
+					// simple data --> preserve
 				} else {
-					// preserve data as is
-					if (numberOfValues == 1) {
-						encodeCharactersForce(bChars.get(0));
-					} else {
-						// collapse all events to a single one (not very
-						// efficient in most of the cases)
-						int len = modeValuesToCBuffer();
-						StringValue sv = new StringValue(new String(cbuffer, 0,
-								len));
-						encodeCharactersForce(sv);
+					// For complex data (data between s+s, e+s, e+e),
+					// whitespaces nodes (i.e.
+					// strings that consist solely of whitespaces) are
+					// removed
+					if (isSolelyWS(cbuffer, len)) {
+						len = 0;
 					}
+					// trim?
+					// len = trimWS(cbuffer, len);
 				}
 			}
-			bChars.clear();
+			if (len == 0) {
+				// --> omit empty string
+				return;
+			}
 		}
+		// else: preserve data as is
+
+		cbufferValue.setCharacters(cbuffer, 0, len);
+		encodeCharactersForce(cbufferValue);
 	}
 
 	public void encodeCharacters(Value chars) throws EXIException, IOException {
-		bChars.add(chars);
+		if (pendingChunks) {
+			int len = chars.getCharactersLength();
+			ensureCBufferCapacity(cbufferLength + len);
+			chars.getCharacters(cbuffer, cbufferLength);
+			cbufferLength += len;
+		} else {
+			bChars.add(chars);
+		}
+	}
+
+	public void encodeCharacters(char[] ch, int start, int length)
+			throws EXIException, IOException {
+		if (!pendingChunks) {
+			// keep values reported before
+			cbufferLength = bChars.isEmpty() ? 0 : modeValuesToCBuffer();
+			bChars.clear();
+			pendingChunks = true;
+		}
+		ensureCBufferCapacity(cbufferLength + length);
+		System.arraycopy(ch, start, cbuffer, cbufferLength, length);
+		cbufferLength += length;
 	}
 
 	protected void encodeCharactersForce(Value chars) throws EXIException,
 			IOException {
 
 		Grammar currentGrammar = getCurrentGrammar();
-		Production ei = currentGrammar.getProduction(EventType.CHARACTERS);
+		Production ei = getProduction(currentGrammar, EventType.CHARACTERS);
 
 		// valid value and valid event-code ?
 		if (ei != null
@@ -1584,7 +1754,7 @@ public abstract class AbstractEXIBodyEncoder extends AbstractEXIBodyCoder
 			// on
 			encode1stLevelEventCode(ei.getEventCode());
 			// writeValue(getElementContext().eqname.getQName());
-			writeValue(getElementContext().qnameContext);
+			writeValue(getElementContext().getQNameContext());
 			// update current rule
 			updateCurrentRule(ei.getNextGrammar());
 		} else {
@@ -1596,15 +1766,14 @@ public abstract class AbstractEXIBodyEncoder extends AbstractEXIBodyCoder
 				encode1stLevelEventCode(ei.getEventCode());
 				// encode schema-invalid content as string
 				isTypeValid(BuiltIn.getDefaultDatatype(), chars);
-				writeValue(getElementContext().qnameContext);
+				writeValue(getElementContext().getQNameContext());
 				// update current rule
 				updateCurrentRule(ei.getNextGrammar());
 			} else {
 				// Undeclared CH can be found on 2nd level
-				int ecCHundeclared = fidelityOptions
-						.get2ndLevelEventCode(
-								EventType.CHARACTERS_GENERIC_UNDECLARED,
-								currentGrammar);
+				int ecCHundeclared = get2ndLevelEventCode(
+						EventType.CHARACTERS_GENERIC_UNDECLARED,
+						currentGrammar);
 
 				if (ecCHundeclared == Constants.NOT_FOUND) {
 					if (exiFactory.isFragment()) {
@@ -1642,6 +1811,9 @@ public abstract class AbstractEXIBodyEncoder extends AbstractEXIBodyCoder
 						// learn characters event ?
 						currentGrammar.learnCharacters();
 						this.productionLearningCounting(currentGrammar);
+						if (metrics != null) {
+							metrics.learnedProduction(EventType.CHARACTERS);
+						}
 						// next rule
 						updContextRule = currentGrammar
 								.getElementContentGrammar();
@@ -1650,7 +1822,7 @@ public abstract class AbstractEXIBodyEncoder extends AbstractEXIBodyCoder
 
 					// content as string
 					isTypeValid(BuiltIn.getDefaultDatatype(), chars);
-					writeValue(getElementContext().qnameContext);
+					writeValue(getElementContext().getQNameContext());
 					// update current rule
 					updateCurrentRule(updContextRule);
 				}
@@ -1664,7 +1836,7 @@ public abstract class AbstractEXIBodyEncoder extends AbstractEXIBodyCoder
 			checkPendingCharacters(EventType.DOC_TYPE);
 
 			// DOCTYPE can be found on 2nd level
-			int ec2 = fidelityOptions.get2ndLevelEventCode(EventType.DOC_TYPE,
+			int ec2 = get2ndLevelEventCode(EventType.DOC_TYPE,
 					getCurrentGrammar());
 			encode2ndLevelEventCode(ec2);
 
@@ -1698,7 +1870,7 @@ public abstract class AbstractEXIBodyEncoder extends AbstractEXIBodyCoder
 
 			// EntityReference can be found on 2nd level
 			Grammar currentGrammar = getCurrentGrammar();
-			int ec2 = fidelityOptions.get2ndLevelEventCode(
+			int ec2 = get2ndLevelEventCode(
 					EventType.ENTITY_REFERENCE, currentGrammar);
 			encode2ndLevelEventCode(ec2);
 
@@ -1724,7 +1896,7 @@ public abstract class AbstractEXIBodyEncoder extends AbstractEXIBodyCoder
 			encode3rdLevelEventCode(ec3);
 
 			// encode CM content
-			writeString(new String(ch, start, length));
+			channel.encodeString(ch, start, length);
 
 			// update current rule
 			updateCurrentRule(currentGrammar.getElementContentGrammar());
@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 2007-2018 Siemens AG
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * 
+ */
+
+package com.siemens.ct.exi.core.coder;
+
+import java.io.IOException;
+
+import com.siemens.ct.exi.core.EXIFactory;
+import com.siemens.ct.exi.core.exceptions.EXIException;
+import com.siemens.ct.exi.core.grammars.GrammarAutomaton;
+import com.siemens.ct.exi.core.grammars.event.EventType;
+import com.siemens.ct.exi.core.grammars.event.StartElement;
+import com.siemens.ct.exi.core.grammars.grammar.Grammar;
+import com.siemens.ct.exi.core.grammars.production.Production;
+
+/**
+ * EXI decoder for bit or byte-aligned streams that decodes event-codes of
+ * schema-informed grammars by means of a compiled {@link GrammarAutomaton}.
+ * Grammars that are not part of the automaton (e.g., built-in grammars) are
+ * decoded as usual.
+ * 
+ * @author Daniel.Peintner.EXT@siemens.com
+ * @author Richard.Kuntschke@siemens.com
+ * 
+ */
+
+public class EXIBodyDecoderCompiled extends EXIBodyDecoderInOrder {
+
+	protected final GrammarAutomaton automaton;
+	protected final boolean has3rdLevel;
+
+	// grammar the state belongs to (predicted from the last transition)
+	protected Grammar stateGrammar;
+	protected int state;
+
+	public EXIBodyDecoderCompiled(EXIFactory exiFactory,
+			GrammarAutomaton automaton) throws EXIException {
+		super(exiFactory);
+		if (!fidelityOptions.equals(automaton.getFidelityOptions())) {
+			throw new EXIException(
+					"Grammar automaton compiled for different fidelity options: "
+							+ automaton.getFidelityOptions());
+		}
+		this.automaton = automaton;
+		this.has3rdLevel = fidelityOptions.get3rdLevelCharacteristics() > 0;
+	}
+
+	@Override
+	public void initForEachRun() throws EXIException, IOException {
+		stateGrammar = null;
+		super.initForEachRun();
+	}
+
+	protected final int getState(Grammar grammar) {
+		if (grammar != stateGrammar) {
+			stateGrammar = grammar;
+			state = automaton.getState(grammar);
+		}
+		return state;
+	}
+
+	@Override
+	protected EventType decodeEventCode() throws EXIException, IOException {
+		final int s = getState(getCurrentGrammar());
+		if (s == GrammarAutomaton.NO_STATE) {
+			return super.decodeEventCode();
+		}
+
+		// 1st level
+		int ec = channel.decodeNBitUnsignedInteger(automaton
+				.getEventCodeLength(s));
+
+		if (ec < automaton.getNumberOfEvents(s)) {
+			Production ei = automaton.getProduction(s, ec);
+			nextEvent = ei.getEvent();
+			nextGrammar = ei.getNextGrammar();
+			nextEventType = automaton.getEventType(s, ec);
+			if (metrics != null) {
+				metrics.event(nextEventType, 1);
+			}
+			// next event is decoded with the element grammar for SE(qname)
+			// and with the next grammar otherwise
+			if (nextEventType == EventType.START_ELEMENT) {
+				stateGrammar = ((StartElement) nextEvent).getGrammar();
+				state = automaton.getElementState(s, ec);
+			} else {
+				stateGrammar = nextGrammar;
+				state = automaton.getNextState(s, ec);
+			}
+		} else {
+			// 2nd level
+			int ch2 = automaton.get2ndLevelCharacteristics(s);
+			int ec2 = channel.decodeNBitUnsignedInteger(automaton
+					.get2ndLevelEventCodeLength(s));
+
+			if (ec2 >= (has3rdLevel ? ch2 - 1 : ch2)) {
+				// 3rd level
+				int ec3 = decode3rdLevelEventCode();
+				nextEventType = fidelityOptions.get3rdLevelEventType(ec3);
+				if (metrics != null) {
+					metrics.event(nextEventType, 3);
+				}
+
+				// un-set event
+				nextEvent = null;
+				nextGrammar = null;
+			} else {
+				nextEventType = automaton.get2ndLevelEventType(s, ec2);
+				if (metrics != null) {
+					metrics.event(nextEventType, 2);
+				}
+
+				if (nextEventType == EventType.ATTRIBUTE_INVALID_VALUE) {
+					updateInvalidValueAttribute(ec);
+				} else {
+					// un-set event
+					nextEvent = null;
+					nextGrammar = null;
+				}
+			}
+		}
+
+		return nextEventType;
+	}
+}
@@ -28,6 +28,7 @@ import java.io.InputStream;
 import java.util.List;
 
 import com.siemens.ct.exi.core.CodingMode;
+import com.siemens.ct.exi.core.EXIEventVisitor;
 import com.siemens.ct.exi.core.EXIFactory;
 import com.siemens.ct.exi.core.container.DocType;
 import com.siemens.ct.exi.core.container.NamespaceDeclaration;
@@ -52,10 +53,40 @@ import com.siemens.ct.exi.core.values.Value;
 
 public class EXIBodyDecoderInOrder extends AbstractEXIBodyDecoder {
 
+	// values are read but not materialized
+	protected boolean discardValues;
+
 	public EXIBodyDecoderInOrder(EXIFactory exiFactory) throws EXIException {
 		super(exiFactory);
 	}
 
+	/**
+	 * Sets the discard mode. In discard mode attribute and character values
+	 * are read without being materialized (string values are still added to
+	 * the string tables) and <code>null</code> is returned as value.
+	 * 
+	 * @param discardValues
+	 *            whether values are discarded
+	 */
+	public void setDiscardValues(boolean discardValues) {
+		this.discardValues = discardValues;
+	}
+
+	public boolean isDiscardValues() {
+		return discardValues;
+	}
+
+	@Override
+	public void skipElement() throws EXIException, IOException {
+		boolean discard = isDiscardValues();
+		setDiscardValues(true);
+		try {
+			super.skipElement();
+		} finally {
+			setDiscardValues(discard);
+		}
+	}
+
 	public void setInputStream(InputStream is) throws EXIException, IOException {
 		updateInputStream(is);
 
@@ -147,7 +178,7 @@ public class EXIBodyDecoderInOrder extends AbstractEXIBodyDecoder {
 			throw new EXIException("Invalid decode state: "
 					+ this.nextEventType);
 		}
-		return ec.qnameContext;
+		return ec.getQNameContext();
 	}
 
 	public List<NamespaceDeclaration> getDeclaredPrefixDeclarations() {
@@ -185,8 +216,14 @@ public class EXIBodyDecoderInOrder extends AbstractEXIBodyDecoder {
 	}
 
 	protected void readAttributeContent(Datatype dt) throws IOException {
-		attributeValue = typeDecoder.readValue(dt, attributeQNameContext,
-				channel, stringDecoder);
+		if (discardValues) {
+			typeDecoder.skipValue(dt, attributeQNameContext, channel,
+					stringDecoder);
+			attributeValue = null;
+		} else {
+			attributeValue = typeDecoder.readValue(dt, attributeQNameContext,
+					channel, stringDecoder);
+		}
 	}
 
 	protected void readAttributeContent() throws IOException, EXIException {
@@ -273,7 +310,16 @@ public class EXIBodyDecoderInOrder extends AbstractEXIBodyDecoder {
 		}
 
 		// structure & content
-		return typeDecoder.readValue(dt, getElementContext().qnameContext,
+		return readCharactersContent(dt);
+	}
+
+	protected Value readCharactersContent(Datatype dt) throws IOException {
+		if (discardValues) {
+			typeDecoder.skipValue(dt, getElementContext().getQNameContext(),
+					channel, stringDecoder);
+			return null;
+		}
+		return typeDecoder.readValue(dt, getElementContext().getQNameContext(),
 				channel, stringDecoder);
 	}
 
@@ -294,4 +340,228 @@ public class EXIBodyDecoderInOrder extends AbstractEXIBodyDecoder {
 		return decodeDocTypeStructure();
 	}
 
+	/**
+	 * Decodes events in one loop that switches once per event code and calls
+	 * the structure methods directly. Values of skipped subtrees are not
+	 * materialized.
+	 */
+	@Override
+	public boolean decode(EXIEventVisitor visitor) throws EXIException,
+			IOException {
+		final boolean discard = discardValues;
+		try {
+			return decodeInOrder(visitor);
+		} finally {
+			discardValues = discard;
+		}
+	}
+
+	private boolean decodeInOrder(EXIEventVisitor visitor)
+			throws EXIException, IOException {
+		final boolean discard = discardValues;
+		// start element waiting for its NS events
+		QNameContext pendingElement = null;
+		// > 0 while skipping
+		int skipDepth = 0;
+
+		while (true) {
+			EventType et;
+			if (pendingVisitEventType != null) {
+				et = pendingVisitEventType;
+				pendingVisitEventType = null;
+			} else if (nextEventType == EventType.END_DOCUMENT) {
+				return true;
+			} else {
+				et = decodeEventCode();
+			}
+
+			int r = EXIEventVisitor.CONTINUE;
+			if (pendingElement != null
+					&& et != EventType.NAMESPACE_DECLARATION) {
+				r = visitor.startElement(pendingElement, getElementContext()
+						.getPrefix());
+				pendingElement = null;
+				if (r == EXIEventVisitor.STOP) {
+					pendingVisitEventType = et;
+					return false;
+				} else if (r == EXIEventVisitor.SKIP_SUBTREE) {
+					skipDepth = 1;
+					discardValues = true;
+				}
+				r = EXIEventVisitor.CONTINUE;
+			}
+
+			Datatype dt;
+			switch (et) {
+			case START_DOCUMENT:
+				decodeStartDocumentStructure();
+				r = visitor.startDocument();
+				break;
+			case END_DOCUMENT:
+				decodeEndDocumentStructure();
+				visitor.endDocument();
+				return true;
+			case START_ELEMENT:
+				pendingElement = decodeStartElementStructure();
+				break;
+			case START_ELEMENT_NS:
+				pendingElement = decodeStartElementNSStructure();
+				break;
+			case START_ELEMENT_GENERIC:
+				pendingElement = decodeStartElementGenericStructure();
+				break;
+			case START_ELEMENT_GENERIC_UNDECLARED:
+				pendingElement = decodeStartElementGenericUndeclaredStructure();
+				break;
+			case END_ELEMENT:
+			case END_ELEMENT_UNDECLARED:
+				ElementContext ec = et == EventType.END_ELEMENT ? decodeEndElementStructure()
+						: decodeEndElementUndeclaredStructure();
+				QNameContext ee = ec.getQNameContext();
+				if (skipDepth > 0) {
+					if (--skipDepth == 0) {
+						discardValues = discard;
+					}
+				} else if (visitor.endElement(ee) == EXIEventVisitor.STOP) {
+					return false;
+				}
+				break;
+			case ATTRIBUTE:
+				dt = decodeAttributeStructure();
+				if (this.attributeQNameContext.equals(getXsiTypeContext())) {
+					decodeAttributeXsiTypeStructure();
+				} else {
+					readAttributeContent(dt);
+				}
+				if (skipDepth == 0) {
+					r = visitor.attribute(attributeQNameContext,
+							attributePrefix, attributeValue);
+				}
+				break;
+			case ATTRIBUTE_NS:
+				decodeAttributeNSStructure();
+				readAttributeContent();
+				if (skipDepth == 0) {
+					r = visitor.attribute(attributeQNameContext,
+							attributePrefix, attributeValue);
+				}
+				break;
+			case ATTRIBUTE_GENERIC:
+				decodeAttributeGenericStructure();
+				readAttributeContent();
+				if (skipDepth == 0) {
+					r = visitor.attribute(attributeQNameContext,
+							attributePrefix, attributeValue);
+				}
+				break;
+			case ATTRIBUTE_GENERIC_UNDECLARED:
+				decodeAttributeGenericUndeclaredStructure();
+				readAttributeContent();
+				if (skipDepth == 0) {
+					r = visitor.attribute(attributeQNameContext,
+							attributePrefix, attributeValue);
+				}
+				break;
+			case ATTRIBUTE_INVALID_VALUE:
+				decodeAttributeStructure();
+				readAttributeContent(BuiltIn.getDefaultDatatype());
+				if (skipDepth == 0) {
+					r = visitor.attribute(attributeQNameContext,
+							attributePrefix, attributeValue);
+				}
+				break;
+			case ATTRIBUTE_ANY_INVALID_VALUE:
+				decodeAttributeAnyInvalidValueStructure();
+				readAttributeContent(BuiltIn.getDefaultDatatype());
+				if (skipDepth == 0) {
+					r = visitor.attribute(attributeQNameContext,
+							attributePrefix, attributeValue);
+				}
+				break;
+			case ATTRIBUTE_XSI_TYPE:
+				decodeAttributeXsiTypeStructure();
+				if (skipDepth == 0) {
+					r = visitor.attribute(attributeQNameContext,
+							attributePrefix, attributeValue);
+				}
+				break;
+			case ATTRIBUTE_XSI_NIL:
+				decodeAttributeXsiNilStructure();
+				if (skipDepth == 0) {
+					r = visitor.attribute(attributeQNameContext,
+							attributePrefix, attributeValue);
+				}
+				break;
+			case CHARACTERS:
+				dt = decodeCharactersStructure();
+				Value ch = readCharactersContent(dt);
+				if (skipDepth == 0) {
+					r = visitor.characters(ch);
+				}
+				break;
+			case CHARACTERS_GENERIC:
+				decodeCharactersGenericStructure();
+				ch = readCharactersContent(BuiltIn.getDefaultDatatype());
+				if (skipDepth == 0) {
+					r = visitor.characters(ch);
+				}
+				break;
+			case CHARACTERS_GENERIC_UNDECLARED:
+				decodeCharactersGenericUndeclaredStructure();
+				ch = readCharactersContent(BuiltIn.getDefaultDatatype());
+				if (skipDepth == 0) {
+					r = visitor.characters(ch);
+				}
+				break;
+			case NAMESPACE_DECLARATION:
+				NamespaceDeclaration nsDecl = decodeNamespaceDeclarationStructure();
+				if (skipDepth == 0) {
+					visitor.namespaceDeclaration(nsDecl);
+				}
+				break;
+			case SELF_CONTAINED:
+				decodeStartSelfContainedFragment();
+				break;
+			case DOC_TYPE:
+				DocType docType = decodeDocTypeStructure();
+				if (skipDepth == 0) {
+					r = visitor.docType(docType);
+				}
+				break;
+			case ENTITY_REFERENCE:
+				char[] er = decodeEntityReferenceStructure();
+				if (skipDepth == 0) {
+					r = visitor.entityReference(er);
+				}
+				break;
+			case COMMENT:
+				char[] cm = decodeCommentStructure();
+				if (skipDepth == 0) {
+					r = visitor.comment(cm);
+				}
+				break;
+			case PROCESSING_INSTRUCTION:
+				ProcessingInstruction pi = decodeProcessingInstructionStructure();
+				if (skipDepth == 0) {
+					r = visitor.processingInstruction(pi);
+				}
+				break;
+			default:
+				throw new EXIException("Unexpected event " + et);
+			}
+
+			if (skipDepth > 0 && pendingElement != null) {
+				// nested element of skipped subtree
+				pendingElement = null;
+				skipDepth++;
+			} else if (r == EXIEventVisitor.STOP) {
+				return false;
+			} else if (r == EXIEventVisitor.SKIP_SUBTREE
+					&& getElementContext().getQNameContext() != null) {
+				skipDepth = 1;
+				discardValues = true;
+			}
+		}
+	}
+
 }
@@ -26,6 +26,7 @@ package com.siemens.ct.exi.core.coder;
 import java.io.IOException;
 import java.util.List;
 
+import com.siemens.ct.exi.core.EXIEventVisitor;
 import com.siemens.ct.exi.core.EXIFactory;
 import com.siemens.ct.exi.core.FidelityOptions;
 import com.siemens.ct.exi.core.container.DocType;
@@ -34,6 +35,7 @@ import com.siemens.ct.exi.core.container.ProcessingInstruction;
 import com.siemens.ct.exi.core.context.QNameContext;
 import com.siemens.ct.exi.core.exceptions.EXIException;
 import com.siemens.ct.exi.core.grammars.event.EventType;
+import com.siemens.ct.exi.core.jfr.EXIFlightRecorder;
 import com.siemens.ct.exi.core.values.Value;
 
 /**
@@ -49,6 +51,9 @@ public class EXIBodyDecoderInOrderSC extends EXIBodyDecoderInOrder {
 
 	protected EXIBodyDecoderInOrderSC scDecoder;
 
+	// flight recorder fragment event (if recording)
+	protected Object flightFragment;
+
 	public EXIBodyDecoderInOrderSC(EXIFactory exiFactory) throws EXIException {
 		super(exiFactory);
 		assert (fidelityOptions.isFidelityEnabled(FidelityOptions.FEATURE_SC));
@@ -62,6 +67,14 @@ public class EXIBodyDecoderInOrderSC extends EXIBodyDecoderInOrder {
 		scDecoder = null;
 	}
 
+	@Override
+	public void setDiscardValues(boolean discardValues) {
+		super.setDiscardValues(discardValues);
+		if (scDecoder != null) {
+			scDecoder.setDiscardValues(discardValues);
+		}
+	}
+
 	public void skipSCElement(long skip) throws IOException {
 		// Note: Bytes to be skipped need to be known
 		assert (this.nextEventType == EventType.SELF_CONTAINED);
@@ -72,6 +85,13 @@ public class EXIBodyDecoderInOrderSC extends EXIBodyDecoderInOrder {
 		this.popElement();
 	}
 
+	@Override
+	public boolean decode(EXIEventVisitor visitor) throws EXIException,
+			IOException {
+		// SC fragments are handled by pull methods
+		return decodeEvents(visitor);
+	}
+
 	@Override
 	public EventType next() throws EXIException, IOException {
 		// return (scDecoder == null ? super.next() : scDecoder.next());
@@ -84,6 +104,10 @@ public class EXIBodyDecoderInOrderSC extends EXIBodyDecoderInOrder {
 				// Skip to the next byte-aligned boundary in the stream if it is
 				// not already at such a boundary
 				this.channel.align();
+				QNameContext qnc = getElementContext().getQNameContext();
+				EXIFlightRecorder.endFragment(flightFragment, false,
+						qnc.getNamespaceUri(), qnc.getLocalName(), -1L);
+				flightFragment = null;
 				// indicate that SC portion is over
 				scDecoder = null;
 				popElement();
@@ -133,15 +157,19 @@ public class EXIBodyDecoderInOrderSC extends EXIBodyDecoderInOrder {
 					.createEXIBodyDecoder();
 			scDecoder.channel = this.channel;
 			scDecoder.setErrorHandler(this.errorHandler);
+			scDecoder.setDiscardValues(this.discardValues);
 			scDecoder.initForEachRun();
 
 			// Skip to the next byte-aligned boundary in the stream if it is not
 			// already at such a boundary
 			this.channel.align();
+			flightFragment = EXIFlightRecorder.beginFragment();
 
 			// Evaluate the sequence of events (SD, SE(qname), content, ED)
 			// according to the Fragment grammar
 			scDecoder.decodeStartDocument();
+			// recorded as fragment, not as document
+			scDecoder.flightDocument = null;
 			// this.hasNext(); // decode next event
 			EventType et = next();
 			switch (et) {
@@ -27,13 +27,18 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.PushbackInputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
-import java.util.Iterator;
-import java.util.LinkedHashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.zip.Inflater;
 
+import javax.xml.namespace.QName;
+
+import com.siemens.ct.exi.core.CoderMetrics;
 import com.siemens.ct.exi.core.CodingMode;
 import com.siemens.ct.exi.core.Constants;
 import com.siemens.ct.exi.core.DecodingOptions;
@@ -44,13 +49,17 @@ import com.siemens.ct.exi.core.container.PreReadValue;
 import com.siemens.ct.exi.core.container.ProcessingInstruction;
 import com.siemens.ct.exi.core.context.QNameContext;
 import com.siemens.ct.exi.core.datatype.Datatype;
-import com.siemens.ct.exi.core.datatype.strings.StringDecoder;
 import com.siemens.ct.exi.core.exceptions.EXIException;
 import com.siemens.ct.exi.core.grammars.event.EventType;
 import com.siemens.ct.exi.core.io.channel.ByteDecoderChannel;
 import com.siemens.ct.exi.core.io.channel.DecoderChannel;
 import com.siemens.ct.exi.core.io.compression.EXIInflaterInputStream;
+import com.siemens.ct.exi.core.jfr.EXIFlightRecorder;
 import com.siemens.ct.exi.core.types.BuiltIn;
+import com.siemens.ct.exi.core.types.BuiltInType;
+import com.siemens.ct.exi.core.values.FloatValue;
+import com.siemens.ct.exi.core.values.IntegerValue;
+import com.siemens.ct.exi.core.values.IntegerValueType;
 import com.siemens.ct.exi.core.values.Value;
 
 /**
@@ -62,15 +71,23 @@ import com.siemens.ct.exi.core.values.Value;
  */
 
 public class EXIBodyDecoderReordered extends AbstractEXIBodyDecoder {
-	// store appearing event-types in right order
-	protected List<EventType> eventTypes;
+
+	protected static final Value[] EMPTY_COLUMN = new Value[0];
+
+	private static final EventType[] EVENT_TYPES = EventType.values();
+
+	// store appearing event-types (ordinals) in right order
+	protected int[] eventTypes;
+	protected int eventTypesSize;
 	protected int eventTypeIndex;
 
 	// elements and end elements
 	protected List<ElementContext> elementEntries;
 	protected int elementEntryIndex;
-	// attributes and character value entries
-	protected List<QNameEntry> qnameEntries;
+	// attributes and character value entries (qname context and prefix)
+	protected QNameContext[] qnameEntries;
+	protected String[] qnamePrefixes;
+	protected int qnameEntriesSize;
 	protected int qnameEntryIndex;
 	// docTypes
 	protected List<DocType> docTypeEntries;
@@ -113,11 +130,19 @@ public class EXIBodyDecoderReordered extends AbstractEXIBodyDecoder {
 	protected Inflater inflater;
 	// protected InputStream recentInflaterInputStream;
 
-	// Note: Map needs to be sorted to retrieve correct channel order (e.g.,
-	// LinkedHashMap)
-	protected Map<QNameContext, List<Datatype>> channelDatatypes;
+	// value channels of the current block, the (dense) index reflects the
+	// channel order
+	protected List<ValueColumn> blockColumns;
+	protected Map<QNameContext, ValueColumn> valueColumns;
+	// projected value channels of the current block
+	protected Map<QName, ValueColumn> projectedColumns;
+	// value channels (and their buffers) for re-use
+	protected List<ValueColumn> unusedColumns;
 
-	protected Map<QNameContext, PreReadValue> preReadValues;
+	// value channels of interest (null for all)
+	protected Set<QName> projection;
+	// whether the current block was already returned by nextBlock()
+	protected boolean blockConsumed;
 
 	protected boolean firstChannel;
 
@@ -125,13 +150,16 @@ public class EXIBodyDecoderReordered extends AbstractEXIBodyDecoder {
 
 	public EXIBodyDecoderReordered(EXIFactory exiFactory) throws EXIException {
 		super(exiFactory);
+		// element entries are kept beyond popElement()
+		recycleElementContexts = false;
 
 		// events
-		eventTypes = new ArrayList<EventType>();
+		eventTypes = new int[64];
 		// element entries
 		elementEntries = new ArrayList<ElementContext>();
 		// qname entries
-		qnameEntries = new ArrayList<QNameEntry>();
+		qnameEntries = new QNameContext[16];
+		qnamePrefixes = new String[16];
 		// misc
 		docTypeEntries = new ArrayList<DocType>();
 		entityReferences = new ArrayList<char[]>();
@@ -139,10 +167,10 @@ public class EXIBodyDecoderReordered extends AbstractEXIBodyDecoder {
 		nsEntries = new ArrayList<NamespaceDeclaration>();
 		processingEntries = new ArrayList<ProcessingInstruction>();
 
-		preReadValues = new HashMap<QNameContext, PreReadValue>();
-
-		// Note: needs to be sorted map for channel order
-		channelDatatypes = new LinkedHashMap<QNameContext, List<Datatype>>();
+		blockColumns = new ArrayList<ValueColumn>();
+		valueColumns = new HashMap<QNameContext, ValueColumn>();
+		projectedColumns = new HashMap<QName, ValueColumn>();
+		unusedColumns = new ArrayList<ValueColumn>();
 
 		// content values
 		contentValues = new HashMap<QNameContext, PreReadValue>();
@@ -161,38 +189,25 @@ public class EXIBodyDecoderReordered extends AbstractEXIBodyDecoder {
 		// next event
 		nextEvent = null;
 		nextEventType = EventType.START_DOCUMENT;
-
-		// element entries
-		elementEntries.clear();
-		elementEntryIndex = 0;
-		// qname entries
-		qnameEntries.clear();
-		qnameEntryIndex = 0;
-
-		// misc
-		docTypeEntries.clear();
-		docTypeEntryIndex = 0;
-		entityReferences.clear();
-		entityReferenceIndex = 0;
-		comments.clear();
-		commentIndex = 0;
-		nsEntries.clear();
-		nsEntryIndex = 0;
-		processingEntries.clear();
-		processingEntryIndex = 0;
+		if (metrics != null) {
+			// zero-length event code, not decoded
+			metrics.event(EventType.START_DOCUMENT, 1);
+		}
 
 		stillNoEndOfDocument = true;
 		lastBlockElementContext = null;
-
-		channelDatatypes.clear();
+		blockConsumed = false;
 
 		// initialize block etc
 		initBlock();
 
 		// pre-read first block structure and afterwards pre-read content
 		// (values)
+		Object flightBlock = EXIFlightRecorder.beginBlock();
 		preReadBlockStructure();
 		preReadBlockContent();
+		EXIFlightRecorder.endBlock(flightBlock, false, blockValues,
+				blockColumns.size(), -1L, -1L);
 	}
 
 	protected void initBlock() {
@@ -200,9 +215,31 @@ public class EXIBodyDecoderReordered extends AbstractEXIBodyDecoder {
 		blockValues = 0;
 
 		// events
-		eventTypes.clear();
+		eventTypesSize = 0;
 		eventTypeIndex = 0;
 
+		// Note: all entries of the previous block have been consumed
+		// element entries
+		elementEntries.clear();
+		elementEntryIndex = 0;
+		// qname entries
+		Arrays.fill(qnamePrefixes, 0, qnameEntriesSize, null);
+		Arrays.fill(qnameEntries, 0, qnameEntriesSize, null);
+		qnameEntriesSize = 0;
+		qnameEntryIndex = 0;
+
+		// misc
+		docTypeEntries.clear();
+		docTypeEntryIndex = 0;
+		entityReferences.clear();
+		entityReferenceIndex = 0;
+		comments.clear();
+		commentIndex = 0;
+		nsEntries.clear();
+		nsEntryIndex = 0;
+		processingEntries.clear();
+		processingEntryIndex = 0;
+
 		// contains value events (qnames) in right order
 		// plus necessary information to reconstruct value channels
 		initCompressionBlock();
@@ -217,20 +254,192 @@ public class EXIBodyDecoderReordered extends AbstractEXIBodyDecoder {
 
 	protected void initCompressionBlock() {
 		// re-set all channels
-		this.channelDatatypes.clear();
-
-		this.preReadValues.clear();
+		for (int i = 0; i < blockColumns.size(); i++) {
+			ValueColumn vc = blockColumns.get(i);
+			vc.clear();
+			unusedColumns.add(vc);
+		}
+		blockColumns.clear();
+		valueColumns.clear();
+		projectedColumns.clear();
 	}
 
 	protected void addDatatype(QNameContext qnc, Datatype d) {
-		List<Datatype> ds = this.channelDatatypes.get(qnc);
-		if (ds == null) {
-			// create new list
-			ds = new ArrayList<Datatype>();
-			// add to map (sorted due to linked hashmap)
-			channelDatatypes.put(qnc, ds);
+		ValueColumn vc = valueColumns.get(qnc);
+		if (vc == null) {
+			int n = unusedColumns.size();
+			vc = n == 0 ? new ValueColumn() : unusedColumns.remove(n - 1);
+			vc.qnContext = qnc;
+			blockColumns.add(vc);
+			valueColumns.put(qnc, vc);
+		}
+		vc.addDatatype(d);
+	}
+
+	protected final void addEventType(EventType eventType) {
+		if (eventTypesSize == eventTypes.length) {
+			eventTypes = Arrays.copyOf(eventTypes, eventTypesSize << 1);
 		}
-		ds.add(d);
+		eventTypes[eventTypesSize++] = eventType.ordinal();
+	}
+
+	protected final void updateLastEventType(EventType eventType) {
+		eventTypes[eventTypesSize - 1] = eventType.ordinal();
+	}
+
+	/**
+	 * Restricts the value channels that are materialized to the given
+	 * qualified names (e.g., the attribute or element whose values are of
+	 * interest). The structure is still decoded completely and the values of
+	 * all other channels are read (string table consistency) but dropped.
+	 * Needs to be set before setting the input stream.
+	 * 
+	 * <p>
+	 * Note: value events of channels that are not part of the projection
+	 * return <code>null</code>. The values of interest are typically retrieved
+	 * per block by means of {@link #nextBlock()} and
+	 * {@link #getColumn(QName)}.
+	 * </p>
+	 * 
+	 * @param qnames
+	 *            value channels of interest or null for all channels
+	 */
+	public void setProjection(Collection<QName> qnames) {
+		this.projection = qnames == null ? null : new HashSet<QName>(qnames);
+	}
+
+	protected boolean isProjected(QNameContext channelContext) {
+		return projection == null
+				|| projection.contains(channelContext.getQName());
+	}
+
+	/**
+	 * Advances to the next block (the first block is read when setting the
+	 * input stream) without reporting its events. Not to be combined with
+	 * {@link #next()}.
+	 * 
+	 * @return false if there are no more blocks
+	 * @throws EXIException
+	 *             EXI exception
+	 * @throws IOException
+	 *             IO exception
+	 */
+	public boolean nextBlock() throws EXIException, IOException {
+		if (!blockConsumed) {
+			blockConsumed = true;
+		} else if (stillNoEndOfDocument) {
+			setupNewBlock();
+			// events are not reported
+			eventTypeIndex = eventTypesSize;
+			qnameEntryIndex = qnameEntriesSize;
+			elementEntryIndex = elementEntries.size();
+		} else {
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the values of a channel in the current block (in document order).
+	 * The returned array is a copy, the internal buffers are re-used for the
+	 * next block.
+	 * 
+	 * @param qname
+	 *            qualified name of the value channel
+	 * @return channel values, empty if the block has no such values
+	 */
+	public Value[] getColumn(QName qname) {
+		ValueColumn vc = projectedColumns.get(qname);
+		if (vc == null) {
+			return EMPTY_COLUMN;
+		} else if (vc.storage == ValueColumn.VALUES) {
+			return Arrays.copyOf(vc.values, vc.size);
+		}
+		Value[] values = new Value[vc.size];
+		for (int i = 0; i < vc.size; i++) {
+			values[i] = vc.getValue(i);
+		}
+		return values;
+	}
+
+	/**
+	 * Returns the values of a channel in the current block as long values.
+	 * Integer channels are decoded into long values directly (no value
+	 * objects).
+	 * 
+	 * @param qname
+	 *            qualified name of the value channel
+	 * @return channel values
+	 * @throws EXIException
+	 *             if a value is not an integer in the range of long
+	 */
+	public long[] getLongColumn(QName qname) throws EXIException {
+		ValueColumn vc = projectedColumns.get(qname);
+		if (vc != null && vc.storage == ValueColumn.LONGS) {
+			return Arrays.copyOf(vc.longs, vc.size);
+		}
+
+		Value[] values = getColumn(qname);
+		long[] longs = new long[values.length];
+		for (int i = 0; i < values.length; i++) {
+			Value v = values[i];
+			IntegerValue iv = v instanceof IntegerValue ? (IntegerValue) v
+					: IntegerValue.parse(v.toString());
+			if (iv == null
+					|| iv.getIntegerValueType() == IntegerValueType.BIG) {
+				throw new EXIException("No long value in channel " + qname
+						+ ": " + v);
+			}
+			longs[i] = iv.longValue();
+		}
+		return longs;
+	}
+
+	/**
+	 * Returns the values of a channel in the current block as double values.
+	 * Integer and float channels are decoded into primitive values directly
+	 * (no value objects).
+	 * 
+	 * @param qname
+	 *            qualified name of the value channel
+	 * @return channel values
+	 * @throws EXIException
+	 *             if a value is not numeric
+	 */
+	public double[] getDoubleColumn(QName qname) throws EXIException {
+		ValueColumn vc = projectedColumns.get(qname);
+		if (vc != null && vc.storage == ValueColumn.LONGS) {
+			double[] doubles = new double[vc.size];
+			for (int i = 0; i < vc.size; i++) {
+				doubles[i] = vc.longs[i];
+			}
+			return doubles;
+		} else if (vc != null && vc.storage == ValueColumn.FLOATS) {
+			double[] doubles = new double[vc.size];
+			for (int i = 0; i < vc.size; i++) {
+				doubles[i] = FloatValue.toDouble(vc.longs[i], vc.exponents[i]);
+			}
+			return doubles;
+		}
+
+		Value[] values = getColumn(qname);
+		double[] doubles = new double[values.length];
+		for (int i = 0; i < values.length; i++) {
+			Value v = values[i];
+			if (v instanceof FloatValue) {
+				doubles[i] = ((FloatValue) v).toDouble();
+			} else if (v instanceof IntegerValue) {
+				doubles[i] = ((IntegerValue) v).bigIntegerValue().doubleValue();
+			} else {
+				try {
+					doubles[i] = Double.parseDouble(v.toString().trim());
+				} catch (NumberFormatException e) {
+					throw new EXIException("No numeric value in channel "
+							+ qname + ": " + v, e);
+				}
+			}
+		}
+		return doubles;
 	}
 
 	// @Override
@@ -252,7 +461,11 @@ public class EXIBodyDecoderReordered extends AbstractEXIBodyDecoder {
 		inflaterInputStream = null;
 
 		firstChannel = true;
-		inflater = new Inflater(true);
+		if (inflater == null) {
+			inflater = new Inflater(true);
+		} else {
+			inflater.reset();
+		}
 		channel = getNextChannel();
 	}
 
@@ -303,7 +516,7 @@ public class EXIBodyDecoderReordered extends AbstractEXIBodyDecoder {
 	}
 
 	protected void updateAttributeToXsiType() throws EXIException, IOException {
-		eventTypes.set(eventTypes.size() - 1, EventType.ATTRIBUTE_XSI_TYPE);
+		updateLastEventType(EventType.ATTRIBUTE_XSI_TYPE);
 		// value content
 		decodeAttributeXsiTypeStructure();
 		xsiValues.add(attributeValue);
@@ -319,7 +532,7 @@ public class EXIBodyDecoderReordered extends AbstractEXIBodyDecoder {
 		} else if (getXsiNilContext().equals(attributeQNameContext)
 				&& getCurrentGrammar().isSchemaInformed()) {
 			// xsi:nil
-			eventTypes.set(eventTypes.size() - 1, EventType.ATTRIBUTE_XSI_NIL);
+			updateLastEventType(EventType.ATTRIBUTE_XSI_NIL);
 			// value content
 			decodeAttributeXsiNilStructure();
 			xsiValues.add(attributeValue);
@@ -334,7 +547,7 @@ public class EXIBodyDecoderReordered extends AbstractEXIBodyDecoder {
 				dt = attributeQNameContext.getGlobalAttribute().getDatatype();
 			}
 
-			addQNameEntry(new QNameEntry(attributeQNameContext, attributePrefix));
+			addQNameEntry(attributeQNameContext, attributePrefix);
 			incrementValues(attributeQNameContext, dt);
 		}
 	}
@@ -382,8 +595,8 @@ public class EXIBodyDecoderReordered extends AbstractEXIBodyDecoder {
 				}
 			}
 
-			// add event to array list
-			eventTypes.add(nextEventType);
+			// add event to tape
+			addEventType(nextEventType);
 
 			switch (nextEventType) {
 			case START_DOCUMENT:
@@ -423,22 +636,19 @@ public class EXIBodyDecoderReordered extends AbstractEXIBodyDecoder {
 				if (getXsiTypeContext().equals(this.attributeQNameContext)) {
 					updateAttributeToXsiType();
 				} else {
-					addQNameEntry(new QNameEntry(this.attributeQNameContext,
-							attributePrefix));
+					addQNameEntry(this.attributeQNameContext, attributePrefix);
 					incrementValues(this.attributeQNameContext, dtAT);
 				}
 				break;
 			case ATTRIBUTE_INVALID_VALUE:
 				decodeAttributeStructure();
-				addQNameEntry(new QNameEntry(attributeQNameContext,
-						attributePrefix));
+				addQNameEntry(attributeQNameContext, attributePrefix);
 				incrementValues(attributeQNameContext,
 						BuiltIn.getDefaultDatatype());
 				break;
 			case ATTRIBUTE_ANY_INVALID_VALUE:
 				decodeAttributeAnyInvalidValueStructure();
-				addQNameEntry(new QNameEntry(attributeQNameContext,
-						attributePrefix));
+				addQNameEntry(attributeQNameContext, attributePrefix);
 				incrementValues(attributeQNameContext,
 						BuiltIn.getDefaultDatatype());
 				break;
@@ -458,21 +668,21 @@ public class EXIBodyDecoderReordered extends AbstractEXIBodyDecoder {
 				handleSpecialAttributeCases();
 				break;
 			case CHARACTERS:
-				QNameContext qnc = getElementContext().qnameContext;
+				QNameContext qnc = getElementContext().getQNameContext();
 				incrementValues(qnc, decodeCharactersStructure());
-				addQNameEntry(new QNameEntry(qnc, null));
+				addQNameEntry(qnc, null);
 				break;
 			case CHARACTERS_GENERIC:
 				decodeCharactersGenericStructure();
-				qnc = getElementContext().qnameContext;
+				qnc = getElementContext().getQNameContext();
 				incrementValues(qnc, BuiltIn.getDefaultDatatype());
-				addQNameEntry(new QNameEntry(qnc, null));
+				addQNameEntry(qnc, null);
 				break;
 			case CHARACTERS_GENERIC_UNDECLARED:
 				decodeCharactersGenericUndeclaredStructure();
-				qnc = getElementContext().qnameContext;
+				qnc = getElementContext().getQNameContext();
 				incrementValues(qnc, BuiltIn.getDefaultDatatype());
-				addQNameEntry(new QNameEntry(qnc, null));
+				addQNameEntry(qnc, null);
 				break;
 			case END_ELEMENT:
 				decodeEndElementStructure();
@@ -524,20 +734,15 @@ public class EXIBodyDecoderReordered extends AbstractEXIBodyDecoder {
 	}
 
 	protected void preReadBlockContent() throws EXIException {
+		long start = 0L;
+		if (metrics != null) {
+			start = System.nanoTime();
+		}
 		try {
-			Iterator<QNameContext> iterCh = this.channelDatatypes.keySet()
-					.iterator();
-
 			if (blockValues <= Constants.MAX_NUMBER_OF_VALUES) {
 				// single compressed stream (includes structure)
-
-				while (iterCh.hasNext()) {
-					QNameContext o = iterCh.next();
-					List<Datatype> lds = this.channelDatatypes.get(o);
-					Value[] contentValues = readValues(lds, o, channel,
-							stringDecoder);
-					PreReadValue prv = new PreReadValue(contentValues);
-					this.preReadValues.put(o, prv);
+				for (int i = 0; i < blockColumns.size(); i++) {
+					readChannel(blockColumns.get(i), channel);
 				}
 			} else {
 				// first stream structure (already read)
@@ -545,31 +750,22 @@ public class EXIBodyDecoderReordered extends AbstractEXIBodyDecoder {
 
 				DecoderChannel bdcLessEqual100 = null;
 
-				while (iterCh.hasNext()) {
-					QNameContext o = iterCh.next();
-					List<Datatype> lds = this.channelDatatypes.get(o);
-					if (lds.size() <= Constants.MAX_NUMBER_OF_VALUES) {
+				for (int i = 0; i < blockColumns.size(); i++) {
+					ValueColumn vc = blockColumns.get(i);
+					if (vc.size <= Constants.MAX_NUMBER_OF_VALUES) {
 						if (bdcLessEqual100 == null) {
 							bdcLessEqual100 = getNextChannel();
 						}
-						Value[] contentValues = readValues(lds, o,
-								bdcLessEqual100, stringDecoder);
-						PreReadValue prv = new PreReadValue(contentValues);
-						this.preReadValues.put(o, prv);
+						readChannel(vc, bdcLessEqual100);
 					}
 				}
 
 				// proper stream for greater100
-				iterCh = this.channelDatatypes.keySet().iterator();
-				while (iterCh.hasNext()) {
-					QNameContext o = iterCh.next();
-					List<Datatype> lds = this.channelDatatypes.get(o);
-					if (lds.size() > Constants.MAX_NUMBER_OF_VALUES) {
+				for (int i = 0; i < blockColumns.size(); i++) {
+					ValueColumn vc = blockColumns.get(i);
+					if (vc.size > Constants.MAX_NUMBER_OF_VALUES) {
 						DecoderChannel bdcGreater100 = getNextChannel();
-						Value[] contentValues = readValues(lds, o,
-								bdcGreater100, stringDecoder);
-						PreReadValue prv = new PreReadValue(contentValues);
-						this.preReadValues.put(o, prv);
+						readChannel(vc, bdcGreater100);
 					}
 				}
 
@@ -577,18 +773,52 @@ public class EXIBodyDecoderReordered extends AbstractEXIBodyDecoder {
 		} catch (IOException e) {
 			throw new EXIException(e);
 		}
+		if (metrics != null) {
+			long nanos = System.nanoTime() - start;
+			metrics.time(CoderMetrics.Phase.COMPRESSION, nanos);
+			// not part of structure coding (if between SD and ED)
+			metricsExcludedNanos += nanos;
+		}
 	}
 
-	private Value[] readValues(List<Datatype> lds, QNameContext o,
-			DecoderChannel valueChannel, StringDecoder stringDecoder)
+	protected void readChannel(ValueColumn vc, DecoderChannel valueChannel)
 			throws IOException {
-		Value[] contentValues = new Value[lds.size()];
-		for (int i = 0; i < lds.size(); i++) {
-			contentValues[i] = typeDecoder.readValue(lds.get(i), o,
-					valueChannel, stringDecoder);
+		QNameContext o = vc.qnContext;
+		vc.projected = isProjected(o);
+		if (vc.projected) {
+			projectedColumns.put(o.getQName(), vc);
+			vc.initStorage();
+			for (int i = 0; i < vc.size; i++) {
+				Value v;
+				switch (vc.storage) {
+				case ValueColumn.LONGS:
+					v = typeDecoder.readLongValue(vc.datatypes[i], o,
+							valueChannel, stringDecoder, vc.longs, i);
+					break;
+				case ValueColumn.FLOATS:
+					v = typeDecoder.readFloatValue(vc.datatypes[i], o,
+							valueChannel, stringDecoder, vc.longs,
+							vc.exponents, i);
+					break;
+				default:
+					vc.values[i] = typeDecoder.readValue(vc.datatypes[i], o,
+							valueChannel, stringDecoder);
+					continue;
+				}
+				if (v != null) {
+					// e.g., integer beyond the range of long
+					vc.toValues(i);
+					vc.values[i] = v;
+				}
+			}
+		} else {
+			// values need to be read nevertheless (no length information,
+			// string table updates)
+			for (int i = 0; i < vc.size; i++) {
+				typeDecoder.skipValue(vc.datatypes[i], o, valueChannel,
+						stringDecoder);
+			}
 		}
-
-		return contentValues;
 	}
 
 	protected void setContentValues(DecoderChannel bdc,
@@ -609,6 +839,7 @@ public class EXIBodyDecoderReordered extends AbstractEXIBodyDecoder {
 	}
 
 	private final void setupNewBlock() throws IOException, EXIException {
+		Object flightBlock = EXIFlightRecorder.beginBlock();
 		initBlock();
 
 		channel = getNextChannel();
@@ -618,6 +849,8 @@ public class EXIBodyDecoderReordered extends AbstractEXIBodyDecoder {
 
 		preReadBlockStructure();
 		preReadBlockContent();
+		EXIFlightRecorder.endBlock(flightBlock, false, blockValues,
+				blockColumns.size(), -1L, -1L);
 	}
 
 	protected Value getNextContentValue(QNameContext qname)
@@ -625,9 +858,8 @@ public class EXIBodyDecoderReordered extends AbstractEXIBodyDecoder {
 
 		blockValues--;
 
-		Value v = this.preReadValues.get(qname).getNextContantValue();
-
-		return v;
+		// channel might not be part of projection
+		return valueColumns.get(qname).nextValue();
 	}
 
 	public EventType next() throws EXIException, IOException {
@@ -636,8 +868,8 @@ public class EXIBodyDecoderReordered extends AbstractEXIBodyDecoder {
 			setupNewBlock();
 		}
 
-		if (stillNoEndOfDocument || eventTypes.size() > eventTypeIndex) {
-			return eventTypes.get(eventTypeIndex++);
+		if (stillNoEndOfDocument || eventTypesSize > eventTypeIndex) {
+			return EVENT_TYPES[eventTypes[eventTypeIndex++]];
 		} else {
 			return null;
 		}
@@ -658,12 +890,12 @@ public class EXIBodyDecoderReordered extends AbstractEXIBodyDecoder {
 	}
 
 	public QNameContext decodeStartElement() throws IOException, EXIException {
-		return setNextElemementEntry().qnameContext;
+		return setNextElemementEntry().getQNameContext();
 	}
 
 	public QNameContext decodeEndElement() throws EXIException {
 		// before
-		QNameContext eeBefore = currElementEntry.qnameContext;
+		QNameContext eeBefore = currElementEntry.getQNameContext();
 		// after
 		setNextElemementEntry();
 
@@ -704,28 +936,27 @@ public class EXIBodyDecoderReordered extends AbstractEXIBodyDecoder {
 		return attributeQNameContext;
 	}
 
-	protected final void addQNameEntry(QNameEntry qne) {
-		qnameEntries.add(qne);
-	}
-
-	protected final QNameEntry getNextQNameEntry() {
-		return qnameEntries.get(qnameEntryIndex++);
+	protected final void addQNameEntry(QNameContext qnc, String prefix) {
+		if (qnameEntriesSize == qnameEntries.length) {
+			int newLength = qnameEntriesSize << 1;
+			qnameEntries = Arrays.copyOf(qnameEntries, newLength);
+			qnamePrefixes = Arrays.copyOf(qnamePrefixes, newLength);
+		}
+		qnameEntries[qnameEntriesSize] = qnc;
+		qnamePrefixes[qnameEntriesSize] = prefix;
+		qnameEntriesSize++;
 	}
 
 	public QNameContext decodeAttribute() throws EXIException, IOException {
-		QNameEntry at = getNextQNameEntry();
-
-		this.attributeQNameContext = at.qnContext;
-		attributePrefix = at.prefix;
+		this.attributeQNameContext = qnameEntries[qnameEntryIndex];
+		attributePrefix = qnamePrefixes[qnameEntryIndex++];
 		attributeValue = getNextContentValue(attributeQNameContext);
 
 		return attributeQNameContext;
 	}
 
 	public Value decodeCharacters() throws EXIException, IOException {
-		QNameEntry ch = getNextQNameEntry();
-		Value chVal = getNextContentValue(ch.qnContext);
-		return chVal;
+		return getNextContentValue(qnameEntries[qnameEntryIndex++]);
 	}
 
 	public Value decodeCharactersGeneric() throws EXIException, IOException {
@@ -778,13 +1009,109 @@ public class EXIBodyDecoderReordered extends AbstractEXIBodyDecoder {
 		}
 	}
 
-	static class QNameEntry {
-		final QNameContext qnContext;
-		final String prefix;
+	/*
+	 * Datatypes and (after reading the block content) values of one channel.
+	 * Values of integer and float channels are kept as primitives. Buffers
+	 * grow as needed and are re-used for the following blocks.
+	 */
+	static final class ValueColumn {
+		// value storage
+		static final int VALUES = 0;
+		static final int LONGS = 1;
+		static final int FLOATS = 2;
+
+		QNameContext qnContext;
+		int size;
+		Datatype[] datatypes;
+		Value[] values;
+		// integer values or float mantissas
+		long[] longs;
+		// float exponents
+		long[] exponents;
+		int storage;
+		int index;
+		boolean projected;
+
+		ValueColumn() {
+			datatypes = new Datatype[8];
+			values = new Value[8];
+			longs = new long[8];
+			exponents = new long[8];
+		}
+
+		void addDatatype(Datatype dt) {
+			if (size == datatypes.length) {
+				datatypes = Arrays.copyOf(datatypes, size << 1);
+			}
+			datatypes[size++] = dt;
+		}
+
+		void initStorage() {
+			storage = size == 0 ? VALUES : getStorage(datatypes[0]
+					.getBuiltInType());
+			for (int i = 1; i < size && storage != VALUES; i++) {
+				if (getStorage(datatypes[i].getBuiltInType()) != storage) {
+					storage = VALUES;
+				}
+			}
+			if (storage == VALUES) {
+				if (values.length < size) {
+					values = new Value[datatypes.length];
+				}
+			} else if (longs.length < size) {
+				longs = new long[datatypes.length];
+				exponents = new long[datatypes.length];
+			}
+		}
+
+		static int getStorage(BuiltInType builtInType) {
+			switch (builtInType) {
+			case NBIT_UNSIGNED_INTEGER:
+			case UNSIGNED_INTEGER:
+			case INTEGER:
+				return LONGS;
+			case FLOAT:
+				return FLOATS;
+			default:
+				return VALUES;
+			}
+		}
+
+		// switches to value objects, the first n values are converted
+		void toValues(int n) {
+			if (values.length < size) {
+				values = new Value[datatypes.length];
+			}
+			for (int i = 0; i < n; i++) {
+				values[i] = getValue(i);
+			}
+			storage = VALUES;
+		}
+
+		Value getValue(int i) {
+			switch (storage) {
+			case LONGS:
+				return IntegerValue.valueOf(longs[i]);
+			case FLOATS:
+				return new FloatValue(longs[i], exponents[i]);
+			default:
+				return values[i];
+			}
+		}
+
+		Value nextValue() {
+			return projected ? getValue(index++) : null;
+		}
 
-		public QNameEntry(QNameContext qnContext, String prefix) {
-			this.qnContext = qnContext;
-			this.prefix = prefix;
+		void clear() {
+			qnContext = null;
+			// release values
+			Arrays.fill(datatypes, 0, size, null);
+			Arrays.fill(values, 0, Math.min(size, values.length), null);
+			size = 0;
+			index = 0;
+			storage = VALUES;
+			projected = false;
 		}
 	}
 
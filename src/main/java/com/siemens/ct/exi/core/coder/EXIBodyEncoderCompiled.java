@@ -0,0 +1,178 @@
+/*
+ * Copyright (c) 2007-2018 Siemens AG
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * 
+ */
+
+package com.siemens.ct.exi.core.coder;
+
+import java.io.IOException;
+
+import com.siemens.ct.exi.core.Constants;
+import com.siemens.ct.exi.core.EXIFactory;
+import com.siemens.ct.exi.core.exceptions.EXIException;
+import com.siemens.ct.exi.core.grammars.GrammarAutomaton;
+import com.siemens.ct.exi.core.grammars.event.EventType;
+import com.siemens.ct.exi.core.grammars.grammar.Grammar;
+import com.siemens.ct.exi.core.grammars.production.Production;
+import com.siemens.ct.exi.core.util.MethodsBag;
+
+/**
+ * EXI encoder for bit or byte-aligned streams that looks up productions and
+ * event-code widths of schema-informed grammars in a compiled
+ * {@link GrammarAutomaton}. Grammars that are not part of the automaton
+ * (e.g., built-in grammars) are encoded as usual.
+ * 
+ * @author Daniel.Peintner.EXT@siemens.com
+ * @author Richard.Kuntschke@siemens.com
+ * 
+ */
+
+public class EXIBodyEncoderCompiled extends EXIBodyEncoderInOrder {
+
+	protected final GrammarAutomaton automaton;
+	protected final int codeLength3;
+
+	// grammar the state belongs to
+	protected Grammar stateGrammar;
+	protected int state;
+
+	public EXIBodyEncoderCompiled(EXIFactory exiFactory,
+			GrammarAutomaton automaton) throws EXIException {
+		super(exiFactory);
+		if (!fidelityOptions.equals(automaton.getFidelityOptions())) {
+			throw new EXIException(
+					"Grammar automaton compiled for different fidelity options: "
+							+ automaton.getFidelityOptions());
+		}
+		this.automaton = automaton;
+		this.codeLength3 = MethodsBag.getCodingLength(fidelityOptions
+				.get3rdLevelCharacteristics());
+	}
+
+	@Override
+	public void initForEachRun() throws EXIException, IOException {
+		stateGrammar = null;
+		super.initForEachRun();
+	}
+
+	protected final int getState(Grammar grammar) {
+		if (grammar != stateGrammar) {
+			stateGrammar = grammar;
+			state = automaton.getState(grammar);
+		}
+		return state;
+	}
+
+	@Override
+	protected Production getProduction(Grammar grammar, EventType eventType) {
+		int s = getState(grammar);
+		if (s == GrammarAutomaton.NO_STATE) {
+			return super.getProduction(grammar, eventType);
+		}
+		int ec = automaton.getEventCode(s, eventType);
+		return ec == Constants.NOT_FOUND ? null : automaton.getProduction(s,
+				ec);
+	}
+
+	@Override
+	protected Production getStartElementProduction(Grammar grammar,
+			String namespaceURI, String localName) {
+		int s = getState(grammar);
+		if (s == GrammarAutomaton.NO_STATE) {
+			return super.getStartElementProduction(grammar, namespaceURI,
+					localName);
+		}
+		int ec = automaton.getStartElementEventCode(s, namespaceURI,
+				localName);
+		return ec == Constants.NOT_FOUND ? null : automaton.getProduction(s,
+				ec);
+	}
+
+	@Override
+	protected Production getAttributeProduction(Grammar grammar,
+			String namespaceURI, String localName) {
+		int s = getState(grammar);
+		if (s == GrammarAutomaton.NO_STATE) {
+			return super.getAttributeProduction(grammar, namespaceURI,
+					localName);
+		}
+		int ec = automaton.getAttributeEventCode(s, namespaceURI, localName);
+		return ec == Constants.NOT_FOUND ? null : automaton.getProduction(s,
+				ec);
+	}
+
+	@Override
+	protected void encode1stLevelEventCode(int pos) throws IOException {
+		int s = getState(getCurrentGrammar());
+		if (s == GrammarAutomaton.NO_STATE) {
+			super.encode1stLevelEventCode(pos);
+		} else {
+			int codeLength = automaton.getEventCodeLength(s);
+			if (codeLength > 0) {
+				channel.encodeNBitUnsignedInteger(pos, codeLength);
+			}
+			if (metrics != null) {
+				eventCodeMetrics(1, pos);
+			}
+		}
+	}
+
+	@Override
+	protected void encode2ndLevelEventCode(int pos) throws IOException {
+		int s = getState(getCurrentGrammar());
+		if (s == GrammarAutomaton.NO_STATE) {
+			super.encode2ndLevelEventCode(pos);
+		} else {
+			// 1st level
+			channel.encodeNBitUnsignedInteger(automaton.getNumberOfEvents(s),
+					automaton.getEventCodeLength(s));
+			// 2nd level
+			assert (pos < automaton.get2ndLevelCharacteristics(s));
+			channel.encodeNBitUnsignedInteger(pos,
+					automaton.get2ndLevelEventCodeLength(s));
+			if (metrics != null) {
+				eventCodeMetrics(2, pos);
+			}
+		}
+	}
+
+	@Override
+	protected void encode3rdLevelEventCode(int pos) throws IOException {
+		int s = getState(getCurrentGrammar());
+		if (s == GrammarAutomaton.NO_STATE) {
+			super.encode3rdLevelEventCode(pos);
+		} else {
+			// 1st level
+			channel.encodeNBitUnsignedInteger(automaton.getNumberOfEvents(s),
+					automaton.getEventCodeLength(s));
+			// 2nd level
+			int ch2 = automaton.get2ndLevelCharacteristics(s);
+			int ec2 = ch2 > 0 ? ch2 - 1 : 0; // any 2nd level events
+			channel.encodeNBitUnsignedInteger(ec2,
+					automaton.get2ndLevelEventCodeLength(s));
+			// 3rd level
+			channel.encodeNBitUnsignedInteger(pos, codeLength3);
+			if (metrics != null) {
+				eventCodeMetrics(3, pos);
+			}
+		}
+	}
+}
@@ -64,7 +64,8 @@ public class EXIBodyEncoderInOrder extends AbstractEXIBodyEncoder {
 		}
 	}
 
-	public void setOutputChannel(EncoderChannel encoderChannel) {
+	public void setOutputChannel(EncoderChannel encoderChannel)
+			throws EXIException {
 		this.channel = encoderChannel;
 	}
 
@@ -28,9 +28,11 @@ import java.io.IOException;
 import javax.xml.namespace.QName;
 
 import com.siemens.ct.exi.core.EXIFactory;
+import com.siemens.ct.exi.core.context.QNameContext;
 import com.siemens.ct.exi.core.exceptions.EXIException;
 import com.siemens.ct.exi.core.exceptions.ErrorHandler;
 import com.siemens.ct.exi.core.grammars.event.EventType;
+import com.siemens.ct.exi.core.jfr.EXIFlightRecorder;
 import com.siemens.ct.exi.core.values.Value;
 
 /**
@@ -70,6 +72,10 @@ public class EXIBodyEncoderInOrderSC extends EXIBodyEncoderInOrder {
 
 	protected EXIBodyEncoderInOrderSC scEncoder;
 
+	// flight recorder fragment event (if recording) and fragment start
+	protected Object flightFragment;
+	protected int fragmentStartLength;
+
 	public EXIBodyEncoderInOrderSC(EXIFactory exiFactory) throws EXIException {
 		super(exiFactory);
 	}
@@ -115,6 +121,16 @@ public class EXIBodyEncoderInOrderSC extends EXIBodyEncoderInOrder {
 		// Skip to the next byte-aligned boundary in the stream if it is
 		// not already at such a boundary
 		this.channel.align();
+
+		QNameContext qnc = getElementContext().getQNameContext();
+		EXIFlightRecorder.endFragment(flightFragment, true,
+				qnc.getNamespaceUri(), qnc.getLocalName(), channel.getLength()
+						- fragmentStartLength);
+		flightFragment = null;
+
+		// inform
+		QName qname = qnc.getQName();
+		informSelfContainedEnd(qname.getNamespaceURI(), qname.getLocalPart());
 		// indicate that SC portion is over
 		scEncoder = null;
 		super.popElement();
@@ -136,23 +152,16 @@ public class EXIBodyEncoderInOrderSC extends EXIBodyEncoderInOrder {
 		// business as usual
 		if (scEncoder == null) {
 			super.encodeStartElement(uri, localName, prefix);
-			QName qname = getElementContext().qnameContext.getQName();
+			QName qname = getElementContext().getQNameContext().getQName();
 
 			// start SC fragment ?
 			if (exiFactory.isSelfContainedElement(qname)) {
-				int ec2 = fidelityOptions.get2ndLevelEventCode(
-						EventType.SELF_CONTAINED, getCurrentGrammar());
-				encode2ndLevelEventCode(ec2);
-
-				// Skip to the next byte-aligned boundary in the stream if it is
-				// not already at such a boundary
-				this.channel.align();
+				this.encodeSelfContained();
+				fragmentStartLength = channel.getLength();
+				flightFragment = EXIFlightRecorder.beginFragment();
 
-				// infor
-				if (exiFactory.getSelfContainedHandler() != null) {
-					exiFactory.getSelfContainedHandler().scElement(uri,
-							localName, this.channel);
-				}
+				// inform
+				informSelfContained(uri, localName);
 
 				// start SC element
 				this.encodeStartSC(uri, localName, prefix);
@@ -163,6 +172,32 @@ public class EXIBodyEncoderInOrderSC extends EXIBodyEncoderInOrder {
 		}
 	}
 
+	protected void informSelfContained(String uri, String localName)
+			throws EXIException, IOException {
+		if (exiFactory.getSelfContainedHandler() != null) {
+			exiFactory.getSelfContainedHandler().scElement(uri, localName,
+					this.channel);
+		}
+	}
+
+	protected void informSelfContainedEnd(String uri, String localName)
+			throws EXIException, IOException {
+		if (exiFactory.getSelfContainedHandler() != null) {
+			exiFactory.getSelfContainedHandler().scElementEnd(uri, localName,
+					this.channel);
+		}
+	}
+
+	protected void encodeSelfContained() throws IOException {
+		int ec2 = get2ndLevelEventCode(
+				EventType.SELF_CONTAINED, getCurrentGrammar());
+		encode2ndLevelEventCode(ec2);
+
+		// Skip to the next byte-aligned boundary in the stream if it is
+		// not already at such a boundary
+		this.channel.align();
+	}
+
 	protected void encodeStartSC(String uri, String localName, String prefix)
 			throws EXIException, IOException {
 		// SC Factory & Encoder
@@ -176,6 +211,8 @@ public class EXIBodyEncoderInOrderSC extends EXIBodyEncoderInOrder {
 		// Evaluate the sequence of events (SD, SE(qname), content, ED)
 		// according to the Fragment grammar
 		scEncoder.encodeStartDocument();
+		// recorded as fragment, not as document
+		scEncoder.flightDocument = null;
 		// NO SC again
 		scEncoder.encodeStartElementNoSC(uri, localName, prefix);
 		// from now on events are forwarded to the scEncoder
@@ -196,11 +233,11 @@ public class EXIBodyEncoderInOrderSC extends EXIBodyEncoderInOrder {
 			super.encodeEndElement();
 		} else {
 			// fetch qname before EE
-			QName qname = scEncoder.getElementContext().qnameContext.getQName();
+			QName qname = scEncoder.getElementContext().getQNameContext().getQName();
 			// EE
 			scEncoder.encodeEndElement();
 			// if (getElementContextQName().equals(qname)
-			if (getElementContext().qnameContext.getQName().equals(qname)
+			if (getElementContext().getQNameContext().getQName().equals(qname)
 					&& scEncoder.getCurrentGrammar().getProduction(
 							EventType.END_DOCUMENT) != null) {
 				this.encodeEndSC();
@@ -267,6 +304,16 @@ public class EXIBodyEncoderInOrderSC extends EXIBodyEncoderInOrder {
 		}
 	}
 
+	@Override
+	public void encodeCharacters(char[] ch, int start, int length)
+			throws EXIException, IOException {
+		if (scEncoder == null) {
+			super.encodeCharacters(ch, start, length);
+		} else {
+			scEncoder.encodeCharacters(ch, start, length);
+		}
+	}
+
 	@Override
 	public void encodeDocType(String name, String publicID, String systemID,
 			String text) throws EXIException, IOException {
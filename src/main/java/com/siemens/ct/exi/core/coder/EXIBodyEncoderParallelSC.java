@@ -0,0 +1,475 @@
+/*
+ * Copyright (c) 2007-2018 Siemens AG
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * 
+ */
+
+package com.siemens.ct.exi.core.coder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+
+import javax.xml.namespace.QName;
+
+import com.siemens.ct.exi.core.CodingMode;
+import com.siemens.ct.exi.core.EXIFactory;
+import com.siemens.ct.exi.core.FidelityOptions;
+import com.siemens.ct.exi.core.SelfContainedContent;
+import com.siemens.ct.exi.core.SelfContainedHandler;
+import com.siemens.ct.exi.core.exceptions.EXIException;
+import com.siemens.ct.exi.core.io.BitOutputStream;
+import com.siemens.ct.exi.core.io.channel.BitEncoderChannel;
+import com.siemens.ct.exi.core.io.channel.ByteEncoderChannel;
+import com.siemens.ct.exi.core.io.channel.EncoderChannel;
+import com.siemens.ct.exi.core.jfr.EXIFlightRecorder;
+
+/**
+ * EXI encoder that encodes SELF_CONTAINED elements in parallel.
+ * 
+ * <p>
+ * The content of an SC element does not depend on anything that was encoded
+ * before (string tables and grammars are reset and the fragment starts at a
+ * byte-aligned boundary). Hence the fragments reported via
+ * {@link #encodeSelfContainedElement(String, String, String, SelfContainedContent)}
+ * are encoded by the given executor into separate buffers and concatenated in
+ * document order. The resulting stream is byte-identical to the one of
+ * {@link EXIBodyEncoderInOrderSC}.
+ * </p>
+ * 
+ * <p>
+ * At most <code>maxPendingFragments</code> fragments are kept in memory, the
+ * caller blocks on the oldest fragment if this limit is reached. A
+ * {@link SelfContainedHandler} registered with the factory is informed while
+ * the fragments are written to the output stream. Offsets are the same as the
+ * ones of {@link EXIBodyEncoderInOrderSC}, i.e., they do not include the
+ * header of byte-aligned streams. SC elements reported via
+ * {@link #encodeStartElement(String, String, String)} are still encoded
+ * sequentially. If a handler is registered, such an element waits for all
+ * pending fragments so that it is reported at its actual position.
+ * </p>
+ * 
+ * <p>
+ * Instead of an output stream, the encoder can also continue an existing
+ * channel (see {@link #setOutputChannel(EncoderChannel)}), e.g., the channel
+ * that holds the header written by an {@link EXIStreamEncoderImpl}.
+ * </p>
+ * 
+ * @author Daniel.Peintner.EXT@siemens.com
+ * @author Richard.Kuntschke@siemens.com
+ * 
+ */
+
+public class EXIBodyEncoderParallelSC extends EXIBodyEncoderInOrderSC {
+
+	public static final int DEFAULT_MAX_PENDING_FRAGMENTS = 64;
+
+	protected final Executor executor;
+	protected final int maxPendingFragments;
+
+	// SC handler is informed in output stream order only
+	protected final SelfContainedHandler scHandler;
+
+	// factory for fragment encoders (workers)
+	protected final EXIFactory fragmentFactory;
+	protected final Queue<FragmentEncoder> fragmentEncoders;
+
+	// fragments in document order
+	protected final Queue<PendingFragment> pendingFragments;
+
+	// bytes of current parent segment
+	protected final ByteArrayOutputStream segment;
+
+	protected OutputStream os;
+	protected EncoderChannel osChannel;
+	// header bytes of a byte-aligned stream not yet written to os
+	protected int pendingHeaderBytes;
+	// bits of the current byte of osChannel (bit-packed) that precede the
+	// first segment
+	protected int pendingLeadingBits;
+
+	public EXIBodyEncoderParallelSC(EXIFactory exiFactory, Executor executor)
+			throws EXIException {
+		this(exiFactory, executor, DEFAULT_MAX_PENDING_FRAGMENTS);
+	}
+
+	public EXIBodyEncoderParallelSC(EXIFactory exiFactory, Executor executor,
+			int maxPendingFragments) throws EXIException {
+		super(getParentFactory(exiFactory));
+		if (maxPendingFragments < 1) {
+			throw new EXIException("Invalid number of pending fragments: "
+					+ maxPendingFragments);
+		}
+		this.executor = executor;
+		this.maxPendingFragments = maxPendingFragments;
+		this.scHandler = exiFactory.getSelfContainedHandler();
+
+		this.fragmentFactory = this.exiFactory.clone();
+		this.fragmentFactory.setFragment(true);
+		this.fragmentEncoders = new ConcurrentLinkedQueue<FragmentEncoder>();
+
+		this.pendingFragments = new ArrayDeque<PendingFragment>();
+		this.segment = new ByteArrayOutputStream();
+	}
+
+	private static EXIFactory getParentFactory(EXIFactory exiFactory)
+			throws EXIException {
+		if (!exiFactory.getFidelityOptions().isFidelityEnabled(
+				FidelityOptions.FEATURE_SC)) {
+			throw new EXIException(
+					"SelfContained fidelity option needs to be enabled");
+		}
+		if (exiFactory.getCodingMode() == CodingMode.COMPRESSION
+				|| exiFactory.getCodingMode() == CodingMode.PRE_COMPRESSION) {
+			throw new EXIException(
+					"(Pre-)Compression and selfContained elements cannot work together");
+		}
+		// handler is informed by this encoder only
+		EXIFactory f = exiFactory.clone();
+		f.setSelfContainedElements(exiFactory.getSelfContainedElements(),
+				null);
+		return f;
+	}
+
+	@Override
+	public void setOutputStream(OutputStream os) throws EXIException,
+			IOException {
+		this.os = os;
+		initOutput(new ByteEncoderChannel(os), 0);
+	}
+
+	/**
+	 * Continues the given channel. A bit-packed body starts at the current
+	 * bit position of the channel, a byte-aligned body requires a channel
+	 * that is at a byte boundary. The header, if any, is expected to be
+	 * written to the channel already.
+	 * 
+	 * @param encoderChannel
+	 *            channel the stream is written to
+	 * @throws EXIException
+	 *             if the channel is not byte-aligned in byte-aligned mode
+	 */
+	@Override
+	public void setOutputChannel(EncoderChannel encoderChannel)
+			throws EXIException {
+		int leadingBits = 0;
+		if (encoderChannel instanceof BitEncoderChannel) {
+			leadingBits = ((BitEncoderChannel) encoderChannel)
+					.getBitsInBuffer();
+		}
+		if (leadingBits > 0
+				&& exiFactory.getCodingMode() != CodingMode.BIT_PACKED) {
+			throw new EXIException(
+					"Byte-aligned body requires a byte-aligned output channel");
+		}
+		this.os = null;
+		try {
+			initOutput(encoderChannel, leadingBits);
+		} catch (IOException e) {
+			throw new EXIException(e);
+		}
+	}
+
+	protected void initOutput(EncoderChannel osChannel, int leadingBits)
+			throws IOException {
+		this.osChannel = osChannel;
+		this.cancelPendingFragments();
+		segment.reset();
+		pendingHeaderBytes = 0;
+		pendingLeadingBits = leadingBits;
+
+		// parent events are collected per segment
+		if (exiFactory.getCodingMode() == CodingMode.BIT_PACKED) {
+			this.channel = new BitEncoderChannel(segment);
+			if (leadingBits > 0) {
+				// placeholder, keeps the bit position of osChannel
+				this.channel.encodeNBitUnsignedInteger(0, leadingBits);
+			}
+		} else {
+			this.channel = new ByteEncoderChannel(segment);
+		}
+	}
+
+	/**
+	 * Writes the EXI header. Needs to be called after setting the output
+	 * stream and before encoding any event.
+	 * 
+	 * @throws EXIException
+	 *             EXI exception, e.g., if an output channel was set instead of
+	 *             an output stream
+	 */
+	public void encodeHeader() throws EXIException {
+		if (os == null) {
+			throw new EXIException(
+					"EXI header requires an output stream, header of an output channel is written beforehand");
+		}
+		EXIHeaderEncoder exiHeader = new EXIHeaderEncoder();
+		if (exiFactory.getCodingMode() == CodingMode.BIT_PACKED) {
+			// bit-packed body shares the header channel
+			exiHeader.write((BitEncoderChannel) channel, exiFactory);
+		} else {
+			BitEncoderChannel headerChannel = new BitEncoderChannel(segment);
+			exiHeader.write(headerChannel, exiFactory);
+			try {
+				headerChannel.flush();
+			} catch (IOException e) {
+				throw new EXIException(e);
+			}
+			pendingHeaderBytes = segment.size();
+		}
+	}
+
+	@Override
+	public void initForEachRun() throws EXIException, IOException {
+		super.initForEachRun();
+
+		this.cancelPendingFragments();
+	}
+
+	/**
+	 * Encodes a self-contained element whose content is provided by the
+	 * callback. The content is encoded asynchronously.
+	 * 
+	 * @param uri
+	 *            the namespace URI of the element
+	 * @param localName
+	 *            the local name of the element
+	 * @param prefix
+	 *            the prefix of the element (might be null)
+	 * @param content
+	 *            attributes and children of the element
+	 * @throws EXIException
+	 *             EXI exception
+	 * @throws IOException
+	 *             IO exception
+	 */
+	public void encodeSelfContainedElement(String uri, String localName,
+			String prefix, SelfContainedContent content) throws EXIException,
+			IOException {
+		if (scEncoder != null) {
+			throw new EXIException(
+					"Parallel SC element within sequential SC element {" + uri
+							+ "}" + localName);
+		}
+		// SE in parent
+		super.encodeStartElementNoSC(uri, localName, prefix);
+		QName qname = getElementContext().getQNameContext().getQName();
+		if (!exiFactory.isSelfContainedElement(qname)) {
+			throw new EXIException("Element " + qname
+					+ " is not a selfContained element");
+		}
+		// SC & align
+		this.encodeSelfContained();
+
+		// parent segment up to the fragment
+		byte[] before = segment.toByteArray();
+		segment.reset();
+
+		FutureTask<byte[]> task = new FutureTask<byte[]>(new FragmentTask(uri,
+				localName, prefix, content));
+		pendingFragments.add(new PendingFragment(before, uri, localName, task));
+		executor.execute(task);
+
+		// NOTE: NO outer EE (see EXIBodyEncoderInOrderSC)
+		super.popElement();
+
+		while (pendingFragments.size() > maxPendingFragments) {
+			writePendingFragment(pendingFragments.poll());
+		}
+	}
+
+	/*
+	 * SC element encoded sequentially (see encodeStartElement), anything
+	 * before is written first so that the handler sees its actual position
+	 */
+	@Override
+	protected void informSelfContained(String uri, String localName)
+			throws EXIException, IOException {
+		if (scHandler != null) {
+			writePendingFragments();
+			scHandler.scElement(uri, localName, osChannel);
+		}
+	}
+
+	@Override
+	protected void informSelfContainedEnd(String uri, String localName)
+			throws EXIException, IOException {
+		if (scHandler != null) {
+			writeSegment(segment.toByteArray());
+			segment.reset();
+			scHandler.scElementEnd(uri, localName, osChannel);
+		}
+	}
+
+	@Override
+	public void flush() throws IOException {
+		// remaining bits of parent
+		channel.flush();
+		try {
+			writePendingFragments();
+		} catch (EXIException e) {
+			throw new IOException(e);
+		}
+		osChannel.flush();
+	}
+
+	protected void writePendingFragments() throws EXIException, IOException {
+		while (!pendingFragments.isEmpty()) {
+			writePendingFragment(pendingFragments.poll());
+		}
+		writeSegment(segment.toByteArray());
+		segment.reset();
+	}
+
+	protected void writeSegment(byte[] b) throws IOException {
+		int off = 0;
+		if (pendingLeadingBits > 0 && b.length > 0) {
+			// osChannel holds the leading bits of the first byte already
+			int n = BitOutputStream.BITS_IN_BYTE - pendingLeadingBits;
+			osChannel.encodeNBitUnsignedInteger(b[0] & ((1 << n) - 1), n);
+			pendingLeadingBits = 0;
+			off = 1;
+		}
+		// header bytes do not count for the body offsets
+		int header = Math.min(pendingHeaderBytes, b.length);
+		if (header > 0) {
+			os.write(b, 0, header);
+			pendingHeaderBytes -= header;
+			off = header;
+		}
+		if (b.length > off) {
+			osChannel.encode(b, off, b.length - off);
+		}
+	}
+
+	protected void writePendingFragment(PendingFragment pf)
+			throws EXIException, IOException {
+		byte[] fragment = SelfContainedTasks.getResult(pf.task);
+
+		writeSegment(pf.before);
+		if (scHandler != null) {
+			scHandler.scElement(pf.uri, pf.localName, osChannel);
+		}
+		Object flightFragment = EXIFlightRecorder.beginFragment();
+		writeSegment(fragment);
+		EXIFlightRecorder.endFragment(flightFragment, true, pf.uri,
+				pf.localName, fragment.length);
+		if (scHandler != null) {
+			scHandler.scElementEnd(pf.uri, pf.localName, osChannel);
+		}
+	}
+
+	protected void cancelPendingFragments() {
+		PendingFragment pf;
+		while ((pf = pendingFragments.poll()) != null) {
+			pf.task.cancel(false);
+		}
+	}
+
+	protected FragmentEncoder getFragmentEncoder() throws EXIException,
+			IOException {
+		FragmentEncoder fe = fragmentEncoders.poll();
+		if (fe == null) {
+			fe = new FragmentEncoder(fragmentFactory);
+		}
+		return fe;
+	}
+
+	static final class PendingFragment {
+		final byte[] before;
+		final String uri;
+		final String localName;
+		final FutureTask<byte[]> task;
+
+		PendingFragment(byte[] before, String uri, String localName,
+				FutureTask<byte[]> task) {
+			this.before = before;
+			this.uri = uri;
+			this.localName = localName;
+			this.task = task;
+		}
+	}
+
+	/*
+	 * Reusable encoder and buffer of a worker
+	 */
+	static final class FragmentEncoder {
+		final EXIBodyEncoderInOrderSC encoder;
+		final ByteArrayOutputStream baos;
+
+		FragmentEncoder(EXIFactory fragmentFactory) throws EXIException,
+				IOException {
+			encoder = (EXIBodyEncoderInOrderSC) fragmentFactory
+					.createEXIBodyEncoder();
+			baos = new ByteArrayOutputStream();
+			encoder.setOutputStream(baos);
+		}
+	}
+
+	final class FragmentTask implements Callable<byte[]> {
+		final String uri;
+		final String localName;
+		final String prefix;
+		final SelfContainedContent content;
+
+		FragmentTask(String uri, String localName, String prefix,
+				SelfContainedContent content) {
+			this.uri = uri;
+			this.localName = localName;
+			this.prefix = prefix;
+			this.content = content;
+		}
+
+		public byte[] call() throws EXIException, IOException {
+			FragmentEncoder fe = getFragmentEncoder();
+			EXIBodyEncoderInOrderSC encoder = fe.encoder;
+			encoder.setErrorHandler(errorHandler);
+
+			// Evaluate the sequence of events (SD, SE(qname), content, ED)
+			// according to the Fragment grammar
+			encoder.encodeStartDocument();
+			encoder.encodeStartElementNoSC(uri, localName, prefix);
+			if (preservePrefix) {
+				encoder.encodeNamespaceDeclaration(uri, prefix);
+			}
+			content.encodeContent(encoder);
+			if (encoder.scEncoder != null
+					|| encoder.elementContextStackIndex != 1) {
+				throw new EXIException("Unbalanced content of SC element {"
+						+ uri + "}" + localName);
+			}
+			encoder.encodeEndElement();
+			encoder.encodeEndDocument();
+			// Skip to the next byte-aligned boundary
+			encoder.flush();
+
+			byte[] fragment = fe.baos.toByteArray();
+			fe.baos.reset();
+			fragmentEncoders.add(fe);
+			return fragment;
+		}
+	}
+}
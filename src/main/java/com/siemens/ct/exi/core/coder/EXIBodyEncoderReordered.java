@@ -23,26 +23,31 @@
 
 package com.siemens.ct.exi.core.coder;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.util.ArrayList;
-import java.util.Iterator;
-import java.util.LinkedHashMap;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.zip.Deflater;
 import java.util.zip.DeflaterOutputStream;
 
+import com.siemens.ct.exi.core.CoderMetrics;
 import com.siemens.ct.exi.core.CodingMode;
 import com.siemens.ct.exi.core.Constants;
 import com.siemens.ct.exi.core.EXIFactory;
 import com.siemens.ct.exi.core.EncodingOptions;
-import com.siemens.ct.exi.core.container.ValueAndDatatype;
 import com.siemens.ct.exi.core.context.QNameContext;
 import com.siemens.ct.exi.core.datatype.Datatype;
 import com.siemens.ct.exi.core.exceptions.EXIException;
 import com.siemens.ct.exi.core.io.channel.ByteEncoderChannel;
 import com.siemens.ct.exi.core.io.channel.EncoderChannel;
+import com.siemens.ct.exi.core.jfr.EXIFlightRecorder;
+import com.siemens.ct.exi.core.values.CharSliceValue;
+import com.siemens.ct.exi.core.values.ReusableStringValue;
+import com.siemens.ct.exi.core.values.StringValue;
 import com.siemens.ct.exi.core.values.Value;
 
 /**
@@ -62,47 +67,63 @@ public class EXIBodyEncoderReordered extends AbstractEXIBodyEncoder {
 
 	protected int blockValues;
 
+	// uncompressed and deflated bytes of the current block, all bytes of the
+	// body
+	protected long blockBytes;
+	protected long blockCompressedBytes;
+	protected long bodyBytes;
+
 	protected Value lastValue;
 	protected Datatype lastDatatype;
 
-	// Note: Map needs to be sorted to retrieve correct channel order (e.g.,
-	// LinkedHashMap)
-	protected Map<QNameContext, List<ValueAndDatatype>> channelValuesAndDatatypes;
+	// value channels of the current block, the (dense) index reflects the
+	// channel order, i.e., the order of the first value in each channel
+	protected List<ValueChannel> blockChannels;
+	protected Map<QNameContext, ValueChannel> valueChannels;
+	// value channels (and their buffers) for re-use
+	protected List<ValueChannel> unusedChannels;
 
 	public EXIBodyEncoderReordered(EXIFactory exiFactory) throws EXIException {
 		super(exiFactory);
 
 		this.codingMode = exiFactory.getCodingMode();
 
-		// Note: needs to be sorted map for channel order
-		channelValuesAndDatatypes = new LinkedHashMap<QNameContext, List<ValueAndDatatype>>();
+		blockChannels = new ArrayList<ValueChannel>();
+		valueChannels = new HashMap<QNameContext, ValueChannel>();
+		unusedChannels = new ArrayList<ValueChannel>();
 	}
 
 	@Override
 	public void initForEachRun() throws EXIException, IOException {
 		super.initForEachRun();
 
-		blockValues = 0;
-
-		channelValuesAndDatatypes.clear();
+		initBlock();
+		bodyBytes = 0L;
 	}
 
 	protected void initBlock() {
 		blockValues = 0;
 
 		// re-set all channels
-		this.channelValuesAndDatatypes.clear();
+		for (int i = 0; i < blockChannels.size(); i++) {
+			ValueChannel vc = blockChannels.get(i);
+			vc.clear();
+			unusedChannels.add(vc);
+		}
+		blockChannels.clear();
+		valueChannels.clear();
 	}
 
-	protected void addValueAndDatatype(QNameContext qnc, ValueAndDatatype vd) {
-		List<ValueAndDatatype> vds = this.channelValuesAndDatatypes.get(qnc);
-		if (vds == null) {
-			// create new list
-			vds = new ArrayList<ValueAndDatatype>();
-			// add to map (sorted due to linked hashmap)
-			channelValuesAndDatatypes.put(qnc, vds);
+	protected ValueChannel getValueChannel(QNameContext qnc) {
+		ValueChannel vc = valueChannels.get(qnc);
+		if (vc == null) {
+			int n = unusedChannels.size();
+			vc = n == 0 ? new ValueChannel() : unusedChannels.remove(n - 1);
+			vc.qnContext = qnc;
+			blockChannels.add(vc);
+			valueChannels.put(qnc, vc);
 		}
-		vds.add(vd);
+		return vc;
 	}
 
 	public void setOutputStream(OutputStream os) throws EXIException,
@@ -128,8 +149,20 @@ public class EXIBodyEncoderReordered extends AbstractEXIBodyEncoder {
 
 	@Override
 	protected void writeValue(QNameContext valueContext) throws IOException {
-		addValueAndDatatype(valueContext, new ValueAndDatatype(lastValue,
-				lastDatatype));
+		ValueChannel vc = getValueChannel(valueContext);
+		if (typeEncoder.isStringTableValue()) {
+			// string table state depends on channel order, defer
+			if (lastValue instanceof CharSliceValue
+					|| lastValue instanceof ReusableStringValue) {
+				// value instance is re-used
+				lastValue = new StringValue(lastValue.toString());
+			}
+			vc.addDeferredValue(lastValue, lastDatatype);
+		} else {
+			// representation is context-free, encode right away
+			typeEncoder.writeValue(valueContext, vc.channel, stringEncoder);
+			vc.values++;
+		}
 
 		// new block goes directly after value
 		if (++blockValues == exiFactory.getBlockSize()) {
@@ -168,6 +201,14 @@ public class EXIBodyEncoderReordered extends AbstractEXIBodyEncoder {
 	}
 
 	protected void closeBlock() throws IOException {
+		Object flightBlock = EXIFlightRecorder.beginBlock();
+		long start = 0L;
+		blockBytes = channel.getLength();
+		blockCompressedBytes = 0L;
+		if (metrics != null) {
+			start = System.nanoTime();
+			metrics.bytes(CoderMetrics.Channel.STRUCTURE, blockBytes);
+		}
 		/*
 		 * Some EXI events have zero-byte representations and are not explicitly
 		 * represented in the EXI stream. If a sequence of these events occurs
@@ -188,18 +229,8 @@ public class EXIBodyEncoderReordered extends AbstractEXIBodyEncoder {
 		else if (blockValues <= Constants.MAX_NUMBER_OF_VALUES) {
 			// 1. structure stream already written
 			// 2. value channels in order
-			Iterator<QNameContext> iterCh = this.channelValuesAndDatatypes
-					.keySet().iterator();
-			while (iterCh.hasNext()) {
-				QNameContext contextOrder = iterCh.next();
-				List<ValueAndDatatype> lvd = channelValuesAndDatatypes
-						.get(contextOrder);
-				for (int i = 0; i < lvd.size(); i++) {
-					ValueAndDatatype vd = lvd.get(i);
-					typeEncoder.isValid(vd.datatype, vd.value);
-					typeEncoder
-							.writeValue(contextOrder, channel, stringEncoder);
-				}
+			for (int i = 0; i < blockChannels.size(); i++) {
+				writeValueChannel(blockChannels.get(i), channel);
 			}
 
 			finalizeStream();
@@ -227,19 +258,10 @@ public class EXIBodyEncoderReordered extends AbstractEXIBodyEncoder {
 			EncoderChannel leq100 = new ByteEncoderChannel(getStream());
 			boolean wasThereLeq100 = false;
 
-			Iterator<QNameContext> iterCh = this.channelValuesAndDatatypes
-					.keySet().iterator();
-			while (iterCh.hasNext()) {
-				QNameContext contextOrder = iterCh.next();
-				List<ValueAndDatatype> lvd = channelValuesAndDatatypes
-						.get(contextOrder);
-				if (lvd.size() <= Constants.MAX_NUMBER_OF_VALUES) {
-					for (int i = 0; i < lvd.size(); i++) {
-						ValueAndDatatype vd = lvd.get(i);
-						typeEncoder.isValid(vd.datatype, vd.value);
-						typeEncoder.writeValue(contextOrder, leq100,
-								stringEncoder);
-					}
+			for (int i = 0; i < blockChannels.size(); i++) {
+				ValueChannel vc = blockChannels.get(i);
+				if (vc.values <= Constants.MAX_NUMBER_OF_VALUES) {
+					writeValueChannel(vc, leq100);
 					wasThereLeq100 = true;
 				}
 			}
@@ -249,31 +271,124 @@ public class EXIBodyEncoderReordered extends AbstractEXIBodyEncoder {
 			}
 
 			// all value channels having more than 100 values
-			iterCh = this.channelValuesAndDatatypes.keySet().iterator();
-			while (iterCh.hasNext()) {
-				QNameContext contextOrder = iterCh.next();
-				List<ValueAndDatatype> lvd = channelValuesAndDatatypes
-						.get(contextOrder);
-				if (lvd.size() > Constants.MAX_NUMBER_OF_VALUES) {
+			for (int i = 0; i < blockChannels.size(); i++) {
+				ValueChannel vc = blockChannels.get(i);
+				if (vc.values > Constants.MAX_NUMBER_OF_VALUES) {
 					// create stream
 					EncoderChannel gre100 = new ByteEncoderChannel(getStream());
-					for (int i = 0; i < lvd.size(); i++) {
-						ValueAndDatatype vd = lvd.get(i);
-						typeEncoder.isValid(vd.datatype, vd.value);
-						typeEncoder.writeValue(contextOrder, gre100,
-								stringEncoder);
-					}
+					writeValueChannel(vc, gre100);
 					// finish stream
 					finalizeStream();
 
 				}
 			}
 		}
+
+		if (codingMode == CodingMode.COMPRESSION) {
+			bodyBytes += blockCompressedBytes;
+			EXIFlightRecorder.endBlock(flightBlock, true, blockValues,
+					blockChannels.size(), blockBytes, blockCompressedBytes);
+		} else {
+			bodyBytes += blockBytes;
+			EXIFlightRecorder.endBlock(flightBlock, true, blockValues,
+					blockChannels.size(), blockBytes, -1L);
+		}
+
+		if (metrics != null) {
+			long nanos = System.nanoTime() - start;
+			metrics.time(CoderMetrics.Phase.COMPRESSION, nanos);
+			// not part of structure coding
+			metricsExcludedNanos += nanos;
+		}
+	}
+
+	protected void writeValueChannel(ValueChannel vc, EncoderChannel ch)
+			throws IOException {
+		int length = ch.getLength();
+		int pos = 0;
+		for (int i = 0; i < vc.deferredValues; i++) {
+			// pre-encoded values in front of deferred value
+			int deferredPos = vc.deferredPositions[i];
+			vc.bytes.writeTo(ch, pos, deferredPos - pos);
+			pos = deferredPos;
+			// deferred value
+			typeEncoder.isValid(vc.deferredDatatypes[i], vc.deferred[i]);
+			typeEncoder.writeValue(vc.qnContext, ch, stringEncoder);
+		}
+		vc.bytes.writeTo(ch, pos, vc.bytes.size() - pos);
+		length = ch.getLength() - length;
+		blockBytes += length;
+		if (metrics != null) {
+			metrics.bytes(CoderMetrics.Channel.VALUE, length);
+		}
+	}
+
+	/*
+	 * Values of one channel: context-free values are encoded right away, values
+	 * that depend on the string tables are kept (with their position) until
+	 * the block is written.
+	 */
+	static final class ValueChannel {
+		QNameContext qnContext;
+		// number of values
+		int values;
+		final ValueBuffer bytes;
+		final EncoderChannel channel;
+		// deferred values
+		int deferredValues;
+		int[] deferredPositions;
+		Value[] deferred;
+		Datatype[] deferredDatatypes;
+
+		ValueChannel() {
+			bytes = new ValueBuffer();
+			channel = new ByteEncoderChannel(bytes);
+			deferredPositions = new int[8];
+			deferred = new Value[8];
+			deferredDatatypes = new Datatype[8];
+		}
+
+		void addDeferredValue(Value value, Datatype datatype) {
+			if (deferredValues == deferred.length) {
+				int newLength = deferredValues << 1;
+				deferredPositions = Arrays.copyOf(deferredPositions, newLength);
+				deferred = Arrays.copyOf(deferred, newLength);
+				deferredDatatypes = Arrays.copyOf(deferredDatatypes, newLength);
+			}
+			deferredPositions[deferredValues] = bytes.size();
+			deferred[deferredValues] = value;
+			deferredDatatypes[deferredValues] = datatype;
+			deferredValues++;
+			values++;
+		}
+
+		void clear() {
+			qnContext = null;
+			values = 0;
+			bytes.reset();
+			// release values
+			Arrays.fill(deferred, 0, deferredValues, null);
+			Arrays.fill(deferredDatatypes, 0, deferredValues, null);
+			deferredValues = 0;
+		}
+	}
+
+	static final class ValueBuffer extends ByteArrayOutputStream {
+		void writeTo(EncoderChannel ch, int off, int len) throws IOException {
+			if (len > 0) {
+				ch.encode(buf, off, len);
+			}
+		}
 	}
 
 	protected void finalizeStream() throws IOException {
 		if (codingMode == CodingMode.COMPRESSION) {
 			deflaterOS.finish();
+			long compressed = deflater.getBytesWritten();
+			blockCompressedBytes += compressed;
+			if (metrics != null) {
+				metrics.bytes(CoderMetrics.Channel.COMPRESSED, compressed);
+			}
 		}
 		// else nothing to do
 	}
@@ -286,8 +401,14 @@ public class EXIBodyEncoderReordered extends AbstractEXIBodyEncoder {
 		// finalize document
 		os.flush();
 
+		EXIFlightRecorder.endDocument(flightDocument, true, codingMode,
+				bodyBytes);
+		flightDocument = null;
+
 		if (deflater != null) { // https://github.com/EXIficient/exificient/issues/26
 			deflater.end();
+			// ended deflater cannot be reset for the next stream
+			deflater = null;
 		}
 	}
 
@@ -24,7 +24,9 @@
 package com.siemens.ct.exi.core.coder;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import javax.xml.namespace.QName;
@@ -43,6 +45,7 @@ import com.siemens.ct.exi.core.grammars.event.EventType;
 import com.siemens.ct.exi.core.helpers.DefaultEXIFactory;
 import com.siemens.ct.exi.core.io.channel.BitDecoderChannel;
 import com.siemens.ct.exi.core.io.channel.DecoderChannel;
+import com.siemens.ct.exi.core.jfr.EXIFlightRecorder;
 import com.siemens.ct.exi.core.values.BooleanValue;
 import com.siemens.ct.exi.core.values.DecimalValue;
 import com.siemens.ct.exi.core.values.IntegerValue;
@@ -71,11 +74,15 @@ public class EXIHeaderDecoder extends AbstractEXIHeader {
 	protected List<QName> dtrMapTypes = new ArrayList<QName>();
 	protected List<QName> dtrMapRepresentations = new ArrayList<QName>();
 
+	// schemaId resolved while reading options
+	protected String schemaId;
+
 	public EXIHeaderDecoder() throws EXIException {
 	}
 
 	protected void clear() {
 		lastSE = null;
+		schemaId = null;
 
 		// emptyExiP = true;
 
@@ -87,59 +94,11 @@ public class EXIHeaderDecoder extends AbstractEXIHeader {
 	public EXIFactory parse(BitDecoderChannel headerChannel,
 			EXIFactory noOptionsFactory) throws EXIException {
 		try {
-			// EXI Cookie
-			if (headerChannel.lookAhead() == '$') {
-				int h0 = headerChannel.decode();
-				int h1 = headerChannel.decode();
-				int h2 = headerChannel.decode();
-				int h3 = headerChannel.decode();
-				if (h0 != '$' || h1 != 'E' || h2 != 'X' || h3 != 'I') {
-					throw new EXIException("No valid EXI Cookie ($EXI)");
-				}
-			}
-
-			// An EXI header starts with Distinguishing Bits part, which is a
-			// two bit field 1 0
-			if (headerChannel
-					.decodeNBitUnsignedInteger(NUMBER_OF_DISTINGUISHING_BITS) != DISTINGUISHING_BITS_VALUE) {
-				throw new EXIException(
-						"No valid EXI document according distinguishing bits");
-			}
-
-			// Presence Bit for EXI Options
-			boolean presenceOptions = headerChannel.decodeBoolean();
-
-			// EXI Format Version (1 4+)
-
-			// The first bit of the version field indicates whether the version
-			// is a
-			// preview or final version of the EXI format.
-			// A value of 0 indicates this is a final version and a value of 1
-			// indicates this is a preview version.
-			// @SuppressWarnings("unused")
-			boolean previewVersion = headerChannel.decodeBoolean();
-			assert (!previewVersion);
-
-			// one or more 4-bit unsigned integers represent the version number
-			// 1. Read next 4 bits as an unsigned integer value.
-			// 2. Add the value that was just read to the version number.
-			// 3. If the value is 15, go to step 1, otherwise (i.e. the value
-			// being
-			// in the range of 0-14),
-			// use the current value of the version number as the EXI version
-			// number.
-			int value;
-			int version = 0;
-			do {
-				value = headerChannel
-						.decodeNBitUnsignedInteger(NUMBER_OF_FORMAT_VERSION_BITS);
-				version += value;
-			} while (value == FORMAT_VERSION_CONTINUE_VALUE);
-			assert (version == 0);
-
+			Object flightHeader = EXIFlightRecorder.beginHeader();
 			// [EXI Options] ?
 			EXIFactory exiFactory;
-			if (presenceOptions) {
+			boolean options = parseDistinguishingBitsAndVersion(headerChannel);
+			if (options) {
 				// use default options and re-set if needed
 				exiFactory = readEXIOptions(headerChannel, noOptionsFactory);
 			} else {
@@ -152,6 +111,7 @@ public class EXIHeaderDecoder extends AbstractEXIHeader {
 				headerChannel.align();
 			}
 
+			EXIFlightRecorder.endHeader(flightHeader, false, options, -1L);
 			return exiFactory;
 
 		} catch (IOException e) {
@@ -160,6 +120,214 @@ public class EXIHeaderDecoder extends AbstractEXIHeader {
 
 	}
 
+	/**
+	 * Parses the EXI header and looks up its options document in the given
+	 * cache. Options are decoded only if the cache does not know their bits
+	 * yet.
+	 * 
+	 * @param headerChannel
+	 *            header channel
+	 * @param is
+	 *            input stream the header channel reads from, the cache is used
+	 *            only if the stream supports mark and reset
+	 * @param optionsCache
+	 *            options cache
+	 * @return cache entry holding the factory for the EXI body
+	 * @throws EXIException
+	 *             EXI exception
+	 */
+	public EXIOptionsCache.Entry parse(BitDecoderChannel headerChannel,
+			InputStream is, EXIOptionsCache optionsCache) throws EXIException {
+		try {
+			Object flightHeader = EXIFlightRecorder.beginHeader();
+			EXIOptionsCache.Entry entry;
+			boolean options = parseDistinguishingBitsAndVersion(headerChannel);
+			if (options) {
+				entry = readEXIOptions(headerChannel, is, optionsCache);
+			} else {
+				entry = optionsCache.getNoOptionsEntry();
+			}
+
+			// other than bit-packed has [Padding Bits]
+			if (entry.getFactory().getCodingMode() != CodingMode.BIT_PACKED) {
+				headerChannel.align();
+			}
+
+			EXIFlightRecorder.endHeader(flightHeader, false, options, -1L);
+			return entry;
+
+		} catch (IOException e) {
+			throw new EXIException(e);
+		}
+	}
+
+	// returns presence of EXI options
+	protected boolean parseDistinguishingBitsAndVersion(
+			BitDecoderChannel headerChannel) throws EXIException, IOException {
+		// EXI Cookie
+		if (headerChannel.lookAhead() == '$') {
+			int h0 = headerChannel.decode();
+			int h1 = headerChannel.decode();
+			int h2 = headerChannel.decode();
+			int h3 = headerChannel.decode();
+			if (h0 != '$' || h1 != 'E' || h2 != 'X' || h3 != 'I') {
+				throw new EXIException("No valid EXI Cookie ($EXI)");
+			}
+		}
+
+		// An EXI header starts with Distinguishing Bits part, which is a
+		// two bit field 1 0
+		if (headerChannel
+				.decodeNBitUnsignedInteger(NUMBER_OF_DISTINGUISHING_BITS) != DISTINGUISHING_BITS_VALUE) {
+			throw new EXIException(
+					"No valid EXI document according distinguishing bits");
+		}
+
+		// Presence Bit for EXI Options
+		boolean presenceOptions = headerChannel.decodeBoolean();
+
+		// EXI Format Version (1 4+)
+
+		// The first bit of the version field indicates whether the version
+		// is a
+		// preview or final version of the EXI format.
+		// A value of 0 indicates this is a final version and a value of 1
+		// indicates this is a preview version.
+		// @SuppressWarnings("unused")
+		boolean previewVersion = headerChannel.decodeBoolean();
+		assert (!previewVersion);
+
+		// one or more 4-bit unsigned integers represent the version number
+		// 1. Read next 4 bits as an unsigned integer value.
+		// 2. Add the value that was just read to the version number.
+		// 3. If the value is 15, go to step 1, otherwise (i.e. the value
+		// being
+		// in the range of 0-14),
+		// use the current value of the version number as the EXI version
+		// number.
+		int value;
+		int version = 0;
+		do {
+			value = headerChannel
+					.decodeNBitUnsignedInteger(NUMBER_OF_FORMAT_VERSION_BITS);
+			version += value;
+		} while (value == FORMAT_VERSION_CONTINUE_VALUE);
+		assert (version == 0);
+
+		return presenceOptions;
+	}
+
+	protected EXIOptionsCache.Entry readEXIOptions(
+			BitDecoderChannel headerChannel, InputStream is,
+			EXIOptionsCache optionsCache) throws EXIException, IOException {
+		EXIFactory noOptionsFactory = optionsCache.getNoOptionsFactory();
+		if (!is.markSupported() || headerChannel.getBufferedBits() != 0) {
+			return optionsCache.createUncachedEntry(readEXIOptions(
+					headerChannel, noOptionsFactory));
+		}
+
+		is.mark(EXIOptionsCache.MAX_OPTIONS_LENGTH);
+		EXIOptionsCache.Entry entry = lookupEXIOptions(is,
+				optionsCache.getEntries());
+		is.reset();
+		if (entry != null && !optionsCache.isValid(entry)) {
+			// schemaId resolves to other grammars by now
+			optionsCache.remove(entry);
+			entry = null;
+		}
+
+		if (entry == null) {
+			// decode options once and record their bytes
+			OptionsRecorder recorder = new OptionsRecorder(is);
+			BitDecoderChannel optionsChannel = new BitDecoderChannel(recorder);
+			EXIFactory exiFactory;
+			try {
+				exiFactory = readEXIOptions(optionsChannel, noOptionsFactory);
+			} catch (IOException e) {
+				if (recorder.exceeded) {
+					is.reset();
+					return optionsCache.createUncachedEntry(readEXIOptions(
+							headerChannel, noOptionsFactory));
+				}
+				throw e;
+			} catch (EXIException e) {
+				if (recorder.exceeded) {
+					is.reset();
+					return optionsCache.createUncachedEntry(readEXIOptions(
+							headerChannel, noOptionsFactory));
+				}
+				throw e;
+			}
+			int bitLength = recorder.length * 8
+					- optionsChannel.getBufferedBits();
+			entry = optionsCache.put(
+					Arrays.copyOf(recorder.bytes, recorder.length), bitLength,
+					exiFactory, schemaId);
+			is.reset();
+		}
+
+		// skip known options bits
+		int bitLength = entry.getBitLength();
+		headerChannel.skip(bitLength >>> 3);
+		if ((bitLength & 7) != 0) {
+			headerChannel.decodeNBitUnsignedInteger(bitLength & 7);
+		}
+
+		return entry;
+	}
+
+	// reads no byte beyond the options document
+	private static EXIOptionsCache.Entry lookupEXIOptions(InputStream is,
+			EXIOptionsCache.Entry[] entries) throws IOException {
+		int n = entries.length;
+		long candidates = n == 64 ? -1L : (1L << n) - 1;
+		for (int i = 0; candidates != 0; i++) {
+			int b = is.read();
+			if (b == -1) {
+				return null;
+			}
+			long c = candidates;
+			while (c != 0) {
+				int k = Long.numberOfTrailingZeros(c);
+				c &= c - 1;
+				EXIOptionsCache.Entry e = entries[k];
+				if (!e.matches(i, b)) {
+					candidates &= ~(1L << k);
+				} else if (e.getByteLength() == i + 1) {
+					// options documents are prefix-free
+					return e;
+				}
+			}
+		}
+		return null;
+	}
+
+	static final class OptionsRecorder extends InputStream {
+		final InputStream is;
+		final byte[] bytes;
+		int length;
+		boolean exceeded;
+
+		OptionsRecorder(InputStream is) {
+			this.is = is;
+			this.bytes = new byte[EXIOptionsCache.MAX_OPTIONS_LENGTH];
+		}
+
+		@Override
+		public int read() throws IOException {
+			if (length == bytes.length) {
+				exceeded = true;
+				throw new IOException("EXI options exceed "
+						+ EXIOptionsCache.MAX_OPTIONS_LENGTH + " bytes");
+			}
+			int b = is.read();
+			if (b != -1) {
+				bytes[length++] = (byte) b;
+			}
+			return b;
+		}
+	}
+
 	public EXIFactory readEXIOptions(DecoderChannel decoderChannel,
 			EXIFactory noOptionsFactory) throws EXIException, IOException {
 		EXIBodyDecoderInOrder decoder = (EXIBodyDecoderInOrder) getHeaderFactory()
@@ -375,6 +543,7 @@ public class EXIHeaderDecoder extends AbstractEXIHeader {
 				SchemaIdResolver sir = f.getSchemaIdResolver();
 				if (sir != null) {
 					f.setGrammars(sir.resolveSchemaId(schemaId));
+					this.schemaId = schemaId;
 				} else {
 					// // default --> try to find GrammarFactory
 					// // com.siemens.ct.exi.GrammarFactory
@@ -23,6 +23,7 @@
 
 package com.siemens.ct.exi.core.coder;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 
 import javax.xml.namespace.QName;
@@ -115,6 +116,107 @@ public class EXIHeaderEncoder extends AbstractEXIHeader {
 		}
 	}
 
+	/**
+	 * Encodes the EXI header of the given factory once. The resulting template
+	 * reflects the factory configuration at the time of this call.
+	 * 
+	 * @param f
+	 *            factory
+	 * @return header template
+	 * @throws EXIException
+	 *             EXI exception
+	 */
+	public HeaderTemplate createTemplate(EXIFactory f) throws EXIException {
+		try {
+			ByteArrayOutputStream baos = new ByteArrayOutputStream();
+			BitEncoderChannel channel = new BitEncoderChannel(baos);
+			write(channel, f);
+			// bit-packed header may end within a byte
+			int tailBits = channel.getBitsInBuffer();
+			channel.flush();
+			return new HeaderTemplate(baos.toByteArray(), tailBits,
+					f.getCodingMode(), f.getEncodingOptions().isOptionEnabled(
+							EncodingOptions.INCLUDE_OPTIONS));
+		} catch (IOException e) {
+			throw new EXIException(e);
+		}
+	}
+
+	/**
+	 * Writes a previously created header template, equivalent to
+	 * {@link #write(BitEncoderChannel, EXIFactory)} for the factory
+	 * configuration of the template.
+	 * 
+	 * @param headerChannel
+	 *            header channel
+	 * @param template
+	 *            header template
+	 * @throws EXIException
+	 *             EXI exception
+	 */
+	public void write(BitEncoderChannel headerChannel, HeaderTemplate template)
+			throws EXIException {
+		try {
+			headerChannel.encode(template.bytes, 0, template.length);
+			if (template.tailBits != 0) {
+				headerChannel.encodeNBitUnsignedInteger(template.tailValue,
+						template.tailBits);
+			}
+			if (template.codingMode != CodingMode.BIT_PACKED) {
+				headerChannel.flush();
+			}
+		} catch (IOException e) {
+			throw new EXIException(e);
+		}
+	}
+
+	public static final class HeaderTemplate {
+		final byte[] bytes;
+		// whole bytes
+		final int length;
+		final int tailBits;
+		final int tailValue;
+		final CodingMode codingMode;
+		final boolean options;
+
+		HeaderTemplate(byte[] bytes, int tailBits, CodingMode codingMode,
+				boolean options) {
+			this.bytes = bytes;
+			this.tailBits = tailBits;
+			if (tailBits == 0) {
+				length = bytes.length;
+				tailValue = 0;
+			} else {
+				length = bytes.length - 1;
+				tailValue = (bytes[length] & 0xFF) >>> (8 - tailBits);
+			}
+			this.codingMode = codingMode;
+			this.options = options;
+		}
+
+		public CodingMode getCodingMode() {
+			return codingMode;
+		}
+
+		/**
+		 * Returns whether the header includes EXI options.
+		 * 
+		 * @return true if options are included
+		 */
+		public boolean hasOptions() {
+			return options;
+		}
+
+		/**
+		 * Returns the header length in bits.
+		 * 
+		 * @return number of bits
+		 */
+		public int getBitLength() {
+			return length * 8 + tailBits;
+		}
+	}
+
 	public void writeEXIOptions(EXIFactory f, EncoderChannel encoderChannel)
 			throws EXIException, IOException {
 
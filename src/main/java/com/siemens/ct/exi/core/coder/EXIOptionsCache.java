@@ -0,0 +1,260 @@
+/*
+ * Copyright (c) 2007-2018 Siemens AG
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * 
+ */
+
+package com.siemens.ct.exi.core.coder;
+
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import com.siemens.ct.exi.core.EXIBodyDecoder;
+import com.siemens.ct.exi.core.EXIFactory;
+import com.siemens.ct.exi.core.SchemaIdResolver;
+import com.siemens.ct.exi.core.exceptions.EXIException;
+
+/**
+ * Cache of EXI options documents found in EXI headers.
+ * 
+ * <p>
+ * Entries are keyed by the raw bits of the options document and map to the
+ * factory resolved from those options and a pool of body decoders for that
+ * factory. Repeated headers with identical options therefore skip decoding
+ * the options document and creating a new body decoder.
+ * </p>
+ * 
+ * <p>
+ * A cache is bound to the factory that applies when no options are present
+ * (its grammars, schemaId resolver and decoding options are used while
+ * resolving options) and may be shared by several
+ * <code>EXIStreamDecoderImpl</code> instances. Entries whose options carry a
+ * schemaId are checked against the <code>SchemaIdResolver</code> on every hit
+ * and are dropped once the resolver returns different grammars (e.g. after
+ * <code>SnapshotSchemaIdResolver.evict(String)</code>). Resolvers are expected
+ * to cache the grammars they return. Cached factories must not be modified.
+ * </p>
+ * 
+ * @author Daniel.Peintner.EXT@siemens.com
+ * @author Richard.Kuntschke@siemens.com
+ * 
+ */
+
+public class EXIOptionsCache {
+
+	/** options documents longer than that (in bytes) are not cached */
+	public static final int MAX_OPTIONS_LENGTH = 1024;
+
+	/** maximum number of entries, the oldest entry is dropped first */
+	public static final int MAX_ENTRIES = 64;
+
+	protected final EXIFactory noOptionsFactory;
+	protected final Entry noOptionsEntry;
+
+	// copy-on-write, scanned for each header with options
+	protected volatile Entry[] entries;
+
+	public EXIOptionsCache(EXIFactory noOptionsFactory) {
+		this.noOptionsFactory = noOptionsFactory;
+		this.noOptionsEntry = new Entry(null, 0, noOptionsFactory, null);
+		this.entries = new Entry[0];
+	}
+
+	public EXIFactory getNoOptionsFactory() {
+		return noOptionsFactory;
+	}
+
+	/**
+	 * Returns the entry for EXI headers without options.
+	 * 
+	 * @return entry holding the no-options factory
+	 */
+	public Entry getNoOptionsEntry() {
+		return noOptionsEntry;
+	}
+
+	public int size() {
+		return entries.length;
+	}
+
+	Entry[] getEntries() {
+		return entries;
+	}
+
+	Entry createUncachedEntry(EXIFactory exiFactory) {
+		return new Entry(null, 0, exiFactory, null);
+	}
+
+	/**
+	 * Checks whether the grammars of the given entry are still the ones
+	 * returned by the schemaId resolver.
+	 * 
+	 * @param entry
+	 *            cache entry
+	 * @return true if the entry can be used
+	 * @throws EXIException
+	 *             EXI exception
+	 */
+	public boolean isValid(Entry entry) throws EXIException {
+		if (entry.schemaId == null) {
+			return true;
+		}
+		SchemaIdResolver sir = noOptionsFactory.getSchemaIdResolver();
+		return sir != null
+				&& sir.resolveSchemaId(entry.schemaId) == entry.exiFactory
+						.getGrammars();
+	}
+
+	/**
+	 * Adds the resolved factory for the given options bits. If an entry for
+	 * those bits exists already (e.g. decoded concurrently) the existing entry
+	 * is returned.
+	 * 
+	 * @param options
+	 *            options bytes, the last byte may be used partly
+	 * @param bitLength
+	 *            length of the options document in bits
+	 * @param exiFactory
+	 *            resolved factory
+	 * @param schemaId
+	 *            schemaId that was resolved or null
+	 * @return cache entry
+	 */
+	public synchronized Entry put(byte[] options, int bitLength,
+			EXIFactory exiFactory, String schemaId) {
+		assert (bitLength > 0 && options.length == (bitLength + 7) >>> 3);
+		Entry[] es = entries;
+		for (Entry e : es) {
+			if (e.bitLength == bitLength && Arrays.equals(e.options, options)) {
+				return e;
+			}
+		}
+		Entry entry = new Entry(options, bitLength, exiFactory, schemaId);
+		Entry[] esNew;
+		if (es.length == MAX_ENTRIES) {
+			esNew = new Entry[MAX_ENTRIES];
+			System.arraycopy(es, 1, esNew, 0, MAX_ENTRIES - 1);
+		} else {
+			esNew = Arrays.copyOf(es, es.length + 1);
+		}
+		esNew[esNew.length - 1] = entry;
+		entries = esNew;
+		return entry;
+	}
+
+	public synchronized boolean remove(Entry entry) {
+		Entry[] es = entries;
+		for (int i = 0; i < es.length; i++) {
+			if (es[i] == entry) {
+				Entry[] esNew = new Entry[es.length - 1];
+				System.arraycopy(es, 0, esNew, 0, i);
+				System.arraycopy(es, i + 1, esNew, i, esNew.length - i);
+				entries = esNew;
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Drops all entries resolved for the given schemaId.
+	 * 
+	 * @param schemaId
+	 *            schemaId
+	 */
+	public synchronized void invalidate(String schemaId) {
+		for (Entry e : entries) {
+			if (schemaId.equals(e.schemaId)) {
+				remove(e);
+			}
+		}
+	}
+
+	public synchronized void clear() {
+		entries = new Entry[0];
+	}
+
+	public static final class Entry {
+		final byte[] options;
+		final int bitLength;
+		final int lastByteMask;
+		final EXIFactory exiFactory;
+		final String schemaId;
+		final Queue<EXIBodyDecoder> decoders;
+
+		Entry(byte[] options, int bitLength, EXIFactory exiFactory,
+				String schemaId) {
+			this.options = options;
+			this.bitLength = bitLength;
+			int lastBits = ((bitLength - 1) & 7) + 1;
+			this.lastByteMask = (0xFF << (8 - lastBits)) & 0xFF;
+			this.exiFactory = exiFactory;
+			this.schemaId = schemaId;
+			this.decoders = new ConcurrentLinkedQueue<EXIBodyDecoder>();
+		}
+
+		public EXIFactory getFactory() {
+			return exiFactory;
+		}
+
+		public int getBitLength() {
+			return bitLength;
+		}
+
+		public String getSchemaId() {
+			return schemaId;
+		}
+
+		int getByteLength() {
+			return options.length;
+		}
+
+		// compares the used bits of the index-th options byte
+		boolean matches(int index, int b) {
+			int mask = index == options.length - 1 ? lastByteMask : 0xFF;
+			return ((options[index] ^ b) & mask) == 0;
+		}
+
+		/**
+		 * Returns a pooled body decoder or creates a new one.
+		 * 
+		 * @return body decoder for the factory of this entry
+		 * @throws EXIException
+		 *             EXI exception
+		 */
+		public EXIBodyDecoder acquireDecoder() throws EXIException {
+			EXIBodyDecoder decoder = decoders.poll();
+			return decoder == null ? exiFactory.createEXIBodyDecoder()
+					: decoder;
+		}
+
+		/**
+		 * Hands back a body decoder obtained by {@link #acquireDecoder()} once
+		 * the stream it decoded is done.
+		 * 
+		 * @param decoder
+		 *            body decoder
+		 */
+		public void releaseDecoder(EXIBodyDecoder decoder) {
+			decoders.offer(decoder);
+		}
+	}
+}
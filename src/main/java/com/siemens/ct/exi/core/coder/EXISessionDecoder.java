@@ -0,0 +1,213 @@
+/*
+ * Copyright (c) 2007-2018 Siemens AG
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * 
+ */
+
+package com.siemens.ct.exi.core.coder;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import com.siemens.ct.exi.core.CodingMode;
+import com.siemens.ct.exi.core.EXIBodyDecoder;
+import com.siemens.ct.exi.core.EXIFactory;
+import com.siemens.ct.exi.core.exceptions.EXIException;
+import com.siemens.ct.exi.core.io.FramingInputStream;
+import com.siemens.ct.exi.core.io.channel.BitDecoderChannel;
+
+/**
+ * Decodes the messages of a session written by an {@link EXISessionEncoder}.
+ * String values, URIs, QNames, prefixes and built-in grammars are kept from
+ * one message to the next.
+ * 
+ * <p>
+ * <b>Note:</b> this is NOT part of the EXI specification and interoperable
+ * with {@link EXISessionEncoder} only. Encoder and decoder need to use the
+ * same factory and maximum state size. The decoder applies the same eviction
+ * rule as the encoder and fails with an {@link EXIException} if the message
+ * type or a checkpoint does not match its own state.
+ * </p>
+ * 
+ * <p>
+ * Each message needs to be decoded up to and including its END_DOCUMENT
+ * event before {@link #nextMessage()} is called again.
+ * </p>
+ * 
+ * @author Daniel.Peintner.EXT@siemens.com
+ * @author Richard.Kuntschke@siemens.com
+ * 
+ */
+
+public class EXISessionDecoder {
+
+	protected final EXIFactory exiFactory;
+	protected final AbstractEXIBodyDecoder exiBody;
+	protected final EXIHeaderDecoder exiHeader;
+	protected final FramingInputStream is;
+	protected final int maxStateSize;
+
+	protected int messageType;
+	protected int messages;
+
+	public EXISessionDecoder(EXIFactory exiFactory, InputStream is)
+			throws EXIException {
+		this(exiFactory, is, EXISessionEncoder.DEFAULT_MAX_STATE_SIZE);
+	}
+
+	public EXISessionDecoder(EXIFactory exiFactory, InputStream is,
+			int maxStateSize) throws EXIException {
+		EXIBodyDecoder decoder = exiFactory.createEXIBodyDecoder();
+		if (!(decoder instanceof AbstractEXIBodyDecoder)) {
+			throw new EXIException("Session mode not supported by "
+					+ decoder.getClass().getName());
+		}
+		if (maxStateSize < 0) {
+			throw new EXIException("Negative maximum session state size "
+					+ maxStateSize);
+		}
+		this.exiFactory = exiFactory;
+		this.exiBody = (AbstractEXIBodyDecoder) decoder;
+		try {
+			// state size includes the string table size
+			this.exiBody.getRuntimeStateSize();
+		} catch (UnsupportedOperationException e) {
+			throw new EXIException("Session mode not supported by "
+					+ exiBody.stringDecoder.getClass().getName(), e);
+		}
+		this.exiBody.setSessionMode(true);
+		this.exiHeader = new EXIHeaderDecoder();
+		this.is = is instanceof FramingInputStream ? (FramingInputStream) is
+				: new FramingInputStream(is);
+		this.maxStateSize = maxStateSize;
+		this.messageType = -1;
+	}
+
+	/**
+	 * Checks whether another message follows. Blocks until at least one byte
+	 * is available or the end of the input is reached.
+	 * 
+	 * @return false if the input is exhausted
+	 * @throws IOException
+	 *             IO exception
+	 */
+	public boolean hasNextMessage() throws IOException {
+		int b = is.read();
+		if (b == -1) {
+			return false;
+		}
+		is.unread(b);
+		return true;
+	}
+
+	/**
+	 * Reads the message type and the EXI header of the next message.
+	 * 
+	 * @return body decoder positioned at the beginning of the EXI body
+	 * @throws EXIException
+	 *             EXI exception, e.g. if the session is out of sync
+	 * @throws IOException
+	 *             IO exception
+	 */
+	public EXIBodyDecoder nextMessage() throws EXIException, IOException {
+		BitDecoderChannel headerChannel = new BitDecoderChannel(is);
+		int type = headerChannel.decodeNBitUnsignedInteger(8);
+		int stateSize = exiBody.getRuntimeStateSize();
+		boolean evict = messages == 0 || stateSize > maxStateSize;
+
+		switch (type) {
+		case EXISessionEncoder.MESSAGE_RESET:
+			exiBody.resetSession();
+			break;
+		case EXISessionEncoder.MESSAGE_CHECKPOINT:
+			int expected = headerChannel.decodeUnsignedInteger();
+			if (expected != stateSize) {
+				throw new EXIException("Session out of sync, state size "
+						+ stateSize + " but checkpoint expects " + expected);
+			}
+			checkNoReset(evict, stateSize);
+			break;
+		case EXISessionEncoder.MESSAGE_CONTINUE:
+			checkNoReset(evict, stateSize);
+			break;
+		default:
+			throw new EXIException("Unknown session message type " + type);
+		}
+		messageType = type;
+		messages++;
+
+		EXIFactory f = exiHeader.parse(headerChannel, exiFactory);
+		if (f != exiFactory && !exiFactory.equals(f)) {
+			throw new EXIException(
+					"EXI options of message differ from session options");
+		}
+		if (exiFactory.getCodingMode() == CodingMode.BIT_PACKED) {
+			exiBody.setInputChannel(headerChannel);
+		} else {
+			exiBody.setInputStream(is);
+		}
+		return exiBody;
+	}
+
+	private void checkNoReset(boolean evict, int stateSize)
+			throws EXIException {
+		if (evict) {
+			throw new EXIException("Session out of sync, message " + messages
+					+ " with state size " + stateSize + " (maximum "
+					+ maxStateSize + ") requires a reset");
+		}
+	}
+
+	/**
+	 * Returns the type of the last message, see
+	 * {@link EXISessionEncoder#MESSAGE_CONTINUE} et al.
+	 * 
+	 * @return message type or -1 if no message was read yet
+	 */
+	public int getMessageType() {
+		return messageType;
+	}
+
+	/**
+	 * Returns the current session state size (see {@link EXISessionEncoder}).
+	 * 
+	 * @return number of runtime entries
+	 */
+	public int getStateSize() {
+		return exiBody.getRuntimeStateSize();
+	}
+
+	public int getMaxStateSize() {
+		return maxStateSize;
+	}
+
+	public int getNumberOfMessages() {
+		return messages;
+	}
+
+	/**
+	 * Returns the stream all messages are read from.
+	 * 
+	 * @return framing input stream
+	 */
+	public FramingInputStream getInputStream() {
+		return is;
+	}
+}
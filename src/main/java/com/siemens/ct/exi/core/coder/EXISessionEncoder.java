@@ -0,0 +1,183 @@
+/*
+ * Copyright (c) 2007-2018 Siemens AG
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * 
+ */
+
+package com.siemens.ct.exi.core.coder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import com.siemens.ct.exi.core.CodingMode;
+import com.siemens.ct.exi.core.EXIBodyEncoder;
+import com.siemens.ct.exi.core.EXIFactory;
+import com.siemens.ct.exi.core.exceptions.EXIException;
+import com.siemens.ct.exi.core.io.channel.BitEncoderChannel;
+
+/**
+ * Encodes consecutive messages of one session (e.g. the requests of a
+ * long-lived connection) so that each message can refer to string values,
+ * URIs, QNames, prefixes and built-in grammars learned in earlier messages.
+ * 
+ * <p>
+ * <b>Note:</b> this is NOT part of the EXI specification. Only the first
+ * message after a reset is a standalone EXI stream, all other messages can be
+ * decoded by an {@link EXISessionDecoder} that decoded all previous messages
+ * of the session only.
+ * </p>
+ * 
+ * <p>
+ * Each message starts with one byte telling the message type
+ * ({@link #MESSAGE_CONTINUE}, {@link #MESSAGE_RESET} or
+ * {@link #MESSAGE_CHECKPOINT}) followed by a regular EXI stream. A checkpoint
+ * additionally carries the size of the session state (as unsigned integer) so
+ * that the decoder can verify it is in sync. The state size is the number of
+ * runtime entries (string values, URIs, QNames, prefixes and learned global
+ * elements). Once it exceeds the configured maximum the state is dropped at
+ * the beginning of the next message, on both ends.
+ * </p>
+ * 
+ * @author Daniel.Peintner.EXT@siemens.com
+ * @author Richard.Kuntschke@siemens.com
+ * 
+ */
+
+public class EXISessionEncoder {
+
+	/** message refers to the state of previous messages */
+	public static final int MESSAGE_CONTINUE = 0;
+	/** message starts with empty state */
+	public static final int MESSAGE_RESET = 1;
+	/** like continue, preceded by the state size */
+	public static final int MESSAGE_CHECKPOINT = 2;
+
+	public static final int DEFAULT_MAX_STATE_SIZE = 65536;
+
+	protected final EXIFactory exiFactory;
+	protected final AbstractEXIBodyEncoder exiBody;
+	protected final EXIHeaderEncoder exiHeader;
+	protected final EXIHeaderEncoder.HeaderTemplate headerTemplate;
+	protected final int maxStateSize;
+
+	protected boolean resetRequested;
+	protected boolean checkpointRequested;
+	protected int messages;
+
+	public EXISessionEncoder(EXIFactory exiFactory) throws EXIException {
+		this(exiFactory, DEFAULT_MAX_STATE_SIZE);
+	}
+
+	public EXISessionEncoder(EXIFactory exiFactory, int maxStateSize)
+			throws EXIException {
+		EXIBodyEncoder encoder = exiFactory.createEXIBodyEncoder();
+		if (!(encoder instanceof AbstractEXIBodyEncoder)) {
+			throw new EXIException("Session mode not supported by "
+					+ encoder.getClass().getName());
+		}
+		if (maxStateSize < 0) {
+			throw new EXIException("Negative maximum session state size "
+					+ maxStateSize);
+		}
+		this.exiFactory = exiFactory;
+		this.exiBody = (AbstractEXIBodyEncoder) encoder;
+		this.exiBody.setSessionMode(true);
+		this.exiHeader = new EXIHeaderEncoder();
+		this.headerTemplate = exiHeader.createTemplate(exiFactory);
+		this.maxStateSize = maxStateSize;
+		// the first message always starts from scratch
+		this.resetRequested = true;
+	}
+
+	/**
+	 * Drops the session state when the next message is encoded.
+	 */
+	public void reset() {
+		resetRequested = true;
+	}
+
+	/**
+	 * Lets the next message carry the current session state size.
+	 */
+	public void checkpoint() {
+		checkpointRequested = true;
+	}
+
+	/**
+	 * Writes the message type and the EXI header of the next message. The
+	 * message needs to be encoded up to and including END_DOCUMENT and the
+	 * body encoder flushed before the next message is started.
+	 * 
+	 * @param os
+	 *            output stream
+	 * @return body encoder
+	 * @throws EXIException
+	 *             EXI exception
+	 * @throws IOException
+	 *             IO exception
+	 */
+	public EXIBodyEncoder encodeMessage(OutputStream os) throws EXIException,
+			IOException {
+		int stateSize = exiBody.getRuntimeStateSize();
+		int messageType;
+		if (resetRequested || stateSize > maxStateSize) {
+			messageType = MESSAGE_RESET;
+			exiBody.resetSession();
+		} else if (checkpointRequested) {
+			messageType = MESSAGE_CHECKPOINT;
+		} else {
+			messageType = MESSAGE_CONTINUE;
+		}
+		resetRequested = false;
+		checkpointRequested = false;
+		messages++;
+
+		BitEncoderChannel headerChannel = new BitEncoderChannel(os);
+		headerChannel.encodeNBitUnsignedInteger(messageType, 8);
+		if (messageType == MESSAGE_CHECKPOINT) {
+			headerChannel.encodeUnsignedInteger(stateSize);
+		}
+		exiHeader.write(headerChannel, headerTemplate);
+
+		if (headerTemplate.getCodingMode() == CodingMode.BIT_PACKED) {
+			exiBody.setOutputChannel(headerChannel);
+		} else {
+			exiBody.setOutputStream(os);
+		}
+		return exiBody;
+	}
+
+	/**
+	 * Returns the current session state size (see class description).
+	 * 
+	 * @return number of runtime entries
+	 */
+	public int getStateSize() {
+		return exiBody.getRuntimeStateSize();
+	}
+
+	public int getMaxStateSize() {
+		return maxStateSize;
+	}
+
+	public int getNumberOfMessages() {
+		return messages;
+	}
+}
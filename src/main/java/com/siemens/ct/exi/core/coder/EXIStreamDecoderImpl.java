@@ -29,6 +29,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.PushbackInputStream;
 
+import com.siemens.ct.exi.core.CoderMetrics;
 import com.siemens.ct.exi.core.CodingMode;
 import com.siemens.ct.exi.core.EXIBodyDecoder;
 import com.siemens.ct.exi.core.EXIFactory;
@@ -51,6 +52,12 @@ import com.siemens.ct.exi.core.io.channel.BitDecoderChannel;
  * PushbackInputStream allows us to push back this data so that it is not lost.
  * </p>
  * 
+ * <p>
+ * An optional {@link EXIOptionsCache} avoids decoding identical EXI options
+ * documents over and over again. The body decoder returned for a header is
+ * then handed back to the cache when the next header is decoded.
+ * </p>
+ * 
  * @author Daniel.Peintner.EXT@siemens.com
  * @author Richard.Kuntschke@siemens.com
  * 
@@ -60,13 +67,27 @@ public class EXIStreamDecoderImpl implements EXIStreamDecoder {
 	protected final EXIHeaderDecoder exiHeader;
 	protected EXIBodyDecoder exiBody;
 	protected final EXIFactory noOptionsFactory;
+	protected final EXIOptionsCache optionsCache;
+	// cache entry exiBody belongs to
+	protected EXIOptionsCache.Entry exiBodyEntry;
 
 	public EXIStreamDecoderImpl(EXIFactory noOptionsFactory)
 			throws EXIException {
+		this(noOptionsFactory, null);
+	}
+
+	public EXIStreamDecoderImpl(EXIFactory noOptionsFactory,
+			EXIOptionsCache optionsCache) throws EXIException {
+		if (optionsCache != null
+				&& optionsCache.getNoOptionsFactory() != noOptionsFactory) {
+			throw new EXIException(
+					"EXI options cache is bound to a different factory");
+		}
 		exiHeader = new EXIHeaderDecoder();
 		// assume the default factory
 		exiBody = noOptionsFactory.createEXIBodyDecoder();
 		this.noOptionsFactory = noOptionsFactory;
+		this.optionsCache = optionsCache;
 	}
 
 	public EXIBodyDecoder getBodyOnlyDecoder(InputStream is)
@@ -79,15 +100,38 @@ public class EXIStreamDecoderImpl implements EXIStreamDecoder {
 	public EXIBodyDecoder decodeHeader(InputStream is) throws EXIException,
 			IOException {
 		is = checkBufferedAndPushbackStream(is);
+		CoderMetrics metrics = noOptionsFactory.getCoderMetrics();
+		long start = 0L;
+		if (metrics != null) {
+			start = System.nanoTime();
+		}
 		// read header
 		BitDecoderChannel headerChannel = new BitDecoderChannel(is);
-		EXIFactory exiFactory = exiHeader
-				.parse(headerChannel, noOptionsFactory);
+		EXIFactory exiFactory;
+		if (optionsCache == null) {
+			exiFactory = exiHeader.parse(headerChannel, noOptionsFactory);
 
-		// update body decoder if EXI options tell to do so
-		if (exiFactory != noOptionsFactory) {
-			// exiBody = noOptionsFactory.createEXIBodyDecoder();
-			exiBody = exiFactory.createEXIBodyDecoder();
+			// update body decoder if EXI options tell to do so
+			if (exiFactory != noOptionsFactory) {
+				// exiBody = noOptionsFactory.createEXIBodyDecoder();
+				exiBody = exiFactory.createEXIBodyDecoder();
+			}
+		} else {
+			EXIOptionsCache.Entry entry = exiHeader.parse(headerChannel, is,
+					optionsCache);
+			exiFactory = entry.getFactory();
+
+			// same options keep the current body decoder
+			if (entry != exiBodyEntry) {
+				if (exiBodyEntry != null) {
+					exiBodyEntry.releaseDecoder(exiBody);
+				}
+				exiBody = entry.acquireDecoder();
+				exiBodyEntry = entry;
+			}
+		}
+		if (metrics != null) {
+			metrics.time(CoderMetrics.Phase.HEADER, System.nanoTime() - start);
 		}
 		// setup data-stream for body
 		if (exiFactory.getCodingMode() == CodingMode.BIT_PACKED) {
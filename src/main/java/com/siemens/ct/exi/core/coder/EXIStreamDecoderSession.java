@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2007-2018 Siemens AG
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * 
+ */
+
+package com.siemens.ct.exi.core.coder;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import com.siemens.ct.exi.core.EXIBodyDecoder;
+import com.siemens.ct.exi.core.EXIFactory;
+import com.siemens.ct.exi.core.exceptions.EXIException;
+import com.siemens.ct.exi.core.io.FramingInputStream;
+
+/**
+ * Decodes a sequence of EXI streams (header and body) sent back-to-back over
+ * one long-lived input, e.g. a persistent TCP connection.
+ * 
+ * <p>
+ * All documents are read through one {@link FramingInputStream}, so data read
+ * ahead (by buffering or by the inflater in compression mode) is never lost
+ * and each document starts at the exact byte following the previous one.
+ * Options documents are looked up in an {@link EXIOptionsCache} and body
+ * decoders are re-used for documents with the same options.
+ * </p>
+ * 
+ * <p>
+ * Each document needs to be decoded up to and including its END_DOCUMENT
+ * event before {@link #nextDocument()} is called again.
+ * </p>
+ * 
+ * @author Daniel.Peintner.EXT@siemens.com
+ * @author Richard.Kuntschke@siemens.com
+ * 
+ */
+
+public class EXIStreamDecoderSession {
+
+	protected final FramingInputStream is;
+	protected final EXIStreamDecoderImpl streamDecoder;
+
+	protected long documentStart;
+	protected int documents;
+
+	public EXIStreamDecoderSession(EXIFactory noOptionsFactory, InputStream is)
+			throws EXIException {
+		this(noOptionsFactory, new EXIOptionsCache(noOptionsFactory), is);
+	}
+
+	public EXIStreamDecoderSession(EXIFactory noOptionsFactory,
+			EXIOptionsCache optionsCache, InputStream is) throws EXIException {
+		this.is = is instanceof FramingInputStream ? (FramingInputStream) is
+				: new FramingInputStream(is);
+		this.streamDecoder = new EXIStreamDecoderImpl(noOptionsFactory,
+				optionsCache);
+		this.documentStart = -1L;
+	}
+
+	/**
+	 * Checks whether more data follows the last document. Blocks until at
+	 * least one byte is available or the end of the input is reached.
+	 * 
+	 * @return false if the input is exhausted
+	 * @throws IOException
+	 *             IO exception
+	 */
+	public boolean hasNextDocument() throws IOException {
+		int b = is.read();
+		if (b == -1) {
+			return false;
+		}
+		is.unread(b);
+		return true;
+	}
+
+	/**
+	 * Decodes the EXI header of the next document.
+	 * 
+	 * @return body decoder positioned at the beginning of the EXI body
+	 * @throws EXIException
+	 *             EXI exception
+	 * @throws IOException
+	 *             IO exception
+	 */
+	public EXIBodyDecoder nextDocument() throws EXIException, IOException {
+		documentStart = is.getPosition();
+		documents++;
+		return streamDecoder.decodeHeader(is);
+	}
+
+	/**
+	 * Returns the stream position at which the current document started.
+	 * 
+	 * @return byte offset or -1 if no document was decoded yet
+	 */
+	public long getDocumentStart() {
+		return documentStart;
+	}
+
+	/**
+	 * Returns the number of bytes consumed so far. Once a document is decoded
+	 * up to END_DOCUMENT this is the exact offset of its end.
+	 * 
+	 * @return byte offset
+	 */
+	public long getPosition() {
+		return is.getPosition();
+	}
+
+	public int getNumberOfDocuments() {
+		return documents;
+	}
+
+	/**
+	 * Returns the stream all documents are read from. Data after the last
+	 * document (e.g. non-EXI payload) can be read from it.
+	 * 
+	 * @return framing input stream
+	 */
+	public FramingInputStream getInputStream() {
+		return is;
+	}
+}
@@ -26,18 +26,25 @@ package com.siemens.ct.exi.core.coder;
 import java.io.IOException;
 import java.io.OutputStream;
 
+import com.siemens.ct.exi.core.CoderMetrics;
 import com.siemens.ct.exi.core.CodingMode;
 import com.siemens.ct.exi.core.EXIBodyEncoder;
 import com.siemens.ct.exi.core.EXIFactory;
 import com.siemens.ct.exi.core.EXIStreamEncoder;
 import com.siemens.ct.exi.core.exceptions.EXIException;
 import com.siemens.ct.exi.core.io.channel.BitEncoderChannel;
+import com.siemens.ct.exi.core.jfr.EXIFlightRecorder;
 
 /**
  * An EXI stream is an EXI header followed by an EXI body. The EXI body carries
  * the content of the document, while the EXI header communicates the options
  * used for encoding the EXI body.
  * 
+ * <p>
+ * Like the body encoder, the header is set up once when the stream encoder is
+ * created. Later changes to the factory do not affect it.
+ * </p>
+ * 
  * @author Daniel.Peintner.EXT@siemens.com
  * @author Richard.Kuntschke@siemens.com
  * 
@@ -47,21 +54,39 @@ public class EXIStreamEncoderImpl implements EXIStreamEncoder {
 	protected final EXIHeaderEncoder exiHeader;
 	protected final EXIBodyEncoder exiBody;
 	protected final EXIFactory exiFactory;
+	// header bits for the factory configuration
+	protected final EXIHeaderEncoder.HeaderTemplate headerTemplate;
 
 	public EXIStreamEncoderImpl(EXIFactory exiFactory) throws EXIException {
 		this.exiFactory = exiFactory;
 		exiHeader = new EXIHeaderEncoder();
 		exiBody = exiFactory.createEXIBodyEncoder();
+		headerTemplate = exiHeader.createTemplate(exiFactory);
 	}
 
 	public EXIBodyEncoder encodeHeader(OutputStream os) throws EXIException,
 			IOException {
+		CoderMetrics metrics = exiFactory.getCoderMetrics();
+		long start = 0L;
+		if (metrics != null) {
+			start = System.nanoTime();
+		}
+		Object flightHeader = EXIFlightRecorder.beginHeader();
+
 		// setup & write header
 		BitEncoderChannel headerChannel = new BitEncoderChannel(os);
-		exiHeader.write(headerChannel, exiFactory);
+		exiHeader.write(headerChannel, headerTemplate);
+
+		EXIFlightRecorder.endHeader(flightHeader, true,
+				headerTemplate.hasOptions(), headerChannel.getLength());
+		if (metrics != null) {
+			metrics.time(CoderMetrics.Phase.HEADER, System.nanoTime() - start);
+			metrics.bytes(CoderMetrics.Channel.HEADER,
+					headerChannel.getLength());
+		}
 
 		// setup data-stream for body
-		if (exiFactory.getCodingMode() == CodingMode.BIT_PACKED) {
+		if (headerTemplate.getCodingMode() == CodingMode.BIT_PACKED) {
 			// bit-packed re-uses the header channel
 			exiBody.setOutputChannel(headerChannel);
 		} else {
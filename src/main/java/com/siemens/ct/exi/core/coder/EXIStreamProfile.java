@@ -0,0 +1,315 @@
+/*
+ * Copyright (c) 2007-2018 Siemens AG
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * 
+ */
+
+package com.siemens.ct.exi.core.coder;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import javax.xml.namespace.QName;
+
+import com.siemens.ct.exi.core.CodingMode;
+import com.siemens.ct.exi.core.grammars.event.EventType;
+
+/**
+ * Size profile of an EXI stream created by {@link EXIStreamProfiler}. Every
+ * bit of the stream is attributed either to structure (header, event codes,
+ * URIs, local names, prefixes and other structure such as namespace
+ * declaration flags) or to the content (values) of a qualified name. Bits
+ * after the last event up to the end of the last byte count as padding.
+ * 
+ * @author Daniel.Peintner.EXT@siemens.com
+ * @author Richard.Kuntschke@siemens.com
+ * 
+ */
+
+public class EXIStreamProfile {
+
+	/**
+	 * Profile of one qualified name (element and attribute occurrences).
+	 */
+	public static class QNameProfile {
+		protected final QName qname;
+		// local name representation
+		protected long literals;
+		protected long ids;
+		protected long implied;
+		protected long nameBits;
+		// content
+		protected long values;
+		protected long contentBits;
+		protected long localHits;
+		protected long globalHits;
+		protected long misses;
+		protected long literalCharacters;
+
+		protected QNameProfile(QName qname) {
+			this.qname = qname;
+		}
+
+		public QName getQName() {
+			return qname;
+		}
+
+		/** @return local name encoded as string literal (first occurrence) */
+		public long getLiterals() {
+			return literals;
+		}
+
+		/** @return local name encoded as compact identifier */
+		public long getIds() {
+			return ids;
+		}
+
+		/** @return name implied by a declared or learned production */
+		public long getImplied() {
+			return implied;
+		}
+
+		/** @return bits of local name literals and identifiers */
+		public long getNameBits() {
+			return nameBits;
+		}
+
+		public long getValues() {
+			return values;
+		}
+
+		public long getContentBits() {
+			return contentBits;
+		}
+
+		public long getLocalHits() {
+			return localHits;
+		}
+
+		public long getGlobalHits() {
+			return globalHits;
+		}
+
+		public long getMisses() {
+			return misses;
+		}
+
+		/** @return characters of string literals */
+		public long getLiteralCharacters() {
+			return literalCharacters;
+		}
+
+		/** @return values not represented as string (typed values) */
+		public long getTypedValues() {
+			return values - localHits - globalHits - misses;
+		}
+
+		/** @return string table hit ratio, NaN without string values */
+		public double getHitRatio() {
+			long hits = localHits + globalHits;
+			long all = hits + misses;
+			return all == 0 ? Double.NaN : (double) hits / all;
+		}
+
+		/** @return name and content bits */
+		public long getBits() {
+			return nameBits + contentBits;
+		}
+	}
+
+	protected final CodingMode codingMode;
+	protected final List<QNameProfile> qnames;
+
+	protected long totalBits;
+	protected long headerBits;
+	protected long eventCodeBits;
+	protected long uriLiteralBits;
+	protected long uriIdBits;
+	protected long localNameLiteralBits;
+	protected long localNameIdBits;
+	protected long prefixBits;
+	protected long otherStructureBits;
+	protected long contentBits;
+	protected long paddingBits;
+
+	protected final long[] eventCodes;
+	protected final long[] eventCodesBits;
+
+	protected EXIStreamProfile(CodingMode codingMode) {
+		this.codingMode = codingMode;
+		this.qnames = new ArrayList<QNameProfile>();
+		int n = EventType.values().length;
+		this.eventCodes = new long[n];
+		this.eventCodesBits = new long[n];
+	}
+
+	public CodingMode getCodingMode() {
+		return codingMode;
+	}
+
+	/** @return all bits read, including header and padding */
+	public long getTotalBits() {
+		return totalBits;
+	}
+
+	public long getHeaderBits() {
+		return headerBits;
+	}
+
+	public long getEventCodeBits() {
+		return eventCodeBits;
+	}
+
+	public long getEventCodes(EventType eventType) {
+		return eventCodes[eventType.ordinal()];
+	}
+
+	public long getEventCodeBits(EventType eventType) {
+		return eventCodesBits[eventType.ordinal()];
+	}
+
+	public long getUriLiteralBits() {
+		return uriLiteralBits;
+	}
+
+	public long getUriIdBits() {
+		return uriIdBits;
+	}
+
+	public long getLocalNameLiteralBits() {
+		return localNameLiteralBits;
+	}
+
+	public long getLocalNameIdBits() {
+		return localNameIdBits;
+	}
+
+	public long getPrefixBits() {
+		return prefixBits;
+	}
+
+	/**
+	 * @return other structure bits, e.g. namespace declaration flags,
+	 *         comments, processing instructions or self-contained fragments
+	 */
+	public long getOtherStructureBits() {
+		return otherStructureBits;
+	}
+
+	/** @return structure bits (without header and padding) */
+	public long getStructureBits() {
+		return eventCodeBits + uriLiteralBits + uriIdBits
+				+ localNameLiteralBits + localNameIdBits + prefixBits
+				+ otherStructureBits;
+	}
+
+	public long getContentBits() {
+		return contentBits;
+	}
+
+	public long getPaddingBits() {
+		return paddingBits;
+	}
+
+	/** @return profiles of all qualified names in order of appearance */
+	public Collection<QNameProfile> getQNames() {
+		return Collections.unmodifiableList(qnames);
+	}
+
+	/**
+	 * Returns the qualified names with the most bits (name and content).
+	 * 
+	 * @param n
+	 *            maximum number of names
+	 * @return qualified names, largest first
+	 */
+	public List<QNameProfile> getTopQNames(int n) {
+		List<QNameProfile> top = new ArrayList<QNameProfile>(qnames);
+		Collections.sort(top, new Comparator<QNameProfile>() {
+			public int compare(QNameProfile o1, QNameProfile o2) {
+				return Long.compare(o2.getBits(), o1.getBits());
+			}
+		});
+		return top.size() > n ? top.subList(0, n) : top;
+	}
+
+	/**
+	 * Writes a human-readable report.
+	 * 
+	 * @param out
+	 *            target
+	 * @param topN
+	 *            number of qualified names listed
+	 */
+	public void writeReport(PrintStream out, int topN) {
+		out.printf("EXI stream %s, %d bytes (%d bits)%n", codingMode,
+				(totalBits + 7) / 8, totalBits);
+		out.println();
+		out.printf("%-28s %14s %7s%n", "", "bytes", "%");
+		line(out, "header", headerBits);
+		line(out, "structure", getStructureBits());
+		line(out, "  event codes", eventCodeBits);
+		line(out, "  URIs (literal)", uriLiteralBits);
+		line(out, "  URIs (id)", uriIdBits);
+		line(out, "  local names (literal)", localNameLiteralBits);
+		line(out, "  local names (id)", localNameIdBits);
+		line(out, "  prefixes", prefixBits);
+		line(out, "  other", otherStructureBits);
+		line(out, "content", contentBits);
+		line(out, "padding", paddingBits);
+
+		out.println();
+		out.printf("%-34s %8s %14s%n", "event codes", "count", "bytes");
+		for (EventType eventType : EventType.values()) {
+			int i = eventType.ordinal();
+			if (eventCodes[i] > 0) {
+				out.printf("  %-32s %8d %14.1f%n", eventType, eventCodes[i],
+						eventCodesBits[i] / 8.0);
+			}
+		}
+
+		out.println();
+		out.printf("top %d qualified names by bytes (name and content)%n",
+				topN);
+		out.printf("%-40s %12s %12s %10s %10s %10s %10s %10s %7s %24s%n",
+				"qname", "name bytes", "value bytes", "values", "typed",
+				"local hits", "glob. hits", "misses", "hits %",
+				"literal/id/implied");
+		for (QNameProfile qp : getTopQNames(topN)) {
+			double ratio = qp.getHitRatio();
+			out.printf(
+					"%-40s %12.1f %12.1f %10d %10d %10d %10d %10d %7s %24s%n",
+					qp.qname, qp.nameBits / 8.0, qp.contentBits / 8.0,
+					qp.values, qp.getTypedValues(), qp.localHits,
+					qp.globalHits, qp.misses, Double.isNaN(ratio) ? "-"
+							: String.format("%.1f", 100 * ratio), qp.literals
+							+ "/" + qp.ids + "/" + qp.implied);
+		}
+	}
+
+	private void line(PrintStream out, String label, long bits) {
+		out.printf("%-28s %14.1f %7.2f%n", label, bits / 8.0,
+				totalBits == 0 ? 0.0 : 100.0 * bits / totalBits);
+	}
+}
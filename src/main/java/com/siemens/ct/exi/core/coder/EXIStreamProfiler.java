@@ -0,0 +1,538 @@
+/*
+ * Copyright (c) 2007-2018 Siemens AG
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * 
+ */
+
+package com.siemens.ct.exi.core.coder;
+
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import javax.xml.namespace.QName;
+
+import com.siemens.ct.exi.core.CoderMetrics;
+import com.siemens.ct.exi.core.CodingMode;
+import com.siemens.ct.exi.core.EXIEventVisitor;
+import com.siemens.ct.exi.core.EXIFactory;
+import com.siemens.ct.exi.core.FidelityOptions;
+import com.siemens.ct.exi.core.context.QNameContext;
+import com.siemens.ct.exi.core.exceptions.EXIException;
+import com.siemens.ct.exi.core.grammars.event.Attribute;
+import com.siemens.ct.exi.core.grammars.event.Event;
+import com.siemens.ct.exi.core.grammars.event.EventType;
+import com.siemens.ct.exi.core.grammars.event.StartElement;
+import com.siemens.ct.exi.core.helpers.DefaultEXIFactory;
+import com.siemens.ct.exi.core.io.channel.BitDecoderChannel;
+import com.siemens.ct.exi.core.io.channel.DecoderChannel;
+
+/**
+ * Decodes EXI streams (header and body) and attributes the size of the
+ * stream to structure and content, see {@link EXIStreamProfile}.
+ * 
+ * <p>
+ * Bit-packed, byte-packed and pre-compression streams are supported. Values
+ * are skipped instead of being materialized and only counters per qualified
+ * name are kept, so arbitrarily large streams can be profiled with constant
+ * memory (pre-compression streams keep one block at a time).
+ * </p>
+ * 
+ * <p>
+ * Usage: <code>java com.siemens.ct.exi.core.coder.EXIStreamProfiler
+ * [-top N] file.exi ...</code> (schema-less streams, options from the EXI
+ * header)
+ * </p>
+ * 
+ * @author Daniel.Peintner.EXT@siemens.com
+ * @author Richard.Kuntschke@siemens.com
+ * 
+ */
+
+public class EXIStreamProfiler {
+
+	public static final int DEFAULT_TOP_N = 20;
+
+	protected final EXIFactory noOptionsFactory;
+	protected final EXIHeaderDecoder exiHeader;
+
+	public EXIStreamProfiler(EXIFactory noOptionsFactory) throws EXIException {
+		this.noOptionsFactory = noOptionsFactory;
+		this.exiHeader = new EXIHeaderDecoder();
+	}
+
+	/**
+	 * Decodes the EXI stream (header and body) and returns its size profile.
+	 * The stream is read up to the end of the EXI body.
+	 * 
+	 * @param is
+	 *            EXI stream
+	 * @return size profile
+	 * @throws EXIException
+	 *             compressed stream, self-contained elements or EXI exception
+	 * @throws IOException
+	 *             IO exception
+	 */
+	public EXIStreamProfile profile(InputStream is) throws EXIException,
+			IOException {
+		CountingInputStream cis = new CountingInputStream(
+				new BufferedInputStream(is));
+		BitDecoderChannel headerChannel = new BitDecoderChannel(cis);
+		EXIFactory exiFactory = exiHeader.parse(headerChannel,
+				noOptionsFactory);
+
+		CodingMode codingMode = exiFactory.getCodingMode();
+		if (codingMode == CodingMode.COMPRESSION) {
+			throw new EXIException(
+					"Compressed EXI streams cannot be profiled, use pre-compression");
+		}
+		if (exiFactory.getFidelityOptions().isFidelityEnabled(
+				FidelityOptions.FEATURE_SC)) {
+			// SC fragments are decoded by separate decoders
+			throw new EXIException(
+					"EXI streams with self-contained elements cannot be profiled");
+		}
+
+		EXIStreamProfile profile = new EXIStreamProfile(codingMode);
+		Meter meter = new Meter(profile, cis);
+		profile.headerBits = meter.position(headerChannel);
+		meter.mark = profile.headerBits;
+
+		// string table hits and misses are reported as coder metrics
+		exiFactory = exiFactory.clone();
+		exiFactory.setCoderMetrics(meter);
+
+		if (codingMode == CodingMode.PRE_COMPRESSION) {
+			ProfilingDecoderReordered decoder = new ProfilingDecoderReordered(
+					exiFactory, meter);
+			// skip values
+			decoder.setProjection(Collections.<QName> emptySet());
+			decoder.setInputStream(cis);
+			while (decoder.nextBlock()) {
+				// block structure and content read
+			}
+		} else {
+			ProfilingDecoderInOrder decoder = new ProfilingDecoderInOrder(
+					exiFactory, meter);
+			decoder.setDiscardValues(true);
+			if (codingMode == CodingMode.BIT_PACKED) {
+				// bit-packed body continues header channel
+				decoder.setInputChannel(headerChannel);
+			} else {
+				decoder.setInputStream(cis);
+			}
+			decoder.decode(new EXIEventVisitor() {
+			});
+		}
+
+		meter.finish();
+		return profile;
+	}
+
+	/*
+	 * Counts the bytes read from the underlying stream.
+	 */
+	static final class CountingInputStream extends FilterInputStream {
+		long count;
+		long mark;
+
+		CountingInputStream(InputStream in) {
+			super(in);
+		}
+
+		@Override
+		public int read() throws IOException {
+			int b = in.read();
+			if (b != -1) {
+				count++;
+			}
+			return b;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			int n = in.read(b, off, len);
+			if (n > 0) {
+				count += n;
+			}
+			return n;
+		}
+
+		@Override
+		public long skip(long n) throws IOException {
+			long skipped = in.skip(n);
+			count += skipped;
+			return skipped;
+		}
+
+		@Override
+		public synchronized void mark(int readlimit) {
+			in.mark(readlimit);
+			mark = count;
+		}
+
+		@Override
+		public synchronized void reset() throws IOException {
+			in.reset();
+			count = mark;
+		}
+	}
+
+	/*
+	 * Attributes the bits between two positions. Bits between hooks (values
+	 * and structure not covered by hooks) are attributed with the next hook,
+	 * to the content of the last value event or to other structure.
+	 */
+	static final class Meter implements CoderMetrics {
+		final EXIStreamProfile profile;
+		final CountingInputStream cis;
+		final Map<QNameContext, EXIStreamProfile.QNameProfile> qnames;
+		// bits up to mark are attributed
+		long mark;
+		// string values since the last content attribution
+		long localHits;
+		long globalHits;
+		long misses;
+		long literalCharacters;
+
+		Meter(EXIStreamProfile profile, CountingInputStream cis) {
+			this.profile = profile;
+			this.cis = cis;
+			this.qnames = new IdentityHashMap<QNameContext, EXIStreamProfile.QNameProfile>();
+		}
+
+		long position(DecoderChannel channel) {
+			long bits = cis.count << 3;
+			if (channel instanceof BitDecoderChannel) {
+				bits -= ((BitDecoderChannel) channel).getBufferedBits();
+			}
+			return bits;
+		}
+
+		EXIStreamProfile.QNameProfile get(QNameContext qnc) {
+			EXIStreamProfile.QNameProfile qp = qnames.get(qnc);
+			if (qp == null) {
+				qp = new EXIStreamProfile.QNameProfile(qnc.getQName());
+				qnames.put(qnc, qp);
+				profile.qnames.add(qp);
+			}
+			return qp;
+		}
+
+		// bits since mark, mark is advanced
+		long bits(long position) {
+			long bits = position - mark;
+			mark = position;
+			return bits;
+		}
+
+		// remaining bits are other structure
+		void structureGap(long position) {
+			profile.otherStructureBits += bits(position);
+		}
+
+		// remaining bits are content of the given qname (if any)
+		void contentGap(long position, QNameContext valueContext,
+				long values) {
+			long bits = bits(position);
+			if (valueContext == null) {
+				profile.otherStructureBits += bits;
+			} else {
+				profile.contentBits += bits;
+				EXIStreamProfile.QNameProfile qp = get(valueContext);
+				qp.contentBits += bits;
+				qp.values += values;
+				qp.localHits += localHits;
+				qp.globalHits += globalHits;
+				qp.misses += misses;
+				qp.literalCharacters += literalCharacters;
+				localHits = globalHits = misses = literalCharacters = 0;
+			}
+		}
+
+		void eventCode(long position, EventType eventType, Event event) {
+			long bits = bits(position);
+			int i = eventType.ordinal();
+			profile.eventCodes[i]++;
+			profile.eventCodesBits[i] += bits;
+			profile.eventCodeBits += bits;
+			switch (eventType) {
+			case START_ELEMENT:
+				get(((StartElement) event).getQNameContext()).implied++;
+				break;
+			case ATTRIBUTE:
+			case ATTRIBUTE_INVALID_VALUE:
+				get(((Attribute) event).getQNameContext()).implied++;
+				break;
+			default:
+				break;
+			}
+		}
+
+		void uri(long position, boolean literal) {
+			if (literal) {
+				profile.uriLiteralBits += bits(position);
+			} else {
+				profile.uriIdBits += bits(position);
+			}
+		}
+
+		void localName(long position, QNameContext qnc, boolean literal) {
+			long bits = bits(position);
+			EXIStreamProfile.QNameProfile qp = get(qnc);
+			qp.nameBits += bits;
+			if (literal) {
+				qp.literals++;
+				profile.localNameLiteralBits += bits;
+			} else {
+				qp.ids++;
+				profile.localNameIdBits += bits;
+			}
+		}
+
+		void prefix(long position) {
+			profile.prefixBits += bits(position);
+		}
+
+		void finish() {
+			profile.totalBits = cis.count << 3;
+			profile.paddingBits = bits(profile.totalBits);
+		}
+
+		static boolean isValueEvent(EventType eventType) {
+			switch (eventType) {
+			case ATTRIBUTE_XSI_TYPE:
+			case ATTRIBUTE_XSI_NIL:
+			case ATTRIBUTE:
+			case ATTRIBUTE_NS:
+			case ATTRIBUTE_GENERIC:
+			case ATTRIBUTE_INVALID_VALUE:
+			case ATTRIBUTE_ANY_INVALID_VALUE:
+			case ATTRIBUTE_GENERIC_UNDECLARED:
+			case CHARACTERS:
+			case CHARACTERS_GENERIC:
+			case CHARACTERS_GENERIC_UNDECLARED:
+				return true;
+			default:
+				return false;
+			}
+		}
+
+		/*
+		 * CoderMetrics
+		 */
+
+		@Override
+		public void stringHit(boolean local) {
+			if (local) {
+				localHits++;
+			} else {
+				globalHits++;
+			}
+		}
+
+		@Override
+		public void stringMiss(int characters) {
+			misses++;
+			literalCharacters += characters;
+		}
+	}
+
+	/*
+	 * Value context of the last event decoded (null if no value event)
+	 */
+	static QNameContext getValueContext(AbstractEXIBodyDecoder decoder) {
+		EventType eventType = decoder.nextEventType;
+		if (eventType == null || !Meter.isValueEvent(eventType)) {
+			return null;
+		}
+		switch (eventType) {
+		case CHARACTERS:
+		case CHARACTERS_GENERIC:
+		case CHARACTERS_GENERIC_UNDECLARED:
+			return decoder.getElementContext().getQNameContext();
+		default:
+			return decoder.attributeQNameContext;
+		}
+	}
+
+	static final class ProfilingDecoderInOrder extends EXIBodyDecoderInOrder {
+		final Meter meter;
+
+		ProfilingDecoderInOrder(EXIFactory exiFactory, Meter meter)
+				throws EXIException {
+			super(exiFactory);
+			this.meter = meter;
+		}
+
+		@Override
+		protected EventType decodeEventCode() throws EXIException,
+				IOException {
+			QNameContext valueContext = getValueContext(this);
+			meter.contentGap(meter.position(channel), valueContext,
+					valueContext == null ? 0 : 1);
+			EventType eventType = super.decodeEventCode();
+			meter.eventCode(meter.position(channel), eventType, nextEvent);
+			return eventType;
+		}
+
+		@Override
+		protected RuntimeUriContext decodeUri(DecoderChannel channel)
+				throws IOException {
+			meter.structureGap(meter.position(channel));
+			int uris = getNumberOfUris();
+			RuntimeUriContext uc = super.decodeUri(channel);
+			meter.uri(meter.position(channel), getNumberOfUris() != uris);
+			return uc;
+		}
+
+		@Override
+		protected QNameContext decodeLocalName(RuntimeUriContext uc,
+				DecoderChannel channel) throws IOException {
+			meter.structureGap(meter.position(channel));
+			int names = uc.getNumberOfQNames();
+			QNameContext qnc = super.decodeLocalName(uc, channel);
+			meter.localName(meter.position(channel), qnc,
+					uc.getNumberOfQNames() != names);
+			return qnc;
+		}
+
+		@Override
+		protected String decodeQNamePrefix(RuntimeUriContext uc,
+				DecoderChannel channel) throws IOException {
+			meter.structureGap(meter.position(channel));
+			String prefix = super.decodeQNamePrefix(uc, channel);
+			meter.prefix(meter.position(channel));
+			return prefix;
+		}
+
+		@Override
+		protected String decodeNamespacePrefix(RuntimeUriContext uc,
+				DecoderChannel channel) throws IOException {
+			meter.structureGap(meter.position(channel));
+			String prefix = super.decodeNamespacePrefix(uc, channel);
+			meter.prefix(meter.position(channel));
+			return prefix;
+		}
+	}
+
+	static final class ProfilingDecoderReordered extends
+			EXIBodyDecoderReordered {
+		final Meter meter;
+
+		ProfilingDecoderReordered(EXIFactory exiFactory, Meter meter)
+				throws EXIException {
+			super(exiFactory);
+			this.meter = meter;
+		}
+
+		@Override
+		protected EventType decodeEventCode() throws EXIException,
+				IOException {
+			// values are part of value channels, except xsi:type & xsi:nil
+			meter.contentGap(meter.position(channel), getValueContext(this),
+					0);
+			EventType eventType = super.decodeEventCode();
+			meter.eventCode(meter.position(channel), eventType, nextEvent);
+			return eventType;
+		}
+
+		@Override
+		protected void readChannel(ValueColumn vc, DecoderChannel valueChannel)
+				throws IOException {
+			meter.contentGap(meter.position(valueChannel),
+					getValueContext(this), 0);
+			super.readChannel(vc, valueChannel);
+			meter.contentGap(meter.position(valueChannel), vc.qnContext,
+					vc.size);
+		}
+
+		@Override
+		protected RuntimeUriContext decodeUri(DecoderChannel channel)
+				throws IOException {
+			meter.structureGap(meter.position(channel));
+			int uris = getNumberOfUris();
+			RuntimeUriContext uc = super.decodeUri(channel);
+			meter.uri(meter.position(channel), getNumberOfUris() != uris);
+			return uc;
+		}
+
+		@Override
+		protected QNameContext decodeLocalName(RuntimeUriContext uc,
+				DecoderChannel channel) throws IOException {
+			meter.structureGap(meter.position(channel));
+			int names = uc.getNumberOfQNames();
+			QNameContext qnc = super.decodeLocalName(uc, channel);
+			meter.localName(meter.position(channel), qnc,
+					uc.getNumberOfQNames() != names);
+			return qnc;
+		}
+
+		@Override
+		protected String decodeQNamePrefix(RuntimeUriContext uc,
+				DecoderChannel channel) throws IOException {
+			meter.structureGap(meter.position(channel));
+			String prefix = super.decodeQNamePrefix(uc, channel);
+			meter.prefix(meter.position(channel));
+			return prefix;
+		}
+
+		@Override
+		protected String decodeNamespacePrefix(RuntimeUriContext uc,
+				DecoderChannel channel) throws IOException {
+			meter.structureGap(meter.position(channel));
+			String prefix = super.decodeNamespacePrefix(uc, channel);
+			meter.prefix(meter.position(channel));
+			return prefix;
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		int topN = DEFAULT_TOP_N;
+		int i = 0;
+		if (args.length > 1 && "-top".equals(args[0])) {
+			topN = Integer.parseInt(args[1]);
+			i = 2;
+		}
+		if (i == args.length) {
+			System.err.println("Usage: " + EXIStreamProfiler.class.getName()
+					+ " [-top N] file.exi ...");
+			System.exit(1);
+		}
+
+		EXIStreamProfiler profiler = new EXIStreamProfiler(
+				DefaultEXIFactory.newInstance());
+		for (; i < args.length; i++) {
+			InputStream is = new FileInputStream(args[i]);
+			try {
+				System.out.println(args[i]);
+				profiler.profile(is).writeReport(System.out, topN);
+				System.out.println();
+			} finally {
+				is.close();
+			}
+		}
+	}
+}
@@ -0,0 +1,197 @@
+/*
+ * Copyright (c) 2007-2018 Siemens AG
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * 
+ */
+
+package com.siemens.ct.exi.core.coder;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import com.siemens.ct.exi.core.CodingMode;
+import com.siemens.ct.exi.core.EXIBodyDecoder;
+import com.siemens.ct.exi.core.EXIFactory;
+import com.siemens.ct.exi.core.FidelityOptions;
+import com.siemens.ct.exi.core.exceptions.EXIException;
+import com.siemens.ct.exi.core.helpers.SelfContainedIndex;
+import com.siemens.ct.exi.core.io.ByteBufferInputStream;
+
+/**
+ * Random access to single self-contained fragments of an EXI stream by means of
+ * a {@link SelfContainedIndex} recorded while encoding.
+ * 
+ * <p>
+ * A SC fragment starts byte-aligned and is evaluated as the sequence (SD,
+ * SE(qname), content, ED) according to the Fragment grammar with freshly
+ * initialized string tables and grammars. Hence it can be decoded without
+ * touching any of the preceding bytes. The returned body decoder is positioned
+ * right before the SD event of the fragment.
+ * </p>
+ * 
+ * <p>
+ * Note: an instance re-uses its decoder and read buffer and is therefore not
+ * thread-safe.
+ * </p>
+ * 
+ * @author Daniel.Peintner.EXT@siemens.com
+ * @author Richard.Kuntschke@siemens.com
+ * 
+ */
+
+public class SelfContainedFragmentReader {
+
+	protected final EXIFactory scFactory;
+	protected final SelfContainedIndex index;
+
+	protected final EXIBodyDecoder decoder;
+	protected final ByteBufferInputStream fragmentStream;
+	protected ByteBuffer readBuffer;
+
+	public SelfContainedFragmentReader(EXIFactory exiFactory,
+			SelfContainedIndex index) throws EXIException {
+		if (!exiFactory.getFidelityOptions().isFidelityEnabled(
+				FidelityOptions.FEATURE_SC)) {
+			throw new EXIException(
+					"SelfContained fidelity option needs to be enabled");
+		}
+		if (exiFactory.getCodingMode() == CodingMode.COMPRESSION
+				|| exiFactory.getCodingMode() == CodingMode.PRE_COMPRESSION) {
+			throw new EXIException(
+					"(Pre-)Compression and selfContained elements cannot work together");
+		}
+		// SC Factory & Decoder
+		this.scFactory = exiFactory.clone();
+		this.scFactory.setFragment(true);
+		this.index = index;
+		this.decoder = scFactory.createEXIBodyDecoder();
+		this.fragmentStream = new ByteBufferInputStream(null);
+	}
+
+	public SelfContainedIndex getIndex() {
+		return index;
+	}
+
+	/**
+	 * Sets up the decoder for the given SC fragment.
+	 * 
+	 * @param stream
+	 *            whole EXI stream, index offsets are relative to position 0
+	 * @param ordinal
+	 *            SC fragment ordinal
+	 * @return body decoder positioned before SD of the fragment
+	 * @throws EXIException
+	 *             EXI exception
+	 * @throws IOException
+	 *             IO exception
+	 */
+	public EXIBodyDecoder decodeFragment(ByteBuffer stream, int ordinal)
+			throws EXIException, IOException {
+		return decodeFragment(stream, 0L, ordinal);
+	}
+
+	/**
+	 * Sets up the decoder for the given SC fragment.
+	 * 
+	 * @param stream
+	 *            EXI stream
+	 * @param base
+	 *            position in stream index offsets are relative to
+	 * @param ordinal
+	 *            SC fragment ordinal
+	 * @return body decoder positioned before SD of the fragment
+	 * @throws EXIException
+	 *             EXI exception
+	 * @throws IOException
+	 *             IO exception
+	 */
+	public EXIBodyDecoder decodeFragment(ByteBuffer stream, long base,
+			int ordinal) throws EXIException, IOException {
+		long offset = base + index.getOffset(ordinal);
+		long end = offset + index.getLength(ordinal);
+		if (end > Integer.MAX_VALUE) {
+			// byte buffers are int-indexed, see FileChannel variant
+			throw new IOException("SC fragment " + ordinal
+					+ " beyond 2 GiB, use a FileChannel");
+		}
+		if (end > stream.limit()) {
+			throw new EOFException("SC fragment " + ordinal
+					+ " exceeds buffer limit " + stream.limit());
+		}
+		ByteBuffer fragment = stream.duplicate();
+		fragment.limit((int) end);
+		fragment.position((int) offset);
+		return decodeFragment(fragment);
+	}
+
+	/**
+	 * Reads the given SC fragment (positional read, the channel position is not
+	 * modified) and sets up the decoder for it.
+	 * 
+	 * @param fileChannel
+	 *            file channel of EXI stream
+	 * @param base
+	 *            file position index offsets are relative to
+	 * @param ordinal
+	 *            SC fragment ordinal
+	 * @return body decoder positioned before SD of the fragment
+	 * @throws EXIException
+	 *             EXI exception
+	 * @throws IOException
+	 *             IO exception
+	 */
+	public EXIBodyDecoder decodeFragment(FileChannel fileChannel, long base,
+			int ordinal) throws EXIException, IOException {
+		long length = index.getLength(ordinal);
+		if (length > Integer.MAX_VALUE) {
+			throw new IOException("SC fragment " + ordinal + " too large: "
+					+ length);
+		}
+		if (readBuffer == null || readBuffer.capacity() < length) {
+			readBuffer = ByteBuffer.allocate((int) length);
+		}
+		readBuffer.clear();
+		readBuffer.limit((int) length);
+		readFully(fileChannel, readBuffer, base + index.getOffset(ordinal));
+		readBuffer.flip();
+		return decodeFragment(readBuffer);
+	}
+
+	protected static void readFully(FileChannel fileChannel, ByteBuffer dst,
+			long position) throws IOException {
+		while (dst.hasRemaining()) {
+			int n = fileChannel.read(dst, position);
+			if (n == -1) {
+				throw new EOFException(
+						"Premature EOS found while reading SC fragment.");
+			}
+			position += n;
+		}
+	}
+
+	protected EXIBodyDecoder decodeFragment(ByteBuffer fragment)
+			throws EXIException, IOException {
+		fragmentStream.setByteBuffer(fragment);
+		decoder.setInputStream(fragmentStream);
+		return decoder;
+	}
+}
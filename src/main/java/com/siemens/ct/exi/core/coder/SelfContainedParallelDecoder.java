@@ -0,0 +1,354 @@
+/*
+ * Copyright (c) 2007-2018 Siemens AG
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * 
+ */
+
+package com.siemens.ct.exi.core.coder;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+import com.siemens.ct.exi.core.CodingMode;
+import com.siemens.ct.exi.core.EXIBodyDecoder;
+import com.siemens.ct.exi.core.EXIFactory;
+import com.siemens.ct.exi.core.FidelityOptions;
+import com.siemens.ct.exi.core.SelfContainedFragmentConsumer;
+import com.siemens.ct.exi.core.exceptions.EXIException;
+import com.siemens.ct.exi.core.helpers.SelfContainedIndex;
+import com.siemens.ct.exi.core.io.ByteBufferInputStream;
+
+/**
+ * Decodes the self-contained fragments of an EXI stream in parallel.
+ * 
+ * <p>
+ * Each SC fragment starts byte-aligned with freshly initialized string tables
+ * and grammars. Given the fragment boundaries of a {@link SelfContainedIndex}
+ * the fragments are handed to a pool of fragment decoders running on the
+ * given executor. The decoded fragments are delivered to the consumer in
+ * document order or, if requested, in the order they complete.
+ * </p>
+ * 
+ * <p>
+ * Streams beyond 2 GiB have to be decoded from a {@link FileChannel}, each
+ * fragment task then reads its own fragment by means of a positional read.
+ * </p>
+ * 
+ * <p>
+ * Note: EXI does not mark fragment boundaries in the stream itself, hence an
+ * index recorded while encoding (see {@link SelfContainedIndex}) is required.
+ * </p>
+ * 
+ * @author Daniel.Peintner.EXT@siemens.com
+ * @author Richard.Kuntschke@siemens.com
+ * 
+ */
+
+public class SelfContainedParallelDecoder {
+
+	public static final int DEFAULT_MAX_PENDING_FRAGMENTS = 64;
+
+	protected final EXIFactory scFactory;
+	protected final Executor executor;
+	protected final int maxPendingFragments;
+
+	// idle fragment decoders
+	protected final Queue<EXIBodyDecoder> decoders;
+
+	public SelfContainedParallelDecoder(EXIFactory exiFactory, Executor executor)
+			throws EXIException {
+		this(exiFactory, executor, DEFAULT_MAX_PENDING_FRAGMENTS);
+	}
+
+	public SelfContainedParallelDecoder(EXIFactory exiFactory,
+			Executor executor, int maxPendingFragments) throws EXIException {
+		if (!exiFactory.getFidelityOptions().isFidelityEnabled(
+				FidelityOptions.FEATURE_SC)) {
+			throw new EXIException(
+					"SelfContained fidelity option needs to be enabled");
+		}
+		if (exiFactory.getCodingMode() == CodingMode.COMPRESSION
+				|| exiFactory.getCodingMode() == CodingMode.PRE_COMPRESSION) {
+			throw new EXIException(
+					"(Pre-)Compression and selfContained elements cannot work together");
+		}
+		if (maxPendingFragments < 1) {
+			throw new EXIException("Invalid number of pending fragments: "
+					+ maxPendingFragments);
+		}
+		// SC Factory
+		this.scFactory = exiFactory.clone();
+		this.scFactory.setFragment(true);
+		this.executor = executor;
+		this.maxPendingFragments = maxPendingFragments;
+		this.decoders = new ConcurrentLinkedQueue<EXIBodyDecoder>();
+	}
+
+	/**
+	 * Decodes all fragments of the index and delivers them in document order.
+	 * 
+	 * @param <T>
+	 *            result type of a decoded fragment
+	 * @param stream
+	 *            whole EXI stream, index offsets are relative to position 0
+	 * @param index
+	 *            SC index of the stream
+	 * @param consumer
+	 *            fragment consumer
+	 * @throws EXIException
+	 *             EXI exception
+	 * @throws IOException
+	 *             IO exception
+	 */
+	public <T> void decode(ByteBuffer stream, SelfContainedIndex index,
+			SelfContainedFragmentConsumer<T> consumer) throws EXIException,
+			IOException {
+		decode(stream, 0L, index, consumer, true);
+	}
+
+	/**
+	 * Decodes all fragments of the index.
+	 * 
+	 * @param <T>
+	 *            result type of a decoded fragment
+	 * @param stream
+	 *            EXI stream
+	 * @param base
+	 *            position in stream index offsets are relative to
+	 * @param index
+	 *            SC index of the stream
+	 * @param consumer
+	 *            fragment consumer
+	 * @param ordered
+	 *            whether fragments are delivered in document order or as soon
+	 *            as they are decoded
+	 * @throws EXIException
+	 *             EXI exception
+	 * @throws IOException
+	 *             IO exception
+	 */
+	public <T> void decode(ByteBuffer stream, long base,
+			SelfContainedIndex index, SelfContainedFragmentConsumer<T> consumer,
+			boolean ordered) throws EXIException, IOException {
+		final int n = index.getNumberOfFragments();
+		// check boundaries before starting any work
+		for (int i = 0; i < n; i++) {
+			long end = base + index.getOffset(i) + index.getLength(i);
+			if (end > Integer.MAX_VALUE) {
+				// byte buffers are int-indexed, see FileChannel variant
+				throw new IOException("SC fragment " + i
+						+ " beyond 2 GiB, use a FileChannel");
+			}
+			if (end > stream.limit()) {
+				throw new EOFException("SC fragment " + i
+						+ " exceeds buffer limit " + stream.limit());
+			}
+		}
+
+		if (ordered) {
+			decodeOrdered(stream, null, base, index, consumer);
+		} else {
+			decodeUnordered(stream, null, base, index, consumer);
+		}
+	}
+
+	/**
+	 * Decodes all fragments of the index reading them from the given file
+	 * channel (positional reads, the channel position is not modified).
+	 * 
+	 * @param <T>
+	 *            result type of a decoded fragment
+	 * @param fileChannel
+	 *            file channel of EXI stream
+	 * @param base
+	 *            file position index offsets are relative to
+	 * @param index
+	 *            SC index of the stream
+	 * @param consumer
+	 *            fragment consumer
+	 * @param ordered
+	 *            whether fragments are delivered in document order or as soon
+	 *            as they are decoded
+	 * @throws EXIException
+	 *             EXI exception
+	 * @throws IOException
+	 *             IO exception
+	 */
+	public <T> void decode(FileChannel fileChannel, long base,
+			SelfContainedIndex index, SelfContainedFragmentConsumer<T> consumer,
+			boolean ordered) throws EXIException, IOException {
+		final int n = index.getNumberOfFragments();
+		final long size = fileChannel.size();
+		// check boundaries before starting any work
+		for (int i = 0; i < n; i++) {
+			long length = index.getLength(i);
+			if (length > Integer.MAX_VALUE) {
+				throw new IOException("SC fragment " + i + " too large: "
+						+ length);
+			}
+			if (base + index.getOffset(i) + length > size) {
+				throw new EOFException("SC fragment " + i
+						+ " exceeds file size " + size);
+			}
+		}
+
+		if (ordered) {
+			decodeOrdered(null, fileChannel, base, index, consumer);
+		} else {
+			decodeUnordered(null, fileChannel, base, index, consumer);
+		}
+	}
+
+	protected <T> void decodeOrdered(ByteBuffer stream,
+			FileChannel fileChannel, long base, SelfContainedIndex index,
+			SelfContainedFragmentConsumer<T> consumer) throws EXIException,
+			IOException {
+		final int n = index.getNumberOfFragments();
+		Queue<FutureTask<DecodedFragment<T>>> pending = new ArrayDeque<FutureTask<DecodedFragment<T>>>();
+		try {
+			int next = 0;
+			while (next < n || !pending.isEmpty()) {
+				while (next < n && pending.size() < maxPendingFragments) {
+					FutureTask<DecodedFragment<T>> task = new FutureTask<DecodedFragment<T>>(
+							new FragmentTask<T>(stream, fileChannel, base,
+									index, next++, consumer));
+					pending.add(task);
+					executor.execute(task);
+				}
+				DecodedFragment<T> df = SelfContainedTasks.getResult(pending
+						.poll());
+				consumer.fragment(df.ordinal, df.fragment);
+			}
+		} finally {
+			for (Future<DecodedFragment<T>> task : pending) {
+				task.cancel(false);
+			}
+		}
+	}
+
+	protected <T> void decodeUnordered(ByteBuffer stream,
+			FileChannel fileChannel, long base, SelfContainedIndex index,
+			SelfContainedFragmentConsumer<T> consumer) throws EXIException,
+			IOException {
+		final int n = index.getNumberOfFragments();
+		ExecutorCompletionService<DecodedFragment<T>> completionService = new ExecutorCompletionService<DecodedFragment<T>>(
+				executor);
+		Queue<Future<DecodedFragment<T>>> pending = new ArrayDeque<Future<DecodedFragment<T>>>();
+		try {
+			int next = 0;
+			int delivered = 0;
+			while (delivered < n) {
+				while (next < n && (next - delivered) < maxPendingFragments) {
+					pending.add(completionService.submit(new FragmentTask<T>(
+							stream, fileChannel, base, index, next++,
+							consumer)));
+				}
+				Future<DecodedFragment<T>> done;
+				try {
+					done = completionService.take();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new EXIException(
+							"Interrupted while processing SC fragment", e);
+				}
+				pending.remove(done);
+				DecodedFragment<T> df = SelfContainedTasks.getResult(done);
+				consumer.fragment(df.ordinal, df.fragment);
+				delivered++;
+			}
+		} finally {
+			for (Future<DecodedFragment<T>> task : pending) {
+				task.cancel(false);
+			}
+		}
+	}
+
+	protected EXIBodyDecoder getDecoder() throws EXIException {
+		EXIBodyDecoder decoder = decoders.poll();
+		if (decoder == null) {
+			decoder = scFactory.createEXIBodyDecoder();
+		}
+		return decoder;
+	}
+
+	static final class DecodedFragment<T> {
+		final int ordinal;
+		final T fragment;
+
+		DecodedFragment(int ordinal, T fragment) {
+			this.ordinal = ordinal;
+			this.fragment = fragment;
+		}
+	}
+
+	final class FragmentTask<T> implements Callable<DecodedFragment<T>> {
+		// either stream or fileChannel is set
+		final ByteBuffer stream;
+		final FileChannel fileChannel;
+		final long base;
+		final SelfContainedIndex index;
+		final int ordinal;
+		final SelfContainedFragmentConsumer<T> consumer;
+
+		FragmentTask(ByteBuffer stream, FileChannel fileChannel, long base,
+				SelfContainedIndex index, int ordinal,
+				SelfContainedFragmentConsumer<T> consumer) {
+			this.stream = stream;
+			this.fileChannel = fileChannel;
+			this.base = base;
+			this.index = index;
+			this.ordinal = ordinal;
+			this.consumer = consumer;
+		}
+
+		public DecodedFragment<T> call() throws EXIException, IOException {
+			long offset = base + index.getOffset(ordinal);
+			int length = (int) index.getLength(ordinal);
+			ByteBuffer fragment;
+			if (fileChannel != null) {
+				fragment = ByteBuffer.allocate(length);
+				SelfContainedFragmentReader.readFully(fileChannel, fragment,
+						offset);
+				fragment.flip();
+			} else {
+				fragment = stream.duplicate();
+				fragment.limit((int) (offset + length));
+				fragment.position((int) offset);
+			}
+
+			EXIBodyDecoder decoder = getDecoder();
+			decoder.setInputStream(new ByteBufferInputStream(fragment));
+			T result = consumer.decodeFragment(ordinal, decoder);
+			decoders.add(decoder);
+
+			return new DecodedFragment<T>(ordinal, result);
+		}
+	}
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright (c) 2007-2018 Siemens AG
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * 
+ */
+
+package com.siemens.ct.exi.core.context;
+
+import java.util.Arrays;
+
+import com.siemens.ct.exi.core.Constants;
+import com.siemens.ct.exi.core.util.StringIndex;
+
+/**
+ * Namespace context of the elements currently open while coding.
+ * 
+ * <p>
+ * Prefix bindings are kept in a flat undo-log. A prefix index points to the
+ * innermost binding of each prefix and a URI index to the first binding of
+ * each URI, so lookups do not depend on the nesting depth. Closing a scope
+ * restores the shadowed bindings in O(declarations of that scope). All tables
+ * are retained for subsequent documents.
+ * </p>
+ * 
+ * @author Daniel.Peintner.EXT@siemens.com
+ * @author Richard.Kuntschke@siemens.com
+ * 
+ */
+
+public final class ScopedNamespaceContext {
+
+	// bindings (undo-log)
+	private String[] prefixes;
+	private String[] uris;
+	private int[] shadowedBindings;
+	private int size;
+
+	// binding start per scope
+	private int[] scopes;
+	private int depth;
+
+	// prefix --> innermost binding, uri --> first binding
+	private final StringIndex prefixBindings;
+	private final StringIndex uriBindings;
+
+	public ScopedNamespaceContext() {
+		prefixes = new String[16];
+		uris = new String[16];
+		shadowedBindings = new int[16];
+		scopes = new int[16];
+		prefixBindings = new StringIndex();
+		uriBindings = new StringIndex();
+	}
+
+	public void clear() {
+		Arrays.fill(prefixes, 0, size, null);
+		Arrays.fill(uris, 0, size, null);
+		size = 0;
+		depth = 0;
+		prefixBindings.clear();
+		uriBindings.clear();
+	}
+
+	public int getDepth() {
+		return depth;
+	}
+
+	public void pushScope() {
+		if (depth == scopes.length) {
+			scopes = Arrays.copyOf(scopes, depth << 1);
+		}
+		scopes[depth++] = size;
+	}
+
+	public void popScope() {
+		assert (depth > 0);
+		int start = scopes[--depth];
+		while (size > start) {
+			size--;
+			prefixBindings.put(prefixes[size], shadowedBindings[size]);
+			if (uriBindings.get(uris[size]) == size) {
+				uriBindings.put(uris[size], Constants.NOT_FOUND);
+			}
+			prefixes[size] = null;
+			uris[size] = null;
+		}
+	}
+
+	/**
+	 * Binds the prefix to the URI in the current scope.
+	 * 
+	 * @param prefix
+	 *            prefix
+	 * @param uri
+	 *            namespace URI
+	 */
+	public void declarePrefix(String prefix, String uri) {
+		if (size == prefixes.length) {
+			int newLength = size << 1;
+			prefixes = Arrays.copyOf(prefixes, newLength);
+			uris = Arrays.copyOf(uris, newLength);
+			shadowedBindings = Arrays.copyOf(shadowedBindings, newLength);
+		}
+		prefixes[size] = prefix;
+		uris[size] = uri;
+		shadowedBindings[size] = prefixBindings.get(prefix);
+		prefixBindings.put(prefix, size);
+		if (uriBindings.get(uri) == Constants.NOT_FOUND) {
+			uriBindings.put(uri, size);
+		}
+		size++;
+	}
+
+	/**
+	 * Returns the URI bound to the prefix.
+	 * 
+	 * @param prefix
+	 *            prefix
+	 * @return namespace URI or <code>null</code> if not bound
+	 */
+	public String getURI(String prefix) {
+		int b = prefixBindings.get(prefix);
+		return b == Constants.NOT_FOUND ? null : uris[b];
+	}
+
+	/**
+	 * Returns a prefix bound to the URI, preferring the outermost declaration.
+	 * 
+	 * @param uri
+	 *            namespace URI
+	 * @return prefix or <code>null</code> if none is bound
+	 */
+	public String getPrefix(String uri) {
+		int b = uriBindings.get(uri);
+		if (b == Constants.NOT_FOUND) {
+			return null;
+		}
+		if (prefixBindings.get(prefixes[b]) == b) {
+			return prefixes[b];
+		}
+		// prefix re-bound in an inner scope (rare)
+		for (int i = size - 1; i > b; i--) {
+			if (uris[i].equals(uri) && prefixBindings.get(prefixes[i]) == i) {
+				return prefixes[i];
+			}
+		}
+		return null;
+	}
+
+}
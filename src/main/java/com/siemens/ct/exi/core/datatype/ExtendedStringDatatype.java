@@ -58,6 +58,10 @@ public class ExtendedStringDatatype extends AbstractDatatype {
 		this.sharedStrings = sharedStrings;
 	}
 
+	public List<String> getSharedStrings() {
+		return this.sharedStrings;
+	}
+
 	public void setGrammarStrings(EnumDatatype grammarStrings) {
 		this.grammarStrings = grammarStrings;
 	}
@@ -28,6 +28,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import com.siemens.ct.exi.core.CoderMetrics;
 import com.siemens.ct.exi.core.context.QNameContext;
 import com.siemens.ct.exi.core.values.StringValue;
 
@@ -46,6 +47,9 @@ public abstract class AbstractStringCoder implements StringCoder {
 	// strings (local)
 	protected Map<QNameContext, List<StringValue>> localValues;
 
+	// null if no metrics are collected
+	protected CoderMetrics metrics;
+
 	public AbstractStringCoder(boolean localValuePartitions,
 			int initialQNameLists) {
 		this.localValuePartitions = localValuePartitions;
@@ -57,6 +61,11 @@ public abstract class AbstractStringCoder implements StringCoder {
 		return localValuePartitions;
 	}
 
+	@Override
+	public void setCoderMetrics(CoderMetrics metrics) {
+		this.metrics = metrics;
+	}
+
 	public int getNumberOfStringValues(QNameContext qnc) {
 		int n = 0;
 		List<StringValue> lvs = localValues.get(qnc);
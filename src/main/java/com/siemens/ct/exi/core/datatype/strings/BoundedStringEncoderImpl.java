@@ -25,6 +25,7 @@ package com.siemens.ct.exi.core.datatype.strings;
 
 import java.util.List;
 
+import com.siemens.ct.exi.core.Constants;
 import com.siemens.ct.exi.core.context.QNameContext;
 import com.siemens.ct.exi.core.values.StringValue;
 
@@ -46,9 +47,6 @@ public class BoundedStringEncoderImpl extends StringEncoderImpl {
 	/* global ID */
 	protected int globalID;
 
-	/* globalID mapping: index -> string value */
-	protected ValueContainer[] globalIdMapping;
-
 	public BoundedStringEncoderImpl(boolean localValuePartitions,
 			int valueMaxLength, int valuePartitionCapacity) {
 		super(localValuePartitions);
@@ -56,10 +54,6 @@ public class BoundedStringEncoderImpl extends StringEncoderImpl {
 		this.valuePartitionCapacity = valuePartitionCapacity;
 
 		this.globalID = -1;
-		if (valuePartitionCapacity >= 0) {
-			// globalIdMapping = new String[valuePartitionCapacity];
-			globalIdMapping = new ValueContainer[valuePartitionCapacity];
-		}
 	}
 
 	@Override
@@ -83,7 +77,7 @@ public class BoundedStringEncoderImpl extends StringEncoderImpl {
 				 * from its associated local value partition by rendering its
 				 * compact identifier permanently unassigned.
 				 */
-				assert (!stringValues.containsKey(value));
+				assert (stringValues.get(value) == Constants.NOT_FOUND);
 
 				/*
 				 * When the string value is added to the global value partition,
@@ -100,7 +94,7 @@ public class BoundedStringEncoderImpl extends StringEncoderImpl {
 
 				if (stringValues.size() == valuePartitionCapacity) {
 					// full --> remove old value
-					ValueContainer vcFree = globalIdMapping[globalID];
+					ValueContainer vcFree = globalValues[globalID];
 
 					// free local
 					this.freeStringValue(vcFree.context, vcFree.localValueID);
@@ -110,12 +104,10 @@ public class BoundedStringEncoderImpl extends StringEncoderImpl {
 				}
 
 				// add global
-				stringValues.put(value, vc);
+				putGlobalValue(vc);
 
 				// add local
 				this.addLocalValue(context, new StringValue(value));
-
-				globalIdMapping[globalID] = vc;
 			}
 		}
 	}
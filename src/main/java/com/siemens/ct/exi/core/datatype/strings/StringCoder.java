@@ -25,6 +25,7 @@ package com.siemens.ct.exi.core.datatype.strings;
 
 import java.util.List;
 
+import com.siemens.ct.exi.core.CoderMetrics;
 import com.siemens.ct.exi.core.Constants;
 import com.siemens.ct.exi.core.context.QNameContext;
 import com.siemens.ct.exi.core.values.StringValue;
@@ -50,4 +51,14 @@ public interface StringCoder {
 	public void setSharedStrings(List<String> sharedStrings);
 
 	public boolean isLocalValuePartitions();
+
+	/**
+	 * Sets the metrics string table hits and misses are reported to.
+	 * 
+	 * @param metrics
+	 *            coder metrics or null
+	 */
+	public default void setCoderMetrics(CoderMetrics metrics) {
+		// no metrics by default
+	}
 }
@@ -49,4 +49,11 @@ public interface StringDecoder extends StringCoder {
 	public StringValue readValueGlobalHit(DecoderChannel valueChannel)
 			throws IOException;
 
+	// number of values in the string table, needed for stateful sessions
+	// (EXISessionDecoder rejects decoders without it up front)
+	public default int getValueContainerSize() {
+		throw new UnsupportedOperationException(
+				"String table size not available");
+	}
+
 }
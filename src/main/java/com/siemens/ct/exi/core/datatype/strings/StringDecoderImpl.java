@@ -65,6 +65,9 @@ public class StringDecoderImpl extends AbstractStringCoder implements
 			// local value partition
 			if (localValuePartitions) {
 				value = this.readValueLocalHit(context, valueChannel);
+				if (metrics != null) {
+					metrics.stringHit(true);
+				}
 			} else {
 				throw new IOException(
 						"EXI stream contains local-value hit even though profile options indicate otherwise.");
@@ -73,12 +76,18 @@ public class StringDecoderImpl extends AbstractStringCoder implements
 		case 1:
 			// found in global value partition
 			value = readValueGlobalHit(valueChannel);
+			if (metrics != null) {
+				metrics.stringHit(false);
+			}
 			break;
 		default:
 			// not found in global value (and local value) partition
 			// ==> string literal is encoded as a String with the length
 			// incremented by two.
 			int L = i - 2;
+			if (metrics != null) {
+				metrics.stringMiss(L);
+			}
 			/*
 			 * If length L is greater than zero the string S is added
 			 */
@@ -134,6 +143,10 @@ public class StringDecoderImpl extends AbstractStringCoder implements
 		globalValues.clear();
 	}
 
+	public int getValueContainerSize() {
+		return globalValues.size();
+	}
+
 	public void setSharedStrings(List<String> sharedStrings) {
 		for (String s : sharedStrings) {
 			this.addValue(null, new StringValue(s));
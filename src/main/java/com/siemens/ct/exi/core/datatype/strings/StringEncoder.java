@@ -44,6 +44,29 @@ public interface StringEncoder extends StringCoder {
 	public void writeValue(QNameContext qnContext, EncoderChannel valueChannel,
 			String value) throws IOException;
 
+	/**
+	 * Writes the given character slice. A <code>String</code> is created only
+	 * if the value is not found in the string table and gets added.
+	 * 
+	 * @param qnContext
+	 *            qualified name context
+	 * @param valueChannel
+	 *            value channel
+	 * @param ch
+	 *            characters
+	 * @param start
+	 *            start offset
+	 * @param length
+	 *            number of chars
+	 * @throws IOException
+	 *             IO exception
+	 */
+	public default void writeValue(QNameContext qnContext,
+			EncoderChannel valueChannel, char[] ch, int start, int length)
+			throws IOException {
+		writeValue(qnContext, valueChannel, new String(ch, start, length));
+	}
+
 	public boolean isStringHit(String value) throws IOException;
 
 	public ValueContainer getValueContainer(String value);
@@ -24,13 +24,14 @@
 package com.siemens.ct.exi.core.datatype.strings;
 
 import java.io.IOException;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
 
+import com.siemens.ct.exi.core.Constants;
 import com.siemens.ct.exi.core.context.QNameContext;
 import com.siemens.ct.exi.core.io.channel.EncoderChannel;
 import com.siemens.ct.exi.core.util.MethodsBag;
+import com.siemens.ct.exi.core.util.StringIndex;
 import com.siemens.ct.exi.core.values.StringValue;
 
 /**
@@ -43,8 +44,11 @@ import com.siemens.ct.exi.core.values.StringValue;
 public class StringEncoderImpl extends AbstractStringCoder implements
 		StringEncoder {
 
-	// strings (all)
-	protected Map<String, ValueContainer> stringValues;
+	// strings (all), value to global ID (also looked up by char slices)
+	protected final StringIndex stringValues;
+
+	// global ID to value container
+	protected ValueContainer[] globalValues;
 
 	public StringEncoderImpl(boolean localValuePartitions) {
 		this(localValuePartitions, DEFAULT_INITIAL_QNAME_LISTS);
@@ -52,41 +56,17 @@ public class StringEncoderImpl extends AbstractStringCoder implements
 
 	public StringEncoderImpl(boolean localValuePartitions, int initialQNameLists) {
 		super(localValuePartitions, initialQNameLists);
-		stringValues = new HashMap<String, ValueContainer>();
+		stringValues = new StringIndex();
+		globalValues = new ValueContainer[StringIndex.DEFAULT_INITIAL_CAPACITY];
 	}
 
 	public void writeValue(QNameContext context, EncoderChannel valueChannel,
 			String value) throws IOException {
 
-		ValueContainer vc = stringValues.get(value);
-
-		if (vc != null) {
-			// hit
-			if (localValuePartitions && context.equals(vc.context)) {
-				/*
-				 * local value hit ==> is represented as zero (0) encoded as an
-				 * Unsigned Integer followed by the compact identifier of the
-				 * string value in the "local" value partition
-				 */
-				valueChannel.encodeUnsignedInteger(0);
-				int numberBitsLocal = MethodsBag
-						.getCodingLength(getNumberOfStringValues(context));
-				valueChannel.encodeNBitUnsignedInteger(vc.localValueID,
-						numberBitsLocal);
-			} else {
-				/*
-				 * global value hit ==> value is represented as one (1) encoded
-				 * as an Unsigned Integer followed by the compact identifier of
-				 * the String value in the global value partition.
-				 */
-				valueChannel.encodeUnsignedInteger(1);
-				// global value size
-
-				int numberBitsGlobal = MethodsBag.getCodingLength(stringValues
-						.size());
-				valueChannel.encodeNBitUnsignedInteger(vc.globalValueID,
-						numberBitsGlobal);
-			}
+		int globalID = stringValues.get(value);
+
+		if (globalID != Constants.NOT_FOUND) {
+			writeValueHit(context, valueChannel, globalValues[globalID]);
 		} else {
 			/*
 			 * miss [not found in local nor in global value partition] ==>
@@ -95,6 +75,9 @@ public class StringEncoderImpl extends AbstractStringCoder implements
 			 */
 			final int L = value.codePointCount(0, value.length());
 			valueChannel.encodeUnsignedInteger(L + 2);
+			if (metrics != null) {
+				metrics.stringMiss(L);
+			}
 			/*
 			 * If length L is greater than zero the string S is added
 			 */
@@ -109,8 +92,66 @@ public class StringEncoderImpl extends AbstractStringCoder implements
 
 	}
 
+	public void writeValue(QNameContext context, EncoderChannel valueChannel,
+			char[] ch, int start, int length) throws IOException {
+		int globalID = stringValues.get(ch, start, length);
+
+		if (globalID != Constants.NOT_FOUND) {
+			writeValueHit(context, valueChannel, globalValues[globalID]);
+		} else {
+			// miss, see above
+			final int L = Character.codePointCount(ch, start, length);
+			valueChannel.encodeUnsignedInteger(L + 2);
+			if (metrics != null) {
+				metrics.stringMiss(L);
+			}
+			if (L > 0) {
+				valueChannel.encodeStringOnly(ch, start, length);
+				addValue(context, new String(ch, start, length));
+			}
+		}
+	}
+
+	protected void writeValueHit(QNameContext context,
+			EncoderChannel valueChannel, ValueContainer vc) throws IOException {
+		// hit
+		if (localValuePartitions && context.equals(vc.context)) {
+			/*
+			 * local value hit ==> is represented as zero (0) encoded as an
+			 * Unsigned Integer followed by the compact identifier of the
+			 * string value in the "local" value partition
+			 */
+			valueChannel.encodeUnsignedInteger(0);
+			int numberBitsLocal = MethodsBag
+					.getCodingLength(getNumberOfStringValues(context));
+			valueChannel.encodeNBitUnsignedInteger(vc.localValueID,
+					numberBitsLocal);
+			if (metrics != null) {
+				metrics.stringHit(true);
+			}
+		} else {
+			/*
+			 * global value hit ==> value is represented as one (1) encoded
+			 * as an Unsigned Integer followed by the compact identifier of
+			 * the String value in the global value partition.
+			 */
+			valueChannel.encodeUnsignedInteger(1);
+			// global value size
+
+			int numberBitsGlobal = MethodsBag.getCodingLength(stringValues
+					.size());
+			valueChannel.encodeNBitUnsignedInteger(vc.globalValueID,
+					numberBitsGlobal);
+			if (metrics != null) {
+				metrics.stringHit(false);
+			}
+		}
+	}
+
 	public ValueContainer getValueContainer(String value) {
-		return this.stringValues.get(value);
+		int globalID = stringValues.get(value);
+		return globalID == Constants.NOT_FOUND ? null
+				: globalValues[globalID];
 	}
 
 	public int getValueContainerSize() {
@@ -119,25 +160,35 @@ public class StringEncoderImpl extends AbstractStringCoder implements
 
 	// Restricted char set
 	public boolean isStringHit(String value) throws IOException {
-		return (stringValues.get(value) != null);
+		return (stringValues.get(value) != Constants.NOT_FOUND);
 	}
 
 	public void addValue(QNameContext qnc, String value) {
-		assert (!stringValues.containsKey(value));
+		assert (stringValues.get(value) == Constants.NOT_FOUND);
 
 		ValueContainer vc = new ValueContainer(value, qnc,
 				getNumberOfStringValues(qnc), stringValues.size());
 
 		// global context
-		stringValues.put(value, vc);
+		putGlobalValue(vc);
 
 		// local context
 		this.addLocalValue(qnc, new StringValue(value));
 
 	}
 
+	protected void putGlobalValue(ValueContainer vc) {
+		if (vc.globalValueID >= globalValues.length) {
+			globalValues = Arrays.copyOf(globalValues,
+					Math.max(globalValues.length << 1, vc.globalValueID + 1));
+		}
+		globalValues[vc.globalValueID] = vc;
+		stringValues.put(vc.value, vc.globalValueID);
+	}
+
 	public void clear() {
 		super.clear();
+		Arrays.fill(globalValues, 0, stringValues.size(), null);
 		stringValues.clear();
 	}
 
@@ -0,0 +1,439 @@
+/*
+ * Copyright (c) 2007-2018 Siemens AG
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * 
+ */
+
+package com.siemens.ct.exi.core.grammars;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.siemens.ct.exi.core.Constants;
+import com.siemens.ct.exi.core.FidelityOptions;
+import com.siemens.ct.exi.core.context.GrammarContext;
+import com.siemens.ct.exi.core.context.GrammarUriContext;
+import com.siemens.ct.exi.core.context.QNameContext;
+import com.siemens.ct.exi.core.datatype.Datatype;
+import com.siemens.ct.exi.core.grammars.event.Attribute;
+import com.siemens.ct.exi.core.grammars.event.DatatypeEvent;
+import com.siemens.ct.exi.core.grammars.event.Event;
+import com.siemens.ct.exi.core.grammars.event.EventType;
+import com.siemens.ct.exi.core.grammars.event.StartElement;
+import com.siemens.ct.exi.core.grammars.event.StartElementNS;
+import com.siemens.ct.exi.core.grammars.grammar.Grammar;
+import com.siemens.ct.exi.core.grammars.production.Production;
+import com.siemens.ct.exi.core.util.MethodsBag;
+
+/**
+ * Schema-informed grammars compiled for one fidelity setting into a dense
+ * state machine.
+ * 
+ * <p>
+ * Every schema-informed grammar reachable from the document, fragment and
+ * global element/type grammars becomes an int state. Per state the automaton
+ * holds the 1st-level event-code width and the ordered 2nd-level events, per
+ * event-code the event kind (<code>EventType</code> ordinal), qname ordinal,
+ * datatype ID, next state and (for SE events) the state of the element
+ * grammar. The tables are immutable and can be shared by coders running
+ * concurrently.
+ * </p>
+ * 
+ * <p>
+ * Built-in grammars (learning) are not part of the automaton,
+ * {@link #getState(Grammar)} returns {@link #NO_STATE} for them.
+ * </p>
+ * 
+ * @author Daniel.Peintner.EXT@siemens.com
+ * @author Richard.Kuntschke@siemens.com
+ * 
+ */
+
+public class GrammarAutomaton {
+
+	public static final int NO_STATE = Constants.NOT_FOUND;
+
+	private static final EventType[] EVENT_TYPES = EventType.values();
+
+	protected final FidelityOptions fidelityOptions;
+
+	// states
+	protected final Grammar[] states;
+	protected final Map<Grammar, Integer> stateIDs;
+	// 1st level event-code widths
+	protected final int[] codeLengths;
+	// 2nd level characteristics, widths and event kinds
+	protected final int[] characteristics2;
+	protected final int[] codeLengths2;
+	protected final int[] eventOffsets2;
+	protected final int[] eventKinds2;
+	// 1st level events of state s are in [eventOffsets[s], eventOffsets[s+1])
+	protected final int[] eventOffsets;
+	protected final int[] eventKinds;
+	protected final int[] qnameIDs;
+	protected final int[] datatypeIDs;
+	protected final int[] nextStates;
+	protected final int[] elementStates;
+	protected final Production[] productions;
+	// (1st level) event-code for event kind, NOT_FOUND if none
+	protected final int[] eventCodes;
+
+	// side tables
+	protected final QNameContext[] qnames;
+	protected final Datatype[] datatypes;
+
+	protected GrammarAutomaton(FidelityOptions fidelityOptions,
+			List<Grammar> grammars, Map<Grammar, Integer> stateIDs,
+			List<QNameContext> qnames, Map<QNameContext, Integer> qnameIDs,
+			List<Datatype> datatypes, Map<Datatype, Integer> datatypeIDs) {
+		this.fidelityOptions = fidelityOptions;
+		this.states = grammars.toArray(new Grammar[grammars.size()]);
+		this.stateIDs = stateIDs;
+		int n = states.length;
+
+		codeLengths = new int[n];
+		characteristics2 = new int[n];
+		codeLengths2 = new int[n];
+		eventOffsets2 = new int[n + 1];
+		eventOffsets = new int[n + 1];
+		eventCodes = new int[n * EVENT_TYPES.length];
+		Arrays.fill(eventCodes, Constants.NOT_FOUND);
+
+		int events = 0;
+		int events2 = 0;
+		for (int s = 0; s < n; s++) {
+			eventOffsets[s] = events;
+			eventOffsets2[s] = events2;
+			events += states[s].getNumberOfEvents();
+			int ch2 = fidelityOptions.get2ndLevelCharacteristics(states[s]);
+			characteristics2[s] = ch2;
+			events2 += ch2;
+		}
+		eventOffsets[n] = events;
+		eventOffsets2[n] = events2;
+
+		eventKinds = new int[events];
+		this.qnameIDs = new int[events];
+		this.datatypeIDs = new int[events];
+		nextStates = new int[events];
+		elementStates = new int[events];
+		productions = new Production[events];
+		eventKinds2 = new int[events2];
+
+		for (int s = 0; s < n; s++) {
+			Grammar g = states[s];
+			codeLengths[s] = fidelityOptions.get1stLevelEventCodeLength(g);
+			codeLengths2[s] = MethodsBag.getCodingLength(characteristics2[s]);
+			// 1st level
+			for (int ec = 0; ec < g.getNumberOfEvents(); ec++) {
+				int i = eventOffsets[s] + ec;
+				Production p = g.getProduction(ec);
+				Event e = p.getEvent();
+				productions[i] = p;
+				eventKinds[i] = e.getEventType().ordinal();
+				this.qnameIDs[i] = getID(getQNameContext(e), qnameIDs);
+				this.datatypeIDs[i] = e instanceof DatatypeEvent ? getID(
+						((DatatypeEvent) e).getDatatype(), datatypeIDs)
+						: Constants.NOT_FOUND;
+				nextStates[i] = getID(p.getNextGrammar(), stateIDs);
+				elementStates[i] = e instanceof StartElement ? getID(
+						((StartElement) e).getGrammar(), stateIDs)
+						: Constants.NOT_FOUND;
+				int k = s * EVENT_TYPES.length + eventKinds[i];
+				if (eventCodes[k] == Constants.NOT_FOUND) {
+					eventCodes[k] = ec;
+				}
+			}
+			// 2nd level
+			for (int ec2 = 0; ec2 < characteristics2[s]; ec2++) {
+				EventType et = fidelityOptions.get2ndLevelEventType(ec2, g);
+				eventKinds2[eventOffsets2[s] + ec2] = et == null ? Constants.NOT_FOUND
+						: et.ordinal();
+			}
+		}
+
+		this.qnames = qnames.toArray(new QNameContext[qnames.size()]);
+		this.datatypes = datatypes.toArray(new Datatype[datatypes.size()]);
+	}
+
+	private static QNameContext getQNameContext(Event e) {
+		if (e instanceof StartElement) {
+			return ((StartElement) e).getQNameContext();
+		} else if (e instanceof Attribute) {
+			return ((Attribute) e).getQNameContext();
+		}
+		return null;
+	}
+
+	private static <T> int getID(T key, Map<T, Integer> ids) {
+		Integer id = key == null ? null : ids.get(key);
+		return id == null ? Constants.NOT_FOUND : id;
+	}
+
+	/**
+	 * Compiles the schema-informed grammars for the given fidelity options.
+	 * 
+	 * @param grammars
+	 *            schema-informed grammars
+	 * @param fidelityOptions
+	 *            fidelity options (event-code layout)
+	 * @return grammar automaton
+	 */
+	public static GrammarAutomaton compile(SchemaInformedGrammars grammars,
+			FidelityOptions fidelityOptions) {
+		List<Grammar> states = new ArrayList<Grammar>();
+		Map<Grammar, Integer> stateIDs = new IdentityHashMap<Grammar, Integer>();
+		Deque<Grammar> todo = new ArrayDeque<Grammar>();
+
+		// roots
+		addState(grammars.getDocumentGrammar(), states, stateIDs, todo);
+		addState(grammars.getFragmentGrammar(), states, stateIDs, todo);
+		addState(grammars.getSchemaInformedElementFragmentGrammar(), states,
+				stateIDs, todo);
+		GrammarContext gc = grammars.getGrammarContext();
+		for (int i = 0; i < gc.getNumberOfGrammarUriContexts(); i++) {
+			GrammarUriContext guc = gc.getGrammarUriContext(i);
+			for (int k = 0; k < guc.getNumberOfQNames(); k++) {
+				QNameContext qnc = guc.getQNameContext(k);
+				if (qnc.getGlobalStartElement() != null) {
+					addState(qnc.getGlobalStartElement().getGrammar(), states,
+							stateIDs, todo);
+				}
+				addState(qnc.getTypeGrammar(), states, stateIDs, todo);
+			}
+		}
+
+		// reachable grammars
+		List<QNameContext> qnames = new ArrayList<QNameContext>();
+		Map<QNameContext, Integer> qnameIDs = new IdentityHashMap<QNameContext, Integer>();
+		List<Datatype> datatypes = new ArrayList<Datatype>();
+		Map<Datatype, Integer> datatypeIDs = new IdentityHashMap<Datatype, Integer>();
+		while (!todo.isEmpty()) {
+			Grammar g = todo.removeFirst();
+			for (int ec = 0; ec < g.getNumberOfEvents(); ec++) {
+				Production p = g.getProduction(ec);
+				Event e = p.getEvent();
+				addState(p.getNextGrammar(), states, stateIDs, todo);
+				if (e instanceof StartElement) {
+					addState(((StartElement) e).getGrammar(), states,
+							stateIDs, todo);
+				}
+				addID(getQNameContext(e), qnames, qnameIDs);
+				if (e instanceof DatatypeEvent) {
+					addID(((DatatypeEvent) e).getDatatype(), datatypes,
+							datatypeIDs);
+				}
+			}
+			// Note: typeEmpty grammars (xsi:nil) are created lazily at runtime
+			// and are not part of the automaton
+			addState(g.getElementContentGrammar(), states, stateIDs, todo);
+		}
+
+		return new GrammarAutomaton(fidelityOptions, states, stateIDs,
+				qnames, qnameIDs, datatypes, datatypeIDs);
+	}
+
+	private static void addState(Grammar g, List<Grammar> states,
+			Map<Grammar, Integer> stateIDs, Deque<Grammar> todo) {
+		if (g != null && g.isSchemaInformed() && !stateIDs.containsKey(g)) {
+			stateIDs.put(g, states.size());
+			states.add(g);
+			todo.addLast(g);
+		}
+	}
+
+	private static <T> void addID(T key, List<T> keys, Map<T, Integer> ids) {
+		if (key != null && !ids.containsKey(key)) {
+			ids.put(key, keys.size());
+			keys.add(key);
+		}
+	}
+
+	public FidelityOptions getFidelityOptions() {
+		return fidelityOptions;
+	}
+
+	public int getNumberOfStates() {
+		return states.length;
+	}
+
+	/**
+	 * Returns the state of a grammar.
+	 * 
+	 * @param grammar
+	 *            grammar
+	 * @return state or {@link #NO_STATE} for grammars that are not part of the
+	 *         automaton (e.g., built-in grammars)
+	 */
+	public int getState(Grammar grammar) {
+		Integer s = stateIDs.get(grammar);
+		return s == null ? NO_STATE : s;
+	}
+
+	public Grammar getGrammar(int state) {
+		return states[state];
+	}
+
+	public int getNumberOfEvents(int state) {
+		return eventOffsets[state + 1] - eventOffsets[state];
+	}
+
+	public int getEventCodeLength(int state) {
+		return codeLengths[state];
+	}
+
+	public int get2ndLevelCharacteristics(int state) {
+		return characteristics2[state];
+	}
+
+	public int get2ndLevelEventCodeLength(int state) {
+		return codeLengths2[state];
+	}
+
+	/**
+	 * Returns the 2nd level event at the given position.
+	 * 
+	 * @param state
+	 *            state
+	 * @param ec2
+	 *            2nd level event-code
+	 * @return event type or null (e.g., 3rd level escape)
+	 */
+	public EventType get2ndLevelEventType(int state, int ec2) {
+		int kind = eventKinds2[eventOffsets2[state] + ec2];
+		return kind == Constants.NOT_FOUND ? null : EVENT_TYPES[kind];
+	}
+
+	public int get2ndLevelEventCode(int state, EventType eventType) {
+		int kind = eventType.ordinal();
+		for (int i = eventOffsets2[state]; i < eventOffsets2[state + 1]; i++) {
+			if (eventKinds2[i] == kind) {
+				return i - eventOffsets2[state];
+			}
+		}
+		return Constants.NOT_FOUND;
+	}
+
+	public EventType getEventType(int state, int ec) {
+		return EVENT_TYPES[eventKinds[eventOffsets[state] + ec]];
+	}
+
+	public Production getProduction(int state, int ec) {
+		return productions[eventOffsets[state] + ec];
+	}
+
+	public int getNextState(int state, int ec) {
+		return nextStates[eventOffsets[state] + ec];
+	}
+
+	/**
+	 * Returns the state of the element grammar of a SE(qname) event.
+	 * 
+	 * @param state
+	 *            state
+	 * @param ec
+	 *            event-code
+	 * @return state of the element grammar or {@link #NO_STATE}
+	 */
+	public int getElementState(int state, int ec) {
+		return elementStates[eventOffsets[state] + ec];
+	}
+
+	public int getQNameID(int state, int ec) {
+		return qnameIDs[eventOffsets[state] + ec];
+	}
+
+	public QNameContext getQNameContext(int qnameID) {
+		return qnames[qnameID];
+	}
+
+	public int getDatatypeID(int state, int ec) {
+		return datatypeIDs[eventOffsets[state] + ec];
+	}
+
+	public Datatype getDatatype(int datatypeID) {
+		return datatypes[datatypeID];
+	}
+
+	/**
+	 * Returns the first 1st level event-code of the given event type.
+	 * 
+	 * @param state
+	 *            state
+	 * @param eventType
+	 *            event type
+	 * @return event-code or NOT_FOUND
+	 */
+	public int getEventCode(int state, EventType eventType) {
+		return eventCodes[state * EVENT_TYPES.length + eventType.ordinal()];
+	}
+
+	public int getStartElementEventCode(int state, String namespaceURI,
+			String localName) {
+		return getEventCode(state, EventType.START_ELEMENT, namespaceURI,
+				localName);
+	}
+
+	public int getAttributeEventCode(int state, String namespaceURI,
+			String localName) {
+		return getEventCode(state, EventType.ATTRIBUTE, namespaceURI,
+				localName);
+	}
+
+	public int getStartElementNSEventCode(int state, String namespaceURI) {
+		int kind = EventType.START_ELEMENT_NS.ordinal();
+		int ec = eventCodes[state * EVENT_TYPES.length + kind];
+		if (ec != Constants.NOT_FOUND) {
+			int off = eventOffsets[state];
+			for (int i = off + ec; i < eventOffsets[state + 1]
+					&& eventKinds[i] == kind; i++) {
+				if (((StartElementNS) productions[i].getEvent())
+						.getNamespaceURI().equals(namespaceURI)) {
+					return i - off;
+				}
+			}
+		}
+		return Constants.NOT_FOUND;
+	}
+
+	protected int getEventCode(int state, EventType eventType,
+			String namespaceURI, String localName) {
+		int kind = eventType.ordinal();
+		int ec = eventCodes[state * EVENT_TYPES.length + kind];
+		if (ec != Constants.NOT_FOUND) {
+			// events of one kind are adjacent
+			int off = eventOffsets[state];
+			for (int i = off + ec; i < eventOffsets[state + 1]
+					&& eventKinds[i] == kind; i++) {
+				QNameContext qnc = qnames[qnameIDs[i]];
+				if (qnc.getLocalName().equals(localName)
+						&& qnc.getNamespaceUri().equals(namespaceURI)) {
+					return i - off;
+				}
+			}
+		}
+		return Constants.NOT_FOUND;
+	}
+}
@@ -0,0 +1,1027 @@
+/*
+ * Copyright (c) 2007-2018 Siemens AG
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * 
+ */
+
+package com.siemens.ct.exi.core.grammars;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+import javax.xml.namespace.QName;
+
+import com.siemens.ct.exi.core.context.GrammarContext;
+import com.siemens.ct.exi.core.context.GrammarUriContext;
+import com.siemens.ct.exi.core.context.QNameContext;
+import com.siemens.ct.exi.core.datatype.BinaryBase64Datatype;
+import com.siemens.ct.exi.core.datatype.BinaryHexDatatype;
+import com.siemens.ct.exi.core.datatype.BooleanDatatype;
+import com.siemens.ct.exi.core.datatype.BooleanFacetDatatype;
+import com.siemens.ct.exi.core.datatype.Datatype;
+import com.siemens.ct.exi.core.datatype.DatetimeDatatype;
+import com.siemens.ct.exi.core.datatype.DecimalDatatype;
+import com.siemens.ct.exi.core.datatype.EnumDatatype;
+import com.siemens.ct.exi.core.datatype.EnumerationDatatype;
+import com.siemens.ct.exi.core.datatype.ExtendedStringDatatype;
+import com.siemens.ct.exi.core.datatype.FloatDatatype;
+import com.siemens.ct.exi.core.datatype.IntegerDatatype;
+import com.siemens.ct.exi.core.datatype.ListDatatype;
+import com.siemens.ct.exi.core.datatype.NBitUnsignedIntegerDatatype;
+import com.siemens.ct.exi.core.datatype.RestrictedCharacterSetDatatype;
+import com.siemens.ct.exi.core.datatype.StringDatatype;
+import com.siemens.ct.exi.core.datatype.UnsignedIntegerDatatype;
+import com.siemens.ct.exi.core.datatype.WhiteSpace;
+import com.siemens.ct.exi.core.datatype.charset.CodePointCharacterSet;
+import com.siemens.ct.exi.core.datatype.charset.RestrictedCharacterSet;
+import com.siemens.ct.exi.core.exceptions.UnsupportedOption;
+import com.siemens.ct.exi.core.grammars.event.Attribute;
+import com.siemens.ct.exi.core.grammars.event.AttributeGeneric;
+import com.siemens.ct.exi.core.grammars.event.AttributeNS;
+import com.siemens.ct.exi.core.grammars.event.Characters;
+import com.siemens.ct.exi.core.grammars.event.CharactersGeneric;
+import com.siemens.ct.exi.core.grammars.event.Comment;
+import com.siemens.ct.exi.core.grammars.event.DatatypeEvent;
+import com.siemens.ct.exi.core.grammars.event.DocType;
+import com.siemens.ct.exi.core.grammars.event.EndDocument;
+import com.siemens.ct.exi.core.grammars.event.EndElement;
+import com.siemens.ct.exi.core.grammars.event.EntityReference;
+import com.siemens.ct.exi.core.grammars.event.Event;
+import com.siemens.ct.exi.core.grammars.event.EventType;
+import com.siemens.ct.exi.core.grammars.event.NamespaceDeclaration;
+import com.siemens.ct.exi.core.grammars.event.ProcessingInstruction;
+import com.siemens.ct.exi.core.grammars.event.SelfContained;
+import com.siemens.ct.exi.core.grammars.event.StartDocument;
+import com.siemens.ct.exi.core.grammars.event.StartElement;
+import com.siemens.ct.exi.core.grammars.event.StartElementGeneric;
+import com.siemens.ct.exi.core.grammars.event.StartElementNS;
+import com.siemens.ct.exi.core.grammars.grammar.DocEnd;
+import com.siemens.ct.exi.core.grammars.grammar.Document;
+import com.siemens.ct.exi.core.grammars.grammar.Fragment;
+import com.siemens.ct.exi.core.grammars.grammar.Grammar;
+import com.siemens.ct.exi.core.grammars.grammar.GrammarType;
+import com.siemens.ct.exi.core.grammars.grammar.SchemaInformedDocContent;
+import com.siemens.ct.exi.core.grammars.grammar.SchemaInformedElement;
+import com.siemens.ct.exi.core.grammars.grammar.SchemaInformedFirstStartTag;
+import com.siemens.ct.exi.core.grammars.grammar.SchemaInformedFirstStartTagGrammar;
+import com.siemens.ct.exi.core.grammars.grammar.SchemaInformedFragmentContent;
+import com.siemens.ct.exi.core.grammars.grammar.SchemaInformedGrammar;
+import com.siemens.ct.exi.core.grammars.grammar.SchemaInformedStartTag;
+import com.siemens.ct.exi.core.grammars.production.Production;
+import com.siemens.ct.exi.core.types.BuiltInType;
+import com.siemens.ct.exi.core.types.DateTimeType;
+import com.siemens.ct.exi.core.values.BinaryBase64Value;
+import com.siemens.ct.exi.core.values.BinaryHexValue;
+import com.siemens.ct.exi.core.values.BooleanValue;
+import com.siemens.ct.exi.core.values.DateTimeValue;
+import com.siemens.ct.exi.core.values.DecimalValue;
+import com.siemens.ct.exi.core.values.FloatValue;
+import com.siemens.ct.exi.core.values.IntegerValue;
+import com.siemens.ct.exi.core.values.ListValue;
+import com.siemens.ct.exi.core.values.StringValue;
+import com.siemens.ct.exi.core.values.Value;
+
+/**
+ * Binary snapshot of schema-informed grammars.
+ * 
+ * <p>
+ * A snapshot holds the complete in-memory grammar graph, that is the grammar
+ * context with all namespace and qname contexts (including global elements,
+ * global attributes and type grammars), the datatypes with their enumerations
+ * and restricted character sets, and all reachable grammars and productions.
+ * Shared objects are written once and referenced by ID, so loading restores
+ * the same object sharing in a single linear pass without any schema
+ * processing.
+ * </p>
+ * 
+ * <p>
+ * The header carries the schemaId of the grammars (if any) and a CRC-32
+ * checksum of the payload. {@link #read(InputStream, String)} rejects snapshots with a
+ * different schemaId or a corrupted payload.
+ * </p>
+ * 
+ * <p>
+ * Note: typeEmpty grammars (xsi:nil) are not part of a snapshot. They are
+ * derived lazily at runtime as for grammars built from a schema.
+ * </p>
+ * 
+ * @author Daniel.Peintner.EXT@siemens.com
+ * @author Richard.Kuntschke@siemens.com
+ * 
+ */
+
+public class GrammarSnapshot {
+
+	/** "EXGS" */
+	public static final int SNAPSHOT_MAGIC = 0x45584753;
+	public static final int SNAPSHOT_VERSION = 1;
+
+	// references: 0 is null, otherwise ID + 1
+	static final int NO_REFERENCE = 0;
+
+	private GrammarSnapshot() {
+	}
+
+	/**
+	 * Writes a binary snapshot of the given grammars.
+	 * 
+	 * @param grammars
+	 *            schema-informed grammars
+	 * @param os
+	 *            output stream
+	 * @throws IOException
+	 *             IO exception or grammar graph that cannot be represented
+	 */
+	public static void write(SchemaInformedGrammars grammars, OutputStream os)
+			throws IOException {
+		byte[] payload = new SnapshotWriter(grammars).write();
+		CRC32 crc = new CRC32();
+		crc.update(payload, 0, payload.length);
+
+		DataOutputStream dos = new DataOutputStream(os);
+		dos.writeInt(SNAPSHOT_MAGIC);
+		dos.writeByte(SNAPSHOT_VERSION);
+		dos.writeBoolean(grammars.isBuiltInXMLSchemaTypesOnly());
+		String schemaId = grammars.getSchemaId();
+		dos.writeBoolean(schemaId != null);
+		if (schemaId != null) {
+			dos.writeUTF(schemaId);
+		}
+		dos.writeInt(payload.length);
+		dos.writeLong(crc.getValue());
+		dos.write(payload);
+		dos.flush();
+	}
+
+	/**
+	 * Reads a snapshot previously written by
+	 * {@link #write(SchemaInformedGrammars, OutputStream)}.
+	 * 
+	 * @param is
+	 *            input stream
+	 * @return grammars
+	 * @throws IOException
+	 *             IO exception or invalid snapshot
+	 */
+	public static SchemaInformedGrammars read(InputStream is)
+			throws IOException {
+		return read(is, null);
+	}
+
+	/**
+	 * Reads a snapshot previously written by
+	 * {@link #write(SchemaInformedGrammars, OutputStream)} and checks that it
+	 * belongs to the expected schemaId.
+	 * 
+	 * @param is
+	 *            input stream
+	 * @param schemaId
+	 *            expected schemaId or <code>null</code> for any
+	 * @return grammars
+	 * @throws IOException
+	 *             IO exception, invalid snapshot or schemaId mismatch
+	 */
+	public static SchemaInformedGrammars read(InputStream is, String schemaId)
+			throws IOException {
+		DataInputStream dis = new DataInputStream(is);
+		if (dis.readInt() != SNAPSHOT_MAGIC) {
+			throw new IOException("No grammar snapshot");
+		}
+		int version = dis.readUnsignedByte();
+		if (version != SNAPSHOT_VERSION) {
+			throw new IOException("Unsupported grammar snapshot version "
+					+ version);
+		}
+		boolean builtInXMLSchemaTypesOnly = dis.readBoolean();
+		String snapshotSchemaId = dis.readBoolean() ? dis.readUTF() : null;
+		if (schemaId != null && !schemaId.equals(snapshotSchemaId)) {
+			throw new IOException("Grammar snapshot for schemaId '"
+					+ snapshotSchemaId + "' does not match schemaId '"
+					+ schemaId + "'");
+		}
+		int length = dis.readInt();
+		long checksum = dis.readLong();
+		if (length < 0) {
+			throw new IOException("Invalid grammar snapshot length " + length);
+		}
+		byte[] payload = new byte[length];
+		dis.readFully(payload);
+		CRC32 crc = new CRC32();
+		crc.update(payload, 0, payload.length);
+		if (crc.getValue() != checksum) {
+			throw new IOException("Grammar snapshot checksum mismatch");
+		}
+
+		SchemaInformedGrammars grammars;
+		try {
+			grammars = new SnapshotReader(payload).read();
+		} catch (RuntimeException e) {
+			// e.g., grammar construction failures
+			throw new IOException("Invalid grammar snapshot", e);
+		}
+		if (builtInXMLSchemaTypesOnly) {
+			grammars.setBuiltInXMLSchemaTypesOnly(true);
+		} else if (snapshotSchemaId != null && snapshotSchemaId.length() > 0) {
+			try {
+				grammars.setSchemaId(snapshotSchemaId);
+			} catch (UnsupportedOption e) {
+				throw new IOException(e);
+			}
+		}
+		return grammars;
+	}
+
+	static class SnapshotWriter {
+
+		final SchemaInformedGrammars grammars;
+		final GrammarContext grammarContext;
+
+		final List<QNameContext> qnames = new ArrayList<QNameContext>();
+		final Map<QNameContext, Integer> qnameIDs = new IdentityHashMap<QNameContext, Integer>();
+		int numberOfContextQNames;
+
+		final List<Datatype> datatypes = new ArrayList<Datatype>();
+		final Map<Datatype, Integer> datatypeIDs = new IdentityHashMap<Datatype, Integer>();
+
+		final List<Grammar> grammarList = new ArrayList<Grammar>();
+		final Map<Grammar, Integer> grammarIDs = new IdentityHashMap<Grammar, Integer>();
+		final Deque<Grammar> todo = new ArrayDeque<Grammar>();
+
+		final List<Event> events = new ArrayList<Event>();
+		final Map<Event, Integer> eventIDs = new IdentityHashMap<Event, Integer>();
+
+		DataOutputStream dos;
+
+		SnapshotWriter(SchemaInformedGrammars grammars) {
+			this.grammars = grammars;
+			this.grammarContext = grammars.getGrammarContext();
+		}
+
+		byte[] write() throws IOException {
+			collect();
+
+			ByteArrayOutputStream baos = new ByteArrayOutputStream();
+			dos = new DataOutputStream(baos);
+
+			// grammar context
+			writeUnsigned(dos, grammarContext.getNumberOfGrammarUriContexts());
+			for (int i = 0; i < grammarContext.getNumberOfGrammarUriContexts(); i++) {
+				GrammarUriContext guc = grammarContext.getGrammarUriContext(i);
+				writeString(dos, guc.getNamespaceUri());
+				writeUnsigned(dos, guc.getNumberOfQNames());
+				for (int k = 0; k < guc.getNumberOfQNames(); k++) {
+					writeString(dos, guc.getQNameContext(k).getLocalName());
+				}
+				writeUnsigned(dos, guc.getNumberOfPrefixes());
+				for (int k = 0; k < guc.getNumberOfPrefixes(); k++) {
+					writeString(dos, guc.getPrefix(k));
+				}
+			}
+			writeUnsigned(dos, grammarContext.getNumberOfGrammarQNameContexts());
+			// qnames outside of the grammar context
+			writeUnsigned(dos, qnames.size() - numberOfContextQNames);
+			for (int i = numberOfContextQNames; i < qnames.size(); i++) {
+				QNameContext qnc = qnames.get(i);
+				writeUnsigned(dos, qnc.getNamespaceUriID());
+				writeUnsigned(dos, qnc.getLocalNameID());
+				writeString(dos, qnc.getNamespaceUri());
+				writeString(dos, qnc.getLocalName());
+			}
+
+			// datatypes
+			writeUnsigned(dos, datatypes.size());
+			for (Datatype dt : datatypes) {
+				writeDatatype(dt);
+			}
+
+			// grammars
+			writeUnsigned(dos, grammarList.size());
+			for (Grammar g : grammarList) {
+				dos.writeByte(g.getGrammarType().ordinal());
+				if (g instanceof SchemaInformedFirstStartTagGrammar) {
+					SchemaInformedFirstStartTagGrammar fst = (SchemaInformedFirstStartTagGrammar) g;
+					dos.writeBoolean(fst.isTypeCastable());
+					dos.writeBoolean(fst.isNillable());
+				}
+			}
+
+			// events
+			writeUnsigned(dos, events.size());
+			for (Event ev : events) {
+				writeEvent(ev);
+			}
+
+			// productions
+			for (Grammar g : grammarList) {
+				if (g instanceof SchemaInformedStartTag) {
+					writeUnsigned(dos, getGrammarRef(g.getElementContentGrammar()));
+				}
+				writeUnsigned(dos, g.getNumberOfEvents());
+				for (int ec = 0; ec < g.getNumberOfEvents(); ec++) {
+					Production p = g.getProduction(ec);
+					writeUnsigned(dos, getEventRef(p.getEvent()));
+					writeUnsigned(dos, isTerminal(p.getEvent()) ? NO_REFERENCE
+							: getGrammarRef(p.getNextGrammar()));
+				}
+			}
+
+			// global elements, attributes and types
+			for (int i = 0; i < numberOfContextQNames; i++) {
+				QNameContext qnc = qnames.get(i);
+				writeUnsigned(dos, getEventRef(qnc.getGlobalStartElement()));
+				writeUnsigned(dos, getEventRef(qnc.getGlobalAttribute()));
+				writeUnsigned(dos, getGrammarRef(qnc.getTypeGrammar()));
+			}
+
+			// datatype links
+			for (Datatype dt : datatypes) {
+				writeUnsigned(dos, getDatatypeRef(dt.getBaseDatatype()));
+				writeUnsigned(dos, getDatatypeRef(dt.getGrammarEnumeration()));
+				if (dt instanceof ExtendedStringDatatype) {
+					ExtendedStringDatatype esdt = (ExtendedStringDatatype) dt;
+					writeUnsigned(dos, getDatatypeRef(esdt.getGrammarStrings()));
+					List<String> sharedStrings = esdt.getSharedStrings();
+					if (sharedStrings == null) {
+						writeUnsigned(dos, NO_REFERENCE);
+					} else {
+						writeUnsigned(dos, sharedStrings.size() + 1);
+						for (String s : sharedStrings) {
+							writeString(dos, s);
+						}
+					}
+				}
+			}
+
+			// root grammars
+			writeUnsigned(dos, getGrammarRef(grammars.getDocumentGrammar()));
+			writeUnsigned(dos, getGrammarRef(grammars.getFragmentGrammar()));
+			writeUnsigned(dos, getGrammarRef(grammars
+					.getSchemaInformedElementFragmentGrammar()));
+
+			dos.flush();
+			return baos.toByteArray();
+		}
+
+		void collect() throws IOException {
+			for (int i = 0; i < grammarContext.getNumberOfGrammarUriContexts(); i++) {
+				GrammarUriContext guc = grammarContext.getGrammarUriContext(i);
+				for (int k = 0; k < guc.getNumberOfQNames(); k++) {
+					addQName(guc.getQNameContext(k));
+				}
+			}
+			numberOfContextQNames = qnames.size();
+
+			addGrammar(grammars.getDocumentGrammar());
+			addGrammar(grammars.getFragmentGrammar());
+			addGrammar(grammars.getSchemaInformedElementFragmentGrammar());
+			for (int i = 0; i < numberOfContextQNames; i++) {
+				QNameContext qnc = qnames.get(i);
+				addEvent(qnc.getGlobalStartElement());
+				addEvent(qnc.getGlobalAttribute());
+				addGrammar(qnc.getTypeGrammar());
+			}
+
+			while (!todo.isEmpty()) {
+				Grammar g = todo.removeFirst();
+				for (int ec = 0; ec < g.getNumberOfEvents(); ec++) {
+					Production p = g.getProduction(ec);
+					addEvent(p.getEvent());
+					if (!isTerminal(p.getEvent())) {
+						addGrammar(p.getNextGrammar());
+					}
+				}
+				if (g instanceof SchemaInformedStartTag) {
+					addGrammar(g.getElementContentGrammar());
+				}
+			}
+		}
+
+		void addQName(QNameContext qnc) {
+			if (qnc != null && !qnameIDs.containsKey(qnc)) {
+				qnameIDs.put(qnc, qnames.size());
+				qnames.add(qnc);
+			}
+		}
+
+		void addGrammar(Grammar g) throws IOException {
+			if (g != null && !grammarIDs.containsKey(g)) {
+				if (!g.isSchemaInformed()) {
+					throw new IOException("Grammar " + g
+							+ " is not schema-informed");
+				}
+				grammarIDs.put(g, grammarList.size());
+				grammarList.add(g);
+				todo.addLast(g);
+			}
+		}
+
+		void addEvent(Event ev) throws IOException {
+			if (ev != null && !eventIDs.containsKey(ev)) {
+				eventIDs.put(ev, events.size());
+				events.add(ev);
+				switch (ev.getEventType()) {
+				case START_ELEMENT:
+					StartElement se = (StartElement) ev;
+					addQName(se.getQNameContext());
+					addGrammar(se.getGrammar());
+					break;
+				case ATTRIBUTE:
+					addQName(((Attribute) ev).getQNameContext());
+					break;
+				default:
+					break;
+				}
+				if (ev instanceof DatatypeEvent) {
+					addDatatype(((DatatypeEvent) ev).getDatatype());
+				}
+			}
+		}
+
+		void addDatatype(Datatype dt) {
+			if (dt != null && !datatypeIDs.containsKey(dt)) {
+				// constructor dependencies come first
+				if (dt instanceof EnumerationDatatype) {
+					addDatatype(((EnumerationDatatype) dt)
+							.getEnumValueDatatype());
+				} else if (dt instanceof ListDatatype) {
+					addDatatype(((ListDatatype) dt).getListDatatype());
+				}
+				datatypeIDs.put(dt, datatypes.size());
+				datatypes.add(dt);
+				addQName(dt.getSchemaType());
+				// links are set after construction (may be cyclic)
+				addDatatype(dt.getBaseDatatype());
+				addDatatype(dt.getGrammarEnumeration());
+				if (dt instanceof ExtendedStringDatatype) {
+					addDatatype(((ExtendedStringDatatype) dt)
+							.getGrammarStrings());
+				}
+			}
+		}
+
+		// EE and ED lead to the shared end rule
+		static boolean isTerminal(Event ev) {
+			return ev.isEventType(EventType.END_ELEMENT)
+					|| ev.isEventType(EventType.END_DOCUMENT);
+		}
+
+		int getGrammarRef(Grammar g) {
+			return g == null ? NO_REFERENCE : grammarIDs.get(g) + 1;
+		}
+
+		int getEventRef(Event ev) {
+			return ev == null ? NO_REFERENCE : eventIDs.get(ev) + 1;
+		}
+
+		int getDatatypeRef(Datatype dt) {
+			return dt == null ? NO_REFERENCE : datatypeIDs.get(dt) + 1;
+		}
+
+		int getQNameRef(QNameContext qnc) {
+			return qnc == null ? NO_REFERENCE : qnameIDs.get(qnc) + 1;
+		}
+
+		void writeDatatype(Datatype dt) throws IOException {
+			BuiltInType bit = dt.getBuiltInType();
+			dos.writeByte(bit.ordinal());
+			writeUnsigned(dos, getQNameRef(dt.getSchemaType()));
+			switch (bit) {
+			case BINARY_BASE64:
+			case BINARY_HEX:
+			case BOOLEAN:
+			case BOOLEAN_FACET:
+			case DECIMAL:
+			case FLOAT:
+			case UNSIGNED_INTEGER:
+			case INTEGER:
+				break;
+			case NBIT_UNSIGNED_INTEGER:
+				NBitUnsignedIntegerDatatype nbit = (NBitUnsignedIntegerDatatype) dt;
+				writeString(dos, nbit.getLowerBound().toString());
+				writeString(dos, nbit.getUpperBound().toString());
+				break;
+			case DATETIME:
+				dos.writeByte(((DatetimeDatatype) dt).getDatetimeType()
+						.ordinal());
+				break;
+			case STRING:
+				dos.writeByte(dt.getWhiteSpace().ordinal());
+				dos.writeBoolean(((StringDatatype) dt).isDerivedByUnion());
+				break;
+			case RCS_STRING:
+				dos.writeByte(dt.getWhiteSpace().ordinal());
+				RestrictedCharacterSet rcs = ((RestrictedCharacterSetDatatype) dt)
+						.getRestrictedCharacterSet();
+				writeUnsigned(dos, rcs.size());
+				for (int i = 0; i < rcs.size(); i++) {
+					writeUnsigned(dos, rcs.getCodePoint(i));
+				}
+				break;
+			case EXTENDED_STRING:
+				dos.writeByte(dt.getWhiteSpace().ordinal());
+				break;
+			case ENUMERATION:
+				EnumerationDatatype edt = (EnumerationDatatype) dt;
+				writeUnsigned(dos, getDatatypeRef(edt.getEnumValueDatatype()));
+				writeUnsigned(dos, edt.getEnumerationSize());
+				for (int i = 0; i < edt.getEnumerationSize(); i++) {
+					writeString(dos, edt.getEnumValue(i).toString());
+				}
+				break;
+			case LIST:
+				writeUnsigned(dos,
+						getDatatypeRef(((ListDatatype) dt).getListDatatype()));
+				break;
+			default:
+				throw new IOException("Unsupported datatype " + dt);
+			}
+		}
+
+		void writeEvent(Event ev) throws IOException {
+			EventType et = ev.getEventType();
+			dos.writeByte(et.ordinal());
+			switch (et) {
+			case START_ELEMENT:
+				StartElement se = (StartElement) ev;
+				writeUnsigned(dos, getQNameRef(se.getQNameContext()));
+				writeUnsigned(dos, getGrammarRef(se.getGrammar()));
+				break;
+			case START_ELEMENT_NS:
+				StartElementNS seNS = (StartElementNS) ev;
+				writeUnsigned(dos, seNS.getNamespaceUriID());
+				writeString(dos, seNS.getNamespaceURI());
+				break;
+			case ATTRIBUTE:
+				Attribute at = (Attribute) ev;
+				writeUnsigned(dos, getQNameRef(at.getQNameContext()));
+				writeUnsigned(dos, getDatatypeRef(at.getDatatype()));
+				break;
+			case ATTRIBUTE_NS:
+				AttributeNS atNS = (AttributeNS) ev;
+				writeUnsigned(dos, atNS.getNamespaceUriID());
+				writeString(dos, atNS.getNamespaceURI());
+				break;
+			case CHARACTERS:
+				writeUnsigned(dos,
+						getDatatypeRef(((Characters) ev).getDatatype()));
+				break;
+			case START_DOCUMENT:
+			case END_DOCUMENT:
+			case START_ELEMENT_GENERIC:
+			case END_ELEMENT:
+			case ATTRIBUTE_GENERIC:
+			case CHARACTERS_GENERIC:
+			case DOC_TYPE:
+			case NAMESPACE_DECLARATION:
+			case SELF_CONTAINED:
+			case ENTITY_REFERENCE:
+			case COMMENT:
+			case PROCESSING_INSTRUCTION:
+				break;
+			default:
+				throw new IOException("Unsupported grammar event " + ev);
+			}
+		}
+	}
+
+	static class SnapshotReader {
+
+		final DataInputStream dis;
+
+		QNameContext[] qnames;
+		Datatype[] datatypes;
+		SchemaInformedGrammar[] grammars;
+		Event[] events;
+
+		SnapshotReader(byte[] payload) {
+			dis = new DataInputStream(new ByteArrayInputStream(payload));
+		}
+
+		SchemaInformedGrammars read() throws IOException {
+			// grammar context
+			int numberOfUris = readUnsigned(dis);
+			List<QNameContext> qnameList = new ArrayList<QNameContext>();
+			GrammarUriContext[] gucs = new GrammarUriContext[numberOfUris];
+			for (int i = 0; i < numberOfUris; i++) {
+				String uri = readString(dis);
+				QNameContext[] gqncs = new QNameContext[readUnsigned(dis)];
+				for (int k = 0; k < gqncs.length; k++) {
+					gqncs[k] = new QNameContext(i, k, new QName(uri,
+							readString(dis)));
+					qnameList.add(gqncs[k]);
+				}
+				String[] prefixes = new String[readUnsigned(dis)];
+				for (int k = 0; k < prefixes.length; k++) {
+					prefixes[k] = readString(dis);
+				}
+				gucs[i] = new GrammarUriContext(i, uri, gqncs, prefixes);
+			}
+			GrammarContext gc = new GrammarContext(gucs, readUnsigned(dis));
+			int numberOfContextQNames = qnameList.size();
+			int numberOfExtraQNames = readUnsigned(dis);
+			for (int i = 0; i < numberOfExtraQNames; i++) {
+				int uriID = readUnsigned(dis);
+				int localNameID = readUnsigned(dis);
+				String uri = readString(dis);
+				qnameList.add(new QNameContext(uriID, localNameID, new QName(
+						uri, readString(dis))));
+			}
+			qnames = qnameList.toArray(new QNameContext[qnameList.size()]);
+
+			// datatypes
+			datatypes = new Datatype[readUnsigned(dis)];
+			for (int i = 0; i < datatypes.length; i++) {
+				datatypes[i] = readDatatype();
+			}
+
+			// grammars
+			grammars = new SchemaInformedGrammar[readUnsigned(dis)];
+			GrammarType[] grammarTypes = GrammarType.values();
+			for (int i = 0; i < grammars.length; i++) {
+				grammars[i] = createGrammar(grammarTypes[readOrdinal(dis,
+						grammarTypes.length)]);
+			}
+
+			// events
+			events = new Event[readUnsigned(dis)];
+			for (int i = 0; i < events.length; i++) {
+				events[i] = readEvent();
+			}
+
+			// productions
+			for (SchemaInformedGrammar g : grammars) {
+				if (g instanceof SchemaInformedStartTag) {
+					((SchemaInformedStartTag) g)
+							.setElementContentGrammar(getGrammar(readUnsigned(dis)));
+				}
+				int numberOfEvents = readUnsigned(dis);
+				for (int ec = 0; ec < numberOfEvents; ec++) {
+					Event ev = getEvent(readUnsigned(dis));
+					int next = readUnsigned(dis);
+					if (next == NO_REFERENCE) {
+						g.addTerminalProduction(ev);
+					} else {
+						// stored in sorted order, no re-ordering takes place
+						g.addProduction(ev, getGrammar(next));
+					}
+				}
+			}
+
+			// global elements, attributes and types
+			for (int i = 0; i < numberOfContextQNames; i++) {
+				QNameContext qnc = qnames[i];
+				qnc.setGlobalStartElement((StartElement) getEvent(readUnsigned(dis)));
+				qnc.setGlobalAttribute((Attribute) getEvent(readUnsigned(dis)));
+				qnc.setTypeGrammar((SchemaInformedFirstStartTagGrammar) getGrammar(readUnsigned(dis)));
+			}
+
+			// datatype links
+			for (Datatype dt : datatypes) {
+				dt.setBaseDatatype(getDatatype(readUnsigned(dis)));
+				dt.setGrammarEnumeration((EnumDatatype) getDatatype(readUnsigned(dis)));
+				if (dt instanceof ExtendedStringDatatype) {
+					ExtendedStringDatatype esdt = (ExtendedStringDatatype) dt;
+					esdt.setGrammarStrings((EnumDatatype) getDatatype(readUnsigned(dis)));
+					int n = readUnsigned(dis);
+					if (n != NO_REFERENCE) {
+						List<String> sharedStrings = new ArrayList<String>(
+								n - 1);
+						for (int k = 1; k < n; k++) {
+							sharedStrings.add(readString(dis));
+						}
+						esdt.setSharedStrings(sharedStrings);
+					}
+				}
+			}
+
+			// root grammars
+			Document document = (Document) getGrammar(readUnsigned(dis));
+			Fragment fragment = (Fragment) getGrammar(readUnsigned(dis));
+			SchemaInformedGrammar elementFragment = getGrammar(readUnsigned(dis));
+			if (dis.available() != 0) {
+				throw new IOException("Trailing data in grammar snapshot");
+			}
+
+			return new SchemaInformedGrammars(gc, document, fragment,
+					elementFragment);
+		}
+
+		SchemaInformedGrammar createGrammar(GrammarType type)
+				throws IOException {
+			switch (type) {
+			case DOCUMENT:
+				return new Document();
+			case FRAGMENT:
+				return new Fragment();
+			case DOC_END:
+				return new DocEnd();
+			case SCHEMA_INFORMED_DOC_CONTENT:
+				return new SchemaInformedDocContent();
+			case SCHEMA_INFORMED_FRAGMENT_CONTENT:
+				return new SchemaInformedFragmentContent();
+			case SCHEMA_INFORMED_FIRST_START_TAG_CONTENT:
+				SchemaInformedFirstStartTag fst = new SchemaInformedFirstStartTag();
+				fst.setTypeCastable(dis.readBoolean());
+				fst.setNillable(dis.readBoolean());
+				return fst;
+			case SCHEMA_INFORMED_START_TAG_CONTENT:
+				return new SchemaInformedStartTag();
+			case SCHEMA_INFORMED_ELEMENT_CONTENT:
+				return new SchemaInformedElement();
+			default:
+				throw new IOException("Unsupported grammar type " + type);
+			}
+		}
+
+		Datatype readDatatype() throws IOException {
+			BuiltInType[] bits = BuiltInType.values();
+			BuiltInType bit = bits[readOrdinal(dis, bits.length)];
+			QNameContext schemaType = getQName(readUnsigned(dis));
+			switch (bit) {
+			case BINARY_BASE64:
+				return new BinaryBase64Datatype(schemaType);
+			case BINARY_HEX:
+				return new BinaryHexDatatype(schemaType);
+			case BOOLEAN:
+				return new BooleanDatatype(schemaType);
+			case BOOLEAN_FACET:
+				return new BooleanFacetDatatype(schemaType);
+			case DECIMAL:
+				return new DecimalDatatype(schemaType);
+			case FLOAT:
+				return new FloatDatatype(schemaType);
+			case UNSIGNED_INTEGER:
+				return new UnsignedIntegerDatatype(schemaType);
+			case INTEGER:
+				return new IntegerDatatype(schemaType);
+			case NBIT_UNSIGNED_INTEGER:
+				IntegerValue lowerBound = parseInteger(readString(dis));
+				IntegerValue upperBound = parseInteger(readString(dis));
+				return new NBitUnsignedIntegerDatatype(lowerBound, upperBound,
+						schemaType);
+			case DATETIME:
+				DateTimeType[] dtts = DateTimeType.values();
+				return new DatetimeDatatype(
+						dtts[readOrdinal(dis, dtts.length)], schemaType);
+			case STRING:
+				WhiteSpace ws = readWhiteSpace();
+				if (dis.readBoolean()) {
+					return new StringDatatype(schemaType, true);
+				} else {
+					return new StringDatatype(schemaType, ws);
+				}
+			case RCS_STRING:
+				WhiteSpace wsRCS = readWhiteSpace();
+				int size = readUnsigned(dis);
+				Set<Integer> codePoints = new HashSet<Integer>();
+				for (int i = 0; i < size; i++) {
+					codePoints.add(readUnsigned(dis));
+				}
+				return new RestrictedCharacterSetDatatype(
+						new CodePointCharacterSet(codePoints), schemaType,
+						wsRCS);
+			case EXTENDED_STRING:
+				return new ExtendedStringDatatype(schemaType, readWhiteSpace());
+			case ENUMERATION:
+				Datatype dtEnumValues = getDatatype(readUnsigned(dis));
+				if (dtEnumValues == null) {
+					throw new IOException("Enumeration without value datatype");
+				}
+				Value[] enumValues = new Value[readUnsigned(dis)];
+				for (int i = 0; i < enumValues.length; i++) {
+					enumValues[i] = parseValue(readString(dis), dtEnumValues);
+				}
+				return new EnumerationDatatype(enumValues, dtEnumValues,
+						schemaType);
+			case LIST:
+				Datatype listDatatype = getDatatype(readUnsigned(dis));
+				if (listDatatype == null) {
+					throw new IOException("List without item datatype");
+				}
+				return new ListDatatype(listDatatype, schemaType);
+			default:
+				throw new IOException("Unsupported datatype " + bit);
+			}
+		}
+
+		WhiteSpace readWhiteSpace() throws IOException {
+			WhiteSpace[] wss = WhiteSpace.values();
+			return wss[readOrdinal(dis, wss.length)];
+		}
+
+		static IntegerValue parseInteger(String s) throws IOException {
+			IntegerValue iv = IntegerValue.parse(s);
+			if (iv == null) {
+				throw new IOException("Invalid integer '" + s + "'");
+			}
+			return iv;
+		}
+
+		static Value parseValue(String s, Datatype dt) throws IOException {
+			Value v;
+			switch (dt.getBuiltInType()) {
+			case BINARY_BASE64:
+				v = BinaryBase64Value.parse(s);
+				break;
+			case BINARY_HEX:
+				v = BinaryHexValue.parse(s);
+				break;
+			case BOOLEAN:
+			case BOOLEAN_FACET:
+				v = BooleanValue.parse(s);
+				break;
+			case DECIMAL:
+				v = DecimalValue.parse(s);
+				break;
+			case FLOAT:
+				v = FloatValue.parse(s);
+				break;
+			case NBIT_UNSIGNED_INTEGER:
+			case UNSIGNED_INTEGER:
+			case INTEGER:
+				v = IntegerValue.parse(s);
+				break;
+			case DATETIME:
+				v = DateTimeValue.parse(s,
+						((DatetimeDatatype) dt).getDatetimeType());
+				break;
+			case STRING:
+			case RCS_STRING:
+			case EXTENDED_STRING:
+				v = new StringValue(s);
+				break;
+			case LIST:
+				v = ListValue.parse(s, ((ListDatatype) dt).getListDatatype());
+				break;
+			default:
+				throw new IOException("Unsupported enumeration datatype " + dt);
+			}
+			if (v == null) {
+				throw new IOException("Invalid enumeration value '" + s
+						+ "' for " + dt);
+			}
+			return v;
+		}
+
+		Event readEvent() throws IOException {
+			EventType[] ets = EventType.values();
+			EventType et = ets[readOrdinal(dis, ets.length)];
+			switch (et) {
+			case START_ELEMENT:
+				QNameContext qncSE = getQName(readUnsigned(dis));
+				return new StartElement(qncSE, getGrammar(readUnsigned(dis)));
+			case START_ELEMENT_NS:
+				int uriIDSE = readUnsigned(dis);
+				return new StartElementNS(uriIDSE, readString(dis));
+			case ATTRIBUTE:
+				QNameContext qncAT = getQName(readUnsigned(dis));
+				return new Attribute(qncAT, getDatatype(readUnsigned(dis)));
+			case ATTRIBUTE_NS:
+				int uriIDAT = readUnsigned(dis);
+				return new AttributeNS(uriIDAT, readString(dis));
+			case CHARACTERS:
+				return new Characters(getDatatype(readUnsigned(dis)));
+			case START_DOCUMENT:
+				return new StartDocument();
+			case END_DOCUMENT:
+				return new EndDocument();
+			case START_ELEMENT_GENERIC:
+				return new StartElementGeneric();
+			case END_ELEMENT:
+				return new EndElement();
+			case ATTRIBUTE_GENERIC:
+				return new AttributeGeneric();
+			case CHARACTERS_GENERIC:
+				return new CharactersGeneric();
+			case DOC_TYPE:
+				return new DocType();
+			case NAMESPACE_DECLARATION:
+				return new NamespaceDeclaration();
+			case SELF_CONTAINED:
+				return new SelfContained();
+			case ENTITY_REFERENCE:
+				return new EntityReference();
+			case COMMENT:
+				return new Comment();
+			case PROCESSING_INSTRUCTION:
+				return new ProcessingInstruction();
+			default:
+				throw new IOException("Unsupported grammar event " + et);
+			}
+		}
+
+		QNameContext getQName(int ref) throws IOException {
+			return ref == NO_REFERENCE ? null : qnames[checkRef(ref,
+					qnames.length)];
+		}
+
+		Datatype getDatatype(int ref) throws IOException {
+			// Note: constructor dependencies are written first
+			return ref == NO_REFERENCE ? null : datatypes[checkRef(ref,
+					datatypes.length)];
+		}
+
+		SchemaInformedGrammar getGrammar(int ref) throws IOException {
+			return ref == NO_REFERENCE ? null : grammars[checkRef(ref,
+					grammars.length)];
+		}
+
+		Event getEvent(int ref) throws IOException {
+			if (ref == NO_REFERENCE) {
+				return null;
+			}
+			return events[checkRef(ref, events.length)];
+		}
+
+		static int checkRef(int ref, int length) throws IOException {
+			if (ref > length) {
+				throw new IOException("Invalid grammar snapshot reference "
+						+ ref);
+			}
+			return ref - 1;
+		}
+	}
+
+	static int readOrdinal(DataInputStream dis, int length) throws IOException {
+		int ordinal = dis.readUnsignedByte();
+		if (ordinal >= length) {
+			throw new IOException("Invalid grammar snapshot ordinal "
+					+ ordinal);
+		}
+		return ordinal;
+	}
+
+	static void writeString(DataOutputStream dos, String s)
+			throws IOException {
+		byte[] b = s.getBytes(StandardCharsets.UTF_8);
+		writeUnsigned(dos, b.length);
+		dos.write(b);
+	}
+
+	static String readString(DataInputStream dis) throws IOException {
+		byte[] b = new byte[readUnsigned(dis)];
+		dis.readFully(b);
+		return new String(b, StandardCharsets.UTF_8);
+	}
+
+	static void writeUnsigned(DataOutputStream dos, int i) throws IOException {
+		assert (i >= 0);
+		while (i > 0x7F) {
+			dos.write((i & 0x7F) | 0x80);
+			i >>>= 7;
+		}
+		dos.write(i);
+	}
+
+	static int readUnsigned(DataInputStream dis) throws IOException {
+		int i = 0;
+		int shift = 0;
+		int b;
+		do {
+			b = dis.read();
+			if (b == -1) {
+				throw new EOFException(
+						"Premature EOS found while reading grammar snapshot.");
+			}
+			if (shift > 28) {
+				throw new IOException("Invalid grammar snapshot integer");
+			}
+			i |= (b & 0x7F) << shift;
+			shift += 7;
+		} while ((b & 0x80) != 0);
+		return i;
+	}
+}
@@ -139,11 +139,13 @@ public class SchemaLessGrammars extends AbstractGrammars {
 		/*
 		 * Fragment
 		 */
-		fragmentGrammar = new Fragment("Fragment");
-		fragmentGrammar.addProduction(new StartDocument(),
+		// Note: build locally, fragment coders may run concurrently
+		Grammar fragment = new Fragment("Fragment");
+		fragment.addProduction(new StartDocument(),
 				builtInFragmentContentGrammar);
+		fragmentGrammar = fragment;
 
-		return fragmentGrammar;
+		return fragment;
 	}
 
 }
\ No newline at end of file
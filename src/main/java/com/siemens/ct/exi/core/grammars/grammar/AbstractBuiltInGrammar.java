@@ -65,6 +65,7 @@ public abstract class AbstractBuiltInGrammar extends AbstractGrammar implements
 	public void stopLearning() {
 		if (stopLearningContainerSize == Constants.NOT_FOUND) {
 			stopLearningContainerSize = containers.size();
+			invalidateEventCodeLayout();
 		}
 	}
 
@@ -92,6 +93,8 @@ public abstract class AbstractBuiltInGrammar extends AbstractGrammar implements
 		// Note: BuiltInDocContent and BuiltInFragmentContent do not use this
 		// variable
 		this.ec1Length = MethodsBag.getCodingLength(containers.size() + 1);
+		// learned production changes event-codes
+		invalidateEventCodeLayout();
 	}
 
 	protected boolean contains(Event event) {
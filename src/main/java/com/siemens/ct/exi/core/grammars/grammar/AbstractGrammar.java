@@ -36,6 +36,7 @@ import java.util.List;
 import javax.xml.namespace.QName;
 
 import com.siemens.ct.exi.core.Constants;
+import com.siemens.ct.exi.core.FidelityOptions;
 import com.siemens.ct.exi.core.grammars.event.Attribute;
 import com.siemens.ct.exi.core.grammars.event.EndElement;
 import com.siemens.ct.exi.core.grammars.event.Event;
@@ -59,6 +60,11 @@ public abstract class AbstractGrammar implements Grammar {
 	// EXI Profile
 	protected int stopLearningContainerSize = Constants.NOT_FOUND;
 
+	// memoized event-code layouts of the two most recent fidelity feature
+	// masks (e.g., re-set when learning)
+	protected EventCodeLayout eventCodeLayout;
+	protected EventCodeLayout eventCodeLayout2;
+
 	public AbstractGrammar() {
 	}
 
@@ -127,6 +133,32 @@ public abstract class AbstractGrammar implements Grammar {
 		return this;
 	}
 
+	public final EventCodeLayout getEventCodeLayout(
+			FidelityOptions fidelityOptions, int fidelityFeatures) {
+		// layouts are immutable, racing threads at most compute one twice
+		EventCodeLayout layout = eventCodeLayout;
+		if (layout != null && layout.isValid(fidelityFeatures, this)) {
+			return layout;
+		}
+		EventCodeLayout layout2 = eventCodeLayout2;
+		if (layout2 != null && layout2.isValid(fidelityFeatures, this)) {
+			return layout2;
+		}
+		layout2 = new EventCodeLayout(fidelityOptions, this);
+		if (layout != null
+				&& layout.getFidelityFeatures() != fidelityFeatures) {
+			// keep layout of other options
+			eventCodeLayout2 = layout;
+		}
+		eventCodeLayout = layout2;
+		return layout2;
+	}
+
+	protected final void invalidateEventCodeLayout() {
+		eventCodeLayout = null;
+		eventCodeLayout2 = null;
+	}
+
 	@Override
 	public boolean equals(Object obj) {
 		if (this == obj) {
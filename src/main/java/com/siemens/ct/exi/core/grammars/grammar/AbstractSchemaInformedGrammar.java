@@ -140,6 +140,7 @@ public abstract class AbstractSchemaInformedGrammar extends AbstractGrammar
 
 			// construct new array and update event-codes etc.
 			updateSortedEvents(event, grammar);
+			invalidateEventCodeLayout();
 		}
 	}
 
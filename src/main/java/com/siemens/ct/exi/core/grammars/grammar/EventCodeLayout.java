@@ -0,0 +1,195 @@
+/*
+ * Copyright (c) 2007-2018 Siemens AG
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * 
+ */
+
+package com.siemens.ct.exi.core.grammars.grammar;
+
+import java.util.Arrays;
+
+import com.siemens.ct.exi.core.Constants;
+import com.siemens.ct.exi.core.FidelityOptions;
+import com.siemens.ct.exi.core.grammars.event.EventType;
+import com.siemens.ct.exi.core.util.MethodsBag;
+
+/**
+ * Event-code layout of a grammar for given fidelity options, i.e., the
+ * 1st-level event-code width, the 2nd-level event-codes and width as well as
+ * the 3rd-level table. The layout is computed once by means of
+ * {@link FidelityOptions} and memoized by the grammar (see
+ * {@link Grammar#getEventCodeLayout(FidelityOptions, int)}) until the grammar
+ * learns new productions or the options change.
+ * 
+ * @author Daniel.Peintner.EXT@siemens.com
+ * @author Richard.Kuntschke@siemens.com
+ * 
+ */
+
+public final class EventCodeLayout {
+
+	private static final EventType[] EVENT_TYPES = EventType.values();
+
+	// features the layout depends on (see FidelityOptions.equals)
+	private static final String[] FEATURES = { FidelityOptions.FEATURE_COMMENT,
+			FidelityOptions.FEATURE_PI, FidelityOptions.FEATURE_DTD,
+			FidelityOptions.FEATURE_PREFIX,
+			FidelityOptions.FEATURE_LEXICAL_VALUE, FidelityOptions.FEATURE_SC,
+			FidelityOptions.FEATURE_STRICT };
+
+	final int fidelityFeatures;
+	final int numberOfEvents;
+
+	final int codeLength1;
+	final int characteristics2;
+	final int codeLength2;
+	final EventType[] eventTypes2;
+	final int[] eventCodes2;
+	final int characteristics3;
+	final int codeLength3;
+	final EventType[] eventTypes3;
+
+	public EventCodeLayout(FidelityOptions fidelityOptions, Grammar grammar) {
+		this.fidelityFeatures = getFeatures(fidelityOptions);
+		this.numberOfEvents = grammar.getNumberOfEvents();
+
+		// 1st level
+		codeLength1 = fidelityOptions.get1stLevelEventCodeLength(grammar);
+
+		// 2nd level
+		characteristics2 = fidelityOptions.get2ndLevelCharacteristics(grammar);
+		codeLength2 = MethodsBag.getCodingLength(characteristics2);
+		eventTypes2 = new EventType[characteristics2];
+		eventCodes2 = new int[EVENT_TYPES.length];
+		Arrays.fill(eventCodes2, Constants.NOT_FOUND);
+		for (int ec2 = 0; ec2 < characteristics2; ec2++) {
+			EventType et = fidelityOptions.get2ndLevelEventType(ec2, grammar);
+			eventTypes2[ec2] = et;
+			if (et != null) {
+				eventCodes2[et.ordinal()] = ec2;
+			}
+		}
+
+		// 3rd level
+		characteristics3 = fidelityOptions.get3rdLevelCharacteristics();
+		codeLength3 = MethodsBag.getCodingLength(characteristics3);
+		eventTypes3 = new EventType[characteristics3];
+		for (int ec3 = 0; ec3 < characteristics3; ec3++) {
+			eventTypes3[ec3] = fidelityOptions.get3rdLevelEventType(ec3);
+		}
+	}
+
+	/**
+	 * Whether this layout still reflects the grammar and the given fidelity
+	 * features (see {@link #getFeatures(FidelityOptions)}).
+	 * 
+	 * @param fidelityFeatures
+	 *            fidelity features
+	 * @param grammar
+	 *            grammar the layout was created for
+	 * @return true if the layout can be used
+	 */
+	public boolean isValid(int fidelityFeatures, Grammar grammar) {
+		return this.fidelityFeatures == fidelityFeatures
+				&& this.numberOfEvents == grammar.getNumberOfEvents();
+	}
+
+	/**
+	 * Whether this layout still reflects the grammar and the given options.
+	 * 
+	 * @param fidelityOptions
+	 *            fidelity options
+	 * @param grammar
+	 *            grammar the layout was created for
+	 * @return true if the layout can be used
+	 */
+	public boolean isValid(FidelityOptions fidelityOptions, Grammar grammar) {
+		return isValid(getFeatures(fidelityOptions), grammar);
+	}
+
+	public int getFidelityFeatures() {
+		return fidelityFeatures;
+	}
+
+	/**
+	 * Returns the fidelity features the layout depends on as bit mask, equal
+	 * options result in the same mask. Coders compute the mask once.
+	 * 
+	 * @param fidelityOptions
+	 *            fidelity options
+	 * @return feature mask
+	 */
+	public static int getFeatures(FidelityOptions fidelityOptions) {
+		int features = 0;
+		for (int i = 0; i < FEATURES.length; i++) {
+			if (fidelityOptions.isFidelityEnabled(FEATURES[i])) {
+				features |= 1 << i;
+			}
+		}
+		return features;
+	}
+
+	public int get1stLevelEventCodeLength() {
+		return codeLength1;
+	}
+
+	public int get2ndLevelCharacteristics() {
+		return characteristics2;
+	}
+
+	public int get2ndLevelEventCodeLength() {
+		return codeLength2;
+	}
+
+	/**
+	 * Returns the 2nd level event-code of the given event type.
+	 * 
+	 * @param eventType
+	 *            event type
+	 * @return event-code or NOT_FOUND
+	 */
+	public int get2ndLevelEventCode(EventType eventType) {
+		return eventCodes2[eventType.ordinal()];
+	}
+
+	/**
+	 * Returns the 2nd level event type at the given position.
+	 * 
+	 * @param ec2
+	 *            2nd level event-code
+	 * @return event type or null (e.g., 3rd level escape)
+	 */
+	public EventType get2ndLevelEventType(int ec2) {
+		return ec2 < characteristics2 ? eventTypes2[ec2] : null;
+	}
+
+	public int get3rdLevelCharacteristics() {
+		return characteristics3;
+	}
+
+	public int get3rdLevelEventCodeLength() {
+		return codeLength3;
+	}
+
+	public EventType get3rdLevelEventType(int ec3) {
+		return ec3 < characteristics3 ? eventTypes3[ec3] : null;
+	}
+
+}
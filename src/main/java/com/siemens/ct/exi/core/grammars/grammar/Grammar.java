@@ -23,6 +23,7 @@
 
 package com.siemens.ct.exi.core.grammars.grammar;
 
+import com.siemens.ct.exi.core.FidelityOptions;
 import com.siemens.ct.exi.core.grammars.event.Attribute;
 import com.siemens.ct.exi.core.grammars.event.Event;
 import com.siemens.ct.exi.core.grammars.event.EventType;
@@ -99,6 +100,36 @@ public interface Grammar {
 	 */
 	public Grammar getElementContentGrammar();
 
+	/**
+	 * Returns the event-code layout for the given fidelity options.
+	 * 
+	 * @param fidelityOptions
+	 *            fidelity options
+	 * @return event-code layout
+	 */
+	public default EventCodeLayout getEventCodeLayout(
+			FidelityOptions fidelityOptions) {
+		return getEventCodeLayout(fidelityOptions,
+				EventCodeLayout.getFeatures(fidelityOptions));
+	}
+
+	/**
+	 * Returns the event-code layout for the given fidelity options and their
+	 * feature mask (see {@link EventCodeLayout#getFeatures(FidelityOptions)}).
+	 * The default implementation creates a new layout, grammars may memoize
+	 * it.
+	 * 
+	 * @param fidelityOptions
+	 *            fidelity options
+	 * @param fidelityFeatures
+	 *            feature mask of the fidelity options
+	 * @return event-code layout
+	 */
+	public default EventCodeLayout getEventCodeLayout(
+			FidelityOptions fidelityOptions, int fidelityFeatures) {
+		return new EventCodeLayout(fidelityOptions, this);
+	}
+
 	/*
 	 * 
 	 * 
@@ -75,6 +75,7 @@ public class SchemaInformedFirstStartTag extends SchemaInformedStartTag
 
 	public void setTypeCastable(boolean isTypeCastable) {
 		this.isTypeCastable = isTypeCastable;
+		invalidateEventCodeLayout();
 	}
 
 	public boolean isTypeCastable() {
@@ -83,6 +84,7 @@ public class SchemaInformedFirstStartTag extends SchemaInformedStartTag
 
 	public void setNillable(boolean isNillable) {
 		this.isNillable = isNillable;
+		invalidateEventCodeLayout();
 	}
 
 	public boolean isNillable() {
@@ -0,0 +1,406 @@
+/*
+ * Copyright (c) 2007-2018 Siemens AG
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * 
+ */
+
+package com.siemens.ct.exi.core.helpers;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import com.siemens.ct.exi.core.CoderMetrics;
+import com.siemens.ct.exi.core.exceptions.EXIException;
+import com.siemens.ct.exi.core.grammars.event.EventType;
+import com.siemens.ct.exi.core.types.BuiltInType;
+
+/**
+ * Coder metrics that sum up the notifications of all coders using it. The
+ * counters are thread-safe, one instance can be shared by the factories of a
+ * whole application.
+ * 
+ * <p>
+ * The totals can be logged (see {@link #log(Logger)}) or exposed as platform
+ * MXBean (see {@link #registerMBean(String)}).
+ * </p>
+ * 
+ * @author Daniel.Peintner.EXT@siemens.com
+ * @author Richard.Kuntschke@siemens.com
+ * 
+ */
+
+public class AggregatingCoderMetrics implements CoderMetrics,
+		AggregatingCoderMetricsMXBean {
+
+	public static final String DEFAULT_OBJECT_NAME = "com.siemens.ct.exi.core:type=CoderMetrics";
+
+	private static final int NUMBER_OF_EVENT_TYPES = EventType.values().length;
+
+	protected final LongAdder streamsEncoded;
+	protected final LongAdder streamsDecoded;
+	// [level - 1][event type]
+	protected final LongAdder[][] events;
+	protected final LongAdder[] values;
+	protected final LongAdder invalidValues;
+	protected final LongAdder localHits;
+	protected final LongAdder globalHits;
+	protected final LongAdder misses;
+	protected final LongAdder literalCharacters;
+	protected final LongAdder[] learnedProductions;
+	protected final LongAdder builtInElementGrammars;
+	protected final LongAdder profileLimits;
+	protected final LongAdder[] bytes;
+	protected final LongAdder[] nanos;
+
+	public AggregatingCoderMetrics() {
+		streamsEncoded = new LongAdder();
+		streamsDecoded = new LongAdder();
+		events = new LongAdder[3][];
+		for (int i = 0; i < events.length; i++) {
+			events[i] = newAdders(NUMBER_OF_EVENT_TYPES);
+		}
+		values = newAdders(BuiltInType.values().length);
+		invalidValues = new LongAdder();
+		localHits = new LongAdder();
+		globalHits = new LongAdder();
+		misses = new LongAdder();
+		literalCharacters = new LongAdder();
+		learnedProductions = newAdders(NUMBER_OF_EVENT_TYPES);
+		builtInElementGrammars = new LongAdder();
+		profileLimits = new LongAdder();
+		bytes = newAdders(Channel.values().length);
+		nanos = newAdders(Phase.values().length);
+	}
+
+	private static LongAdder[] newAdders(int n) {
+		LongAdder[] adders = new LongAdder[n];
+		for (int i = 0; i < n; i++) {
+			adders[i] = new LongAdder();
+		}
+		return adders;
+	}
+
+	private static long sum(LongAdder[] adders) {
+		long sum = 0L;
+		for (LongAdder adder : adders) {
+			sum += adder.sum();
+		}
+		return sum;
+	}
+
+	private static void reset(LongAdder[] adders) {
+		for (LongAdder adder : adders) {
+			adder.reset();
+		}
+	}
+
+	/*
+	 * CoderMetrics
+	 */
+
+	@Override
+	public void startStream(boolean encoding) {
+		(encoding ? streamsEncoded : streamsDecoded).increment();
+	}
+
+	@Override
+	public void event(EventType eventType, int level) {
+		events[level - 1][eventType.ordinal()].increment();
+	}
+
+	@Override
+	public void value(BuiltInType builtInType, boolean valid) {
+		values[builtInType.ordinal()].increment();
+		if (!valid) {
+			invalidValues.increment();
+		}
+	}
+
+	@Override
+	public void stringHit(boolean local) {
+		(local ? localHits : globalHits).increment();
+	}
+
+	@Override
+	public void stringMiss(int characters) {
+		misses.increment();
+		literalCharacters.add(characters);
+	}
+
+	@Override
+	public void learnedProduction(EventType eventType) {
+		learnedProductions[eventType.ordinal()].increment();
+	}
+
+	@Override
+	public void builtInElementGrammar() {
+		builtInElementGrammars.increment();
+	}
+
+	@Override
+	public void profileLimitReached(boolean ghostProduction) {
+		profileLimits.increment();
+	}
+
+	@Override
+	public void bytes(Channel channel, long bytes) {
+		this.bytes[channel.ordinal()].add(bytes);
+	}
+
+	@Override
+	public void time(Phase phase, long nanos) {
+		this.nanos[phase.ordinal()].add(nanos);
+	}
+
+	/*
+	 * Detailed counters
+	 */
+
+	public long getEvents(EventType eventType) {
+		int i = eventType.ordinal();
+		return events[0][i].sum() + events[1][i].sum() + events[2][i].sum();
+	}
+
+	public long getEvents(EventType eventType, int level) {
+		return events[level - 1][eventType.ordinal()].sum();
+	}
+
+	public long getTypedValues(BuiltInType builtInType) {
+		return values[builtInType.ordinal()].sum();
+	}
+
+	public long getLearnedProductions(EventType eventType) {
+		return learnedProductions[eventType.ordinal()].sum();
+	}
+
+	public long getBytes(Channel channel) {
+		return bytes[channel.ordinal()].sum();
+	}
+
+	public long getNanos(Phase phase) {
+		return nanos[phase.ordinal()].sum();
+	}
+
+	/*
+	 * AggregatingCoderMetricsMXBean
+	 */
+
+	public long getStreamsEncoded() {
+		return streamsEncoded.sum();
+	}
+
+	public long getStreamsDecoded() {
+		return streamsDecoded.sum();
+	}
+
+	public long getEvents() {
+		return sum(events[0]) + sum(events[1]) + sum(events[2]);
+	}
+
+	public long getSecondLevelEvents() {
+		return sum(events[1]);
+	}
+
+	public long getThirdLevelEvents() {
+		return sum(events[2]);
+	}
+
+	public long getTypedValues() {
+		return sum(values);
+	}
+
+	public long getInvalidTypedValues() {
+		return invalidValues.sum();
+	}
+
+	public long getLocalValueHits() {
+		return localHits.sum();
+	}
+
+	public long getGlobalValueHits() {
+		return globalHits.sum();
+	}
+
+	public long getValueMisses() {
+		return misses.sum();
+	}
+
+	public long getLiteralCharacters() {
+		return literalCharacters.sum();
+	}
+
+	public double getValueHitRatio() {
+		long hits = getLocalValueHits() + getGlobalValueHits();
+		long all = hits + getValueMisses();
+		return all == 0 ? Double.NaN : (double) hits / all;
+	}
+
+	public long getLearnedProductions() {
+		return sum(learnedProductions);
+	}
+
+	public long getBuiltInElementGrammars() {
+		return builtInElementGrammars.sum();
+	}
+
+	public long getProfileLimitsReached() {
+		return profileLimits.sum();
+	}
+
+	public long getHeaderBytes() {
+		return getBytes(Channel.HEADER);
+	}
+
+	public long getBodyBytes() {
+		return getBytes(Channel.BODY);
+	}
+
+	public long getStructureBytes() {
+		return getBytes(Channel.STRUCTURE);
+	}
+
+	public long getValueBytes() {
+		return getBytes(Channel.VALUE);
+	}
+
+	public long getCompressedBytes() {
+		return getBytes(Channel.COMPRESSED);
+	}
+
+	public long getHeaderNanos() {
+		return getNanos(Phase.HEADER);
+	}
+
+	public long getStructureNanos() {
+		return getNanos(Phase.STRUCTURE);
+	}
+
+	public long getCompressionNanos() {
+		return getNanos(Phase.COMPRESSION);
+	}
+
+	public void reset() {
+		streamsEncoded.reset();
+		streamsDecoded.reset();
+		for (LongAdder[] level : events) {
+			reset(level);
+		}
+		reset(values);
+		invalidValues.reset();
+		localHits.reset();
+		globalHits.reset();
+		misses.reset();
+		literalCharacters.reset();
+		reset(learnedProductions);
+		builtInElementGrammars.reset();
+		profileLimits.reset();
+		reset(bytes);
+		reset(nanos);
+	}
+
+	/*
+	 * Export
+	 */
+
+	/**
+	 * Logs the totals with level INFO.
+	 * 
+	 * @param logger
+	 *            target logger
+	 */
+	public void log(Logger logger) {
+		if (logger.isLoggable(Level.INFO)) {
+			logger.info(toString());
+		}
+	}
+
+	/**
+	 * Registers this instance with the platform MBean server.
+	 * 
+	 * @param name
+	 *            object name, e.g. {@link #DEFAULT_OBJECT_NAME}
+	 * @return registered object name
+	 * @throws EXIException
+	 *             invalid name or already registered
+	 */
+	public ObjectName registerMBean(String name) throws EXIException {
+		try {
+			ObjectName objectName = new ObjectName(name);
+			ManagementFactory.getPlatformMBeanServer().registerMBean(this,
+					objectName);
+			return objectName;
+		} catch (JMException e) {
+			throw new EXIException(e);
+		}
+	}
+
+	/**
+	 * Removes this instance from the platform MBean server.
+	 * 
+	 * @param objectName
+	 *            object name returned by {@link #registerMBean(String)}
+	 * @throws EXIException
+	 *             not registered
+	 */
+	public void unregisterMBean(ObjectName objectName) throws EXIException {
+		try {
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(
+					objectName);
+		} catch (JMException e) {
+			throw new EXIException(e);
+		}
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder("EXI coder metrics: ");
+		sb.append("streams encoded=").append(getStreamsEncoded());
+		sb.append(", decoded=").append(getStreamsDecoded());
+		sb.append("; events=").append(getEvents());
+		sb.append(" (2nd level=").append(getSecondLevelEvents());
+		sb.append(", 3rd level=").append(getThirdLevelEvents());
+		sb.append("); typed values=").append(getTypedValues());
+		sb.append(" (invalid=").append(getInvalidTypedValues());
+		sb.append("); string values local hits=").append(getLocalValueHits());
+		sb.append(", global hits=").append(getGlobalValueHits());
+		sb.append(", misses=").append(getValueMisses());
+		sb.append(" (").append(getLiteralCharacters()).append(" chars)");
+		sb.append("; learned productions=").append(getLearnedProductions());
+		sb.append(", built-in element grammars=").append(
+				getBuiltInElementGrammars());
+		sb.append(", profile limits=").append(getProfileLimitsReached());
+		sb.append("; bytes");
+		for (Channel channel : Channel.values()) {
+			sb.append(' ').append(channel).append('=')
+					.append(getBytes(channel));
+		}
+		sb.append("; ms");
+		for (Phase phase : Phase.values()) {
+			sb.append(' ').append(phase).append('=')
+					.append(getNanos(phase) / 1000000L);
+		}
+		return sb.toString();
+	}
+}
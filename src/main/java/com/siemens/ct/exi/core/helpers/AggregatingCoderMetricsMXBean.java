@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2007-2018 Siemens AG
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * 
+ */
+
+package com.siemens.ct.exi.core.helpers;
+
+/**
+ * JMX view of {@link AggregatingCoderMetrics}. All counters are totals since
+ * creation or the last {@link #reset()}.
+ * 
+ * @author Daniel.Peintner.EXT@siemens.com
+ * @author Richard.Kuntschke@siemens.com
+ * 
+ */
+
+public interface AggregatingCoderMetricsMXBean {
+
+	public long getStreamsEncoded();
+
+	public long getStreamsDecoded();
+
+	/** event codes of all levels */
+	public long getEvents();
+
+	public long getSecondLevelEvents();
+
+	public long getThirdLevelEvents();
+
+	public long getTypedValues();
+
+	/** typed values that fell back to string representation */
+	public long getInvalidTypedValues();
+
+	public long getLocalValueHits();
+
+	public long getGlobalValueHits();
+
+	public long getValueMisses();
+
+	/** characters of string literals added to the string tables */
+	public long getLiteralCharacters();
+
+	/** hits / (hits + misses), NaN without string values */
+	public double getValueHitRatio();
+
+	public long getLearnedProductions();
+
+	public long getBuiltInElementGrammars();
+
+	public long getProfileLimitsReached();
+
+	public long getHeaderBytes();
+
+	public long getBodyBytes();
+
+	public long getStructureBytes();
+
+	public long getValueBytes();
+
+	public long getCompressedBytes();
+
+	public long getHeaderNanos();
+
+	public long getStructureNanos();
+
+	public long getCompressionNanos();
+
+	public void reset();
+}
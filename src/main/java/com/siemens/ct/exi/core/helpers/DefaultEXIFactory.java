@@ -30,6 +30,7 @@ import java.util.Map;
 
 import javax.xml.namespace.QName;
 
+import com.siemens.ct.exi.core.CoderMetrics;
 import com.siemens.ct.exi.core.CodingMode;
 import com.siemens.ct.exi.core.Constants;
 import com.siemens.ct.exi.core.DecodingOptions;
@@ -126,6 +127,9 @@ public class DefaultEXIFactory implements EXIFactory {
 	/* non evolving grammars */
 	protected boolean isUsingNonEvolvingGrammrs;
 
+	/* default: null == no metrics */
+	protected CoderMetrics coderMetrics;
+
 	protected static final QNameSort qnameSort = new QNameSort();
 
 	protected DefaultEXIFactory() {
@@ -246,6 +250,10 @@ public class DefaultEXIFactory implements EXIFactory {
 		this.scHandler = scHandler;
 	}
 
+	public QName[] getSelfContainedElements() {
+		return this.scElements;
+	}
+
 	public boolean isSelfContainedElement(QName element) {
 		assert (element != null);
 		String elementNS = element.getNamespaceURI();
@@ -395,6 +403,14 @@ public class DefaultEXIFactory implements EXIFactory {
 		return this.isUsingNonEvolvingGrammrs;
 	}
 
+	public void setCoderMetrics(CoderMetrics metrics) {
+		this.coderMetrics = metrics;
+	}
+
+	public CoderMetrics getCoderMetrics() {
+		return this.coderMetrics;
+	}
+
 	// some consistency and sanity checks
 	protected void doSanityCheck() throws EXIException {
 
@@ -576,6 +592,9 @@ public class DefaultEXIFactory implements EXIFactory {
 		} else {
 			stringEncoder = new StringEncoderImpl(isLocalValuePartitions());
 		}
+		if (coderMetrics != null) {
+			stringEncoder.setCoderMetrics(coderMetrics);
+		}
 
 		return stringEncoder;
 	}
@@ -591,6 +610,9 @@ public class DefaultEXIFactory implements EXIFactory {
 		} else {
 			stringDecoder = new StringDecoderImpl(isLocalValuePartitions());
 		}
+		if (coderMetrics != null) {
+			stringDecoder.setCoderMetrics(coderMetrics);
+		}
 
 		return stringDecoder;
 	}
@@ -0,0 +1,322 @@
+/*
+ * Copyright (c) 2007-2018 Siemens AG
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * 
+ */
+
+package com.siemens.ct.exi.core.helpers;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.namespace.QName;
+
+import com.siemens.ct.exi.core.SelfContainedHandler;
+import com.siemens.ct.exi.core.exceptions.EXIException;
+import com.siemens.ct.exi.core.io.channel.EncoderChannel;
+
+/**
+ * Self-contained handler that records the position of every SC fragment while
+ * encoding.
+ *
+ * <p>
+ * Each entry holds the qualified name of the SC element, the byte offset of
+ * the fragment (the byte-aligned position right after the SC event code) and
+ * its length in bytes up to and including the terminating alignment. Offsets
+ * are relative to the first byte written through the encoder channel, which
+ * is the start of the stream for bit-packed streams written by
+ * <code>EXIStreamEncoder</code> (header and body share the channel). For
+ * byte-aligned streams the header length needs to be added.
+ * </p>
+ *
+ * <p>
+ * The index can be written as a compact side file (see
+ * {@link #writeTo(OutputStream)}) and read again to decode single fragments
+ * with <code>SelfContainedFragmentReader</code>. A new instance (or
+ * {@link #clear()}) is needed for each encoded stream.
+ * </p>
+ *
+ * @author Daniel.Peintner.EXT@siemens.com
+ * @author Richard.Kuntschke@siemens.com
+ *
+ */
+
+public class SelfContainedIndex implements SelfContainedHandler {
+
+	/** "EXSC" */
+	public static final int INDEX_MAGIC = 0x45585343;
+	public static final int INDEX_VERSION = 1;
+
+	// distinct SC qnames (key table)
+	protected final List<QName> qnames;
+	protected final Map<QName, Integer> qnameIDs;
+
+	// fragments in document order (according to start position)
+	protected int size;
+	protected int[] qnameIDsOfFragments;
+	protected long[] offsets;
+	protected long[] lengths;
+
+	// open (possibly nested) fragments
+	protected int[] openFragments;
+	protected int openFragmentsIndex;
+
+	// channel lengths are int values, track them as unsigned deltas
+	protected int lastChannelLength;
+	protected long position;
+
+	public SelfContainedIndex() {
+		qnames = new ArrayList<QName>();
+		qnameIDs = new HashMap<QName, Integer>();
+		qnameIDsOfFragments = new int[16];
+		offsets = new long[16];
+		lengths = new long[16];
+		openFragments = new int[4];
+		clear();
+	}
+
+	public void clear() {
+		qnames.clear();
+		qnameIDs.clear();
+		size = 0;
+		openFragmentsIndex = 0;
+		lastChannelLength = 0;
+		position = 0L;
+	}
+
+	protected long updatePosition(EncoderChannel channel) {
+		int len = channel.getLength();
+		// Note: survives int overflow of multi-GB streams as long as less than
+		// 4GB are written between two notifications
+		position += (len - lastChannelLength) & 0xFFFFFFFFL;
+		lastChannelLength = len;
+		return position;
+	}
+
+	protected int getQNameID(QName qname) {
+		Integer id = qnameIDs.get(qname);
+		if (id == null) {
+			id = qnames.size();
+			qnames.add(qname);
+			qnameIDs.put(qname, id);
+		}
+		return id;
+	}
+
+	protected void addFragment(int qnameID, long offset, long length) {
+		if (size == offsets.length) {
+			int newLength = size << 1;
+			qnameIDsOfFragments = Arrays.copyOf(qnameIDsOfFragments,
+					newLength);
+			offsets = Arrays.copyOf(offsets, newLength);
+			lengths = Arrays.copyOf(lengths, newLength);
+		}
+		qnameIDsOfFragments[size] = qnameID;
+		offsets[size] = offset;
+		lengths[size] = length;
+		size++;
+	}
+
+	public void scElement(String uri, String localName, EncoderChannel channel)
+			throws EXIException {
+		long offset = updatePosition(channel);
+		if (openFragmentsIndex == openFragments.length) {
+			openFragments = Arrays.copyOf(openFragments,
+					openFragmentsIndex << 1);
+		}
+		openFragments[openFragmentsIndex++] = size;
+		addFragment(getQNameID(new QName(uri, localName)), offset, -1L);
+	}
+
+	@Override
+	public void scElementEnd(String uri, String localName,
+			EncoderChannel channel) throws EXIException {
+		if (openFragmentsIndex == 0) {
+			throw new EXIException("No open SC fragment for {" + uri + "}"
+					+ localName);
+		}
+		int f = openFragments[--openFragmentsIndex];
+		lengths[f] = updatePosition(channel) - offsets[f];
+	}
+
+	/**
+	 * Returns the number of recorded SC fragments.
+	 *
+	 * @return number of fragments
+	 */
+	public int getNumberOfFragments() {
+		return size;
+	}
+
+	public QName getQName(int ordinal) {
+		checkOrdinal(ordinal);
+		return qnames.get(qnameIDsOfFragments[ordinal]);
+	}
+
+	public long getOffset(int ordinal) {
+		checkOrdinal(ordinal);
+		return offsets[ordinal];
+	}
+
+	public long getLength(int ordinal) {
+		checkOrdinal(ordinal);
+		return lengths[ordinal];
+	}
+
+	/**
+	 * Returns the ordinal of the n-th SC fragment with the given qualified name
+	 * (in document order).
+	 *
+	 * @param qname
+	 *            qualified name of SC element
+	 * @param n
+	 *            occurrence, starting with 0
+	 * @return fragment ordinal or -1 if not found
+	 */
+	public int getOrdinal(QName qname, int n) {
+		Integer id = qnameIDs.get(qname);
+		if (id != null) {
+			for (int i = 0; i < size; i++) {
+				if (qnameIDsOfFragments[i] == id && n-- == 0) {
+					return i;
+				}
+			}
+		}
+		return -1;
+	}
+
+	private void checkOrdinal(int ordinal) {
+		if (ordinal < 0 || ordinal >= size) {
+			throw new IndexOutOfBoundsException("SC fragment " + ordinal
+					+ " out of " + size);
+		}
+	}
+
+	/**
+	 * Writes the compact binary representation of this index, that is a key
+	 * table of the SC qnames followed by (qname ID, offset delta, length)
+	 * tuples encoded as unsigned variable length integers.
+	 *
+	 * @param os
+	 *            output stream
+	 * @throws IOException
+	 *             IO exception
+	 */
+	public void writeTo(OutputStream os) throws IOException {
+		if (openFragmentsIndex != 0) {
+			throw new IOException("Index contains " + openFragmentsIndex
+					+ " unterminated SC fragment(s)");
+		}
+		DataOutputStream dos = new DataOutputStream(os);
+		dos.writeInt(INDEX_MAGIC);
+		dos.writeByte(INDEX_VERSION);
+		// key table
+		writeUnsigned(dos, qnames.size());
+		for (QName qname : qnames) {
+			dos.writeUTF(qname.getNamespaceURI());
+			dos.writeUTF(qname.getLocalPart());
+		}
+		// fragments
+		writeUnsigned(dos, size);
+		long lastOffset = 0L;
+		for (int i = 0; i < size; i++) {
+			writeUnsigned(dos, qnameIDsOfFragments[i]);
+			writeUnsigned(dos, offsets[i] - lastOffset);
+			writeUnsigned(dos, lengths[i]);
+			lastOffset = offsets[i];
+		}
+		dos.flush();
+	}
+
+	/**
+	 * Reads an index previously written by {@link #writeTo(OutputStream)}.
+	 *
+	 * @param is
+	 *            input stream
+	 * @return SC index
+	 * @throws IOException
+	 *             IO exception
+	 */
+	public static SelfContainedIndex readFrom(InputStream is)
+			throws IOException {
+		DataInputStream dis = new DataInputStream(is);
+		if (dis.readInt() != INDEX_MAGIC) {
+			throw new IOException("No SC index");
+		}
+		int version = dis.readUnsignedByte();
+		if (version != INDEX_VERSION) {
+			throw new IOException("Unsupported SC index version " + version);
+		}
+		SelfContainedIndex index = new SelfContainedIndex();
+		// key table
+		int n = (int) readUnsigned(dis);
+		for (int i = 0; i < n; i++) {
+			String uri = dis.readUTF();
+			String localName = dis.readUTF();
+			index.getQNameID(new QName(uri, localName));
+		}
+		// fragments
+		int size = (int) readUnsigned(dis);
+		long offset = 0L;
+		for (int i = 0; i < size; i++) {
+			int qnameID = (int) readUnsigned(dis);
+			if (qnameID >= n) {
+				throw new IOException("Invalid SC qname ID " + qnameID);
+			}
+			offset += readUnsigned(dis);
+			index.addFragment(qnameID, offset, readUnsigned(dis));
+		}
+		return index;
+	}
+
+	private static void writeUnsigned(DataOutputStream dos, long l)
+			throws IOException {
+		assert (l >= 0);
+		while (l > 0x7FL) {
+			dos.write((int) ((l & 0x7F) | 0x80));
+			l >>>= 7;
+		}
+		dos.write((int) l);
+	}
+
+	private static long readUnsigned(DataInputStream dis) throws IOException {
+		long l = 0L;
+		int shift = 0;
+		int b;
+		do {
+			b = dis.read();
+			if (b == -1) {
+				throw new EOFException("Premature EOS found while reading index.");
+			}
+			l |= ((long) (b & 0x7F)) << shift;
+			shift += 7;
+		} while ((b & 0x80) != 0);
+		return l;
+	}
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright (c) 2007-2018 Siemens AG
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * 
+ */
+
+package com.siemens.ct.exi.core.helpers;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.siemens.ct.exi.core.SchemaIdResolver;
+import com.siemens.ct.exi.core.exceptions.EXIException;
+import com.siemens.ct.exi.core.grammars.GrammarSnapshot;
+import com.siemens.ct.exi.core.grammars.Grammars;
+import com.siemens.ct.exi.core.grammars.SchemaInformedGrammars;
+
+/**
+ * SchemaId resolver that loads grammars from a local directory of grammar
+ * snapshots (see {@link GrammarSnapshot}).
+ * 
+ * <p>
+ * The snapshot of a schemaId is stored in the file
+ * <code>URLEncoder.encode(schemaId) + ".exig"</code>. Resolved grammars are
+ * cached, so each snapshot is loaded once per resolver. If no snapshot exists
+ * an optional fallback resolver (e.g., one building grammars from XSD) is
+ * consulted and its schema-informed result is written to the directory for
+ * subsequent runs. Failing to write the snapshot is logged only, the resolved
+ * grammars are returned anyway.
+ * </p>
+ * 
+ * @author Daniel.Peintner.EXT@siemens.com
+ * @author Richard.Kuntschke@siemens.com
+ * 
+ */
+
+public class SnapshotSchemaIdResolver implements SchemaIdResolver {
+
+	public static final String SNAPSHOT_FILE_EXTENSION = ".exig";
+
+	private static final Logger LOGGER = Logger
+			.getLogger(SnapshotSchemaIdResolver.class.getName());
+
+	protected final File directory;
+	protected final SchemaIdResolver fallback;
+
+	protected final Map<String, Grammars> grammarsCache;
+
+	public SnapshotSchemaIdResolver(File directory) {
+		this(directory, null);
+	}
+
+	public SnapshotSchemaIdResolver(File directory, SchemaIdResolver fallback) {
+		this.directory = directory;
+		this.fallback = fallback;
+		this.grammarsCache = new ConcurrentHashMap<String, Grammars>();
+	}
+
+	public Grammars resolveSchemaId(String schemaId) throws EXIException {
+		Grammars grammars = grammarsCache.get(schemaId);
+		if (grammars == null) {
+			File f = getSnapshotFile(schemaId);
+			if (f.isFile()) {
+				try {
+					InputStream is = new BufferedInputStream(
+							new FileInputStream(f));
+					try {
+						grammars = GrammarSnapshot.read(is, schemaId);
+					} finally {
+						is.close();
+					}
+				} catch (IOException e) {
+					throw new EXIException("Unable to load grammar snapshot "
+							+ f + " for schemaId '" + schemaId + "'", e);
+				}
+			} else if (fallback != null) {
+				grammars = fallback.resolveSchemaId(schemaId);
+				if (grammars instanceof SchemaInformedGrammars
+						&& schemaId.equals(((SchemaInformedGrammars) grammars)
+								.getSchemaId())) {
+					try {
+						store((SchemaInformedGrammars) grammars);
+					} catch (EXIException e) {
+						// snapshot is an optimization only
+						LOGGER.log(Level.WARNING, e.getMessage(), e);
+					}
+				}
+			} else {
+				throw new EXIException("No grammar snapshot " + f
+						+ " for schemaId '" + schemaId + "'");
+			}
+			grammarsCache.put(schemaId, grammars);
+		}
+		return grammars;
+	}
+
+	/**
+	 * Writes the snapshot of the given grammars to the snapshot directory
+	 * (file according to the schemaId of the grammars).
+	 * 
+	 * @param grammars
+	 *            schema-informed grammars
+	 * @throws EXIException
+	 *             EXI exception
+	 */
+	public void store(SchemaInformedGrammars grammars) throws EXIException {
+		File f = getSnapshotFile(grammars.getSchemaId());
+		// write to a unique temporary file first and move it atomically,
+		// concurrent readers and writers never see partial or no snapshots
+		File tmp = null;
+		try {
+			tmp = File.createTempFile(f.getName() + ".", ".tmp", directory);
+			OutputStream os = new BufferedOutputStream(new FileOutputStream(
+					tmp));
+			try {
+				GrammarSnapshot.write(grammars, os);
+			} finally {
+				os.close();
+			}
+			Files.move(tmp.toPath(), f.toPath(),
+					StandardCopyOption.ATOMIC_MOVE,
+					StandardCopyOption.REPLACE_EXISTING);
+		} catch (IOException e) {
+			throw new EXIException("Unable to store grammar snapshot " + f, e);
+		} finally {
+			if (tmp != null && tmp.exists()) {
+				tmp.delete();
+			}
+		}
+	}
+
+	/**
+	 * Removes the cached grammars of a schemaId, e.g. after the snapshot has
+	 * been replaced.
+	 * 
+	 * @param schemaId
+	 *            schemaId
+	 */
+	public void evict(String schemaId) {
+		grammarsCache.remove(schemaId);
+	}
+
+	public File getSnapshotFile(String schemaId) {
+		try {
+			return new File(directory, URLEncoder.encode(schemaId, "UTF-8")
+					+ SNAPSHOT_FILE_EXTENSION);
+		} catch (UnsupportedEncodingException e) {
+			// UTF-8 is always supported
+			throw new IllegalStateException(e);
+		}
+	}
+
+}
@@ -95,6 +95,16 @@ final public class BitInputStream {
 		capacity = BUFFER_CAPACITY;
 	}
 
+	/**
+	 * Returns the number of bits that have been read from the underlying
+	 * stream but not consumed yet
+	 * 
+	 * @return buffered bits (0 if byte-aligned)
+	 */
+	public int getBufferedBits() {
+		return capacity;
+	}
+
 	/**
 	 * Discard any bits currently in the buffer to byte-align stream
 	 * 
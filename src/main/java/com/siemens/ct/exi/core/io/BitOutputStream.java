@@ -261,7 +261,7 @@ public class BitOutputStream extends OutputStream {
 	protected void writeDirectBytes(byte[] b, int off, int len)
 			throws IOException {
 		ostream.write(b, off, len);
-		len += len;
+		this.len += len;
 	}
 
 	@Override
@@ -269,4 +269,18 @@ public class BitOutputStream extends OutputStream {
 		this.writeBits(b, 8);
 
 	}
+
+	/**
+	 * Writes a sequence of bytes, in one go if the stream is byte-aligned.
+	 */
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		if (isByteAligned()) {
+			writeDirectBytes(b, off, len);
+		} else {
+			for (int i = off; i < (off + len); i++) {
+				writeBits(b[i], 8);
+			}
+		}
+	}
 }
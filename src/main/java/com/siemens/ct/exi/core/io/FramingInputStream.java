@@ -0,0 +1,221 @@
+/*
+ * Copyright (c) 2007-2018 Siemens AG
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * 
+ */
+
+package com.siemens.ct.exi.core.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.util.Arrays;
+
+/**
+ * Input stream with one reusable read buffer for decoding several EXI
+ * documents back-to-back from one long-lived input (e.g. a socket).
+ * 
+ * <p>
+ * Data read ahead of the current document stays in the buffer and is handed
+ * out to the next reader, so {@link #getPosition()} reflects the exact number
+ * of bytes consumed. The stream supports push back (as required by the
+ * inflater of compressed EXI bodies) of bytes read last and mark/reset.
+ * Reads never block for more data than the underlying stream has ready once
+ * at least one byte has been read.
+ * </p>
+ * 
+ * @author Daniel.Peintner.EXT@siemens.com
+ * @author Richard.Kuntschke@siemens.com
+ * 
+ */
+
+public class FramingInputStream extends PushbackInputStream {
+
+	public static final int DEFAULT_BUFFER_SIZE = 8192;
+
+	protected byte[] buffer;
+	protected int pos;
+	protected int count;
+
+	protected int markPos;
+	protected int markLimit;
+
+	// stream position of buffer[0]
+	protected long bufferOffset;
+
+	public FramingInputStream(InputStream in) {
+		this(in, DEFAULT_BUFFER_SIZE);
+	}
+
+	public FramingInputStream(InputStream in, int size) {
+		// Note: super class buffer is not used
+		super(in, 1);
+		if (size <= 0) {
+			throw new IllegalArgumentException("Buffer size <= 0");
+		}
+		buffer = new byte[size];
+		markPos = -1;
+	}
+
+	/**
+	 * Returns the number of bytes consumed from this stream so far.
+	 * 
+	 * @return stream position
+	 */
+	public long getPosition() {
+		return bufferOffset + pos;
+	}
+
+	/**
+	 * Returns the number of bytes that can be read without touching the
+	 * underlying stream.
+	 * 
+	 * @return buffered bytes
+	 */
+	public int getBufferedLength() {
+		return count - pos;
+	}
+
+	// returns false at end of stream
+	private boolean fill() throws IOException {
+		if (markPos < 0) {
+			bufferOffset += count;
+			pos = count = 0;
+		} else if (count - markPos >= markLimit) {
+			// mark got invalid
+			markPos = -1;
+			bufferOffset += count;
+			pos = count = 0;
+		} else {
+			if (markPos > 0) {
+				// keep marked bytes only
+				System.arraycopy(buffer, markPos, buffer, 0, count - markPos);
+				bufferOffset += markPos;
+				pos -= markPos;
+				count -= markPos;
+				markPos = 0;
+			}
+			if (count == buffer.length) {
+				buffer = Arrays.copyOf(buffer,
+						Math.max(buffer.length << 1, markLimit));
+			}
+		}
+		int n = in.read(buffer, count, buffer.length - count);
+		if (n > 0) {
+			count += n;
+			return true;
+		}
+		return false;
+	}
+
+	@Override
+	public int read() throws IOException {
+		if (pos == count && !fill()) {
+			return -1;
+		}
+		return buffer[pos++] & 0xFF;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		if (len == 0) {
+			return 0;
+		}
+		if (pos == count && !fill()) {
+			return -1;
+		}
+		int n = Math.min(len, count - pos);
+		System.arraycopy(buffer, pos, b, off, n);
+		pos += n;
+		return n;
+	}
+
+	@Override
+	public long skip(long n) throws IOException {
+		long skipped = 0;
+		while (skipped < n) {
+			if (pos == count && !fill()) {
+				break;
+			}
+			int s = (int) Math.min(n - skipped, count - pos);
+			pos += s;
+			skipped += s;
+		}
+		return skipped;
+	}
+
+	@Override
+	public int available() throws IOException {
+		return (count - pos) + in.available();
+	}
+
+	/**
+	 * Pushes back bytes read last. Bytes can be pushed back as long as they
+	 * are still in the read buffer, i.e. at least the bytes returned by the
+	 * last read.
+	 */
+	@Override
+	public void unread(byte[] b, int off, int len) throws IOException {
+		if (len > pos) {
+			throw new IOException("Push back buffer is full");
+		}
+		pos -= len;
+		System.arraycopy(b, off, buffer, pos, len);
+	}
+
+	@Override
+	public void unread(byte[] b) throws IOException {
+		unread(b, 0, b.length);
+	}
+
+	@Override
+	public void unread(int b) throws IOException {
+		if (pos == 0) {
+			throw new IOException("Push back buffer is full");
+		}
+		buffer[--pos] = (byte) b;
+	}
+
+	@Override
+	public boolean markSupported() {
+		return true;
+	}
+
+	@Override
+	public synchronized void mark(int readlimit) {
+		markPos = pos;
+		markLimit = readlimit;
+	}
+
+	@Override
+	public synchronized void reset() throws IOException {
+		if (markPos < 0) {
+			throw new IOException("Resetting to invalid mark");
+		}
+		pos = markPos;
+	}
+
+	@Override
+	public void close() throws IOException {
+		pos = count = 0;
+		markPos = -1;
+		in.close();
+	}
+}
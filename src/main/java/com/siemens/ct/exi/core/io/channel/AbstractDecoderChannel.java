@@ -32,6 +32,7 @@ import com.siemens.ct.exi.core.values.DateTimeValue;
 import com.siemens.ct.exi.core.values.DecimalValue;
 import com.siemens.ct.exi.core.values.FloatValue;
 import com.siemens.ct.exi.core.values.IntegerValue;
+import com.siemens.ct.exi.core.values.IntegerValueType;
 
 /**
  * 
@@ -156,6 +157,20 @@ public abstract class AbstractDecoderChannel implements DecoderChannel {
 		return result;
 	}
 
+	public void skipUnsignedInteger() throws IOException {
+		// 0XXXXXXX ... 1XXXXXXX 1XXXXXXX
+		while (decode() >= 128) {
+			// more octets
+		}
+	}
+
+	public void skipBinary() throws IOException {
+		final int length = decodeUnsignedInteger();
+		for (int i = 0; i < length; i++) {
+			decode();
+		}
+	}
+
 	protected long decodeUnsignedLong() throws IOException {
 		long lResult = 0L;
 		int mShift = 0;
@@ -258,6 +273,52 @@ public abstract class AbstractDecoderChannel implements DecoderChannel {
 		}
 
 		// Grrr, we got a BigInteger value to deal with
+		return decodeBigIntegerValue(negative);
+	}
+
+	@Override
+	public IntegerValue decodeIntegerValue(long[] dst, int index)
+			throws IOException {
+		return decodeUnsignedIntegerValue(decodeBoolean(), dst, index);
+	}
+
+	@Override
+	public IntegerValue decodeUnsignedIntegerValue(long[] dst, int index)
+			throws IOException {
+		return decodeUnsignedIntegerValue(false, dst, index);
+	}
+
+	protected final IntegerValue decodeUnsignedIntegerValue(boolean negative,
+			long[] dst, int index) throws IOException {
+		long lResult = 0L;
+		int b;
+		for (int i = 0; i < MAX_OCTETS_FOR_LONG; i++) {
+			b = decode();
+			maskedOctets[i] = (b & 127);
+			lResult |= ((long) maskedOctets[i]) << (7 * i);
+			if (b < 128) {
+				// For negative values, the Unsigned Integer holds the
+				// magnitude of the value minus 1
+				dst[index] = negative ? -(lResult + 1L) : lResult;
+				return null;
+			}
+		}
+
+		IntegerValue iv = decodeBigIntegerValue(negative);
+		if (iv.getIntegerValueType() == IntegerValueType.BIG) {
+			return iv;
+		}
+		dst[index] = iv.longValue();
+		return null;
+	}
+
+	/*
+	 * Continues decoding an integer beyond the first MAX_OCTETS_FOR_LONG
+	 * octets (already in maskedOctets)
+	 */
+	private IntegerValue decodeBigIntegerValue(boolean negative)
+			throws IOException {
+		int b;
 		BigInteger bResult = BigInteger.ZERO;
 		BigInteger multiplier = BigInteger.ONE;
 		// already read bytes
@@ -78,6 +78,28 @@ public abstract class AbstractEncoderChannel implements EncoderChannel {
 		}
 	}
 
+	public void encodeString(final char[] ch, final int start,
+			final int length) throws IOException {
+		encodeUnsignedInteger(Character.codePointCount(ch, start, length));
+		encodeStringOnly(ch, start, length);
+	}
+
+	public void encodeStringOnly(final char[] ch, final int start,
+			final int length) throws IOException {
+		final int end = start + length;
+		for (int i = start; i < end; i++) {
+			final char c = ch[i];
+
+			// Is this a UTF-16 surrogate pair?
+			if (Character.isHighSurrogate(c)) {
+				// use code-point and increment loop count (2 char's)
+				encodeUnsignedInteger(Character.codePointAt(ch, i++, end));
+			} else {
+				encodeUnsignedInteger(c);
+			}
+		}
+	}
+
 	/**
 	 * Encode an arbitrary precision integer using a sign bit followed by a
 	 * sequence of octets. The most significant bit of the last octet is set to
@@ -67,6 +67,16 @@ public class BitDecoderChannel extends AbstractDecoderChannel implements
 		return istream.lookAhead();
 	}
 
+	/**
+	 * Returns the number of bits of the last byte read from the underlying
+	 * input stream that have not been decoded yet.
+	 * 
+	 * @return buffered bits (0 if byte-aligned)
+	 */
+	public int getBufferedBits() {
+		return istream.getBufferedBits();
+	}
+
 	public void skip(long n) throws IOException {
 		istream.skip(n);
 	}
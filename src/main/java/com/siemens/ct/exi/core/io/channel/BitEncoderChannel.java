@@ -61,6 +61,16 @@ public class BitEncoderChannel extends AbstractEncoderChannel implements
 		return ostream.getLength();
 	}
 
+	/**
+	 * Returns the number of bits that have not been written to the underlying
+	 * stream yet.
+	 * 
+	 * @return bits in buffer, in [0, 7]
+	 */
+	public int getBitsInBuffer() {
+		return ostream.getBitsInBuffer();
+	}
+
 	/**
 	 * Flush underlying bit output stream.
 	 */
@@ -77,10 +87,8 @@ public class BitEncoderChannel extends AbstractEncoderChannel implements
 	}
 
 	public void encode(byte b[], int off, int len) throws IOException {
-		// TODO write whole bytes (if possible)
-		for (int i = off; i < (off + len); i++) {
-			ostream.writeBits(b[i], 8);
-		}
+		// whole bytes if aligned
+		ostream.write(b, off, len);
 	}
 
 	/**
@@ -31,6 +31,7 @@ import com.siemens.ct.exi.core.values.DateTimeValue;
 import com.siemens.ct.exi.core.values.DecimalValue;
 import com.siemens.ct.exi.core.values.FloatValue;
 import com.siemens.ct.exi.core.values.IntegerValue;
+import com.siemens.ct.exi.core.values.IntegerValueType;
 
 /**
  * 
@@ -139,6 +140,29 @@ public interface DecoderChannel {
 	 */
 	public int decodeUnsignedInteger() throws IOException;
 
+	/**
+	 * Skips an arbitrary precision non negative integer (see
+	 * {@link #decodeUnsignedInteger()}) without computing its value.
+	 * 
+	 * @throws IOException
+	 *             IO exception
+	 */
+	public default void skipUnsignedInteger() throws IOException {
+		// read and discard
+		decodeUnsignedIntegerValue();
+	}
+
+	/**
+	 * Skips length-prefixed binary data without materializing it.
+	 * 
+	 * @throws IOException
+	 *             IO exception
+	 */
+	public default void skipBinary() throws IOException {
+		// read and discard
+		decodeBinary();
+	}
+
 	public IntegerValue decodeUnsignedIntegerValue() throws IOException;
 
 	/**
@@ -153,6 +177,50 @@ public interface DecoderChannel {
 	 */
 	public IntegerValue decodeIntegerValue() throws IOException;
 
+	/**
+	 * Decodes an Unsigned Integer. Values in the range of long are stored in
+	 * the given array without creating a value object.
+	 * 
+	 * @param dst
+	 *            destination array
+	 * @param index
+	 *            destination index
+	 * @return null if the value was stored, otherwise the (big) integer value
+	 * @throws IOException
+	 *             IO exception
+	 */
+	public default IntegerValue decodeUnsignedIntegerValue(long[] dst,
+			int index) throws IOException {
+		IntegerValue iv = decodeUnsignedIntegerValue();
+		if (iv.getIntegerValueType() == IntegerValueType.BIG) {
+			return iv;
+		}
+		dst[index] = iv.longValue();
+		return null;
+	}
+
+	/**
+	 * Decodes an Integer. Values in the range of long are stored in the given
+	 * array without creating a value object.
+	 * 
+	 * @param dst
+	 *            destination array
+	 * @param index
+	 *            destination index
+	 * @return null if the value was stored, otherwise the (big) integer value
+	 * @throws IOException
+	 *             IO exception
+	 */
+	public default IntegerValue decodeIntegerValue(long[] dst, int index)
+			throws IOException {
+		IntegerValue iv = decodeIntegerValue();
+		if (iv.getIntegerValueType() == IntegerValueType.BIG) {
+			return iv;
+		}
+		dst[index] = iv.longValue();
+		return null;
+	}
+
 	/**
 	 * Decode a decimal represented as a Boolean sign followed by two Unsigned
 	 * Integers. A sign value of zero (0) is used to represent positive Decimal
@@ -110,6 +110,42 @@ public interface EncoderChannel {
 	 */
 	public void encodeStringOnly(String s) throws IOException;
 
+	/**
+	 * Encode the characters of the given slice like
+	 * {@link #encodeString(String)}, without creating a string.
+	 * 
+	 * @param ch
+	 *            characters
+	 * @param start
+	 *            start offset
+	 * @param length
+	 *            number of chars
+	 * @throws IOException
+	 *             IO exception
+	 */
+	public default void encodeString(char[] ch, int start, int length)
+			throws IOException {
+		encodeString(new String(ch, start, length));
+	}
+
+	/**
+	 * Encode the characters of the given slice like
+	 * {@link #encodeStringOnly(String)}, without creating a string.
+	 * 
+	 * @param ch
+	 *            characters
+	 * @param start
+	 *            start offset
+	 * @param length
+	 *            number of chars
+	 * @throws IOException
+	 *             IO exception
+	 */
+	public default void encodeStringOnly(char[] ch, int start, int length)
+			throws IOException {
+		encodeStringOnly(new String(ch, start, length));
+	}
+
 	/**
 	 * Encode an arbitrary precision non negative integer using a sequence of
 	 * octets. The most significant bit of the last octet is set to zero to
@@ -105,8 +105,14 @@ public class EXIInflaterInputStream extends FilterInputStream {
 		// closed + ", needsInput " + needsInput + ",  needsDictionary " +
 		// needsDictionary + ", Remaining " + inf.getRemaining() + ", reachEOF "
 		// + reachEOF);
-		while (!inf.finished() && this.in.available() > 0) {
-			this.read(); // discard
+		// consume the rest of the deflate stream, it belongs to the current
+		// channel even if not all of it is available yet (e.g. socket)
+		try {
+			while (!inf.finished() && this.read() != -1) {
+				// discard
+			}
+		} catch (EOFException e) {
+			// truncated stream, nothing left to push back
 		}
 
 		int rem = inf.getRemaining();
@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 2007-2018 Siemens AG
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * 
+ */
+
+package com.siemens.ct.exi.core.jfr;
+
+import com.siemens.ct.exi.core.CodingMode;
+
+/**
+ * Java Flight Recorder events for documents, headers, compression blocks and
+ * self-contained fragments.
+ * 
+ * <p>
+ * Coders call <code>beginXXX()</code> before and <code>endXXX(..)</code>
+ * after the measured work. <code>beginXXX()</code> returns
+ * <code>null</code> unless a recording with the event enabled is running,
+ * <code>endXXX(..)</code> ignores <code>null</code>.
+ * </p>
+ * 
+ * <p>
+ * This is the fallback for Java 8 which records nothing. On Java 11 and later
+ * the multi-release jar provides the implementation based on
+ * <code>jdk.jfr</code> (events <code>com.siemens.ct.exi.Document</code>,
+ * <code>Header</code>, <code>Block</code> and <code>Fragment</code>).
+ * </p>
+ * 
+ * @author Daniel.Peintner.EXT@siemens.com
+ * @author Richard.Kuntschke@siemens.com
+ * 
+ */
+
+public final class EXIFlightRecorder {
+
+	private EXIFlightRecorder() {
+	}
+
+	/**
+	 * @return true if events are recorded with a running flight recording
+	 */
+	public static boolean isAvailable() {
+		return false;
+	}
+
+	public static Object beginDocument() {
+		return null;
+	}
+
+	/**
+	 * @param event
+	 *            event returned by {@link #beginDocument()}
+	 * @param encoding
+	 *            true for encoders, false for decoders
+	 * @param codingMode
+	 *            coding mode of the body
+	 * @param bytes
+	 *            body bytes written (encoders only, -1 otherwise)
+	 */
+	public static void endDocument(Object event, boolean encoding,
+			CodingMode codingMode, long bytes) {
+	}
+
+	public static Object beginHeader() {
+		return null;
+	}
+
+	/**
+	 * @param event
+	 *            event returned by {@link #beginHeader()}
+	 * @param encoding
+	 *            true for encoders, false for decoders
+	 * @param options
+	 *            true if the header contains EXI options
+	 * @param bytes
+	 *            header bytes written (encoders only, -1 otherwise)
+	 */
+	public static void endHeader(Object event, boolean encoding,
+			boolean options, long bytes) {
+	}
+
+	public static Object beginBlock() {
+		return null;
+	}
+
+	/**
+	 * @param event
+	 *            event returned by {@link #beginBlock()}
+	 * @param encoding
+	 *            true for encoders, false for decoders
+	 * @param values
+	 *            number of values in the block
+	 * @param channels
+	 *            number of value channels in the block
+	 * @param bytes
+	 *            uncompressed bytes of all channels (encoders only, -1
+	 *            otherwise)
+	 * @param compressedBytes
+	 *            deflated bytes (compression encoders only, -1 otherwise)
+	 */
+	public static void endBlock(Object event, boolean encoding, int values,
+			int channels, long bytes, long compressedBytes) {
+	}
+
+	public static Object beginFragment() {
+		return null;
+	}
+
+	/**
+	 * @param event
+	 *            event returned by {@link #beginFragment()}
+	 * @param encoding
+	 *            true for encoders, false for decoders
+	 * @param uri
+	 *            namespace URI of the self-contained element
+	 * @param localName
+	 *            local name of the self-contained element
+	 * @param bytes
+	 *            fragment bytes (encoders only, -1 otherwise)
+	 */
+	public static void endFragment(Object event, boolean encoding, String uri,
+			String localName, long bytes) {
+	}
+}
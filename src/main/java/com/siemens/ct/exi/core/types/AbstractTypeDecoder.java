@@ -60,6 +60,13 @@ public abstract class AbstractTypeDecoder extends AbstractTypeCoder implements
 		super(dtrMapTypes, dtrMapRepresentations, dtrMapRepresentationsDatatype);
 	}
 
+	public void skipValue(Datatype datatype, QNameContext qnContext,
+			DecoderChannel valueChannel, StringDecoder stringDecoder)
+			throws IOException {
+		// Note: string table updates require reading the value
+		readValue(datatype, qnContext, valueChannel, stringDecoder);
+	}
+
 	protected Value readRCSValue(RestrictedCharacterSetDatatype rcsDT,
 			QNameContext qnContext, DecoderChannel valueChannel,
 			StringDecoder stringDecoder) throws IOException {
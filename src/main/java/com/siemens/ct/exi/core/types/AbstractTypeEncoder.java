@@ -58,6 +58,11 @@ public abstract class AbstractTypeEncoder extends AbstractTypeCoder implements
 		super(dtrMapTypes, dtrMapRepresentations, dtrMapRepresentationsDatatype);
 	}
 
+	public boolean isStringTableValue() {
+		// lexical and string representations
+		return true;
+	}
+
 	protected void writeRCSValue(RestrictedCharacterSetDatatype rcsDT,
 			QNameContext qnContext, EncoderChannel valueChannel,
 			StringEncoder stringEncoder, String lastValidValue)
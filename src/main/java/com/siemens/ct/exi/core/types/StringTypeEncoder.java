@@ -30,6 +30,7 @@ import com.siemens.ct.exi.core.datatype.Datatype;
 import com.siemens.ct.exi.core.datatype.strings.StringEncoder;
 import com.siemens.ct.exi.core.exceptions.EXIException;
 import com.siemens.ct.exi.core.io.channel.EncoderChannel;
+import com.siemens.ct.exi.core.values.CharSliceValue;
 import com.siemens.ct.exi.core.values.Value;
 
 /**
@@ -42,19 +43,32 @@ import com.siemens.ct.exi.core.values.Value;
 public class StringTypeEncoder extends AbstractTypeEncoder {
 
 	String lastValidValue;
+	CharSliceValue lastSlice;
 
 	public StringTypeEncoder() throws EXIException {
 		super();
 	}
 
 	public boolean isValid(Datatype datatype, Value value) {
-		lastValidValue = value.toString();
+		if (value instanceof CharSliceValue) {
+			lastSlice = (CharSliceValue) value;
+		} else {
+			lastSlice = null;
+			lastValidValue = value.toString();
+		}
 		return true;
 	}
 
 	public void writeValue(QNameContext qnContext, EncoderChannel valueChannel,
 			StringEncoder stringEncoder) throws IOException {
-		stringEncoder.writeValue(qnContext, valueChannel, lastValidValue);
+		if (lastSlice != null) {
+			stringEncoder.writeValue(qnContext, valueChannel,
+					lastSlice.getArray(), lastSlice.getStart(),
+					lastSlice.getCharactersLength());
+			lastSlice = null;
+		} else {
+			stringEncoder.writeValue(qnContext, valueChannel, lastValidValue);
+		}
 	}
 
 }
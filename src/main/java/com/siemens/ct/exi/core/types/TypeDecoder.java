@@ -29,6 +29,9 @@ import com.siemens.ct.exi.core.context.QNameContext;
 import com.siemens.ct.exi.core.datatype.Datatype;
 import com.siemens.ct.exi.core.datatype.strings.StringDecoder;
 import com.siemens.ct.exi.core.io.channel.DecoderChannel;
+import com.siemens.ct.exi.core.values.FloatValue;
+import com.siemens.ct.exi.core.values.IntegerValue;
+import com.siemens.ct.exi.core.values.IntegerValueType;
 import com.siemens.ct.exi.core.values.Value;
 
 /**
@@ -44,4 +47,100 @@ public interface TypeDecoder extends TypeCoder {
 			DecoderChannel valueChannel, StringDecoder stringDecoder)
 			throws IOException;
 
+	/**
+	 * Reads a value without materializing it. String values are still added
+	 * to the string tables.
+	 * 
+	 * @param datatype
+	 *            datatype
+	 * @param qnContext
+	 *            qname context
+	 * @param valueChannel
+	 *            channel
+	 * @param stringDecoder
+	 *            string decoder
+	 * @throws IOException
+	 *             IO exception
+	 */
+	public default void skipValue(Datatype datatype, QNameContext qnContext,
+			DecoderChannel valueChannel, StringDecoder stringDecoder)
+			throws IOException {
+		// read and discard
+		readValue(datatype, qnContext, valueChannel, stringDecoder);
+	}
+
+	/**
+	 * Reads a value that is expected to be an integer. Integers in the range
+	 * of long are stored in the given array without creating a value object.
+	 * 
+	 * @param datatype
+	 *            datatype
+	 * @param qnContext
+	 *            qname context
+	 * @param valueChannel
+	 *            channel
+	 * @param stringDecoder
+	 *            string decoder
+	 * @param longs
+	 *            destination array
+	 * @param index
+	 *            destination index
+	 * @return null if the value was stored, otherwise the value
+	 * @throws IOException
+	 *             IO exception
+	 */
+	public default Value readLongValue(Datatype datatype,
+			QNameContext qnContext, DecoderChannel valueChannel,
+			StringDecoder stringDecoder, long[] longs, int index)
+			throws IOException {
+		Value v = readValue(datatype, qnContext, valueChannel, stringDecoder);
+		if (v instanceof IntegerValue
+				&& ((IntegerValue) v).getIntegerValueType() != IntegerValueType.BIG) {
+			longs[index] = ((IntegerValue) v).longValue();
+			return null;
+		}
+		return v;
+	}
+
+	/**
+	 * Reads a value that is expected to be a float. Mantissa and exponent in
+	 * the range of long are stored in the given arrays without creating a
+	 * value object.
+	 * 
+	 * @param datatype
+	 *            datatype
+	 * @param qnContext
+	 *            qname context
+	 * @param valueChannel
+	 *            channel
+	 * @param stringDecoder
+	 *            string decoder
+	 * @param mantissas
+	 *            destination array of mantissa
+	 * @param exponents
+	 *            destination array of exponent
+	 * @param index
+	 *            destination index
+	 * @return null if the value was stored, otherwise the value
+	 * @throws IOException
+	 *             IO exception
+	 */
+	public default Value readFloatValue(Datatype datatype,
+			QNameContext qnContext, DecoderChannel valueChannel,
+			StringDecoder stringDecoder, long[] mantissas, long[] exponents,
+			int index) throws IOException {
+		Value v = readValue(datatype, qnContext, valueChannel, stringDecoder);
+		if (v instanceof FloatValue) {
+			IntegerValue m = ((FloatValue) v).getMantissa();
+			IntegerValue e = ((FloatValue) v).getExponent();
+			if (m.getIntegerValueType() != IntegerValueType.BIG
+					&& e.getIntegerValueType() != IntegerValueType.BIG) {
+				mantissas[index] = m.longValue();
+				exponents[index] = e.longValue();
+				return null;
+			}
+		}
+		return v;
+	}
+
 }
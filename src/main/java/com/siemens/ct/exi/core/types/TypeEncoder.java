@@ -66,4 +66,16 @@ public interface TypeEncoder extends TypeCoder {
 	public void writeValue(QNameContext qnContext, EncoderChannel valueChannel,
 			StringEncoder stringEncoder) throws IOException;
 
+	/**
+	 * Returns whether the previously checked valid value is represented by
+	 * means of the string tables. The representation of such a value depends
+	 * on the values written before.
+	 * 
+	 * @return boolean value indicating whether string tables are involved
+	 *         (default true, i.e., no assumption on the representation)
+	 */
+	public default boolean isStringTableValue() {
+		return true;
+	}
+
 }
@@ -44,7 +44,9 @@ import com.siemens.ct.exi.core.io.channel.DecoderChannel;
 import com.siemens.ct.exi.core.values.BinaryBase64Value;
 import com.siemens.ct.exi.core.values.BinaryHexValue;
 import com.siemens.ct.exi.core.values.BooleanValue;
+import com.siemens.ct.exi.core.values.FloatValue;
 import com.siemens.ct.exi.core.values.IntegerValue;
+import com.siemens.ct.exi.core.values.IntegerValueType;
 import com.siemens.ct.exi.core.values.ListValue;
 import com.siemens.ct.exi.core.values.StringValue;
 import com.siemens.ct.exi.core.values.Value;
@@ -140,6 +142,115 @@ public class TypedTypeDecoder extends AbstractTypeDecoder {
 		// return datatype.readValue(qnContext, valueChannel, stringDecoder);
 	}
 
+	@Override
+	public Value readLongValue(Datatype datatype, QNameContext qnContext,
+			DecoderChannel valueChannel, StringDecoder stringDecoder,
+			long[] longs, int index) throws IOException {
+		Datatype dt = this.dtrMapInUse ? this.getDtrDatatype(datatype)
+				: datatype;
+
+		switch (dt.getBuiltInType()) {
+		case NBIT_UNSIGNED_INTEGER:
+			NBitUnsignedIntegerDatatype nbitDT = (NBitUnsignedIntegerDatatype) dt;
+			IntegerValue lowerBound = nbitDT.getLowerBound();
+			int n = valueChannel.decodeNBitUnsignedInteger(nbitDT
+					.getNumberOfBits());
+			if (lowerBound.getIntegerValueType() == IntegerValueType.BIG
+					|| lowerBound.longValue() > Long.MAX_VALUE - n) {
+				return IntegerValue.valueOf(n).add(lowerBound);
+			}
+			longs[index] = lowerBound.longValue() + n;
+			return null;
+		case UNSIGNED_INTEGER:
+			return valueChannel.decodeUnsignedIntegerValue(longs, index);
+		case INTEGER:
+			return valueChannel.decodeIntegerValue(longs, index);
+		default:
+			return readValue(datatype, qnContext, valueChannel, stringDecoder);
+		}
+	}
+
+	@Override
+	public Value readFloatValue(Datatype datatype, QNameContext qnContext,
+			DecoderChannel valueChannel, StringDecoder stringDecoder,
+			long[] mantissas, long[] exponents, int index) throws IOException {
+		Datatype dt = this.dtrMapInUse ? this.getDtrDatatype(datatype)
+				: datatype;
+
+		if (dt.getBuiltInType() != BuiltInType.FLOAT) {
+			return readValue(datatype, qnContext, valueChannel, stringDecoder);
+		}
+		IntegerValue m = valueChannel.decodeIntegerValue(mantissas, index);
+		IntegerValue e = valueChannel.decodeIntegerValue(exponents, index);
+		if (m == null && e == null) {
+			return null;
+		}
+		// beyond the range of long
+		return new FloatValue(m == null ? IntegerValue.valueOf(mantissas[index])
+				: m, e == null ? IntegerValue.valueOf(exponents[index]) : e);
+	}
+
+	@Override
+	public void skipValue(Datatype datatype, QNameContext qnContext,
+			DecoderChannel valueChannel, StringDecoder stringDecoder)
+			throws IOException {
+		if (this.dtrMapInUse) {
+			datatype = this.getDtrDatatype(datatype);
+		}
+
+		switch (datatype.getBuiltInType()) {
+		case BINARY_BASE64:
+		case BINARY_HEX:
+			valueChannel.skipBinary();
+			break;
+		case BOOLEAN:
+			valueChannel.decodeBoolean();
+			break;
+		case BOOLEAN_FACET:
+			valueChannel.decodeNBitUnsignedInteger(2);
+			break;
+		case DECIMAL:
+			// sign, integral, reverse fractional
+			valueChannel.decodeBoolean();
+			valueChannel.skipUnsignedInteger();
+			valueChannel.skipUnsignedInteger();
+			break;
+		case FLOAT:
+			// mantissa & exponent (integers)
+			valueChannel.decodeBoolean();
+			valueChannel.skipUnsignedInteger();
+			valueChannel.decodeBoolean();
+			valueChannel.skipUnsignedInteger();
+			break;
+		case NBIT_UNSIGNED_INTEGER:
+			NBitUnsignedIntegerDatatype nbitDT = (NBitUnsignedIntegerDatatype) datatype;
+			valueChannel.decodeNBitUnsignedInteger(nbitDT.getNumberOfBits());
+			break;
+		case UNSIGNED_INTEGER:
+			valueChannel.skipUnsignedInteger();
+			break;
+		case INTEGER:
+			valueChannel.decodeBoolean();
+			valueChannel.skipUnsignedInteger();
+			break;
+		case ENUMERATION:
+			EnumerationDatatype enumDT = (EnumerationDatatype) datatype;
+			valueChannel.decodeNBitUnsignedInteger(enumDT.getCodingLength());
+			break;
+		case LIST:
+			ListDatatype lDT = (ListDatatype) datatype;
+			Datatype listDatatype = lDT.getListDatatype();
+			int len = valueChannel.decodeUnsignedInteger();
+			for (int l = 0; l < len; l++) {
+				skipValue(listDatatype, qnContext, valueChannel, stringDecoder);
+			}
+			break;
+		default:
+			// strings (table updates), date-times et cetera
+			readValue(datatype, qnContext, valueChannel, stringDecoder);
+		}
+	}
+
 	protected StringValue readExtendedString(ExtendedStringDatatype esDT,
 			QNameContext context, DecoderChannel valueChannel,
 			StringDecoder stringDecoder) throws IOException {
@@ -47,6 +47,7 @@ import com.siemens.ct.exi.core.values.AbstractBinaryValue;
 import com.siemens.ct.exi.core.values.BinaryBase64Value;
 import com.siemens.ct.exi.core.values.BinaryHexValue;
 import com.siemens.ct.exi.core.values.BooleanValue;
+import com.siemens.ct.exi.core.values.CharSliceValue;
 import com.siemens.ct.exi.core.values.DateTimeValue;
 import com.siemens.ct.exi.core.values.DecimalValue;
 import com.siemens.ct.exi.core.values.FloatValue;
@@ -100,6 +101,8 @@ public class TypedTypeEncoder extends AbstractTypeEncoder {
 	protected IntegerValue lastInteger;
 	protected DateTimeValue lastDatetime;
 	protected String lastString;
+	// string value not materialized (STRING only)
+	protected CharSliceValue lastSlice;
 	protected int lastEnumIndex;
 	protected ListValue lastListValues;
 
@@ -183,7 +186,12 @@ public class TypedTypeEncoder extends AbstractTypeEncoder {
 				return isValidString(value.toString());
 			}
 		case STRING:
-			lastString = value.toString();
+			if (value instanceof CharSliceValue) {
+				lastSlice = (CharSliceValue) value;
+			} else {
+				lastSlice = null;
+				lastString = value.toString();
+			}
 			return true;
 		case RCS_STRING:
 			// Note: no validity check needed since any char-sequence can be
@@ -320,6 +328,26 @@ public class TypedTypeEncoder extends AbstractTypeEncoder {
 		}
 	}
 
+	@Override
+	public boolean isStringTableValue() {
+		return isStringTableDatatype(lastDatatype);
+	}
+
+	protected static boolean isStringTableDatatype(Datatype datatype) {
+		switch (datatype.getBuiltInType()) {
+		case STRING:
+		case RCS_STRING:
+		case EXTENDED_STRING:
+		case QNAME:
+			return true;
+		case LIST:
+			return isStringTableDatatype(((ListDatatype) datatype)
+					.getListDatatype());
+		default:
+			return false;
+		}
+	}
+
 	protected void normalize(Datatype datatype) {
 		switch (datatype.getBuiltInType()) {
 		case DATETIME:
@@ -384,7 +412,14 @@ public class TypedTypeEncoder extends AbstractTypeEncoder {
 			valueChannel.encodeDateTime(lastDatetime);
 			break;
 		case STRING:
-			stringEncoder.writeValue(qnContext, valueChannel, lastString);
+			if (lastSlice != null) {
+				stringEncoder.writeValue(qnContext, valueChannel,
+						lastSlice.getArray(), lastSlice.getStart(),
+						lastSlice.getCharactersLength());
+				lastSlice = null;
+			} else {
+				stringEncoder.writeValue(qnContext, valueChannel, lastString);
+			}
 			break;
 		case RCS_STRING:
 			RestrictedCharacterSetDatatype rcsDT = (RestrictedCharacterSetDatatype) lastDatatype;
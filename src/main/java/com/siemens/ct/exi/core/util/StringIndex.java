@@ -0,0 +1,244 @@
+/*
+ * Copyright (c) 2007-2018 Siemens AG
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * 
+ */
+
+package com.siemens.ct.exi.core.util;
+
+import java.util.Arrays;
+
+import com.siemens.ct.exi.core.Constants;
+
+/**
+ * Open-addressing hash index from strings to non-negative int IDs (e.g.,
+ * runtime URI, local-name or prefix IDs).
+ * 
+ * <p>
+ * Entries are stamped with a generation. {@link #clear()} only increments the
+ * current generation, so resetting an index between EXI streams does not
+ * touch its tables and does not allocate.
+ * </p>
+ * 
+ * <p>
+ * Keys can also be looked up by a slice of a character array, which does not
+ * create a <code>String</code>.
+ * </p>
+ * 
+ * @author Daniel.Peintner.EXT@siemens.com
+ * @author Richard.Kuntschke@siemens.com
+ * 
+ */
+
+public final class StringIndex {
+
+	public static final int DEFAULT_INITIAL_CAPACITY = 16;
+
+	private String[] keys;
+	private int[] ids;
+	private int[] generations;
+	private int mask;
+
+	private int generation;
+	private int size;
+
+	public StringIndex() {
+		this(DEFAULT_INITIAL_CAPACITY);
+	}
+
+	public StringIndex(int expectedSize) {
+		int capacity = DEFAULT_INITIAL_CAPACITY;
+		while (capacity < (expectedSize << 1)) {
+			capacity <<= 1;
+		}
+		keys = new String[capacity];
+		ids = new int[capacity];
+		generations = new int[capacity];
+		mask = capacity - 1;
+		generation = 1;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns the ID of the given key.
+	 * 
+	 * @param key
+	 *            key
+	 * @return ID or <code>Constants.NOT_FOUND</code>
+	 */
+	public int get(String key) {
+		int i = hash(key) & mask;
+		while (generations[i] == generation) {
+			String k = keys[i];
+			if (k == key || k.equals(key)) {
+				return ids[i];
+			}
+			i = (i + 1) & mask;
+		}
+		return Constants.NOT_FOUND;
+	}
+
+	/**
+	 * Returns the ID of the key with the characters of the given slice.
+	 * 
+	 * @param ch
+	 *            characters
+	 * @param start
+	 *            start offset
+	 * @param length
+	 *            number of characters
+	 * @return ID or <code>Constants.NOT_FOUND</code>
+	 */
+	public int get(char[] ch, int start, int length) {
+		int i = hash(ch, start, length) & mask;
+		while (generations[i] == generation) {
+			if (regionEquals(keys[i], ch, start, length)) {
+				return ids[i];
+			}
+			i = (i + 1) & mask;
+		}
+		return Constants.NOT_FOUND;
+	}
+
+	/**
+	 * Adds or replaces the ID of the given key. An ID of
+	 * <code>Constants.NOT_FOUND</code> hides the key again.
+	 * 
+	 * @param key
+	 *            key
+	 * @param id
+	 *            non-negative ID or <code>Constants.NOT_FOUND</code>
+	 */
+	public void put(String key, int id) {
+		assert (id >= Constants.NOT_FOUND);
+		if ((size + 1) << 1 > keys.length) {
+			grow();
+		}
+		int i = hash(key) & mask;
+		while (generations[i] == generation) {
+			if (keys[i].equals(key)) {
+				ids[i] = id;
+				return;
+			}
+			i = (i + 1) & mask;
+		}
+		keys[i] = key;
+		ids[i] = id;
+		generations[i] = generation;
+		size++;
+	}
+
+	/**
+	 * Removes the given key.
+	 * 
+	 * @param key
+	 *            key
+	 * @return whether the key was present
+	 */
+	public boolean remove(String key) {
+		int i = hash(key) & mask;
+		while (generations[i] == generation) {
+			if (keys[i].equals(key)) {
+				// shift back following entries of the same cluster
+				int j = i;
+				while (generations[j = (j + 1) & mask] == generation) {
+					int home = hash(keys[j]) & mask;
+					if (((j - home) & mask) >= ((j - i) & mask)) {
+						keys[i] = keys[j];
+						ids[i] = ids[j];
+						i = j;
+					}
+				}
+				keys[i] = null;
+				generations[i] = 0;
+				size--;
+				return true;
+			}
+			i = (i + 1) & mask;
+		}
+		return false;
+	}
+
+	/**
+	 * Removes all entries in constant time.
+	 */
+	public void clear() {
+		size = 0;
+		if (++generation == 0) {
+			// wrap-around, stale stamps could become valid again
+			Arrays.fill(generations, 0);
+			Arrays.fill(keys, null);
+			generation = 1;
+		}
+	}
+
+	private void grow() {
+		String[] oldKeys = keys;
+		int[] oldIDs = ids;
+		int[] oldGenerations = generations;
+		int oldGeneration = generation;
+
+		int capacity = oldKeys.length << 1;
+		keys = new String[capacity];
+		ids = new int[capacity];
+		generations = new int[capacity];
+		mask = capacity - 1;
+		generation = 1;
+		size = 0;
+
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldGenerations[i] == oldGeneration) {
+				put(oldKeys[i], oldIDs[i]);
+			}
+		}
+	}
+
+	private static int hash(String key) {
+		int h = key.hashCode();
+		// spread higher bits (see HashMap)
+		return h ^ (h >>> 16);
+	}
+
+	private static int hash(char[] ch, int start, int length) {
+		// same as String.hashCode()
+		int h = 0;
+		for (int i = start, end = start + length; i < end; i++) {
+			h = 31 * h + ch[i];
+		}
+		return h ^ (h >>> 16);
+	}
+
+	private static boolean regionEquals(String key, char[] ch, int start,
+			int length) {
+		if (key.length() != length) {
+			return false;
+		}
+		for (int i = 0; i < length; i++) {
+			if (key.charAt(i) != ch[start + i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2007-2018 Siemens AG
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * 
+ */
+
+package com.siemens.ct.exi.core.values;
+
+/**
+ * String value backed by a slice of a character array that is NOT copied.
+ * 
+ * <p>
+ * The array content must not change while the value is in use. Instances may
+ * be re-used for other slices, a <code>String</code> is created on
+ * {@link #toString()} only.
+ * </p>
+ * 
+ * @author Daniel.Peintner.EXT@siemens.com
+ * @author Richard.Kuntschke@siemens.com
+ * 
+ */
+
+public class CharSliceValue extends AbstractValue {
+
+	protected char[] ch;
+	protected int start;
+	protected int length;
+
+	public CharSliceValue() {
+		super(ValueType.STRING);
+		this.ch = new char[0];
+	}
+
+	public CharSliceValue(char[] ch, int start, int length) {
+		super(ValueType.STRING);
+		setCharacters(ch, start, length);
+	}
+
+	public void setCharacters(char[] ch, int start, int length) {
+		if (start < 0 || length < 0 || start + length > ch.length) {
+			throw new IndexOutOfBoundsException("Slice " + start + "+"
+					+ length + " out of " + ch.length);
+		}
+		this.ch = ch;
+		this.start = start;
+		this.length = length;
+	}
+
+	public char[] getArray() {
+		return ch;
+	}
+
+	public int getStart() {
+		return start;
+	}
+
+	public int getCharactersLength() {
+		return length;
+	}
+
+	public void getCharacters(char[] cbuffer, int offset) {
+		System.arraycopy(ch, start, cbuffer, offset, length);
+	}
+
+	@Override
+	public String toString() {
+		return new String(ch, start, length);
+	}
+
+	@Override
+	public String toString(char[] cbuffer, int offset) {
+		return toString();
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) {
+			return true;
+		} else if (o instanceof CharSliceValue) {
+			CharSliceValue other = (CharSliceValue) o;
+			if (other.length != length) {
+				return false;
+			}
+			for (int i = 0; i < length; i++) {
+				if (other.ch[other.start + i] != ch[start + i]) {
+					return false;
+				}
+			}
+			return true;
+		} else if (o == null) {
+			return false;
+		}
+		// String and StringValue return their string without copying
+		String s = o.toString();
+		if (s.length() != length) {
+			return false;
+		}
+		for (int i = 0; i < length; i++) {
+			if (s.charAt(i) != ch[start + i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public int hashCode() {
+		// same as String.hashCode()
+		int h = 0;
+		for (int i = start, end = start + length; i < end; i++) {
+			h = 31 * h + ch[i];
+		}
+		return h;
+	}
+
+}
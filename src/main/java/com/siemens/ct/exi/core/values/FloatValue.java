@@ -352,6 +352,39 @@ public class FloatValue extends AbstractValue {
 		return f;
 	}
 
+	/**
+	 * Returns the double value of the float with the given (not necessarily
+	 * canonical) mantissa and exponent, equal to {@link #toDouble()} of the
+	 * according value object.
+	 * 
+	 * @param mantissa
+	 *            mantissa
+	 * @param exponent
+	 *            10-based exponent
+	 * @return double value
+	 */
+	public static double toDouble(long mantissa, long exponent) {
+		if (mantissa == 0L) {
+			return exponent == Constants.FLOAT_SPECIAL_VALUES ? Double.NaN
+					: 0.0d;
+		}
+		// no trailing zeros, see constructor
+		while (mantissa % 10 == 0) {
+			mantissa /= 10;
+			exponent++;
+		}
+		if (exponent == Constants.FLOAT_SPECIAL_VALUES) {
+			if (mantissa == -1L) {
+				return Double.NEGATIVE_INFINITY;
+			} else if (mantissa == 1L) {
+				return Double.POSITIVE_INFINITY;
+			} else {
+				return Double.NaN;
+			}
+		}
+		return mantissa * (double) (Math.pow(10, exponent));
+	}
+
 	public int getCharactersLength() {
 		if (slen == -1) {
 			if (exponent.equals(FLOAT_SPECIAL_VALUES)) {
@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2007-2018 Siemens AG
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * 
+ */
+
+package com.siemens.ct.exi.core.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event for multiplexing and (de-)compressing one block of a
+ * (pre-)compressed stream.
+ * 
+ * @author Daniel.Peintner.EXT@siemens.com
+ * @author Richard.Kuntschke@siemens.com
+ * 
+ */
+
+@Name("com.siemens.ct.exi.Block")
+@Label("EXI Block")
+@Category({ "EXI" })
+@Description("Block of a (pre-)compressed EXI body")
+final class BlockEvent extends Event {
+
+	@Label("Encoding")
+	@Description("Encoder (true) or decoder (false)")
+	boolean encoding;
+
+	@Label("Values")
+	int values;
+
+	@Label("Value Channels")
+	int channels;
+
+	@Label("Bytes")
+	@Description("Uncompressed channel bytes, -1 for decoders")
+	@DataAmount
+	long bytes;
+
+	@Label("Compressed Bytes")
+	@Description("Deflated bytes, -1 for decoders and pre-compression")
+	@DataAmount
+	long compressedBytes;
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) 2007-2018 Siemens AG
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * 
+ */
+
+package com.siemens.ct.exi.core.jfr;
+
+import jdk.jfr.EventType;
+
+import com.siemens.ct.exi.core.CodingMode;
+
+/**
+ * Java Flight Recorder events for documents, headers, compression blocks and
+ * self-contained fragments (Java 11 and later).
+ * 
+ * <p>
+ * Without a running recording <code>beginXXX()</code> checks the event type
+ * only and returns <code>null</code>, no event is allocated.
+ * </p>
+ * 
+ * @author Daniel.Peintner.EXT@siemens.com
+ * @author Richard.Kuntschke@siemens.com
+ * 
+ */
+
+public final class EXIFlightRecorder {
+
+	private static final EventType DOCUMENT = EventType
+			.getEventType(DocumentEvent.class);
+	private static final EventType HEADER = EventType
+			.getEventType(HeaderEvent.class);
+	private static final EventType BLOCK = EventType
+			.getEventType(BlockEvent.class);
+	private static final EventType FRAGMENT = EventType
+			.getEventType(FragmentEvent.class);
+
+	private EXIFlightRecorder() {
+	}
+
+	public static boolean isAvailable() {
+		return true;
+	}
+
+	public static Object beginDocument() {
+		if (!DOCUMENT.isEnabled()) {
+			return null;
+		}
+		DocumentEvent e = new DocumentEvent();
+		e.begin();
+		return e;
+	}
+
+	public static void endDocument(Object event, boolean encoding,
+			CodingMode codingMode, long bytes) {
+		if (event != null) {
+			DocumentEvent e = (DocumentEvent) event;
+			e.encoding = encoding;
+			e.codingMode = codingMode.name();
+			e.bytes = bytes;
+			e.commit();
+		}
+	}
+
+	public static Object beginHeader() {
+		if (!HEADER.isEnabled()) {
+			return null;
+		}
+		HeaderEvent e = new HeaderEvent();
+		e.begin();
+		return e;
+	}
+
+	public static void endHeader(Object event, boolean encoding,
+			boolean options, long bytes) {
+		if (event != null) {
+			HeaderEvent e = (HeaderEvent) event;
+			e.encoding = encoding;
+			e.options = options;
+			e.bytes = bytes;
+			e.commit();
+		}
+	}
+
+	public static Object beginBlock() {
+		if (!BLOCK.isEnabled()) {
+			return null;
+		}
+		BlockEvent e = new BlockEvent();
+		e.begin();
+		return e;
+	}
+
+	public static void endBlock(Object event, boolean encoding, int values,
+			int channels, long bytes, long compressedBytes) {
+		if (event != null) {
+			BlockEvent e = (BlockEvent) event;
+			e.encoding = encoding;
+			e.values = values;
+			e.channels = channels;
+			e.bytes = bytes;
+			e.compressedBytes = compressedBytes;
+			e.commit();
+		}
+	}
+
+	public static Object beginFragment() {
+		if (!FRAGMENT.isEnabled()) {
+			return null;
+		}
+		FragmentEvent e = new FragmentEvent();
+		e.begin();
+		return e;
+	}
+
+	public static void endFragment(Object event, boolean encoding, String uri,
+			String localName, long bytes) {
+		if (event != null) {
+			FragmentEvent e = (FragmentEvent) event;
+			e.encoding = encoding;
+			e.element = (uri == null || uri.isEmpty()) ? localName : "{" + uri
+					+ "}" + localName;
+			e.bytes = bytes;
+			e.commit();
+		}
+	}
+}
@@ -27,6 +27,7 @@ import org.custommonkey.xmlunit.XMLTestCase;
 
 import com.siemens.ct.exi.core.Constants;
 import com.siemens.ct.exi.core.EXIFactory;
+import com.siemens.ct.exi.core.EncodingOptions;
 import com.siemens.ct.exi.core.exceptions.EXIException;
 import com.siemens.ct.exi.core.helpers.DefaultEXIFactory;
 
@@ -73,4 +74,65 @@ public class AttributeListCoreTest extends XMLTestCase {
 		assertTrue(al.getXsiNilPrefix().equals("xsi"));
 	}
 
+	protected void assertOrder(AttributeList al, String... expected) {
+		assertEquals(expected.length, al.getNumberOfAttributes());
+		for (int i = 0; i < expected.length; i++) {
+			assertEquals(expected[i], al.getAttributeURI(i) + ":"
+					+ al.getAttributeLocalName(i) + "="
+					+ al.getAttributeValue(i));
+		}
+	}
+
+	public void testAttributesOrderingPlans() throws EXIException {
+		// canonical EXI: lexical order, localName first then uri
+		EXIFactory ef = DefaultEXIFactory.newInstance();
+		ef.getEncodingOptions().setOption(EncodingOptions.CANONICAL_EXI);
+
+		AttributeList al = af.createAttributeListInstance(ef);
+
+		for (int k = 0; k < 3; k++) {
+			al.clear();
+			al.addAttribute("", "c", "", "c" + k);
+			al.addAttribute("urn:b", "a", "b", "ba" + k);
+			al.addAttribute("", "b", "", "b" + k);
+			al.addAttribute("urn:a", "a", "a", "aa" + k);
+			al.addAttribute("", "a", "", "a" + k);
+			// same attribute set again (cached plan)
+			assertOrder(al, ":a=a" + k, "urn:a:a=aa" + k, "urn:b:a=ba" + k,
+					":b=b" + k, ":c=c" + k);
+		}
+
+		// same attributes, other input order
+		al.clear();
+		al.addAttribute("", "a", "", "a");
+		al.addAttribute("", "b", "", "b");
+		al.addAttribute("urn:a", "a", "a", "aa");
+		al.addAttribute("urn:b", "a", "b", "ba");
+		al.addAttribute("", "c", "", "c");
+		assertOrder(al, ":a=a", "urn:a:a=aa", "urn:b:a=ba", ":b=b", ":c=c");
+
+		// subset and growing lists
+		al.clear();
+		al.addAttribute("", "b", "", "b");
+		al.addAttribute("", "a", "", "a");
+		assertOrder(al, ":a=a", ":b=b");
+		al.clear();
+		for (int i = 20; i > 0; i--) {
+			al.addAttribute("", "a" + (char) ('a' + i), "", "" + i);
+		}
+		assertEquals(20, al.getNumberOfAttributes());
+		for (int i = 1; i < 20; i++) {
+			assertTrue(al.getAttributeLocalName(i - 1).compareTo(
+					al.getAttributeLocalName(i)) < 0);
+		}
+
+		// xsi:* are no regular attributes
+		al.clear();
+		al.addAttribute("", "z", "", "z");
+		al.addAttribute(Constants.XML_SCHEMA_INSTANCE_NS_URI, "nil", "xsi",
+				"true");
+		assertOrder(al, ":z=z");
+		assertTrue(al.hasXsiNil());
+	}
+
 }
@@ -0,0 +1,192 @@
+/*
+ * Copyright (c) 2007-2018 Siemens AG
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * 
+ */
+
+package com.siemens.ct.exi.core.coder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+
+import javax.management.ObjectName;
+
+import junit.framework.TestCase;
+
+import com.siemens.ct.exi.core.CoderMetrics;
+import com.siemens.ct.exi.core.CodingMode;
+import com.siemens.ct.exi.core.EXIBodyDecoder;
+import com.siemens.ct.exi.core.EXIBodyEncoder;
+import com.siemens.ct.exi.core.EXIEventVisitor;
+import com.siemens.ct.exi.core.EXIFactory;
+import com.siemens.ct.exi.core.exceptions.EXIException;
+import com.siemens.ct.exi.core.grammars.event.EventType;
+import com.siemens.ct.exi.core.helpers.AggregatingCoderMetrics;
+import com.siemens.ct.exi.core.helpers.DefaultEXIFactory;
+import com.siemens.ct.exi.core.values.StringValue;
+
+public class CoderMetricsCoreTest extends TestCase {
+
+	public CoderMetricsCoreTest(String testName) {
+		super(testName);
+	}
+
+	protected static void encodeDocument(EXIBodyEncoder encoder, int records)
+			throws EXIException, IOException {
+		encoder.encodeStartDocument();
+		encoder.encodeStartElement("", "batch", null);
+		for (int i = 0; i < records; i++) {
+			encoder.encodeStartElement("", "record", null);
+			encoder.encodeAttribute("", "id", null, new StringValue("r" + i));
+			encoder.encodeStartElement("", "value", null);
+			encoder.encodeCharacters(new StringValue("value " + (i % 3)));
+			encoder.encodeEndElement();
+			encoder.encodeEndElement();
+		}
+		encoder.encodeEndElement();
+		encoder.encodeEndDocument();
+		encoder.flush();
+	}
+
+	protected void _testMetrics(CodingMode codingMode) throws EXIException,
+			IOException {
+		EXIFactory factory = DefaultEXIFactory.newInstance();
+		factory.setCodingMode(codingMode);
+		AggregatingCoderMetrics metrics = new AggregatingCoderMetrics();
+		factory.setCoderMetrics(metrics);
+
+		final int records = 200;
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		EXIBodyEncoder encoder = factory.createEXIStreamEncoder()
+				.encodeHeader(baos);
+		encodeDocument(encoder, records);
+		byte[] exi = baos.toByteArray();
+
+		assertEquals(1, metrics.getStreamsEncoded());
+		assertEquals(0, metrics.getStreamsDecoded());
+		// SD, ED and SE, AT, CH, EE per record
+		assertTrue(metrics.getEvents() >= 2 + 4 * records);
+		assertEquals(records, metrics.getEvents(EventType.ATTRIBUTE)
+				+ metrics.getEvents(EventType.ATTRIBUTE_GENERIC_UNDECLARED));
+		// batch, record and value
+		assertEquals(3, metrics.getBuiltInElementGrammars());
+		assertTrue(metrics.getLearnedProductions() > 0);
+		assertEquals(records - 3, metrics.getLocalValueHits());
+		assertEquals(0, metrics.getGlobalValueHits());
+		assertEquals(records + 3, metrics.getValueMisses());
+		assertTrue(metrics.getStructureNanos() > 0);
+
+		// byte counts add up to the stream size
+		long header = metrics.getHeaderBytes();
+		assertTrue(header > 0);
+		switch (codingMode) {
+		case BIT_PACKED:
+		case BYTE_PACKED:
+			assertEquals(exi.length, header + metrics.getBodyBytes());
+			break;
+		case PRE_COMPRESSION:
+			assertEquals(exi.length, header + metrics.getStructureBytes()
+					+ metrics.getValueBytes());
+			break;
+		case COMPRESSION:
+			assertEquals(exi.length, header + metrics.getCompressedBytes());
+			long uncompressed = metrics.getStructureBytes()
+					+ metrics.getValueBytes();
+			assertTrue(uncompressed > metrics.getCompressedBytes());
+			assertTrue(metrics.getCompressionNanos() > 0);
+			break;
+		}
+
+		// decoder reports the same events, string table and grammar activity
+		long events = metrics.getEvents();
+		long learned = metrics.getLearnedProductions();
+		long hits = metrics.getLocalValueHits();
+		long misses = metrics.getValueMisses();
+		metrics.reset();
+		assertEquals(0, metrics.getEvents());
+
+		EXIBodyDecoder decoder = factory.createEXIStreamDecoder().decodeHeader(
+				new ByteArrayInputStream(exi));
+		assertTrue(decoder.decode(new EXIEventVisitor() {
+		}));
+
+		assertEquals(0, metrics.getStreamsEncoded());
+		assertEquals(1, metrics.getStreamsDecoded());
+		assertEquals(events, metrics.getEvents());
+		assertEquals(learned, metrics.getLearnedProductions());
+		assertEquals(3, metrics.getBuiltInElementGrammars());
+		assertEquals(hits, metrics.getLocalValueHits());
+		assertEquals(misses, metrics.getValueMisses());
+		assertTrue(metrics.getNanos(CoderMetrics.Phase.HEADER) > 0);
+	}
+
+	public void testMetricsBitPacked() throws EXIException, IOException {
+		_testMetrics(CodingMode.BIT_PACKED);
+	}
+
+	public void testMetricsBytePacked() throws EXIException, IOException {
+		_testMetrics(CodingMode.BYTE_PACKED);
+	}
+
+	public void testMetricsPreCompression() throws EXIException, IOException {
+		_testMetrics(CodingMode.PRE_COMPRESSION);
+	}
+
+	public void testMetricsCompression() throws EXIException, IOException {
+		_testMetrics(CodingMode.COMPRESSION);
+	}
+
+	public void testMetricsMBean() throws Exception {
+		EXIFactory factory = DefaultEXIFactory.newInstance();
+		AggregatingCoderMetrics metrics = new AggregatingCoderMetrics();
+		factory.setCoderMetrics(metrics);
+
+		EXIBodyEncoder encoder = factory.createEXIBodyEncoder();
+		encoder.setOutputStream(new ByteArrayOutputStream());
+		encodeDocument(encoder, 10);
+
+		ObjectName name = metrics
+				.registerMBean(AggregatingCoderMetrics.DEFAULT_OBJECT_NAME);
+		try {
+			assertEquals(metrics.getEvents(), ManagementFactory
+					.getPlatformMBeanServer().getAttribute(name, "Events"));
+			assertEquals(1L, ManagementFactory.getPlatformMBeanServer()
+					.getAttribute(name, "StreamsEncoded"));
+			ManagementFactory.getPlatformMBeanServer().invoke(name, "reset",
+					null, null);
+			assertEquals(0, metrics.getEvents());
+		} finally {
+			metrics.unregisterMBean(name);
+		}
+		assertFalse(ManagementFactory.getPlatformMBeanServer().isRegistered(
+				name));
+	}
+
+	public void testMetricsDisabled() throws EXIException, IOException {
+		// no metrics by default
+		EXIFactory factory = DefaultEXIFactory.newInstance();
+		assertNull(factory.getCoderMetrics());
+		EXIBodyEncoder encoder = factory.createEXIBodyEncoder();
+		encoder.setOutputStream(new ByteArrayOutputStream());
+		encodeDocument(encoder, 10);
+	}
+}
@@ -26,6 +26,9 @@ package com.siemens.ct.exi.core.coder;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
 
 import javax.xml.namespace.QName;
 
@@ -33,10 +36,16 @@ import junit.framework.TestCase;
 
 import com.siemens.ct.exi.core.CodingMode;
 import com.siemens.ct.exi.core.Constants;
+import com.siemens.ct.exi.core.EXIBodyDecoder;
+import com.siemens.ct.exi.core.EXIBodyEncoder;
 import com.siemens.ct.exi.core.EXIFactory;
 import com.siemens.ct.exi.core.EncodingOptions;
 import com.siemens.ct.exi.core.FidelityOptions;
+import com.siemens.ct.exi.core.SchemaIdResolver;
 import com.siemens.ct.exi.core.exceptions.EXIException;
+import com.siemens.ct.exi.core.grammars.Grammars;
+import com.siemens.ct.exi.core.grammars.GrammarAutomatonCoreTest;
+import com.siemens.ct.exi.core.grammars.event.EventType;
 import com.siemens.ct.exi.core.helpers.DefaultEXIFactory;
 import com.siemens.ct.exi.core.io.channel.BitDecoderChannel;
 import com.siemens.ct.exi.core.io.channel.BitEncoderChannel;
@@ -235,6 +244,160 @@ public class EXIHeaderCoreTest extends TestCase {
 		_testOptions(ef);
 	}
 
+	protected void _testTemplate(EXIFactory ef) throws EXIException,
+			IOException {
+		EXIHeaderEncoder headerEncoder = new EXIHeaderEncoder();
+		EXIHeaderEncoder.HeaderTemplate template = headerEncoder
+				.createTemplate(ef);
+
+		ByteArrayOutputStream baos1 = new ByteArrayOutputStream();
+		BitEncoderChannel bec1 = new BitEncoderChannel(baos1);
+		headerEncoder.write(bec1, ef);
+		ByteArrayOutputStream baos2 = new ByteArrayOutputStream();
+		BitEncoderChannel bec2 = new BitEncoderChannel(baos2);
+		headerEncoder.write(bec2, template);
+		assertEquals(bec1.getLength() * 8 + bec1.getBitsInBuffer(),
+				template.getBitLength());
+		assertEquals(bec1.getLength(), bec2.getLength());
+		assertEquals(bec1.getBitsInBuffer(), bec2.getBitsInBuffer());
+		// continue with body bits
+		bec1.encodeNBitUnsignedInteger(5, 3);
+		bec2.encodeNBitUnsignedInteger(5, 3);
+		bec1.flush();
+		bec2.flush();
+		assertTrue(Arrays.equals(baos1.toByteArray(), baos2.toByteArray()));
+	}
+
+	public void testHeaderTemplate() throws EXIException, IOException {
+		EXIFactory ef = DefaultEXIFactory.newInstance();
+		_testTemplate(ef);
+		ef.getEncodingOptions().setOption(EncodingOptions.INCLUDE_OPTIONS);
+		_testTemplate(ef);
+		ef.getEncodingOptions().setOption(EncodingOptions.INCLUDE_COOKIE);
+		ef.setFidelityOptions(FidelityOptions.createAll());
+		ef.setValueMaxLength(12);
+		_testTemplate(ef);
+		ef.setCodingMode(CodingMode.BYTE_PACKED);
+		_testTemplate(ef);
+		ef.setCodingMode(CodingMode.COMPRESSION);
+		ef.setBlockSize(200);
+		_testTemplate(ef);
+	}
+
+	protected void _encodeMessage(EXIFactory ef, String localName,
+			OutputStream os) throws EXIException, IOException {
+		EXIBodyEncoder encoder = ef.createEXIStreamEncoder().encodeHeader(os);
+		encoder.encodeStartDocument();
+		encoder.encodeStartElement("", localName, null);
+		encoder.encodeEndElement();
+		encoder.encodeEndDocument();
+		encoder.flush();
+	}
+
+	protected EXIBodyDecoder _decodeMessage(EXIStreamDecoderImpl decoder,
+			String localName, InputStream is) throws EXIException,
+			IOException {
+		EXIBodyDecoder body = decoder.decodeHeader(is);
+		assertEquals(EventType.START_DOCUMENT, body.next());
+		body.decodeStartDocument();
+		body.next();
+		assertEquals(localName, body.decodeStartElement().getLocalName());
+		body.next();
+		body.decodeEndElement();
+		assertEquals(EventType.END_DOCUMENT, body.next());
+		body.decodeEndDocument();
+		return body;
+	}
+
+	public void testEXIOptionsCache() throws EXIException, IOException {
+		EXIFactory efA = DefaultEXIFactory.newInstance();
+		efA.setCodingMode(CodingMode.BYTE_PACKED);
+		efA.getEncodingOptions().setOption(EncodingOptions.INCLUDE_OPTIONS);
+		EXIFactory efB = DefaultEXIFactory.newInstance();
+		efB.getFidelityOptions().setFidelity(FidelityOptions.FEATURE_COMMENT,
+				true);
+		efB.getEncodingOptions().setOption(EncodingOptions.INCLUDE_OPTIONS);
+		efB.getEncodingOptions().setOption(EncodingOptions.INCLUDE_COOKIE);
+		EXIFactory efNone = DefaultEXIFactory.newInstance();
+
+		// several messages in one stream
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		_encodeMessage(efA, "a1", baos);
+		_encodeMessage(efA, "a2", baos);
+		_encodeMessage(efB, "b1", baos);
+		_encodeMessage(efNone, "n1", baos);
+		_encodeMessage(efA, "a3", baos);
+		_encodeMessage(efB, "b2", baos);
+		InputStream is = new ByteArrayInputStream(baos.toByteArray());
+
+		EXIFactory noOptionsFactory = DefaultEXIFactory.newInstance();
+		EXIOptionsCache cache = new EXIOptionsCache(noOptionsFactory);
+		EXIStreamDecoderImpl decoder = new EXIStreamDecoderImpl(
+				noOptionsFactory, cache);
+		EXIBodyDecoder a1 = _decodeMessage(decoder, "a1", is);
+		assertSame(a1, _decodeMessage(decoder, "a2", is));
+		EXIBodyDecoder b1 = _decodeMessage(decoder, "b1", is);
+		assertNotSame(a1, b1);
+		_decodeMessage(decoder, "n1", is);
+		// pooled decoders
+		assertSame(a1, _decodeMessage(decoder, "a3", is));
+		assertSame(b1, _decodeMessage(decoder, "b2", is));
+		assertEquals(2, cache.size());
+
+		try {
+			new EXIStreamDecoderImpl(DefaultEXIFactory.newInstance(), cache);
+			fail("Cache of other factory");
+		} catch (EXIException e) {
+			// expected
+		}
+	}
+
+	class SwitchingSchemaIdResolver implements SchemaIdResolver {
+		Grammars grammars;
+
+		public Grammars resolveSchemaId(String schemaId) throws EXIException {
+			assertEquals(grammars.getSchemaId(), schemaId);
+			return grammars;
+		}
+	}
+
+	public void testEXIOptionsCacheSchemaId() throws EXIException,
+			IOException {
+		SwitchingSchemaIdResolver sir = new SwitchingSchemaIdResolver();
+		sir.grammars = GrammarAutomatonCoreTest.createGrammars();
+		sir.grammars.setSchemaId("urn:schema");
+		EXIFactory ef = DefaultEXIFactory.newInstance();
+		ef.setGrammars(sir.grammars);
+		ef.getEncodingOptions().setOption(EncodingOptions.INCLUDE_OPTIONS);
+		ef.getEncodingOptions().setOption(EncodingOptions.INCLUDE_SCHEMA_ID);
+
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		for (int i = 0; i < 3; i++) {
+			_encodeMessage(ef, "x" + i, baos);
+		}
+		InputStream is = new ByteArrayInputStream(baos.toByteArray());
+
+		EXIFactory noOptionsFactory = DefaultEXIFactory.newInstance();
+		noOptionsFactory.setSchemaIdResolver(sir);
+		EXIOptionsCache cache = new EXIOptionsCache(noOptionsFactory);
+		EXIStreamDecoderImpl decoder = new EXIStreamDecoderImpl(
+				noOptionsFactory, cache);
+		EXIBodyDecoder x0 = _decodeMessage(decoder, "x0", is);
+		assertSame(x0, _decodeMessage(decoder, "x1", is));
+		assertEquals("urn:schema", cache.getEntries()[0].getSchemaId());
+
+		// resolver hands out other grammars
+		sir.grammars = GrammarAutomatonCoreTest.createGrammars();
+		sir.grammars.setSchemaId("urn:schema");
+		assertNotSame(x0, _decodeMessage(decoder, "x2", is));
+		assertEquals(1, cache.size());
+		assertSame(sir.grammars, cache.getEntries()[0].getFactory()
+				.getGrammars());
+
+		cache.invalidate("urn:schema");
+		assertEquals(0, cache.size());
+	}
+
 	// public void testEXIOptions7() throws EXIException, IOException {
 	// EXIFactory ef = DefaultEXIFactory.newInstance();
 	// Grammars g = GrammarFactory.newInstance().createXSDTypesOnlyGrammars();
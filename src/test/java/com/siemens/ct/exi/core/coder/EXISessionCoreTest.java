@@ -0,0 +1,224 @@
+/*
+ * Copyright (c) 2007-2018 Siemens AG
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * 
+ */
+
+package com.siemens.ct.exi.core.coder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import junit.framework.TestCase;
+
+import com.siemens.ct.exi.core.CodingMode;
+import com.siemens.ct.exi.core.EXIBodyDecoder;
+import com.siemens.ct.exi.core.EXIBodyEncoder;
+import com.siemens.ct.exi.core.EXIFactory;
+import com.siemens.ct.exi.core.EncodingOptions;
+import com.siemens.ct.exi.core.datatype.strings.StringDecoder;
+import com.siemens.ct.exi.core.datatype.strings.StringDecoderImpl;
+import com.siemens.ct.exi.core.exceptions.EXIException;
+import com.siemens.ct.exi.core.grammars.event.EventType;
+import com.siemens.ct.exi.core.helpers.DefaultEXIFactory;
+import com.siemens.ct.exi.core.values.StringValue;
+
+public class EXISessionCoreTest extends TestCase {
+
+	protected void _encodeMessage(EXISessionEncoder session, int id,
+			ByteArrayOutputStream os) throws EXIException, IOException {
+		EXIBodyEncoder encoder = session.encodeMessage(os);
+		encoder.encodeStartDocument();
+		encoder.encodeStartElement("urn:session", "request", null);
+		encoder.encodeAttribute("", "id", null, new StringValue("r" + id));
+		for (int i = 0; i < 20; i++) {
+			encoder.encodeStartElement("", "v" + (i % 5), null);
+			encoder.encodeCharacters(new StringValue("value " + i));
+			encoder.encodeEndElement();
+		}
+		encoder.encodeEndElement();
+		encoder.encodeEndDocument();
+		encoder.flush();
+	}
+
+	protected void _decodeMessage(EXIBodyDecoder decoder, int id)
+			throws EXIException, IOException {
+		assertEquals(EventType.START_DOCUMENT, decoder.next());
+		decoder.decodeStartDocument();
+		decoder.next();
+		assertEquals("request", decoder.decodeStartElement().getLocalName());
+		decoder.next();
+		assertEquals("id", decoder.decodeAttribute().getLocalName());
+		assertEquals("r" + id, decoder.getAttributeValue().toString());
+		for (int i = 0; i < 20; i++) {
+			decoder.next();
+			assertEquals("v" + (i % 5), decoder.decodeStartElement()
+					.getLocalName());
+			decoder.next();
+			assertEquals("value " + i, decoder.decodeCharacters().toString());
+			decoder.next();
+			decoder.decodeEndElement();
+		}
+		decoder.next();
+		decoder.decodeEndElement();
+		assertEquals(EventType.END_DOCUMENT, decoder.next());
+		decoder.decodeEndDocument();
+	}
+
+	protected void _testSession(CodingMode codingMode) throws EXIException,
+			IOException {
+		EXIFactory ef = DefaultEXIFactory.newInstance();
+		ef.setCodingMode(codingMode);
+		ef.getEncodingOptions().setOption(EncodingOptions.INCLUDE_OPTIONS);
+
+		EXISessionEncoder encoder = new EXISessionEncoder(ef);
+		int n = 6;
+		int[] sizes = new int[n];
+		int[] states = new int[n];
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		for (int i = 0; i < n; i++) {
+			if (i == 2) {
+				encoder.checkpoint();
+			} else if (i == 4) {
+				encoder.reset();
+			}
+			int start = baos.size();
+			_encodeMessage(encoder, i, baos);
+			sizes[i] = baos.size() - start;
+			states[i] = encoder.getStateSize();
+		}
+		// later messages refer to learned names and values
+		assertTrue(codingMode + ", " + sizes[1] + " < " + sizes[0],
+				sizes[1] < sizes[0]);
+		// reset message starts like the first one
+		assertEquals(states[0], states[4]);
+		if (codingMode != CodingMode.COMPRESSION) {
+			// Note: deflate output depends on the actual id values
+			assertEquals(sizes[1], sizes[3]);
+			assertEquals(sizes[0], sizes[4]);
+		}
+
+		EXIFactory df = DefaultEXIFactory.newInstance();
+		df.setCodingMode(codingMode);
+		EXISessionDecoder decoder = new EXISessionDecoder(df,
+				new ByteArrayInputStream(baos.toByteArray()));
+		int[] types = { EXISessionEncoder.MESSAGE_RESET,
+				EXISessionEncoder.MESSAGE_CONTINUE,
+				EXISessionEncoder.MESSAGE_CHECKPOINT,
+				EXISessionEncoder.MESSAGE_CONTINUE,
+				EXISessionEncoder.MESSAGE_RESET,
+				EXISessionEncoder.MESSAGE_CONTINUE };
+		for (int i = 0; i < n; i++) {
+			assertTrue(decoder.hasNextMessage());
+			_decodeMessage(decoder.nextMessage(), i);
+			assertEquals(types[i], decoder.getMessageType());
+			assertEquals(states[i], decoder.getStateSize());
+		}
+		assertFalse(decoder.hasNextMessage());
+		assertEquals(n, decoder.getNumberOfMessages());
+	}
+
+	public void testSessionBitPacked() throws EXIException, IOException {
+		_testSession(CodingMode.BIT_PACKED);
+	}
+
+	public void testSessionBytePacked() throws EXIException, IOException {
+		_testSession(CodingMode.BYTE_PACKED);
+	}
+
+	public void testSessionPreCompression() throws EXIException,
+			IOException {
+		_testSession(CodingMode.PRE_COMPRESSION);
+	}
+
+	public void testSessionCompression() throws EXIException, IOException {
+		_testSession(CodingMode.COMPRESSION);
+	}
+
+	public void testSessionMaxStateSize() throws EXIException, IOException {
+		EXIFactory ef = DefaultEXIFactory.newInstance();
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		_encodeMessage(new EXISessionEncoder(ef), 0, baos);
+		EXISessionDecoder probe = new EXISessionDecoder(ef,
+				new ByteArrayInputStream(baos.toByteArray()));
+		_decodeMessage(probe.nextMessage(), 0);
+		// each further message adds one string value
+		int maxStateSize = probe.getStateSize() + 1;
+
+		EXISessionEncoder encoder = new EXISessionEncoder(ef, maxStateSize);
+		baos.reset();
+		int n = 6;
+		for (int i = 0; i < n; i++) {
+			_encodeMessage(encoder, i, baos);
+			assertTrue(encoder.getStateSize() <= maxStateSize + 1);
+		}
+		byte[] bytes = baos.toByteArray();
+
+		EXISessionDecoder decoder = new EXISessionDecoder(ef,
+				new ByteArrayInputStream(bytes), maxStateSize);
+		int resets = 0;
+		for (int i = 0; i < n; i++) {
+			_decodeMessage(decoder.nextMessage(), i);
+			if (decoder.getMessageType() == EXISessionEncoder.MESSAGE_RESET) {
+				resets++;
+			}
+		}
+		// messages 0 and 3
+		assertEquals(2, resets);
+
+		// decoder with a lower cap does not follow
+		decoder = new EXISessionDecoder(ef, new ByteArrayInputStream(bytes),
+				maxStateSize - 1);
+		try {
+			for (int i = 0; i < n; i++) {
+				_decodeMessage(decoder.nextMessage(), i);
+			}
+			fail("Session out of sync not detected");
+		} catch (EXIException e) {
+			// expected
+		}
+	}
+
+	public void testSessionStringDecoderWithoutSize() throws EXIException {
+		EXIFactory ef = new DefaultEXIFactory() {
+			{
+				setDefaultValues(this);
+			}
+
+			@Override
+			public StringDecoder createStringDecoder() {
+				return new StringDecoderImpl(false) {
+					@Override
+					public int getValueContainerSize() {
+						throw new UnsupportedOperationException();
+					}
+				};
+			}
+		};
+		// fails up front, not in the middle of the session
+		try {
+			new EXISessionDecoder(ef, new ByteArrayInputStream(new byte[0]));
+			fail("String decoder without table size");
+		} catch (EXIException e) {
+			// expected
+		}
+	}
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright (c) 2007-2018 Siemens AG
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * 
+ */
+
+package com.siemens.ct.exi.core.coder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import junit.framework.TestCase;
+
+import com.siemens.ct.exi.core.CodingMode;
+import com.siemens.ct.exi.core.EXIBodyDecoder;
+import com.siemens.ct.exi.core.EXIBodyEncoder;
+import com.siemens.ct.exi.core.EXIFactory;
+import com.siemens.ct.exi.core.EncodingOptions;
+import com.siemens.ct.exi.core.exceptions.EXIException;
+import com.siemens.ct.exi.core.grammars.event.EventType;
+import com.siemens.ct.exi.core.helpers.DefaultEXIFactory;
+import com.siemens.ct.exi.core.io.FramingInputStream;
+import com.siemens.ct.exi.core.values.StringValue;
+
+public class EXIStreamDecoderSessionCoreTest extends TestCase {
+
+	// hands out a few bytes at a time and never reports available data
+	static class TrickleInputStream extends InputStream {
+		final InputStream is;
+
+		TrickleInputStream(byte[] bytes) {
+			this.is = new ByteArrayInputStream(bytes);
+		}
+
+		@Override
+		public int read() throws IOException {
+			return is.read();
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			return is.read(b, off, Math.min(len, 7));
+		}
+
+		@Override
+		public int available() {
+			return 0;
+		}
+	}
+
+	protected void _encodeDocument(EXIFactory ef, int id,
+			ByteArrayOutputStream os) throws EXIException, IOException {
+		EXIBodyEncoder encoder = ef.createEXIStreamEncoder().encodeHeader(os);
+		encoder.encodeStartDocument();
+		encoder.encodeStartElement("", "doc", null);
+		for (int i = 0; i < 150; i++) {
+			encoder.encodeStartElement("", "v", null);
+			encoder.encodeCharacters(new StringValue("value " + (i % 17)
+					+ "/" + id));
+			encoder.encodeEndElement();
+		}
+		encoder.encodeEndElement();
+		encoder.encodeEndDocument();
+		encoder.flush();
+	}
+
+	protected void _decodeDocument(EXIBodyDecoder decoder, int id)
+			throws EXIException, IOException {
+		assertEquals(EventType.START_DOCUMENT, decoder.next());
+		decoder.decodeStartDocument();
+		decoder.next();
+		assertEquals("doc", decoder.decodeStartElement().getLocalName());
+		for (int i = 0; i < 150; i++) {
+			decoder.next();
+			assertEquals("v", decoder.decodeStartElement().getLocalName());
+			decoder.next();
+			assertEquals("value " + (i % 17) + "/" + id, decoder
+					.decodeCharacters().toString());
+			decoder.next();
+			decoder.decodeEndElement();
+		}
+		decoder.next();
+		decoder.decodeEndElement();
+		assertEquals(EventType.END_DOCUMENT, decoder.next());
+		decoder.decodeEndDocument();
+	}
+
+	protected void _testSession(CodingMode codingMode) throws EXIException,
+			IOException {
+		EXIFactory ef = DefaultEXIFactory.newInstance();
+		ef.setCodingMode(codingMode);
+		ef.setBlockSize(100);
+		ef.getEncodingOptions().setOption(EncodingOptions.INCLUDE_OPTIONS);
+
+		int n = 4;
+		long[] ends = new long[n];
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		for (int i = 0; i < n; i++) {
+			_encodeDocument(ef, i, baos);
+			ends[i] = baos.size();
+		}
+		// trailing non-EXI data
+		baos.write("END".getBytes("US-ASCII"));
+
+		EXIStreamDecoderSession session = new EXIStreamDecoderSession(
+				DefaultEXIFactory.newInstance(), new TrickleInputStream(
+						baos.toByteArray()));
+		for (int i = 0; i < n; i++) {
+			assertTrue(session.hasNextDocument());
+			_decodeDocument(session.nextDocument(), i);
+			assertEquals(i == 0 ? 0 : ends[i - 1], session.getDocumentStart());
+			assertEquals(codingMode + ", document " + i, ends[i],
+					session.getPosition());
+		}
+		assertEquals(n, session.getNumberOfDocuments());
+
+		FramingInputStream is = session.getInputStream();
+		assertEquals('E', is.read());
+		assertEquals('N', is.read());
+		assertEquals('D', is.read());
+		assertFalse(session.hasNextDocument());
+	}
+
+	public void testSessionBitPacked() throws EXIException, IOException {
+		_testSession(CodingMode.BIT_PACKED);
+	}
+
+	public void testSessionBytePacked() throws EXIException, IOException {
+		_testSession(CodingMode.BYTE_PACKED);
+	}
+
+	public void testSessionPreCompression() throws EXIException,
+			IOException {
+		_testSession(CodingMode.PRE_COMPRESSION);
+	}
+
+	public void testSessionCompression() throws EXIException, IOException {
+		_testSession(CodingMode.COMPRESSION);
+	}
+
+	public void testMarkAndPushback() throws IOException {
+		byte[] bytes = new byte[100];
+		for (int i = 0; i < bytes.length; i++) {
+			bytes[i] = (byte) i;
+		}
+		FramingInputStream is = new FramingInputStream(new TrickleInputStream(
+				bytes), 4);
+		assertEquals(0, is.read());
+		is.mark(50);
+		byte[] b = new byte[40];
+		int len = 0;
+		while (len < b.length) {
+			len += is.read(b, len, b.length - len);
+		}
+		assertEquals(40, b[39]);
+		// grown buffer keeps marked bytes
+		is.reset();
+		assertEquals(1, is.getPosition());
+		assertEquals(1, is.read());
+		assertEquals(2, is.read(b, 0, 2));
+		is.unread(b, 0, 2);
+		assertEquals(2, is.read());
+		assertEquals(3, is.skip(3));
+		assertEquals(6, is.read());
+		assertEquals(7, is.getPosition());
+	}
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2007-2018 Siemens AG
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * 
+ */
+
+package com.siemens.ct.exi.core.coder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+
+import javax.xml.namespace.QName;
+
+import junit.framework.TestCase;
+
+import com.siemens.ct.exi.core.CodingMode;
+import com.siemens.ct.exi.core.EXIBodyEncoder;
+import com.siemens.ct.exi.core.EXIFactory;
+import com.siemens.ct.exi.core.EncodingOptions;
+import com.siemens.ct.exi.core.exceptions.EXIException;
+import com.siemens.ct.exi.core.grammars.event.EventType;
+import com.siemens.ct.exi.core.helpers.DefaultEXIFactory;
+import com.siemens.ct.exi.core.values.StringValue;
+
+public class EXIStreamProfilerCoreTest extends TestCase {
+
+	public EXIStreamProfilerCoreTest(String testName) {
+		super(testName);
+	}
+
+	protected static EXIStreamProfile.QNameProfile getQName(
+			EXIStreamProfile profile, String localName) {
+		for (EXIStreamProfile.QNameProfile qp : profile.getQNames()) {
+			if (qp.getQName().equals(new QName("", localName))) {
+				return qp;
+			}
+		}
+		fail("No profile for " + localName);
+		return null;
+	}
+
+	protected void _testProfile(CodingMode codingMode) throws EXIException,
+			IOException {
+		EXIFactory factory = DefaultEXIFactory.newInstance();
+		factory.setCodingMode(codingMode);
+		factory.getEncodingOptions().setOption(EncodingOptions.INCLUDE_OPTIONS);
+
+		final int records = 200;
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		EXIBodyEncoder encoder = factory.createEXIStreamEncoder()
+				.encodeHeader(baos);
+		CoderMetricsCoreTest.encodeDocument(encoder, records);
+		byte[] exi = baos.toByteArray();
+
+		EXIStreamProfiler profiler = new EXIStreamProfiler(
+				DefaultEXIFactory.newInstance());
+		EXIStreamProfile profile = profiler.profile(new ByteArrayInputStream(
+				exi));
+
+		assertEquals(codingMode, profile.getCodingMode());
+		assertEquals(exi.length * 8L, profile.getTotalBits());
+		assertTrue(profile.getHeaderBits() > 0);
+		assertTrue(profile.getPaddingBits() < 8);
+		assertEquals(profile.getTotalBits(), profile.getHeaderBits()
+				+ profile.getStructureBits() + profile.getContentBits()
+				+ profile.getPaddingBits());
+
+		long sumQNames = 0;
+		for (EXIStreamProfile.QNameProfile qp : profile.getQNames()) {
+			sumQNames += qp.getContentBits();
+		}
+		assertEquals(profile.getContentBits(), sumQNames);
+
+		// one literal, then mostly learned productions
+		EXIStreamProfile.QNameProfile record = getQName(profile, "record");
+		assertEquals(1, record.getLiterals());
+		assertEquals(records, record.getLiterals() + record.getIds()
+				+ record.getImplied());
+		assertTrue(record.getImplied() > record.getIds());
+		assertEquals(records, profile.getEventCodes(EventType.END_ELEMENT)
+				+ profile.getEventCodes(EventType.END_ELEMENT_UNDECLARED)
+				- records - 1);
+
+		EXIStreamProfile.QNameProfile id = getQName(profile, "id");
+		assertEquals(records, id.getValues());
+		assertEquals(records, id.getMisses());
+		assertTrue(id.getContentBits() > 0);
+
+		// 3 distinct strings
+		EXIStreamProfile.QNameProfile value = getQName(profile, "value");
+		assertEquals(records, value.getValues());
+		assertEquals(3, value.getMisses());
+		assertEquals(records - 3,
+				value.getLocalHits() + value.getGlobalHits());
+
+		ByteArrayOutputStream report = new ByteArrayOutputStream();
+		profile.writeReport(new PrintStream(report), 10);
+		assertTrue(report.toString().contains("record"));
+	}
+
+	public void testProfileBitPacked() throws EXIException, IOException {
+		_testProfile(CodingMode.BIT_PACKED);
+	}
+
+	public void testProfileBytePacked() throws EXIException, IOException {
+		_testProfile(CodingMode.BYTE_PACKED);
+	}
+
+	public void testProfilePreCompression() throws EXIException, IOException {
+		_testProfile(CodingMode.PRE_COMPRESSION);
+	}
+
+	public void testProfileCompression() throws EXIException, IOException {
+		EXIFactory factory = DefaultEXIFactory.newInstance();
+		factory.setCodingMode(CodingMode.COMPRESSION);
+		factory.getEncodingOptions().setOption(EncodingOptions.INCLUDE_OPTIONS);
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		CoderMetricsCoreTest.encodeDocument(factory.createEXIStreamEncoder()
+				.encodeHeader(baos), 10);
+
+		try {
+			new EXIStreamProfiler(DefaultEXIFactory.newInstance())
+					.profile(new ByteArrayInputStream(baos.toByteArray()));
+			fail("Compression cannot be profiled");
+		} catch (EXIException e) {
+			// expected
+		}
+	}
+}
@@ -0,0 +1,313 @@
+/*
+ * Copyright (c) 2007-2018 Siemens AG
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * 
+ */
+
+package com.siemens.ct.exi.core.coder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import javax.xml.namespace.QName;
+
+import junit.framework.TestCase;
+
+import com.siemens.ct.exi.core.CodingMode;
+import com.siemens.ct.exi.core.EXIBodyDecoder;
+import com.siemens.ct.exi.core.EXIBodyEncoder;
+import com.siemens.ct.exi.core.EXIFactory;
+import com.siemens.ct.exi.core.exceptions.EXIException;
+import com.siemens.ct.exi.core.grammars.GrammarAutomatonCoreTest;
+import com.siemens.ct.exi.core.grammars.event.EventType;
+import com.siemens.ct.exi.core.helpers.DefaultEXIFactory;
+import com.siemens.ct.exi.core.values.StringValue;
+import com.siemens.ct.exi.core.values.Value;
+
+public class ReorderedCoreTest extends TestCase {
+
+	static final QName ROOT = new QName("", "root");
+	static final QName RECORD = new QName("", "record");
+	static final QName ID = new QName("", "id");
+	static final QName TEMPERATURE = new QName("", "temperature");
+
+	static final int RECORDS = 250;
+
+	public ReorderedCoreTest(String testName) {
+		super(testName);
+	}
+
+	protected static EXIFactory getFactory(CodingMode codingMode) {
+		EXIFactory factory = DefaultEXIFactory.newInstance();
+		factory.setCodingMode(codingMode);
+		// several blocks with more than 100 values per channel
+		factory.setBlockSize(300);
+		return factory;
+	}
+
+	protected static byte[] encode(EXIFactory factory) throws EXIException,
+			IOException {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		EXIBodyEncoder encoder = factory.createEXIBodyEncoder();
+		encoder.setOutputStream(baos);
+		encoder.encodeStartDocument();
+		encoder.encodeStartElement(ROOT.getNamespaceURI(),
+				ROOT.getLocalPart(), null);
+		for (int i = 0; i < RECORDS; i++) {
+			encoder.encodeStartElement(RECORD.getNamespaceURI(),
+					RECORD.getLocalPart(), null);
+			encoder.encodeAttribute(ID.getNamespaceURI(), ID.getLocalPart(),
+					null, new StringValue("r" + i));
+			encoder.encodeStartElement(TEMPERATURE.getNamespaceURI(),
+					TEMPERATURE.getLocalPart(), null);
+			encoder.encodeCharacters(new StringValue(Integer.toString(i % 40)));
+			encoder.encodeEndElement();
+			encoder.encodeEndElement();
+		}
+		encoder.encodeEndElement();
+		encoder.encodeEndDocument();
+		encoder.flush();
+		return baos.toByteArray();
+	}
+
+	protected void _testEvents(CodingMode codingMode) throws EXIException,
+			IOException {
+		EXIFactory factory = getFactory(codingMode);
+		byte[] exi = encode(factory);
+
+		EXIBodyDecoder decoder = factory.createEXIBodyDecoder();
+		_testEvents(decoder, exi);
+	}
+
+	protected void _testEvents(EXIBodyDecoder decoder, byte[] exi)
+			throws EXIException, IOException {
+		decoder.setInputStream(new ByteArrayInputStream(exi));
+		int ids = 0;
+		int temperatures = 0;
+		EventType next;
+		while ((next = decoder.next()) != null) {
+			switch (next) {
+			case START_DOCUMENT:
+				decoder.decodeStartDocument();
+				break;
+			case START_ELEMENT_GENERIC:
+			case START_ELEMENT_GENERIC_UNDECLARED:
+			case START_ELEMENT:
+				decoder.decodeStartElement();
+				break;
+			case ATTRIBUTE_GENERIC_UNDECLARED:
+			case ATTRIBUTE:
+				decoder.decodeAttribute();
+				assertEquals("r" + ids++, decoder.getAttributeValue()
+						.toString());
+				break;
+			case CHARACTERS_GENERIC_UNDECLARED:
+			case CHARACTERS:
+				assertEquals(Integer.toString(temperatures++ % 40), decoder
+						.decodeCharacters().toString());
+				break;
+			case END_ELEMENT:
+			case END_ELEMENT_UNDECLARED:
+				decoder.decodeEndElement();
+				break;
+			case END_DOCUMENT:
+				decoder.decodeEndDocument();
+				break;
+			default:
+				fail("Unexpected event " + next);
+			}
+		}
+		assertEquals(RECORDS, ids);
+		assertEquals(RECORDS, temperatures);
+	}
+
+	public void testEventsCompression() throws EXIException, IOException {
+		_testEvents(CodingMode.COMPRESSION);
+	}
+
+	public void testEventsPreCompression() throws EXIException, IOException {
+		_testEvents(CodingMode.PRE_COMPRESSION);
+	}
+
+	protected void _testSmallBlocks(CodingMode codingMode)
+			throws EXIException, IOException {
+		EXIFactory factory = getFactory(codingMode);
+		// many blocks with a single stream each
+		factory.setBlockSize(7);
+		byte[] exi = encode(factory);
+
+		// block buffers are re-used across blocks and documents
+		EXIBodyDecoder decoder = factory.createEXIBodyDecoder();
+		_testEvents(decoder, exi);
+		_testEvents(decoder, exi);
+	}
+
+	public void testSmallBlocksCompression() throws EXIException, IOException {
+		_testSmallBlocks(CodingMode.COMPRESSION);
+	}
+
+	public void testSmallBlocksPreCompression() throws EXIException,
+			IOException {
+		_testSmallBlocks(CodingMode.PRE_COMPRESSION);
+	}
+
+	protected void _testProjection(CodingMode codingMode) throws EXIException,
+			IOException {
+		EXIFactory factory = getFactory(codingMode);
+		byte[] exi = encode(factory);
+
+		EXIBodyDecoderReordered decoder = (EXIBodyDecoderReordered) factory
+				.createEXIBodyDecoder();
+		decoder.setProjection(Arrays.asList(TEMPERATURE));
+		decoder.setInputStream(new ByteArrayInputStream(exi));
+
+		int blocks = 0;
+		int temperatures = 0;
+		while (decoder.nextBlock()) {
+			blocks++;
+			// not materialized
+			assertEquals(0, decoder.getColumn(ID).length);
+			long[] column = decoder.getLongColumn(TEMPERATURE);
+			for (int i = 0; i < column.length; i++) {
+				assertEquals(temperatures++ % 40, column[i]);
+			}
+		}
+		assertTrue(blocks > 1);
+		assertEquals(RECORDS, temperatures);
+	}
+
+	public void testProjectionCompression() throws EXIException, IOException {
+		_testProjection(CodingMode.COMPRESSION);
+	}
+
+	public void testProjectionPreCompression() throws EXIException,
+			IOException {
+		_testProjection(CodingMode.PRE_COMPRESSION);
+	}
+
+	static final QName VALUE = new QName("", "value");
+	static final String BIG = "123456789012345678901234567890";
+
+	static String getTypedValue(int i) {
+		// one integer beyond the range of long
+		return i == 200 ? BIG : Long.toString((i - 100) * 40000000000L);
+	}
+
+	protected void _testTypedProjection(CodingMode codingMode)
+			throws EXIException, IOException {
+		EXIFactory factory = getFactory(codingMode);
+		// schema-informed, typed integer values
+		factory.setGrammars(GrammarAutomatonCoreTest.createGrammars());
+
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		EXIBodyEncoder encoder = factory.createEXIBodyEncoder();
+		encoder.setOutputStream(baos);
+		encoder.encodeStartDocument();
+		encoder.encodeStartElement(ROOT.getNamespaceURI(),
+				ROOT.getLocalPart(), null);
+		for (int i = 0; i < RECORDS; i++) {
+			encoder.encodeStartElement(RECORD.getNamespaceURI(),
+					RECORD.getLocalPart(), null);
+			encoder.encodeAttribute(ID.getNamespaceURI(), ID.getLocalPart(),
+					null, new StringValue("r" + i));
+			encoder.encodeStartElement(VALUE.getNamespaceURI(),
+					VALUE.getLocalPart(), null);
+			encoder.encodeCharacters(new StringValue(getTypedValue(i)));
+			encoder.encodeEndElement();
+			encoder.encodeEndElement();
+		}
+		encoder.encodeEndElement();
+		encoder.encodeEndDocument();
+		encoder.flush();
+		byte[] exi = baos.toByteArray();
+
+		EXIBodyDecoderReordered decoder = (EXIBodyDecoderReordered) factory
+				.createEXIBodyDecoder();
+		decoder.setProjection(Arrays.asList(VALUE));
+		decoder.setInputStream(new ByteArrayInputStream(exi));
+
+		int values = 0;
+		while (decoder.nextBlock()) {
+			Value[] column = decoder.getColumn(VALUE);
+			double[] doubles = decoder.getDoubleColumn(VALUE);
+			long[] longs = null;
+			try {
+				longs = decoder.getLongColumn(VALUE);
+			} catch (EXIException e) {
+				// block with the big integer value
+			}
+			for (int i = 0; i < column.length; i++, values++) {
+				String s = getTypedValue(values);
+				assertEquals(s, column[i].toString());
+				assertEquals(Double.parseDouble(s), doubles[i], 0.0d);
+				if (s == BIG) {
+					assertNull(longs);
+				} else if (longs != null) {
+					assertEquals(Long.parseLong(s), longs[i]);
+				}
+			}
+		}
+		assertEquals(RECORDS, values);
+
+		// events of a typed projection
+		decoder.setInputStream(new ByteArrayInputStream(exi));
+		values = 0;
+		EventType next;
+		while ((next = decoder.next()) != null) {
+			switch (next) {
+			case CHARACTERS:
+				assertEquals(getTypedValue(values++), decoder
+						.decodeCharacters().toString());
+				break;
+			case START_DOCUMENT:
+				decoder.decodeStartDocument();
+				break;
+			case START_ELEMENT:
+				decoder.decodeStartElement();
+				break;
+			case ATTRIBUTE:
+				decoder.decodeAttribute();
+				break;
+			case END_ELEMENT:
+				decoder.decodeEndElement();
+				break;
+			case END_DOCUMENT:
+				decoder.decodeEndDocument();
+				break;
+			default:
+				fail("Unexpected event " + next);
+			}
+		}
+		assertEquals(RECORDS, values);
+	}
+
+	public void testTypedProjectionCompression() throws EXIException,
+			IOException {
+		_testTypedProjection(CodingMode.COMPRESSION);
+	}
+
+	public void testTypedProjectionPreCompression() throws EXIException,
+			IOException {
+		_testTypedProjection(CodingMode.PRE_COMPRESSION);
+	}
+
+}
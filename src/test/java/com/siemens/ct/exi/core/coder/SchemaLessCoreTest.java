@@ -28,6 +28,9 @@ import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 import javax.xml.namespace.QName;
 
@@ -38,6 +41,7 @@ import org.xml.sax.SAXException;
 import com.siemens.ct.exi.core.CodingMode;
 import com.siemens.ct.exi.core.EXIBodyDecoder;
 import com.siemens.ct.exi.core.EXIBodyEncoder;
+import com.siemens.ct.exi.core.EXIEventVisitor;
 import com.siemens.ct.exi.core.EXIFactory;
 import com.siemens.ct.exi.core.EXIStreamDecoder;
 import com.siemens.ct.exi.core.EXIStreamEncoder;
@@ -47,6 +51,7 @@ import com.siemens.ct.exi.core.context.QNameContext;
 import com.siemens.ct.exi.core.exceptions.EXIException;
 import com.siemens.ct.exi.core.grammars.event.EventType;
 import com.siemens.ct.exi.core.helpers.DefaultEXIFactory;
+import com.siemens.ct.exi.core.values.QNameValue;
 import com.siemens.ct.exi.core.values.StringValue;
 import com.siemens.ct.exi.core.values.Value;
 
@@ -997,4 +1002,567 @@ public class SchemaLessCoreTest extends TestCase {
 		bodyDecoder.decodeEndDocument();
 	}
 
-}
\ No newline at end of file
+	protected void _testSkipElement(CodingMode codingMode) throws EXIException,
+			IOException {
+		EXIFactory factory = DefaultEXIFactory.newInstance();
+		factory.setCodingMode(codingMode);
+
+		QName root = new QName("", "root");
+		QName header = new QName("", "header");
+		QName payload = new QName("", "payload");
+		QName item = new QName("", "item");
+		QName id = new QName("", "id");
+		QName trailer = new QName("", "trailer");
+
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		EXIBodyEncoder encoder = factory.createEXIBodyEncoder();
+		encoder.setOutputStream(baos);
+		encoder.encodeStartDocument();
+		encoder.encodeStartElement(root.getNamespaceURI(),
+				root.getLocalPart(), null);
+		encoder.encodeStartElement(header.getNamespaceURI(),
+				header.getLocalPart(), null);
+		encoder.encodeCharacters(new StringValue("route-a"));
+		encoder.encodeEndElement();
+		encoder.encodeStartElement(payload.getNamespaceURI(),
+				payload.getLocalPart(), null);
+		for (int i = 0; i < 20; i++) {
+			encoder.encodeStartElement(item.getNamespaceURI(),
+					item.getLocalPart(), null);
+			encoder.encodeAttribute(id.getNamespaceURI(), id.getLocalPart(),
+					null, new StringValue("i" + (i % 5)));
+			encoder.encodeCharacters(new StringValue("payload " + i));
+			encoder.encodeEndElement();
+		}
+		encoder.encodeEndElement();
+		encoder.encodeStartElement(trailer.getNamespaceURI(),
+				trailer.getLocalPart(), null);
+		// global value hit of a string skipped before
+		encoder.encodeCharacters(new StringValue("payload 7"));
+		encoder.encodeEndElement();
+		encoder.encodeEndElement();
+		encoder.encodeEndDocument();
+		encoder.flush();
+
+		EXIBodyDecoder decoder = factory.createEXIBodyDecoder();
+		decoder.setInputStream(new ByteArrayInputStream(baos.toByteArray()));
+		assertTrue(decoder.next() == EventType.START_DOCUMENT);
+		decoder.decodeStartDocument();
+		assertTrue(decoder.next() == EventType.START_ELEMENT_GENERIC);
+		assertEquals(root, decoder.decodeStartElement().getQName());
+		assertTrue(decoder.next() == EventType.START_ELEMENT_GENERIC_UNDECLARED);
+		assertEquals(header, decoder.decodeStartElement().getQName());
+		assertTrue(decoder.next() == EventType.CHARACTERS_GENERIC_UNDECLARED);
+		assertEquals("route-a", decoder.decodeCharacters().toString());
+		assertTrue(decoder.next() == EventType.END_ELEMENT);
+		decoder.decodeEndElement();
+		assertTrue(decoder.next() == EventType.START_ELEMENT_GENERIC_UNDECLARED);
+		assertEquals(payload, decoder.decodeStartElement().getQName());
+		decoder.skipElement();
+		assertTrue(decoder.next() == EventType.START_ELEMENT_GENERIC_UNDECLARED);
+		assertEquals(trailer, decoder.decodeStartElement().getQName());
+		assertTrue(decoder.next() == EventType.CHARACTERS_GENERIC_UNDECLARED);
+		assertEquals("payload 7", decoder.decodeCharacters().toString());
+		assertTrue(decoder.next() == EventType.END_ELEMENT);
+		decoder.decodeEndElement();
+		EventType et = decoder.next();
+		assertTrue(et == EventType.END_ELEMENT
+				|| et == EventType.END_ELEMENT_UNDECLARED);
+		assertEquals(root, decoder.decodeEndElement().getQName());
+		assertTrue(decoder.next() == EventType.END_DOCUMENT);
+		decoder.decodeEndDocument();
+	}
+
+	public void testSkipElementBitPacked() throws EXIException, IOException {
+		_testSkipElement(CodingMode.BIT_PACKED);
+	}
+
+	public void testSkipElementBytePacked() throws EXIException, IOException {
+		_testSkipElement(CodingMode.BYTE_PACKED);
+	}
+
+	public void testSkipElementCompression() throws EXIException, IOException {
+		_testSkipElement(CodingMode.COMPRESSION);
+	}
+
+	// records events, skips "payload" and stops once at "trailer"
+	static class RecordingVisitor implements EXIEventVisitor {
+		final List<String> events = new ArrayList<String>();
+		boolean stopped;
+
+		public int startDocument() {
+			events.add("SD");
+			return CONTINUE;
+		}
+
+		public void endDocument() {
+			events.add("ED");
+		}
+
+		public int startElement(QNameContext qnc, String prefix) {
+			events.add("SE " + prefix + ":" + qnc.getLocalName());
+			if (qnc.getLocalName().equals("payload")) {
+				return SKIP_SUBTREE;
+			} else if (qnc.getLocalName().equals("trailer") && !stopped) {
+				stopped = true;
+				return STOP;
+			}
+			return CONTINUE;
+		}
+
+		public int endElement(QNameContext qnc) {
+			events.add("EE " + qnc.getLocalName());
+			return CONTINUE;
+		}
+
+		public void namespaceDeclaration(NamespaceDeclaration nsDecl) {
+			events.add("NS " + nsDecl.prefix + "=" + nsDecl.namespaceURI);
+		}
+
+		public int attribute(QNameContext qnc, String prefix, Value value) {
+			events.add("AT " + qnc.getLocalName() + "=" + value);
+			return CONTINUE;
+		}
+
+		public int characters(Value value) {
+			events.add("CH " + value);
+			return CONTINUE;
+		}
+
+		public int comment(char[] chars) {
+			events.add("CM " + new String(chars));
+			return CONTINUE;
+		}
+	}
+
+	protected void _testDecodeVisitor(CodingMode codingMode)
+			throws EXIException, IOException {
+		EXIFactory factory = DefaultEXIFactory.newInstance();
+		factory.setCodingMode(codingMode);
+		factory.getFidelityOptions().setFidelity(
+				FidelityOptions.FEATURE_PREFIX, true);
+		factory.getFidelityOptions().setFidelity(
+				FidelityOptions.FEATURE_COMMENT, true);
+
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		EXIBodyEncoder encoder = factory.createEXIBodyEncoder();
+		encoder.setOutputStream(baos);
+		encoder.encodeStartDocument();
+		encoder.encodeStartElement("urn:foo", "root", "foo");
+		encoder.encodeNamespaceDeclaration("urn:foo", "foo");
+		encoder.encodeAttribute("", "version", null, new StringValue("1"));
+		encoder.encodeStartElement("urn:foo", "payload", "foo");
+		for (int i = 0; i < 20; i++) {
+			encoder.encodeStartElement("urn:foo", "item", "foo");
+			encoder.encodeAttribute("", "id", null, new StringValue("i" + i));
+			encoder.encodeCharacters(new StringValue("payload " + i));
+			encoder.encodeEndElement();
+		}
+		encoder.encodeEndElement();
+		encoder.encodeComment("trailer follows".toCharArray(), 0, 15);
+		encoder.encodeStartElement("urn:foo", "trailer", "foo");
+		encoder.encodeCharacters(new StringValue("payload 7"));
+		encoder.encodeEndElement();
+		encoder.encodeEndElement();
+		encoder.encodeEndDocument();
+		encoder.flush();
+
+		EXIBodyDecoder decoder = factory.createEXIBodyDecoder();
+		decoder.setInputStream(new ByteArrayInputStream(baos.toByteArray()));
+		RecordingVisitor visitor = new RecordingVisitor();
+		assertFalse(decoder.decode(visitor));
+		assertEquals("SE foo:trailer",
+				visitor.events.get(visitor.events.size() - 1));
+		assertTrue(decoder.decode(visitor));
+		// decoded already
+		assertTrue(decoder.decode(visitor));
+
+		List<String> expected = Arrays.asList("SD", "NS foo=urn:foo",
+				"SE foo:root", "AT version=1", "SE foo:payload",
+				"CM trailer follows", "SE foo:trailer", "CH payload 7",
+				"EE trailer", "EE root", "ED");
+		assertEquals(codingMode.toString(), expected, visitor.events);
+	}
+
+	public void testDecodeVisitorBitPacked() throws EXIException,
+			IOException {
+		_testDecodeVisitor(CodingMode.BIT_PACKED);
+	}
+
+	public void testDecodeVisitorBytePacked() throws EXIException,
+			IOException {
+		_testDecodeVisitor(CodingMode.BYTE_PACKED);
+	}
+
+	public void testDecodeVisitorCompression() throws EXIException,
+			IOException {
+		_testDecodeVisitor(CodingMode.COMPRESSION);
+	}
+
+	protected byte[] _encodeCharacters(EXIFactory factory, boolean chunks)
+			throws EXIException, IOException {
+		// whitespace, surrogate pair and content split over several chunks
+		String[][] contents = { { "value ", "1" }, { "\n  ", "\t" },
+				{ "x\uD83D", "\uDE00y" }, { "value 1" }, { "" } };
+
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		EXIBodyEncoder encoder = factory.createEXIBodyEncoder();
+		encoder.setOutputStream(baos);
+		encoder.encodeStartDocument();
+		encoder.encodeStartElement("", "root", null);
+		for (int i = 0; i < contents.length; i++) {
+			encoder.encodeStartElement("", "e" + (i % 2), null);
+			for (String chunk : contents[i]) {
+				if (chunks) {
+					// chunk in the middle of a larger array
+					char[] ch = ("##" + chunk + "##").toCharArray();
+					encoder.encodeCharacters(ch, 2, chunk.length());
+					// chunks are copied, caller may reuse its array
+					Arrays.fill(ch, '!');
+				} else {
+					encoder.encodeCharacters(new StringValue(chunk));
+				}
+			}
+			encoder.encodeEndElement();
+			// whitespace between elements (complex content)
+			if (chunks) {
+				encoder.encodeCharacters("\n ".toCharArray(), 0, 2);
+			} else {
+				encoder.encodeCharacters(new StringValue("\n"));
+			}
+		}
+		char[] cm = "-comment-".toCharArray();
+		encoder.encodeComment(cm, 1, 7);
+		encoder.encodeEndElement();
+		encoder.encodeEndDocument();
+		encoder.flush();
+		return baos.toByteArray();
+	}
+
+	protected void _testCharacterChunks(CodingMode codingMode)
+			throws EXIException, IOException {
+		EXIFactory factory = DefaultEXIFactory.newInstance();
+		factory.setCodingMode(codingMode);
+		factory.getFidelityOptions().setFidelity(
+				FidelityOptions.FEATURE_COMMENT, true);
+		assertTrue(codingMode.toString(), Arrays.equals(
+				_encodeCharacters(factory, false),
+				_encodeCharacters(factory, true)));
+
+		EXIBodyDecoder decoder = factory.createEXIBodyDecoder();
+		decoder.setInputStream(new ByteArrayInputStream(_encodeCharacters(
+				factory, true)));
+		RecordingVisitor visitor = new RecordingVisitor();
+		decoder.decode(visitor);
+		assertTrue(visitor.events.contains("CH value 1"));
+		assertTrue(visitor.events.contains("CH x\uD83D\uDE00y"));
+		assertTrue(visitor.events.contains("CM comment"));
+	}
+
+	public void testCharacterChunksBitPacked() throws EXIException,
+			IOException {
+		_testCharacterChunks(CodingMode.BIT_PACKED);
+	}
+
+	public void testCharacterChunksBytePacked() throws EXIException,
+			IOException {
+		_testCharacterChunks(CodingMode.BYTE_PACKED);
+	}
+
+	public void testCharacterChunksCompression() throws EXIException,
+			IOException {
+		_testCharacterChunks(CodingMode.COMPRESSION);
+	}
+
+	public void testCharacterChunksHitsDoNotAllocate() throws EXIException,
+			IOException {
+		EXIFactory factory = DefaultEXIFactory.newInstance();
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		EXIBodyEncoder encoder = factory.createEXIBodyEncoder();
+		encoder.setOutputStream(baos);
+		encoder.encodeStartDocument();
+		encoder.encodeStartElement("", "root", null);
+		char[] ch = "value".toCharArray();
+		int n = 2000;
+		long allocated = 0;
+		for (int i = 0; i < n; i++) {
+			if (i == n / 2) {
+				allocated = getThreadAllocatedBytes();
+			}
+			encoder.encodeStartElement("", "v", null);
+			encoder.encodeCharacters(ch, 0, ch.length);
+			encoder.encodeEndElement();
+		}
+		allocated = getThreadAllocatedBytes() - allocated;
+		if (getThreadAllocatedBytes() >= 0) {
+			// no Strings for string table hits
+			assertTrue(allocated + " bytes", allocated < (n / 2) * 8);
+		}
+		encoder.encodeEndElement();
+		encoder.encodeEndDocument();
+		encoder.flush();
+	}
+
+	public void testDeepNamespaceScopes() throws EXIException, IOException {
+		EXIFactory exiFactory = DefaultEXIFactory.newInstance();
+		exiFactory.getFidelityOptions().setFidelity(
+				FidelityOptions.FEATURE_PREFIX, true);
+		int depth = 60;
+
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		EXIBodyEncoder encoder = exiFactory.createEXIBodyEncoder();
+		for (int run = 0; run < 2; run++) {
+			baos.reset();
+			encoder.setOutputStream(baos);
+			encoder.encodeStartDocument();
+			for (int i = 0; i < depth; i++) {
+				encoder.encodeStartElement("urn:l" + i, "e", "p" + i);
+				encoder.encodeNamespaceDeclaration("urn:l" + i, "p" + i);
+				if (i == depth / 2) {
+					// shadow outermost prefix
+					encoder.encodeNamespaceDeclaration("urn:shadow", "p0");
+				}
+				// resolved against namespace context
+				encoder.encodeAttributeXsiType(new StringValue("p0:t"), "xsi");
+			}
+			for (int i = 0; i < depth; i++) {
+				encoder.encodeEndElement();
+			}
+			encoder.encodeEndDocument();
+			encoder.flush();
+		}
+
+		EXIBodyDecoder decoder = exiFactory.createEXIBodyDecoder();
+		decoder.setInputStream(new ByteArrayInputStream(baos.toByteArray()));
+		assertTrue(decoder.next() == EventType.START_DOCUMENT);
+		decoder.decodeStartDocument();
+		for (int i = 0; i < depth; i++) {
+			EventType et = decoder.next();
+			assertTrue(et == EventType.START_ELEMENT_GENERIC
+					|| et == EventType.START_ELEMENT_GENERIC_UNDECLARED);
+			assertEquals("urn:l" + i, decoder.decodeStartElement()
+					.getNamespaceUri());
+			while ((et = decoder.next()) == EventType.NAMESPACE_DECLARATION) {
+				decoder.decodeNamespaceDeclaration();
+			}
+			assertEquals("p" + i, decoder.getElementPrefix());
+			// xsi:type is learned as regular attribute in built-in grammars
+			assertEquals(EventType.ATTRIBUTE_GENERIC_UNDECLARED, et);
+			assertEquals("type", decoder.decodeAttribute().getLocalName());
+			assertEquals(i < depth / 2 ? "urn:l0" : "urn:shadow",
+					((QNameValue) decoder.getAttributeValue())
+							.getNamespaceUri());
+		}
+	}
+
+	protected void _encodeSiblings(EXIBodyEncoder encoder, int siblings)
+			throws EXIException, IOException {
+		encoder.encodeStartDocument();
+		encoder.encodeStartElement("", "root", "");
+		encoder.encodeNamespaceDeclaration("urn:x", "x");
+		for (int i = 0; i < siblings; i++) {
+			encoder.encodeStartElement("urn:x", (i & 1) == 0 ? "a" : "b", "x");
+			encoder.encodeStartElement("urn:x", "c", "x");
+			encoder.encodeEndElement();
+			encoder.encodeEndElement();
+		}
+		encoder.encodeEndElement();
+		encoder.encodeEndDocument();
+		encoder.flush();
+	}
+
+	public void testElementContextRecycling() throws EXIException,
+			IOException {
+		EXIFactory exiFactory = DefaultEXIFactory.newInstance();
+		exiFactory.getFidelityOptions().setFidelity(
+				FidelityOptions.FEATURE_PREFIX, true);
+		int siblings = 20000;
+
+		// sized up front, buffer growth is not counted
+		ByteArrayOutputStream baos = new ByteArrayOutputStream(1 << 20);
+		EXIBodyEncoder encoder = exiFactory.createEXIBodyEncoder();
+		encoder.setOutputStream(baos);
+		_encodeSiblings(encoder, 10);
+		byte[] warmUp = baos.toByteArray();
+		baos.reset();
+		long bytes = getThreadAllocatedBytes();
+		encoder.setOutputStream(baos);
+		_encodeSiblings(encoder, siblings);
+		long allocated = getThreadAllocatedBytes() - bytes;
+		byte[] exi = baos.toByteArray();
+
+		EXIBodyDecoder decoder = exiFactory.createEXIBodyDecoder();
+		decoder.setInputStream(new ByteArrayInputStream(warmUp));
+		_decodeSiblings(decoder, 10);
+		decoder.setInputStream(new ByteArrayInputStream(exi));
+		long bytesDecoder = getThreadAllocatedBytes();
+		_decodeSiblings(decoder, siblings);
+		long allocatedDecoder = getThreadAllocatedBytes() - bytesDecoder;
+
+		// re-used frames do not leak state of previous siblings
+		baos.reset();
+		encoder.setOutputStream(baos);
+		_encodeSiblings(encoder, 3);
+		decoder.setInputStream(new ByteArrayInputStream(baos.toByteArray()));
+		assertTrue(decoder.next() == EventType.START_DOCUMENT);
+		decoder.decodeStartDocument();
+		decoder.next();
+		decoder.decodeStartElement();
+		assertTrue(decoder.next() == EventType.NAMESPACE_DECLARATION);
+		decoder.decodeNamespaceDeclaration();
+		assertEquals(1, decoder.getDeclaredPrefixDeclarations().size());
+		AbstractEXIBodyCoder coder = (AbstractEXIBodyCoder) decoder;
+		Object frame = null;
+		for (int i = 0; i < 3; i++) {
+			decoder.next();
+			assertEquals((i & 1) == 0 ? "a" : "b", decoder
+					.decodeStartElement().getLocalName());
+			assertNull(decoder.getDeclaredPrefixDeclarations());
+			assertEquals("x:" + ((i & 1) == 0 ? "a" : "b"),
+					decoder.getElementQNameAsString());
+			if (frame == null) {
+				frame = coder.getElementContext();
+			} else {
+				assertSame(frame, coder.getElementContext());
+			}
+			decoder.next();
+			assertEquals("c", decoder.decodeStartElement().getLocalName());
+			assertEquals("x:c", decoder.getElementQNameAsString());
+			decoder.next();
+			assertEquals("c", decoder.decodeEndElement().getLocalName());
+			decoder.next();
+			decoder.decodeEndElement();
+		}
+
+		if (bytes >= 0) {
+			// steady state: no allocation per element, only a fixed amount
+			// per document (less than one object per 32 elements)
+			assertTrue("Encoder allocated " + allocated + " bytes for "
+					+ (2 * siblings) + " elements", allocated < siblings);
+			assertTrue("Decoder allocated " + allocatedDecoder
+					+ " bytes for " + (2 * siblings) + " elements",
+					allocatedDecoder < siblings);
+		}
+	}
+
+	protected void _decodeSiblings(EXIBodyDecoder decoder, int siblings)
+			throws EXIException, IOException {
+		decoder.next();
+		decoder.decodeStartDocument();
+		decoder.next();
+		decoder.decodeStartElement();
+		decoder.next();
+		decoder.decodeNamespaceDeclaration();
+		int length = 0;
+		for (int i = 0; i < siblings; i++) {
+			decoder.next();
+			decoder.decodeStartElement();
+			length += decoder.getElementQNameAsString().length();
+			decoder.next();
+			decoder.decodeStartElement();
+			length += decoder.getElementQNameAsString().length();
+			decoder.next();
+			decoder.decodeEndElement();
+			decoder.next();
+			decoder.decodeEndElement();
+		}
+		decoder.next();
+		decoder.decodeEndElement();
+		decoder.next();
+		decoder.decodeEndDocument();
+		assertEquals(2 * siblings * 3, length);
+	}
+
+	private static long getThreadAllocatedBytes() {
+		java.lang.management.ThreadMXBean tmx = java.lang.management.ManagementFactory
+				.getThreadMXBean();
+		if (tmx instanceof com.sun.management.ThreadMXBean) {
+			com.sun.management.ThreadMXBean stmx = (com.sun.management.ThreadMXBean) tmx;
+			if (stmx.isThreadAllocatedMemorySupported()
+					&& stmx.isThreadAllocatedMemoryEnabled()) {
+				return stmx.getThreadAllocatedBytes(Thread.currentThread()
+						.getId());
+			}
+		}
+		return -1;
+	}
+
+	protected void _encodeVocabulary(EXIBodyEncoder encoder, String tag,
+			int uris, int names) throws EXIException, IOException {
+		encoder.encodeStartDocument();
+		encoder.encodeStartElement("", "root", "");
+		for (int i = 0; i < uris; i++) {
+			String uri = "urn:" + tag + i;
+			for (int k = 0; k < names; k++) {
+				// second pass hits existing uri, name and prefix entries
+				for (int pass = 0; pass < 2; pass++) {
+					encoder.encodeStartElement(uri, "n" + k, "p" + i);
+					if (k == 0 && pass == 0) {
+						encoder.encodeNamespaceDeclaration(uri, "p" + i);
+					}
+					encoder.encodeAttribute(uri, "a" + k, "p" + i,
+							new StringValue("v"));
+					encoder.encodeEndElement();
+				}
+			}
+		}
+		encoder.encodeEndElement();
+		encoder.encodeEndDocument();
+		encoder.flush();
+	}
+
+	public void testLargeVocabulary() throws EXIException, IOException {
+		EXIFactory exiFactory = DefaultEXIFactory.newInstance();
+		exiFactory.getFidelityOptions().setFidelity(
+				FidelityOptions.FEATURE_PREFIX, true);
+		int uris = 150;
+		int names = 20;
+
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		EXIBodyEncoder encoder = exiFactory.createEXIBodyEncoder();
+		encoder.setOutputStream(baos);
+		_encodeVocabulary(encoder, "a", uris, names);
+		byte[] exiA = baos.toByteArray();
+
+		// re-used encoder must not see entries of the previous run
+		baos = new ByteArrayOutputStream();
+		encoder.setOutputStream(baos);
+		_encodeVocabulary(encoder, "b", uris, names);
+		byte[] exiB = baos.toByteArray();
+		baos = new ByteArrayOutputStream();
+		EXIBodyEncoder encoderFresh = exiFactory.createEXIBodyEncoder();
+		encoderFresh.setOutputStream(baos);
+		_encodeVocabulary(encoderFresh, "b", uris, names);
+		assertTrue(Arrays.equals(baos.toByteArray(), exiB));
+		assertEquals(exiA.length, exiB.length);
+
+		EXIBodyDecoder decoder = exiFactory.createEXIBodyDecoder();
+		decoder.setInputStream(new ByteArrayInputStream(exiB));
+		assertTrue(decoder.next() == EventType.START_DOCUMENT);
+		decoder.decodeStartDocument();
+		assertTrue(decoder.next() == EventType.START_ELEMENT_GENERIC);
+		decoder.decodeStartElement();
+		int elements = 0;
+		EventType et;
+		while ((et = decoder.next()) != EventType.END_ELEMENT
+				&& et != EventType.END_ELEMENT_UNDECLARED) {
+			QNameContext se = decoder.decodeStartElement();
+			int i = elements / (2 * names);
+			assertEquals("urn:b" + i, se.getNamespaceUri());
+			assertEquals("n" + ((elements / 2) % names), se.getLocalName());
+			if (decoder.next() == EventType.NAMESPACE_DECLARATION) {
+				decoder.decodeNamespaceDeclaration();
+				decoder.next();
+			}
+			assertEquals("p" + i, decoder.getElementPrefix());
+			QNameContext at = decoder.decodeAttribute();
+			assertEquals("a" + ((elements / 2) % names), at.getLocalName());
+			assertEquals("p" + i, decoder.getAttributePrefix());
+			decoder.next();
+			decoder.decodeEndElement();
+			elements++;
+		}
+		assertEquals(uris * names * 2, elements);
+	}
+
+}
@@ -0,0 +1,457 @@
+/*
+ * Copyright (c) 2007-2018 Siemens AG
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * 
+ */
+
+package com.siemens.ct.exi.core.coder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.xml.namespace.QName;
+
+import junit.framework.TestCase;
+
+import com.siemens.ct.exi.core.CodingMode;
+import com.siemens.ct.exi.core.EXIBodyDecoder;
+import com.siemens.ct.exi.core.EXIBodyEncoder;
+import com.siemens.ct.exi.core.EXIFactory;
+import com.siemens.ct.exi.core.EXIStreamEncoder;
+import com.siemens.ct.exi.core.EncodingOptions;
+import com.siemens.ct.exi.core.FidelityOptions;
+import com.siemens.ct.exi.core.SelfContainedContent;
+import com.siemens.ct.exi.core.SelfContainedFragmentConsumer;
+import com.siemens.ct.exi.core.exceptions.EXIException;
+import com.siemens.ct.exi.core.grammars.event.EventType;
+import com.siemens.ct.exi.core.helpers.DefaultEXIFactory;
+import com.siemens.ct.exi.core.helpers.SelfContainedIndex;
+import com.siemens.ct.exi.core.io.channel.BitEncoderChannel;
+import com.siemens.ct.exi.core.io.channel.ByteEncoderChannel;
+import com.siemens.ct.exi.core.values.StringValue;
+
+public class SelfContainedCoreTest extends TestCase {
+
+	static final QName BATCH = new QName("urn:batch", "batch");
+	static final QName RECORD = new QName("urn:batch", "record");
+	static final QName ID = new QName("", "id");
+	static final QName VALUE = new QName("", "value");
+
+	public SelfContainedCoreTest(String testName) {
+		super(testName);
+	}
+
+	protected static EXIFactory getFactory(CodingMode codingMode)
+			throws EXIException {
+		EXIFactory factory = DefaultEXIFactory.newInstance();
+		factory.getFidelityOptions().setFidelity(FidelityOptions.FEATURE_SC,
+				true);
+		factory.setCodingMode(codingMode);
+		return factory;
+	}
+
+	protected static void encodeRecord(EXIBodyEncoder encoder, int i)
+			throws EXIException, IOException {
+		encoder.encodeStartElement(RECORD.getNamespaceURI(),
+				RECORD.getLocalPart(), null);
+		encodeRecordContent(encoder, i);
+		encoder.encodeEndElement();
+	}
+
+	protected static void encodeRecordContent(EXIBodyEncoder encoder, int i)
+			throws EXIException, IOException {
+		encoder.encodeAttribute(ID.getNamespaceURI(), ID.getLocalPart(), null,
+				new StringValue("r" + i));
+		encoder.encodeStartElement(VALUE.getNamespaceURI(),
+				VALUE.getLocalPart(), null);
+		// repeated strings are string table hits within the fragment only
+		encoder.encodeCharacters(new StringValue("value " + (i % 3)));
+		encoder.encodeEndElement();
+	}
+
+	protected static void encodeBatch(EXIBodyEncoder encoder, int records)
+			throws EXIException, IOException {
+		encoder.encodeStartDocument();
+		encoder.encodeStartElement(BATCH.getNamespaceURI(),
+				BATCH.getLocalPart(), null);
+		for (int i = 0; i < records; i++) {
+			encodeRecord(encoder, i);
+		}
+		encoder.encodeEndElement();
+		encoder.encodeEndDocument();
+		encoder.flush();
+	}
+
+	protected static void checkRecord(EXIBodyDecoder decoder, int i)
+			throws EXIException, IOException {
+		assertTrue(decoder.next() == EventType.START_ELEMENT_GENERIC);
+		assertEquals(RECORD, decoder.decodeStartElement().getQName());
+		assertTrue(decoder.next() == EventType.ATTRIBUTE_GENERIC_UNDECLARED);
+		assertEquals(ID, decoder.decodeAttribute().getQName());
+		assertEquals("r" + i, decoder.getAttributeValue().toString());
+		assertTrue(decoder.next() == EventType.START_ELEMENT_GENERIC_UNDECLARED);
+		assertEquals(VALUE, decoder.decodeStartElement().getQName());
+		assertTrue(decoder.next() == EventType.CHARACTERS_GENERIC_UNDECLARED);
+		assertEquals("value " + (i % 3), decoder.decodeCharacters().toString());
+		assertTrue(decoder.next() == EventType.END_ELEMENT);
+		decoder.decodeEndElement();
+		assertTrue(decoder.next() == EventType.END_ELEMENT);
+		decoder.decodeEndElement();
+	}
+
+	protected void _testIndex(CodingMode codingMode) throws EXIException,
+			IOException {
+		EXIFactory factory = getFactory(codingMode);
+		SelfContainedIndex index = new SelfContainedIndex();
+		factory.setSelfContainedElements(new QName[] { RECORD }, index);
+
+		final int records = 50;
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		EXIBodyEncoder encoder = factory.createEXIBodyEncoder();
+		encoder.setOutputStream(baos);
+		encodeBatch(encoder, records);
+		byte[] exi = baos.toByteArray();
+
+		assertEquals(records, index.getNumberOfFragments());
+
+		// side index round trip
+		ByteArrayOutputStream baosIndex = new ByteArrayOutputStream();
+		index.writeTo(baosIndex);
+		SelfContainedIndex index2 = SelfContainedIndex
+				.readFrom(new ByteArrayInputStream(baosIndex.toByteArray()));
+		assertEquals(records, index2.getNumberOfFragments());
+		for (int i = 0; i < records; i++) {
+			assertEquals(RECORD, index2.getQName(i));
+			assertEquals(index.getOffset(i), index2.getOffset(i));
+			assertEquals(index.getLength(i), index2.getLength(i));
+			assertTrue(index2.getLength(i) > 0);
+		}
+		assertEquals(37, index2.getOrdinal(RECORD, 37));
+		assertEquals(-1, index2.getOrdinal(BATCH, 0));
+
+		// random access, backwards on purpose
+		SelfContainedFragmentReader reader = new SelfContainedFragmentReader(
+				getFactory(codingMode), index2);
+		for (int i = records - 1; i >= 0; i -= 7) {
+			EXIBodyDecoder decoder = reader.decodeFragment(
+					ByteBuffer.wrap(exi), i);
+			assertTrue(decoder.next() == EventType.START_DOCUMENT);
+			decoder.decodeStartDocument();
+			checkRecord(decoder, i);
+			assertTrue(decoder.next() == EventType.END_DOCUMENT);
+			decoder.decodeEndDocument();
+		}
+
+		// partially filled buffer (capacity beyond valid data)
+		ByteBuffer partial = ByteBuffer.allocate(exi.length);
+		partial.put(exi, 0, (int) index2.getOffset(records - 1));
+		partial.flip();
+		try {
+			reader.decodeFragment(partial, records - 1);
+			fail("Fragment beyond buffer limit");
+		} catch (EOFException e) {
+			// expected
+		}
+	}
+
+	public void testIndexBitPacked() throws EXIException, IOException {
+		_testIndex(CodingMode.BIT_PACKED);
+	}
+
+	public void testIndexBytePacked() throws EXIException, IOException {
+		_testIndex(CodingMode.BYTE_PACKED);
+	}
+
+	public void testIndexStreamEncoder() throws EXIException, IOException {
+		EXIFactory factory = getFactory(CodingMode.BIT_PACKED);
+		SelfContainedIndex index = new SelfContainedIndex();
+		factory.setSelfContainedElements(new QName[] { RECORD }, index);
+
+		// header and body share the channel in bit-packed mode
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		EXIStreamEncoder streamEncoder = factory.createEXIStreamEncoder();
+		encodeBatch(streamEncoder.encodeHeader(baos), 5);
+
+		SelfContainedFragmentReader reader = new SelfContainedFragmentReader(
+				getFactory(CodingMode.BIT_PACKED), index);
+		EXIBodyDecoder decoder = reader.decodeFragment(
+				ByteBuffer.wrap(baos.toByteArray()), 3);
+		decoder.decodeStartDocument();
+		checkRecord(decoder, 3);
+		assertTrue(decoder.next() == EventType.END_DOCUMENT);
+	}
+
+	protected void _testParallel(CodingMode codingMode) throws EXIException,
+			IOException {
+		final int records = 200;
+
+		// sequential
+		EXIFactory factory = getFactory(codingMode);
+		SelfContainedIndex index = new SelfContainedIndex();
+		factory.setSelfContainedElements(new QName[] { RECORD }, index);
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		EXIStreamEncoder streamEncoder = factory.createEXIStreamEncoder();
+		encodeBatch(streamEncoder.encodeHeader(baos), records);
+
+		// parallel
+		EXIFactory factoryPar = getFactory(codingMode);
+		SelfContainedIndex indexPar = new SelfContainedIndex();
+		factoryPar.setSelfContainedElements(new QName[] { RECORD }, indexPar);
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			EXIBodyEncoderParallelSC encoder = new EXIBodyEncoderParallelSC(
+					factoryPar, executor, 16);
+			ByteArrayOutputStream baosPar = new ByteArrayOutputStream();
+			encoder.setOutputStream(baosPar);
+			encoder.encodeHeader();
+			encoder.encodeStartDocument();
+			encoder.encodeStartElement(BATCH.getNamespaceURI(),
+					BATCH.getLocalPart(), null);
+			for (int i = 0; i < records; i++) {
+				final int r = i;
+				encoder.encodeSelfContainedElement(RECORD.getNamespaceURI(),
+						RECORD.getLocalPart(), null,
+						new SelfContainedContent() {
+							public void encodeContent(EXIBodyEncoder enc)
+									throws EXIException, IOException {
+								encodeRecordContent(enc, r);
+							}
+						});
+			}
+			encoder.encodeEndElement();
+			encoder.encodeEndDocument();
+			encoder.flush();
+
+			assertTrue(Arrays.equals(baos.toByteArray(), baosPar.toByteArray()));
+		} finally {
+			executor.shutdown();
+		}
+
+		// same offsets as the sequential encoder
+		assertEquals(records, indexPar.getNumberOfFragments());
+		for (int i = 0; i < records; i++) {
+			assertEquals(index.getOffset(i), indexPar.getOffset(i));
+			assertEquals(index.getLength(i), indexPar.getLength(i));
+		}
+	}
+
+	public void testParallelBitPacked() throws EXIException, IOException {
+		_testParallel(CodingMode.BIT_PACKED);
+	}
+
+	public void testParallelBytePacked() throws EXIException, IOException {
+		_testParallel(CodingMode.BYTE_PACKED);
+	}
+
+	protected void _testParallelOutputChannel(CodingMode codingMode)
+			throws EXIException, IOException {
+		final int records = 60;
+
+		// sequential, header options end within a byte
+		EXIFactory factory = getFactory(codingMode);
+		factory.getEncodingOptions().setOption(EncodingOptions.INCLUDE_OPTIONS);
+		SelfContainedIndex index = new SelfContainedIndex();
+		factory.setSelfContainedElements(new QName[] { RECORD }, index);
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		EXIStreamEncoder streamEncoder = factory.createEXIStreamEncoder();
+		encodeBatch(streamEncoder.encodeHeader(baos), records);
+
+		// parallel, header written to the channel beforehand
+		EXIFactory factoryPar = getFactory(codingMode);
+		factoryPar.getEncodingOptions().setOption(
+				EncodingOptions.INCLUDE_OPTIONS);
+		SelfContainedIndex indexPar = new SelfContainedIndex();
+		factoryPar.setSelfContainedElements(new QName[] { RECORD }, indexPar);
+		ByteArrayOutputStream baosPar = new ByteArrayOutputStream();
+		BitEncoderChannel headerChannel = new BitEncoderChannel(baosPar);
+		new EXIHeaderEncoder().write(headerChannel, factoryPar);
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			EXIBodyEncoderParallelSC encoder = new EXIBodyEncoderParallelSC(
+					factoryPar, executor, 8);
+			if (codingMode == CodingMode.BIT_PACKED) {
+				// body continues within the last header byte
+				assertTrue(headerChannel.getBitsInBuffer() > 0);
+				encoder.setOutputChannel(headerChannel);
+			} else {
+				BitEncoderChannel unaligned = new BitEncoderChannel(
+						new ByteArrayOutputStream());
+				unaligned.encodeBoolean(true);
+				try {
+					encoder.setOutputChannel(unaligned);
+					fail("Byte-aligned body on unaligned channel");
+				} catch (EXIException e) {
+					// expected
+				}
+				headerChannel.flush();
+				encoder.setOutputChannel(new ByteEncoderChannel(baosPar));
+			}
+			try {
+				encoder.encodeHeader();
+				fail("Header of output channel");
+			} catch (EXIException e) {
+				// expected
+			}
+			encoder.encodeStartDocument();
+			encoder.encodeStartElement(BATCH.getNamespaceURI(),
+					BATCH.getLocalPart(), null);
+			for (int i = 0; i < records; i++) {
+				final int r = i;
+				if (i % 5 == 2) {
+					// sequential SC element
+					encodeRecord(encoder, i);
+				} else {
+					encoder.encodeSelfContainedElement(
+							RECORD.getNamespaceURI(), RECORD.getLocalPart(),
+							null, new SelfContainedContent() {
+								public void encodeContent(EXIBodyEncoder enc)
+										throws EXIException, IOException {
+									encodeRecordContent(enc, r);
+								}
+							});
+				}
+			}
+			encoder.encodeEndElement();
+			encoder.encodeEndDocument();
+			encoder.flush();
+
+			assertTrue(Arrays.equals(baos.toByteArray(), baosPar.toByteArray()));
+		} finally {
+			executor.shutdown();
+		}
+
+		// sequential SC elements are reported as well
+		assertEquals(records, indexPar.getNumberOfFragments());
+		for (int i = 0; i < records; i++) {
+			assertEquals(index.getOffset(i), indexPar.getOffset(i));
+			assertEquals(index.getLength(i), indexPar.getLength(i));
+		}
+	}
+
+	public void testParallelOutputChannelBitPacked() throws EXIException,
+			IOException {
+		_testParallelOutputChannel(CodingMode.BIT_PACKED);
+	}
+
+	public void testParallelOutputChannelBytePacked() throws EXIException,
+			IOException {
+		_testParallelOutputChannel(CodingMode.BYTE_PACKED);
+	}
+
+	protected void _testParallelDecoder(boolean ordered, boolean file)
+			throws EXIException, IOException {
+		EXIFactory factory = getFactory(CodingMode.BYTE_PACKED);
+		SelfContainedIndex index = new SelfContainedIndex();
+		factory.setSelfContainedElements(new QName[] { RECORD }, index);
+
+		final int records = 300;
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		EXIBodyEncoder encoder = factory.createEXIBodyEncoder();
+		encoder.setOutputStream(baos);
+		encodeBatch(encoder, records);
+
+		final List<Integer> delivered = new ArrayList<Integer>();
+		SelfContainedFragmentConsumer<String> consumer = new SelfContainedFragmentConsumer<String>() {
+			public String decodeFragment(int ordinal, EXIBodyDecoder decoder)
+					throws EXIException, IOException {
+				decoder.decodeStartDocument();
+				checkRecord(decoder, ordinal);
+				assertTrue(decoder.next() == EventType.END_DOCUMENT);
+				decoder.decodeEndDocument();
+				return "r" + ordinal;
+			}
+
+			public void fragment(int ordinal, String fragment) {
+				assertEquals("r" + ordinal, fragment);
+				delivered.add(ordinal);
+			}
+		};
+
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		File tmp = null;
+		try {
+			SelfContainedParallelDecoder decoder = new SelfContainedParallelDecoder(
+					getFactory(CodingMode.BYTE_PACKED), executor, 8);
+			if (file) {
+				// some leading bytes, offsets are relative to base
+				tmp = File.createTempFile("exi-sc", ".exi");
+				FileOutputStream fos = new FileOutputStream(tmp);
+				try {
+					fos.write(new byte[7]);
+					baos.writeTo(fos);
+				} finally {
+					fos.close();
+				}
+				FileChannel fc = FileChannel.open(tmp.toPath(),
+						StandardOpenOption.READ);
+				try {
+					decoder.decode(fc, 7L, index, consumer, ordered);
+				} finally {
+					fc.close();
+				}
+			} else {
+				decoder.decode(ByteBuffer.wrap(baos.toByteArray()), 0L, index,
+						consumer, ordered);
+			}
+		} finally {
+			executor.shutdown();
+			if (tmp != null) {
+				tmp.delete();
+			}
+		}
+
+		assertEquals(records, delivered.size());
+		if (!ordered) {
+			Collections.sort(delivered);
+		}
+		for (int i = 0; i < records; i++) {
+			assertEquals(i, delivered.get(i).intValue());
+		}
+	}
+
+	public void testParallelDecoderOrdered() throws EXIException, IOException {
+		_testParallelDecoder(true, false);
+	}
+
+	public void testParallelDecoderUnordered() throws EXIException,
+			IOException {
+		_testParallelDecoder(false, false);
+	}
+
+	public void testParallelDecoderFileChannel() throws EXIException,
+			IOException {
+		_testParallelDecoder(true, true);
+		_testParallelDecoder(false, true);
+	}
+
+}
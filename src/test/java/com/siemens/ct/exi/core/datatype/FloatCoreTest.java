@@ -874,4 +874,13 @@ public class FloatCoreTest extends AbstractCoreTestCase {
 		assertFalse(f1.equals(f2));
 	}
 
+	public void testFloatToDoublePrimitive() throws IOException {
+		long[][] mes = { { 184, -1 }, { 12300, 0 }, { -5, 3 }, { 0, 12 },
+				{ 1, -16384 }, { -1, -16384 }, { 7, -16384 }, { 10, -16385 } };
+		for (long[] me : mes) {
+			assertEquals(new FloatValue(me[0], me[1]).toDouble(),
+					FloatValue.toDouble(me[0], me[1]));
+		}
+	}
+
 }
\ No newline at end of file
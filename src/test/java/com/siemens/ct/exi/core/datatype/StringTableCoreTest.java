@@ -639,4 +639,43 @@ public class StringTableCoreTest extends AbstractCoreTestCase {
 						stringDecoder).toString().equals(ch3));
 	}
 
+	@Test
+	public void testStringTableValueCharSlices() throws IOException,
+			EXIException {
+		QNameContext qncA = new QNameContext(0, 0, new QName("a"));
+		QNameContext qncB = new QNameContext(0, 1, new QName("b"));
+
+		// bounded table, values are evicted and added again
+		EXIFactory exiFactory = DefaultEXIFactory.newInstance();
+		exiFactory.setValuePartitionCapacity(40);
+
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		StringEncoder stringEncoder = exiFactory.createStringEncoder();
+		BitEncoderChannel bec = new BitEncoderChannel(baos);
+
+		final int n = 2000;
+		char[] ch = new char[32];
+		for (int i = 0; i < n; i++) {
+			String s = "v" + ((i * 7) % 97);
+			QNameContext qnc = (i % 3) == 0 ? qncA : qncB;
+			if ((i & 1) == 0) {
+				stringEncoder.writeValue(qnc, bec, s);
+			} else {
+				// slice in the middle of the array
+				s.getChars(0, s.length(), ch, 5);
+				stringEncoder.writeValue(qnc, bec, ch, 5, s.length());
+			}
+		}
+		bec.flush();
+
+		StringDecoder stringDecoder = exiFactory.createStringDecoder();
+		BitDecoderChannel bdc = new BitDecoderChannel(new ByteArrayInputStream(
+				baos.toByteArray()));
+		for (int i = 0; i < n; i++) {
+			QNameContext qnc = (i % 3) == 0 ? qncA : qncB;
+			assertEquals("v" + ((i * 7) % 97),
+					stringDecoder.readValue(qnc, bdc).toString());
+		}
+	}
+
 }
@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2007-2018 Siemens AG
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * 
+ */
+
+package com.siemens.ct.exi.core.grammars;
+
+import javax.xml.namespace.QName;
+
+import junit.framework.TestCase;
+
+import com.siemens.ct.exi.core.Constants;
+import com.siemens.ct.exi.core.FidelityOptions;
+import com.siemens.ct.exi.core.context.QNameContext;
+import com.siemens.ct.exi.core.exceptions.UnsupportedOption;
+import com.siemens.ct.exi.core.grammars.event.EventType;
+import com.siemens.ct.exi.core.grammars.event.StartElement;
+import com.siemens.ct.exi.core.grammars.grammar.BuiltInStartTag;
+import com.siemens.ct.exi.core.grammars.grammar.EventCodeLayout;
+
+public class EventCodeLayoutCoreTest extends TestCase {
+
+	public EventCodeLayoutCoreTest(String testName) {
+		super(testName);
+	}
+
+	public void testMemoized() throws Exception {
+		FidelityOptions fo = FidelityOptions.createDefault();
+		BuiltInStartTag g = new BuiltInStartTag();
+
+		EventCodeLayout l1 = g.getEventCodeLayout(fo);
+		assertTrue(l1 == g.getEventCodeLayout(fo));
+		assertTrue(l1.isValid(fo, g));
+	}
+
+	public void testLearning() throws Exception {
+		FidelityOptions fo = FidelityOptions.createDefault();
+		BuiltInStartTag g = new BuiltInStartTag();
+
+		EventCodeLayout l1 = g.getEventCodeLayout(fo);
+		assertEquals(0, l1.get1stLevelEventCodeLength());
+
+		g.learnStartElement(new StartElement(new QNameContext(0, 0,
+				new QName("", "a"))));
+		EventCodeLayout l2 = g.getEventCodeLayout(fo);
+		assertTrue(l1 != l2);
+		assertEquals(1, l2.get1stLevelEventCodeLength());
+		assertEquals(fo.get2ndLevelEventCode(EventType.END_ELEMENT_UNDECLARED,
+				g), l2.get2ndLevelEventCode(EventType.END_ELEMENT_UNDECLARED));
+	}
+
+	public void testFidelityChange() throws Exception, UnsupportedOption {
+		FidelityOptions fo = FidelityOptions.createDefault();
+		BuiltInStartTag g = new BuiltInStartTag();
+
+		EventCodeLayout l1 = g.getEventCodeLayout(fo);
+		assertEquals(Constants.NOT_FOUND,
+				l1.get2ndLevelEventCode(EventType.SELF_CONTAINED));
+		assertEquals(0, l1.get3rdLevelCharacteristics());
+
+		fo.setFidelity(FidelityOptions.FEATURE_COMMENT, true);
+		fo.setFidelity(FidelityOptions.FEATURE_SC, true);
+		assertFalse(l1.isValid(fo, g));
+		EventCodeLayout l2 = g.getEventCodeLayout(fo);
+		assertTrue(l1 != l2);
+		assertEquals(EventType.SELF_CONTAINED, l2.get2ndLevelEventType(l2
+				.get2ndLevelEventCode(EventType.SELF_CONTAINED)));
+		assertEquals(1, l2.get3rdLevelCharacteristics());
+		assertEquals(EventType.COMMENT, l2.get3rdLevelEventType(0));
+	}
+
+	public void testEqualOptions() throws Exception, UnsupportedOption {
+		// e.g., two factories with equal options sharing grammars
+		FidelityOptions fo1 = FidelityOptions.createStrict();
+		FidelityOptions fo2 = FidelityOptions.createStrict();
+		BuiltInStartTag g = new BuiltInStartTag();
+
+		EventCodeLayout l1 = g.getEventCodeLayout(fo1);
+		assertTrue(l1 == g.getEventCodeLayout(fo2));
+		assertTrue(l1 == g.getEventCodeLayout(fo1));
+
+		fo2.setFidelity(FidelityOptions.FEATURE_STRICT, false);
+		assertFalse(l1.isValid(fo2, g));
+		assertTrue(l1 != g.getEventCodeLayout(fo2));
+	}
+
+	public void testDifferentOptions() throws Exception {
+		// e.g., two factories with different options sharing grammars
+		FidelityOptions fo1 = FidelityOptions.createDefault();
+		FidelityOptions fo2 = FidelityOptions.createAll();
+		int f1 = EventCodeLayout.getFeatures(fo1);
+		int f2 = EventCodeLayout.getFeatures(fo2);
+		assertTrue(f1 != f2);
+		BuiltInStartTag g = new BuiltInStartTag();
+
+		EventCodeLayout l1 = g.getEventCodeLayout(fo1, f1);
+		EventCodeLayout l2 = g.getEventCodeLayout(fo2, f2);
+		assertTrue(l1 != l2);
+		// both layouts stay memoized
+		for (int i = 0; i < 3; i++) {
+			assertTrue(l1 == g.getEventCodeLayout(fo1, f1));
+			assertTrue(l2 == g.getEventCodeLayout(fo2, f2));
+		}
+	}
+
+}
@@ -0,0 +1,337 @@
+/*
+ * Copyright (c) 2007-2018 Siemens AG
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * 
+ */
+
+package com.siemens.ct.exi.core.grammars;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import javax.xml.namespace.QName;
+
+import junit.framework.TestCase;
+
+import com.siemens.ct.exi.core.CodingMode;
+import com.siemens.ct.exi.core.Constants;
+import com.siemens.ct.exi.core.EXIBodyDecoder;
+import com.siemens.ct.exi.core.EXIBodyEncoder;
+import com.siemens.ct.exi.core.EXIFactory;
+import com.siemens.ct.exi.core.FidelityOptions;
+import com.siemens.ct.exi.core.coder.EXIBodyDecoderCompiled;
+import com.siemens.ct.exi.core.coder.EXIBodyEncoderCompiled;
+import com.siemens.ct.exi.core.context.GrammarContext;
+import com.siemens.ct.exi.core.context.GrammarUriContext;
+import com.siemens.ct.exi.core.context.QNameContext;
+import com.siemens.ct.exi.core.datatype.Datatype;
+import com.siemens.ct.exi.core.datatype.IntegerDatatype;
+import com.siemens.ct.exi.core.datatype.StringDatatype;
+import com.siemens.ct.exi.core.exceptions.EXIException;
+import com.siemens.ct.exi.core.grammars.event.Attribute;
+import com.siemens.ct.exi.core.grammars.event.Characters;
+import com.siemens.ct.exi.core.grammars.event.EndDocument;
+import com.siemens.ct.exi.core.grammars.event.EndElement;
+import com.siemens.ct.exi.core.grammars.event.EventType;
+import com.siemens.ct.exi.core.grammars.event.StartDocument;
+import com.siemens.ct.exi.core.grammars.event.StartElement;
+import com.siemens.ct.exi.core.grammars.event.StartElementGeneric;
+import com.siemens.ct.exi.core.grammars.grammar.DocEnd;
+import com.siemens.ct.exi.core.grammars.grammar.Document;
+import com.siemens.ct.exi.core.grammars.grammar.Fragment;
+import com.siemens.ct.exi.core.grammars.grammar.SchemaInformedDocContent;
+import com.siemens.ct.exi.core.grammars.grammar.SchemaInformedElement;
+import com.siemens.ct.exi.core.grammars.grammar.SchemaInformedFirstStartTag;
+import com.siemens.ct.exi.core.grammars.grammar.SchemaInformedFragmentContent;
+import com.siemens.ct.exi.core.grammars.grammar.SchemaInformedStartTag;
+import com.siemens.ct.exi.core.helpers.DefaultEXIFactory;
+import com.siemens.ct.exi.core.values.StringValue;
+
+public class GrammarAutomatonCoreTest extends TestCase {
+
+	static final QName ROOT = new QName("", "root");
+	static final QName RECORD = new QName("", "record");
+	static final QName ID = new QName("", "id");
+	static final QName VALUE = new QName("", "value");
+
+	public GrammarAutomatonCoreTest(String testName) {
+		super(testName);
+	}
+
+	/**
+	 * Schema-informed grammars for
+	 * 
+	 * <pre>
+	 * root := record*
+	 * record := @id(string), value(integer)
+	 * </pre>
+	 * 
+	 * @return grammars
+	 */
+	public static SchemaInformedGrammars createGrammars() {
+		// "" namespace (sorted local-names)
+		QNameContext qncId = new QNameContext(0, 0, ID);
+		QNameContext qncRecord = new QNameContext(0, 1, RECORD);
+		QNameContext qncRoot = new QNameContext(0, 2, ROOT);
+		QNameContext qncValue = new QNameContext(0, 3, VALUE);
+		GrammarUriContext guc0 = new GrammarUriContext(0,
+				Constants.EMPTY_STRING, new QNameContext[] { qncId, qncRecord,
+						qncRoot, qncValue }, Constants.PREFIXES_EMPTY);
+		GrammarUriContext guc1 = new GrammarUriContext(1,
+				Constants.XML_NS_URI, createQNames(1, Constants.XML_NS_URI,
+						Constants.LOCAL_NAMES_XML), Constants.PREFIXES_XML);
+		GrammarUriContext guc2 = new GrammarUriContext(2,
+				Constants.XML_SCHEMA_INSTANCE_NS_URI, createQNames(2,
+						Constants.XML_SCHEMA_INSTANCE_NS_URI,
+						Constants.LOCAL_NAMES_XSI), Constants.PREFIXES_XSI);
+		QNameContext[] xsd = createQNames(3, Constants.XML_SCHEMA_NS_URI,
+				new String[] { "integer", "string" });
+		GrammarUriContext guc3 = new GrammarUriContext(3,
+				Constants.XML_SCHEMA_NS_URI, xsd);
+		GrammarContext gc = new GrammarContext(new GrammarUriContext[] {
+				guc0, guc1, guc2, guc3 }, 4 + Constants.LOCAL_NAMES_XML.length
+				+ Constants.LOCAL_NAMES_XSI.length + xsd.length);
+
+		Datatype dtInteger = new IntegerDatatype(xsd[0]);
+		Datatype dtString = new StringDatatype(xsd[1]);
+
+		// value
+		SchemaInformedElement valueEnd = new SchemaInformedElement();
+		valueEnd.addTerminalProduction(new EndElement());
+		SchemaInformedFirstStartTag valueStart = new SchemaInformedFirstStartTag(
+				valueEnd);
+		valueStart.addProduction(new Characters(dtInteger), valueEnd);
+
+		// record
+		SchemaInformedElement recordEnd = new SchemaInformedElement();
+		recordEnd.addTerminalProduction(new EndElement());
+		StartElement seValue = new StartElement(qncValue, valueStart);
+		SchemaInformedElement recordContent = new SchemaInformedElement();
+		recordContent.addProduction(seValue, recordEnd);
+		SchemaInformedStartTag recordValue = new SchemaInformedStartTag(
+				recordContent);
+		recordValue.addProduction(seValue, recordEnd);
+		SchemaInformedFirstStartTag recordStart = new SchemaInformedFirstStartTag(
+				recordContent);
+		recordStart.addProduction(new Attribute(qncId, dtString),
+				recordValue);
+
+		// root
+		SchemaInformedElement rootContent = new SchemaInformedElement();
+		StartElement seRecord = new StartElement(qncRecord, recordStart);
+		rootContent.addProduction(seRecord, rootContent);
+		rootContent.addTerminalProduction(new EndElement());
+		SchemaInformedFirstStartTag rootStart = new SchemaInformedFirstStartTag(
+				rootContent);
+		rootStart.addProduction(seRecord, rootContent);
+		rootStart.addTerminalProduction(new EndElement());
+		StartElement seRoot = new StartElement(qncRoot, rootStart);
+		qncRoot.setGlobalStartElement(seRoot);
+
+		// document
+		DocEnd docEnd = new DocEnd("DocEnd");
+		docEnd.addTerminalProduction(new EndDocument());
+		SchemaInformedDocContent docContent = new SchemaInformedDocContent(
+				"DocContent");
+		docContent.addProduction(seRoot, docEnd);
+		docContent.addProduction(new StartElementGeneric(), docEnd);
+		Document document = new Document("Document");
+		document.addProduction(new StartDocument(), docContent);
+
+		// fragment
+		SchemaInformedFragmentContent fragmentContent = new SchemaInformedFragmentContent(
+				"FragmentContent");
+		fragmentContent.addProduction(seRoot, fragmentContent);
+		fragmentContent.addProduction(new StartElementGeneric(),
+				fragmentContent);
+		fragmentContent.addTerminalProduction(new EndDocument());
+		Fragment fragment = new Fragment("Fragment");
+		fragment.addProduction(new StartDocument(), fragmentContent);
+
+		return new SchemaInformedGrammars(gc, document, fragment, null);
+	}
+
+	static QNameContext[] createQNames(int namespaceUriID, String uri,
+			String[] localNames) {
+		QNameContext[] qncs = new QNameContext[localNames.length];
+		for (int i = 0; i < localNames.length; i++) {
+			qncs[i] = new QNameContext(namespaceUriID, i, new QName(uri,
+					localNames[i]));
+		}
+		return qncs;
+	}
+
+	static void encode(EXIBodyEncoder encoder, boolean undeclared)
+			throws EXIException, IOException {
+		encoder.encodeStartDocument();
+		encoder.encodeStartElement(ROOT.getNamespaceURI(),
+				ROOT.getLocalPart(), null);
+		for (int i = 0; i < 20; i++) {
+			encoder.encodeStartElement(RECORD.getNamespaceURI(),
+					RECORD.getLocalPart(), null);
+			encoder.encodeAttribute(ID.getNamespaceURI(), ID.getLocalPart(),
+					null, new StringValue("r" + i));
+			encoder.encodeStartElement(VALUE.getNamespaceURI(),
+					VALUE.getLocalPart(), null);
+			encoder.encodeCharacters(new StringValue(Integer.toString(i * 7)));
+			encoder.encodeEndElement();
+			if (undeclared && i % 5 == 0) {
+				// built-in grammars
+				encoder.encodeStartElement("", "note", null);
+				encoder.encodeCharacters(new StringValue("n" + i));
+				encoder.encodeEndElement();
+				char[] cm = "comment".toCharArray();
+				encoder.encodeComment(cm, 0, cm.length);
+			}
+			encoder.encodeEndElement();
+		}
+		encoder.encodeEndElement();
+		encoder.encodeEndDocument();
+		encoder.flush();
+	}
+
+	static String decode(EXIBodyDecoder decoder, byte[] exi)
+			throws EXIException, IOException {
+		decoder.setInputStream(new ByteArrayInputStream(exi));
+		StringBuilder sb = new StringBuilder();
+		EventType next;
+		while ((next = decoder.next()) != null) {
+			sb.append(next);
+			switch (next) {
+			case START_DOCUMENT:
+				decoder.decodeStartDocument();
+				break;
+			case START_ELEMENT:
+			case START_ELEMENT_GENERIC:
+			case START_ELEMENT_GENERIC_UNDECLARED:
+				sb.append(decoder.decodeStartElement().getQName());
+				break;
+			case ATTRIBUTE:
+				sb.append(decoder.decodeAttribute().getQName());
+				sb.append(decoder.getAttributeValue());
+				break;
+			case CHARACTERS:
+			case CHARACTERS_GENERIC_UNDECLARED:
+				sb.append(decoder.decodeCharacters());
+				break;
+			case END_ELEMENT:
+			case END_ELEMENT_UNDECLARED:
+				sb.append(decoder.decodeEndElement().getQName());
+				break;
+			case COMMENT:
+				sb.append(decoder.decodeComment());
+				break;
+			case END_DOCUMENT:
+				decoder.decodeEndDocument();
+				break;
+			default:
+				fail("Unexpected event " + next);
+			}
+			sb.append(';');
+		}
+		return sb.toString();
+	}
+
+	protected void _test(CodingMode codingMode, FidelityOptions fo,
+			boolean undeclared) throws EXIException, IOException {
+		EXIFactory factory = DefaultEXIFactory.newInstance();
+		factory.setCodingMode(codingMode);
+		factory.setFidelityOptions(fo);
+		SchemaInformedGrammars grammars = createGrammars();
+		factory.setGrammars(grammars);
+
+		GrammarAutomaton automaton = GrammarAutomaton.compile(grammars, fo);
+		// Document, DocContent, DocEnd, root, record, value, fragment ...
+		assertTrue(automaton.getNumberOfStates() >= 10);
+		int doc = automaton.getState(grammars.getDocumentGrammar());
+		assertEquals(0, automaton.getEventCodeLength(doc));
+		assertEquals(EventType.START_DOCUMENT, automaton.getEventType(doc, 0));
+		int docContent = automaton.getNextState(doc, 0);
+		int ec = automaton.getStartElementEventCode(docContent,
+				ROOT.getNamespaceURI(), ROOT.getLocalPart());
+		assertEquals(0, ec);
+		assertEquals(automaton.getState(grammars.getGrammarContext()
+				.getGrammarUriContext(0).getQNameContext(ROOT.getLocalPart())
+				.getGlobalStartElement().getGrammar()),
+				automaton.getElementState(docContent, ec));
+		assertEquals(GrammarAutomaton.NO_STATE,
+				automaton.getState(new SchemaInformedElement()));
+
+		// reference
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		EXIBodyEncoder encoder = factory.createEXIBodyEncoder();
+		encoder.setOutputStream(baos);
+		encode(encoder, undeclared);
+		byte[] exi = baos.toByteArray();
+
+		// compiled
+		baos = new ByteArrayOutputStream();
+		EXIBodyEncoder encoderCompiled = new EXIBodyEncoderCompiled(factory,
+				automaton);
+		encoderCompiled.setOutputStream(baos);
+		encode(encoderCompiled, undeclared);
+		assertTrue(java.util.Arrays.equals(exi, baos.toByteArray()));
+		// re-use
+		baos = new ByteArrayOutputStream();
+		encoderCompiled.setOutputStream(baos);
+		encode(encoderCompiled, undeclared);
+		assertTrue(java.util.Arrays.equals(exi, baos.toByteArray()));
+
+		String events = decode(factory.createEXIBodyDecoder(), exi);
+		assertTrue(events.contains("ATTRIBUTEid" + "r19;"));
+		EXIBodyDecoder decoderCompiled = new EXIBodyDecoderCompiled(factory,
+				automaton);
+		assertEquals(events, decode(decoderCompiled, exi));
+		assertEquals(events, decode(decoderCompiled, exi));
+	}
+
+	public void testStrictBitPacked() throws EXIException, IOException {
+		_test(CodingMode.BIT_PACKED, FidelityOptions.createStrict(), false);
+	}
+
+	public void testStrictBytePacked() throws EXIException, IOException {
+		_test(CodingMode.BYTE_PACKED, FidelityOptions.createStrict(), false);
+	}
+
+	public void testDefaultBitPacked() throws EXIException, IOException {
+		_test(CodingMode.BIT_PACKED, FidelityOptions.createDefault(), false);
+	}
+
+	public void testAllUndeclaredBitPacked() throws EXIException,
+			IOException {
+		_test(CodingMode.BIT_PACKED, FidelityOptions.createAll(), true);
+	}
+
+	public void testFidelityMismatch() throws EXIException {
+		EXIFactory factory = DefaultEXIFactory.newInstance();
+		SchemaInformedGrammars grammars = createGrammars();
+		factory.setGrammars(grammars);
+		GrammarAutomaton automaton = GrammarAutomaton.compile(grammars,
+				FidelityOptions.createStrict());
+		try {
+			new EXIBodyDecoderCompiled(factory, automaton);
+			fail("Fidelity options differ");
+		} catch (EXIException e) {
+			// expected
+		}
+	}
+
+}
@@ -0,0 +1,293 @@
+/*
+ * Copyright (c) 2007-2018 Siemens AG
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * 
+ */
+
+package com.siemens.ct.exi.core.grammars;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+
+import junit.framework.TestCase;
+
+import com.siemens.ct.exi.core.CodingMode;
+import com.siemens.ct.exi.core.EXIBodyEncoder;
+import com.siemens.ct.exi.core.EXIFactory;
+import com.siemens.ct.exi.core.FidelityOptions;
+import com.siemens.ct.exi.core.SchemaIdResolver;
+import com.siemens.ct.exi.core.context.GrammarContext;
+import com.siemens.ct.exi.core.context.QNameContext;
+import com.siemens.ct.exi.core.datatype.Datatype;
+import com.siemens.ct.exi.core.datatype.DatetimeDatatype;
+import com.siemens.ct.exi.core.datatype.EnumerationDatatype;
+import com.siemens.ct.exi.core.datatype.ExtendedStringDatatype;
+import com.siemens.ct.exi.core.datatype.IntegerDatatype;
+import com.siemens.ct.exi.core.datatype.ListDatatype;
+import com.siemens.ct.exi.core.datatype.NBitUnsignedIntegerDatatype;
+import com.siemens.ct.exi.core.datatype.RestrictedCharacterSetDatatype;
+import com.siemens.ct.exi.core.datatype.StringDatatype;
+import com.siemens.ct.exi.core.datatype.WhiteSpace;
+import com.siemens.ct.exi.core.datatype.charset.CodePointCharacterSet;
+import com.siemens.ct.exi.core.exceptions.EXIException;
+import com.siemens.ct.exi.core.grammars.event.Attribute;
+import com.siemens.ct.exi.core.helpers.DefaultEXIFactory;
+import com.siemens.ct.exi.core.helpers.SnapshotSchemaIdResolver;
+import com.siemens.ct.exi.core.types.DateTimeType;
+import com.siemens.ct.exi.core.values.IntegerValue;
+import com.siemens.ct.exi.core.values.StringValue;
+import com.siemens.ct.exi.core.values.Value;
+
+public class GrammarSnapshotCoreTest extends TestCase {
+
+	static final String SCHEMA_ID = "urn:test:record";
+
+	public GrammarSnapshotCoreTest(String testName) {
+		super(testName);
+	}
+
+	static SchemaInformedGrammars createGrammars() throws EXIException {
+		SchemaInformedGrammars grammars = GrammarAutomatonCoreTest
+				.createGrammars();
+		grammars.setSchemaId(SCHEMA_ID);
+		return grammars;
+	}
+
+	static byte[] toSnapshot(SchemaInformedGrammars grammars)
+			throws IOException {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		GrammarSnapshot.write(grammars, baos);
+		return baos.toByteArray();
+	}
+
+	static byte[] encode(SchemaInformedGrammars grammars) throws EXIException,
+			IOException {
+		EXIFactory factory = DefaultEXIFactory.newInstance();
+		factory.setCodingMode(CodingMode.BIT_PACKED);
+		factory.setFidelityOptions(FidelityOptions.createStrict());
+		factory.setGrammars(grammars);
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		EXIBodyEncoder encoder = factory.createEXIBodyEncoder();
+		encoder.setOutputStream(baos);
+		GrammarAutomatonCoreTest.encode(encoder, false);
+		return baos.toByteArray();
+	}
+
+	static String decode(SchemaInformedGrammars grammars, byte[] exi)
+			throws EXIException, IOException {
+		EXIFactory factory = DefaultEXIFactory.newInstance();
+		factory.setCodingMode(CodingMode.BIT_PACKED);
+		factory.setFidelityOptions(FidelityOptions.createStrict());
+		factory.setGrammars(grammars);
+		return GrammarAutomatonCoreTest.decode(
+				factory.createEXIBodyDecoder(), exi);
+	}
+
+	public void testRoundTrip() throws Exception {
+		SchemaInformedGrammars grammars = createGrammars();
+		byte[] snapshot = toSnapshot(grammars);
+
+		SchemaInformedGrammars loaded = GrammarSnapshot.read(
+				new ByteArrayInputStream(snapshot), SCHEMA_ID);
+		assertEquals(SCHEMA_ID, loaded.getSchemaId());
+		assertEquals(grammars, loaded);
+		assertNotNull(loaded.getGrammarContext().getGrammarUriContext(0)
+				.getQNameContext("root").getGlobalStartElement().getGrammar());
+
+		// same bytes, same events
+		byte[] exi = encode(grammars);
+		assertTrue(Arrays.equals(exi, encode(loaded)));
+		assertEquals(decode(grammars, exi), decode(loaded, exi));
+
+		// stable format
+		assertTrue(Arrays.equals(snapshot, toSnapshot(loaded)));
+	}
+
+	public void testSchemaIdMismatch() throws Exception {
+		byte[] snapshot = toSnapshot(createGrammars());
+		try {
+			GrammarSnapshot.read(new ByteArrayInputStream(snapshot),
+					"urn:test:other");
+			fail("schemaId mismatch");
+		} catch (IOException e) {
+			// expected
+		}
+	}
+
+	public void testNoSchemaId() throws Exception {
+		SchemaInformedGrammars grammars = GrammarAutomatonCoreTest
+				.createGrammars();
+		grammars.schemaId = null;
+		SchemaInformedGrammars loaded = GrammarSnapshot
+				.read(new ByteArrayInputStream(toSnapshot(grammars)));
+		assertEquals("", loaded.getSchemaId());
+		assertNotNull(loaded.getGrammarContext().getGrammarUriContext(0)
+				.getQNameContext("root").getGlobalStartElement().getGrammar());
+		try {
+			GrammarSnapshot.read(
+					new ByteArrayInputStream(toSnapshot(grammars)), SCHEMA_ID);
+			fail("schemaId mismatch");
+		} catch (IOException e) {
+			// expected
+		}
+	}
+
+	public void testCorrupted() throws Exception {
+		byte[] snapshot = toSnapshot(createGrammars());
+		snapshot[snapshot.length - 5] ^= 0x01;
+		try {
+			GrammarSnapshot.read(new ByteArrayInputStream(snapshot));
+			fail("corrupted snapshot");
+		} catch (IOException e) {
+			// expected
+		}
+	}
+
+	public void testDatatypes() throws Exception {
+		SchemaInformedGrammars grammars = createGrammars();
+		GrammarContext gc = grammars.getGrammarContext();
+		QNameContext[] qncs = new QNameContext[6];
+		for (int i = 0; i < 4; i++) {
+			qncs[i] = gc.getGrammarUriContext(0).getQNameContext(i);
+		}
+		qncs[4] = gc.getGrammarUriContext(1).getQNameContext(0);
+		qncs[5] = gc.getGrammarUriContext(1).getQNameContext(1);
+		QNameContext xsdInteger = gc.getGrammarUriContext(3)
+				.getQNameContext("integer");
+
+		IntegerDatatype dtInteger = new IntegerDatatype(xsdInteger);
+		EnumerationDatatype dtEnum = new EnumerationDatatype(new Value[] {
+				IntegerValue.valueOf(3), IntegerValue.valueOf(-17) },
+				dtInteger, null);
+		dtEnum.setBaseDatatype(dtInteger);
+		NBitUnsignedIntegerDatatype dtNBit = new NBitUnsignedIntegerDatatype(
+				IntegerValue.valueOf(10), IntegerValue.valueOf(20), null);
+		ListDatatype dtList = new ListDatatype(dtInteger, null);
+		RestrictedCharacterSetDatatype dtRCS = new RestrictedCharacterSetDatatype(
+				new CodePointCharacterSet(new HashSet<Integer>(Arrays.asList(
+						0x41, 0x42, 0x20AC))), null, WhiteSpace.collapse);
+		DatetimeDatatype dtDate = new DatetimeDatatype(DateTimeType.gYear,
+				null);
+		ExtendedStringDatatype dtEString = new ExtendedStringDatatype(null);
+		dtEString.setGrammarStrings(new EnumerationDatatype(new Value[] {
+				new StringValue("a"), new StringValue("b") },
+				new StringDatatype(null), null));
+		dtEString.setSharedStrings(Arrays.asList("x", "y"));
+
+		Datatype[] dts = { dtEnum, dtNBit, dtList, dtRCS, dtDate, dtEString };
+		for (int i = 0; i < dts.length; i++) {
+			qncs[i].setGlobalAttribute(new Attribute(qncs[i], dts[i]));
+		}
+
+		SchemaInformedGrammars loaded = GrammarSnapshot
+				.read(new ByteArrayInputStream(toSnapshot(grammars)));
+		GrammarContext lgc = loaded.getGrammarContext();
+		Datatype[] ldts = new Datatype[dts.length];
+		for (int i = 0; i < dts.length; i++) {
+			QNameContext qnc = lgc.getGrammarUriContext(
+					qncs[i].getNamespaceUriID()).getQNameContext(
+					qncs[i].getLocalNameID());
+			ldts[i] = qnc.getGlobalAttribute().getDatatype();
+			assertEquals(dts[i].getBuiltInType(), ldts[i].getBuiltInType());
+			assertEquals(dts[i].getWhiteSpace(), ldts[i].getWhiteSpace());
+		}
+
+		EnumerationDatatype lEnum = (EnumerationDatatype) ldts[0];
+		assertEquals(2, lEnum.getEnumerationSize());
+		assertEquals(IntegerValue.valueOf(-17), lEnum.getEnumValue(1));
+		assertTrue(lEnum.getBaseDatatype() == lEnum.getEnumValueDatatype());
+		assertEquals(xsdInteger.getQName(), lEnum.getBaseDatatype()
+				.getSchemaType().getQName());
+
+		NBitUnsignedIntegerDatatype lNBit = (NBitUnsignedIntegerDatatype) ldts[1];
+		assertEquals(IntegerValue.valueOf(10), lNBit.getLowerBound());
+		assertEquals(dtNBit.getNumberOfBits(), lNBit.getNumberOfBits());
+
+		// shared item datatype
+		assertTrue(((ListDatatype) ldts[2]).getListDatatype() == lEnum
+				.getBaseDatatype());
+
+		assertEquals(dtRCS.getRestrictedCharacterSet(),
+				((RestrictedCharacterSetDatatype) ldts[3])
+						.getRestrictedCharacterSet());
+		assertEquals(DateTimeType.gYear,
+				((DatetimeDatatype) ldts[4]).getDatetimeType());
+
+		ExtendedStringDatatype lEString = (ExtendedStringDatatype) ldts[5];
+		assertEquals(Arrays.asList("x", "y"), lEString.getSharedStrings());
+		assertEquals(new StringValue("b"), lEString.getGrammarStrings()
+				.getEnumValue(1));
+	}
+
+	public void testResolver() throws Exception {
+		File dir = File.createTempFile("exig", "");
+		assertTrue(dir.delete());
+		assertTrue(dir.mkdir());
+		try {
+			final int[] built = new int[1];
+			SchemaIdResolver xsdResolver = new SchemaIdResolver() {
+				public Grammars resolveSchemaId(String schemaId)
+						throws EXIException {
+					built[0]++;
+					return createGrammars();
+				}
+			};
+
+			// first run builds and stores the snapshot
+			SnapshotSchemaIdResolver sir = new SnapshotSchemaIdResolver(dir,
+					xsdResolver);
+			Grammars g1 = sir.resolveSchemaId(SCHEMA_ID);
+			assertTrue(g1 == sir.resolveSchemaId(SCHEMA_ID));
+			assertEquals(1, built[0]);
+			assertTrue(sir.getSnapshotFile(SCHEMA_ID).isFile());
+
+			// next run loads the snapshot
+			SnapshotSchemaIdResolver sir2 = new SnapshotSchemaIdResolver(dir,
+					xsdResolver);
+			Grammars g2 = sir2.resolveSchemaId(SCHEMA_ID);
+			assertEquals(1, built[0]);
+			assertEquals(g1, g2);
+
+			// snapshot cannot be stored, grammars are resolved anyway
+			SnapshotSchemaIdResolver sir3 = new SnapshotSchemaIdResolver(
+					new File(dir, "missing"), xsdResolver);
+			assertNotNull(sir3.resolveSchemaId(SCHEMA_ID));
+			assertEquals(2, built[0]);
+
+			try {
+				new SnapshotSchemaIdResolver(dir)
+						.resolveSchemaId("urn:test:unknown");
+				fail("no snapshot");
+			} catch (EXIException e) {
+				// expected
+			}
+		} finally {
+			for (File f : dir.listFiles()) {
+				f.delete();
+			}
+			dir.delete();
+		}
+	}
+
+}
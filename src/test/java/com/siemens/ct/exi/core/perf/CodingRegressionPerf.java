@@ -0,0 +1,494 @@
+/*
+ * Copyright (c) 2007-2018 Siemens AG
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * 
+ */
+
+package com.siemens.ct.exi.core.perf;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.Random;
+import java.util.TreeSet;
+
+import junit.framework.TestCase;
+
+import com.siemens.ct.exi.core.CodingMode;
+import com.siemens.ct.exi.core.EXIBodyDecoder;
+import com.siemens.ct.exi.core.EXIBodyEncoder;
+import com.siemens.ct.exi.core.EXIEventVisitor;
+import com.siemens.ct.exi.core.EXIFactory;
+import com.siemens.ct.exi.core.exceptions.EXIException;
+import com.siemens.ct.exi.core.helpers.DefaultEXIFactory;
+import com.siemens.ct.exi.core.values.StringValue;
+import com.siemens.ct.exi.core.values.Value;
+
+/**
+ * Allocation and throughput regression gate, run with
+ * <code>mvn test -P perf-tests</code>.
+ * 
+ * <p>
+ * Encodes and decodes a fixed corpus in every coding mode and measures
+ * allocated bytes per event (thread allocation counter) and events per
+ * second (best of several rounds after warm-up). Throughput is compared
+ * relative to a calibration loop measured in the same run, so baselines do
+ * not depend on the machine. Allocations depend on the Java version (e.g.,
+ * compact strings), hence baselines are kept per
+ * <code>java.specification.version</code>
+ * (<code>baseline-java&lt;version&gt;.properties</code>). Without a matching
+ * baseline the results are recorded and the gate fails, unless the baseline
+ * is being written.
+ * </p>
+ * 
+ * <p>
+ * Allocation and throughput regressions beyond the tolerance fail, throughput
+ * checks can be switched off with <code>exi.perf.checkThroughput=false</code>
+ * (e.g., on noisy shared machines).
+ * </p>
+ * 
+ * <p>
+ * System properties: <code>exi.perf.baselineDir</code>,
+ * <code>exi.perf.recordDir</code> (results if there is no baseline),
+ * <code>exi.perf.allocTolerance</code> and
+ * <code>exi.perf.throughputTolerance</code> (relative, e.g. 0.1 for 10%),
+ * <code>exi.perf.checkThroughput</code>, <code>exi.perf.warmupMillis</code>,
+ * <code>exi.perf.rounds</code>, <code>exi.perf.roundMillis</code> and
+ * <code>exi.perf.writeBaseline</code> (record the measured values as the new
+ * baseline instead of checking).
+ * </p>
+ * 
+ * @author Daniel.Peintner.EXT@siemens.com
+ * @author Richard.Kuntschke@siemens.com
+ * 
+ */
+
+public class CodingRegressionPerf extends TestCase {
+
+	static final String BYTES_PER_EVENT = "bytesPerEvent";
+	static final String RELATIVE_THROUGHPUT = "relativeThroughput";
+
+	/*
+	 * Recorded document (events with values created upfront)
+	 */
+	static final class Document {
+		static final int SE = 0;
+		static final int AT = 1;
+		static final int CH = 2;
+		static final int EE = 3;
+
+		final String name;
+		final List<Object[]> ops = new ArrayList<Object[]>();
+		// SD and ED included
+		int events = 2;
+
+		Document(String name) {
+			this.name = name;
+		}
+
+		void add(int op, String uri, String localName, Value value) {
+			ops.add(new Object[] { op, uri, localName, value });
+			events++;
+		}
+
+		void startElement(String uri, String localName) {
+			add(SE, uri, localName, null);
+		}
+
+		void attribute(String uri, String localName, String value) {
+			add(AT, uri, localName, new StringValue(value));
+		}
+
+		void characters(String value) {
+			add(CH, null, null, new StringValue(value));
+		}
+
+		void endElement() {
+			add(EE, null, null, null);
+		}
+
+		void encode(EXIBodyEncoder encoder) throws EXIException, IOException {
+			encoder.encodeStartDocument();
+			for (Object[] op : ops) {
+				switch ((Integer) op[0]) {
+				case SE:
+					encoder.encodeStartElement((String) op[1], (String) op[2],
+							null);
+					break;
+				case AT:
+					encoder.encodeAttribute((String) op[1], (String) op[2],
+							null, (Value) op[3]);
+					break;
+				case CH:
+					encoder.encodeCharacters((Value) op[3]);
+					break;
+				default:
+					encoder.encodeEndElement();
+					break;
+				}
+			}
+			encoder.encodeEndDocument();
+			encoder.flush();
+		}
+	}
+
+	static final String NS_ORDER = "urn:exi:perf:order";
+	static final String NS_ITEM = "urn:exi:perf:item";
+
+	/*
+	 * Many small records with repeating values (string table hits)
+	 */
+	static Document createRecords() {
+		Random random = new Random(4711);
+		Document doc = new Document("records");
+		doc.startElement(NS_ORDER, "orders");
+		for (int i = 0; i < 500; i++) {
+			doc.startElement(NS_ORDER, "order");
+			doc.attribute("", "id", "o" + i);
+			doc.attribute("", "status", (i % 4 == 0) ? "open" : "closed");
+			doc.startElement(NS_ORDER, "customer");
+			doc.characters("customer-" + random.nextInt(50));
+			doc.endElement();
+			int items = 1 + random.nextInt(4);
+			for (int k = 0; k < items; k++) {
+				doc.startElement(NS_ITEM, "item");
+				doc.attribute("", "sku", "sku-" + random.nextInt(200));
+				doc.startElement(NS_ITEM, "quantity");
+				doc.characters(Integer.toString(1 + random.nextInt(9)));
+				doc.endElement();
+				doc.startElement(NS_ITEM, "price");
+				doc.characters(random.nextInt(10000) / 100 + "."
+						+ random.nextInt(100));
+				doc.endElement();
+				doc.endElement();
+			}
+			doc.endElement();
+		}
+		doc.endElement();
+		return doc;
+	}
+
+	/*
+	 * Longer unique character content (string table misses)
+	 */
+	static Document createText() {
+		Random random = new Random(815);
+		Document doc = new Document("text");
+		doc.startElement("", "book");
+		for (int i = 0; i < 200; i++) {
+			doc.startElement("", "paragraph");
+			doc.attribute("", "n", Integer.toString(i));
+			StringBuilder sb = new StringBuilder();
+			int words = 20 + random.nextInt(40);
+			for (int k = 0; k < words; k++) {
+				int len = 2 + random.nextInt(8);
+				for (int c = 0; c < len; c++) {
+					sb.append((char) ('a' + random.nextInt(26)));
+				}
+				sb.append(k % 10 == 9 ? ". " : " ");
+			}
+			doc.characters(sb.toString());
+			doc.endElement();
+		}
+		doc.endElement();
+		return doc;
+	}
+
+	/*
+	 * Allocation counter of the current thread (null if not available)
+	 */
+	static final com.sun.management.ThreadMXBean THREAD_BEAN;
+
+	static {
+		com.sun.management.ThreadMXBean bean = null;
+		java.lang.management.ThreadMXBean tb = ManagementFactory
+				.getThreadMXBean();
+		if (tb instanceof com.sun.management.ThreadMXBean) {
+			bean = (com.sun.management.ThreadMXBean) tb;
+			if (bean.isThreadAllocatedMemorySupported()) {
+				bean.setThreadAllocatedMemoryEnabled(true);
+			} else {
+				bean = null;
+			}
+		}
+		THREAD_BEAN = bean;
+	}
+
+	static long allocatedBytes() {
+		return THREAD_BEAN == null ? 0L : THREAD_BEAN
+				.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+	/*
+	 * One measured operation (encode or decode a document)
+	 */
+	interface Operation {
+		void run() throws EXIException, IOException;
+	}
+
+	static final class Measurement {
+		double bytesPerEvent = Double.MAX_VALUE;
+		double eventsPerSecond;
+	}
+
+	protected long warmupMillis;
+	protected int rounds;
+	protected long roundMillis;
+
+	@Override
+	protected void setUp() throws Exception {
+		warmupMillis = Long.getLong("exi.perf.warmupMillis", 1000);
+		rounds = Integer.getInteger("exi.perf.rounds", 5);
+		roundMillis = Long.getLong("exi.perf.roundMillis", 200);
+	}
+
+	/*
+	 * Best of all rounds, noise (GC, JIT, other processes) only ever makes a
+	 * round slower or allocate more
+	 */
+	protected Measurement measure(Operation op, int events)
+			throws EXIException, IOException {
+		long end = System.nanoTime() + warmupMillis * 1000000L;
+		while (System.nanoTime() < end) {
+			op.run();
+		}
+
+		Measurement m = new Measurement();
+		for (int r = 0; r < rounds; r++) {
+			long ops = 0;
+			long bytes = allocatedBytes();
+			long start = System.nanoTime();
+			end = start + roundMillis * 1000000L;
+			long now;
+			do {
+				op.run();
+				ops++;
+				now = System.nanoTime();
+			} while (now < end);
+			bytes = allocatedBytes() - bytes;
+			m.bytesPerEvent = Math.min(m.bytesPerEvent, (double) bytes
+					/ (ops * events));
+			m.eventsPerSecond = Math.max(m.eventsPerSecond, ops * events
+					* 1e9 / (now - start));
+		}
+		return m;
+	}
+
+	/*
+	 * Pure Java reference work (table-driven CRC-32 over a buffer), the
+	 * coding throughput is reported relative to it to factor out the machine
+	 */
+	static final class Calibration implements Operation {
+		static final int BYTES = 64 * 1024;
+
+		final int[] table = new int[256];
+		final byte[] data = new byte[BYTES];
+		volatile int sink;
+
+		Calibration() {
+			for (int n = 0; n < 256; n++) {
+				int c = n;
+				for (int k = 0; k < 8; k++) {
+					c = (c & 1) != 0 ? 0xEDB88320 ^ (c >>> 1) : c >>> 1;
+				}
+				table[n] = c;
+			}
+			new Random(42).nextBytes(data);
+		}
+
+		public void run() {
+			int crc = 0xFFFFFFFF;
+			for (int i = 0; i < BYTES; i++) {
+				crc = table[(crc ^ data[i]) & 0xFF] ^ (crc >>> 8);
+			}
+			sink = crc;
+		}
+	}
+
+	public void testRegression() throws Exception {
+		String javaVersion = System.getProperty("java.specification.version");
+		File fBaseline = new File(System.getProperty("exi.perf.baselineDir",
+				"src/test/perf"), "baseline-java" + javaVersion
+				+ ".properties");
+		boolean writeBaseline = Boolean.getBoolean("exi.perf.writeBaseline");
+		boolean checkThroughput = Boolean.parseBoolean(System.getProperty(
+				"exi.perf.checkThroughput", "true"));
+		double allocTolerance = Double.parseDouble(System.getProperty(
+				"exi.perf.allocTolerance", "0.1"));
+		double throughputTolerance = Double.parseDouble(System.getProperty(
+				"exi.perf.throughputTolerance", "0.3"));
+
+		Properties baseline = new Properties();
+		File fResults = fBaseline;
+		if (!writeBaseline) {
+			if (fBaseline.exists()) {
+				InputStream is = new FileInputStream(fBaseline);
+				try {
+					baseline.load(is);
+				} finally {
+					is.close();
+				}
+			} else {
+				// nothing to compare with, record to ease adding a baseline
+				fResults = new File(System.getProperty("exi.perf.recordDir",
+						"target"), fBaseline.getName());
+			}
+		}
+
+		if (THREAD_BEAN == null) {
+			System.out
+					.println("Thread allocation counter not supported, allocations are not checked");
+		}
+
+		Calibration calibration = new Calibration();
+		double calibrationRate = measure(calibration, Calibration.BYTES).eventsPerSecond;
+
+		Document[] corpus = { createRecords(), createText() };
+		Properties results = new Properties();
+		List<String> regressions = new ArrayList<String>();
+
+		System.out.println(String.format(Locale.ENGLISH,
+				"%-36s %12s %12s %14s %12s %12s", "", "bytes/event",
+				"baseline", "events/s", "relative", "baseline"));
+		for (final Document doc : corpus) {
+			for (CodingMode codingMode : CodingMode.values()) {
+				EXIFactory factory = DefaultEXIFactory.newInstance();
+				factory.setCodingMode(codingMode);
+
+				final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+				final EXIBodyEncoder encoder = factory.createEXIBodyEncoder();
+				Operation encode = new Operation() {
+					public void run() throws EXIException, IOException {
+						baos.reset();
+						encoder.setOutputStream(baos);
+						doc.encode(encoder);
+					}
+				};
+				encode.run();
+				final byte[] exi = baos.toByteArray();
+
+				final EXIBodyDecoder decoder = factory.createEXIBodyDecoder();
+				final EXIEventVisitor visitor = new EXIEventVisitor() {
+				};
+				Operation decode = new Operation() {
+					public void run() throws EXIException, IOException {
+						decoder.setInputStream(new ByteArrayInputStream(exi));
+						decoder.decode(visitor);
+					}
+				};
+
+				check(doc.name + "." + codingMode + ".encode",
+						measure(encode, doc.events), calibrationRate,
+						baseline, results, allocTolerance,
+						throughputTolerance, checkThroughput, regressions);
+				check(doc.name + "." + codingMode + ".decode",
+						measure(decode, doc.events), calibrationRate,
+						baseline, results, allocTolerance,
+						throughputTolerance, checkThroughput, regressions);
+			}
+		}
+
+		if (writeBaseline || fResults != fBaseline) {
+			File parent = fResults.getAbsoluteFile().getParentFile();
+			if (parent != null) {
+				parent.mkdirs();
+			}
+			// sorted and without timestamp, diffs show changed values only
+			Writer w = new OutputStreamWriter(new FileOutputStream(fResults),
+					"ISO-8859-1");
+			try {
+				w.write("# EXI coding regression baseline (CodingRegressionPerf), Java "
+						+ javaVersion + "\n");
+				for (String key : new TreeSet<String>(
+						results.stringPropertyNames())) {
+					w.write(key + "=" + results.getProperty(key) + "\n");
+				}
+			} finally {
+				w.close();
+			}
+			System.out.println("Results written to "
+					+ fResults.getAbsolutePath());
+		}
+
+		if (fResults != fBaseline) {
+			fail("No baseline " + fBaseline.getPath() + " for Java "
+					+ javaVersion + ", add one with -Dexi.perf.writeBaseline=true"
+					+ " (results of this run: " + fResults.getPath() + ")");
+		}
+
+		assertTrue("Performance regressions: " + regressions,
+				regressions.isEmpty());
+	}
+
+	protected void check(String key, Measurement m, double calibrationRate,
+			Properties baseline, Properties results, double allocTolerance,
+			double throughputTolerance, boolean checkThroughput,
+			List<String> regressions) {
+		String bBytes = baseline.getProperty(key + "." + BYTES_PER_EVENT);
+		String bRelative = baseline.getProperty(key + "."
+				+ RELATIVE_THROUGHPUT);
+
+		if (THREAD_BEAN != null) {
+			results.setProperty(key + "." + BYTES_PER_EVENT,
+					String.format(Locale.ENGLISH, "%.1f", m.bytesPerEvent));
+			if (bBytes != null
+					&& m.bytesPerEvent > Double.parseDouble(bBytes)
+							* (1 + allocTolerance)) {
+				regressions.add(String.format(Locale.ENGLISH,
+						"%s allocates %.1f bytes/event (baseline %s)", key,
+						m.bytesPerEvent, bBytes));
+			}
+		}
+
+		// events per 1000 calibration bytes (independent of machine speed)
+		double relative = m.eventsPerSecond * 1000 / calibrationRate;
+		results.setProperty(key + "." + RELATIVE_THROUGHPUT,
+				String.format(Locale.ENGLISH, "%.3f", relative));
+		if (bRelative != null
+				&& relative < Double.parseDouble(bRelative)
+						* (1 - throughputTolerance)) {
+			String msg = String.format(Locale.ENGLISH,
+					"%s runs %.3f relative throughput (baseline %s)", key,
+					relative, bRelative);
+			if (checkThroughput) {
+				regressions.add(msg);
+			} else {
+				System.out.println("Advisory: " + msg);
+			}
+		}
+
+		System.out.println(String.format(Locale.ENGLISH,
+				"%-36s %12.1f %12s %14.0f %12.3f %12s", key,
+				m.bytesPerEvent, bBytes == null ? "-" : bBytes,
+				m.eventsPerSecond, relative, bRelative == null ? "-"
+						: bRelative));
+	}
+}
@@ -23,6 +23,8 @@
 
 package com.siemens.ct.exi.core.types;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 
 import javax.xml.namespace.QName;
@@ -31,11 +33,24 @@ import junit.framework.TestCase;
 
 import com.siemens.ct.exi.core.Constants;
 import com.siemens.ct.exi.core.context.QNameContext;
+import com.siemens.ct.exi.core.datatype.BinaryBase64Datatype;
+import com.siemens.ct.exi.core.datatype.BooleanDatatype;
 import com.siemens.ct.exi.core.datatype.Datatype;
+import com.siemens.ct.exi.core.datatype.DecimalDatatype;
+import com.siemens.ct.exi.core.datatype.FloatDatatype;
 import com.siemens.ct.exi.core.datatype.IntegerDatatype;
 import com.siemens.ct.exi.core.datatype.NBitUnsignedIntegerDatatype;
 import com.siemens.ct.exi.core.datatype.UnsignedIntegerDatatype;
+import com.siemens.ct.exi.core.datatype.strings.StringDecoder;
+import com.siemens.ct.exi.core.datatype.strings.StringDecoderImpl;
 import com.siemens.ct.exi.core.exceptions.EXIException;
+import com.siemens.ct.exi.core.io.channel.BitDecoderChannel;
+import com.siemens.ct.exi.core.io.channel.BitEncoderChannel;
+import com.siemens.ct.exi.core.io.channel.ByteDecoderChannel;
+import com.siemens.ct.exi.core.io.channel.ByteEncoderChannel;
+import com.siemens.ct.exi.core.io.channel.DecoderChannel;
+import com.siemens.ct.exi.core.io.channel.EncoderChannel;
+import com.siemens.ct.exi.core.values.FloatValue;
 import com.siemens.ct.exi.core.values.IntegerValue;
 import com.siemens.ct.exi.core.values.StringValue;
 
@@ -130,4 +145,43 @@ public class TypeCoreTest extends TestCase {
 		assertFalse(te.isValid(dt, new StringValue("xxx")));
 	}
 
+	protected void _testSkipValue(EncoderChannel ec, ByteArrayOutputStream os,
+			boolean byteAligned) throws IOException, EXIException {
+		QNameContext qnc = new QNameContext(-1, -1, new QName("", "skip"));
+
+		ec.encodeIntegerValue(IntegerValue.valueOf(-123456789012L));
+		ec.encodeUnsignedInteger(4711);
+		ec.encodeFloat(FloatValue.parse("-1.5E-7"));
+		ec.encodeDecimal(true, IntegerValue.valueOf(12345),
+				IntegerValue.valueOf(987));
+		ec.encodeBinary(new byte[] { 1, 2, 3, 4, 5 });
+		ec.encodeBoolean(true);
+		// sentinel
+		ec.encodeUnsignedInteger(42);
+		ec.flush();
+
+		ByteArrayInputStream is = new ByteArrayInputStream(os.toByteArray());
+		DecoderChannel dc = byteAligned ? new ByteDecoderChannel(is)
+				: new BitDecoderChannel(is);
+		TypeDecoder td = new TypedTypeDecoder();
+		StringDecoder sd = new StringDecoderImpl(false);
+		td.skipValue(new IntegerDatatype(qnc), qnc, dc, sd);
+		td.skipValue(new UnsignedIntegerDatatype(qnc), qnc, dc, sd);
+		td.skipValue(new FloatDatatype(qnc), qnc, dc, sd);
+		td.skipValue(new DecimalDatatype(qnc), qnc, dc, sd);
+		td.skipValue(new BinaryBase64Datatype(qnc), qnc, dc, sd);
+		td.skipValue(new BooleanDatatype(qnc), qnc, dc, sd);
+		assertEquals(42, dc.decodeUnsignedInteger());
+	}
+
+	public void testSkipValueBitPacked() throws IOException, EXIException {
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		_testSkipValue(new BitEncoderChannel(os), os, false);
+	}
+
+	public void testSkipValueBytePacked() throws IOException, EXIException {
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		_testSkipValue(new ByteEncoderChannel(os), os, true);
+	}
+
 }
\ No newline at end of file